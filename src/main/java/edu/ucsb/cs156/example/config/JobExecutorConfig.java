@@ -0,0 +1,153 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.services.jobs.FairJobQueue;
+import java.util.concurrent.BlockingQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+
+/**
+ * The `JobExecutorConfig` class defines the thread pool that runs jobs launched through
+ * `JobService`.
+ *
+ * <p>The pool has a fixed number of named threads (`job-1`, `job-2`, ...) and a bounded queue. When
+ * the queue is full, submitting a job fails with a `TaskRejectedException` instead of piling up
+ * work. The queue is a `FairJobQueue`, which shares the threads fairly between users rather than
+ * starting jobs in the order they were launched. The security context of the thread that launches a
+ * job is propagated to the thread that runs it.
+ *
+ * <p>Sub-tasks that jobs start through `JobContext.invokeAll` run on a second pool, so that a job
+ * waiting for its sub-tasks never holds up the threads they need. Streamed job logs are written to
+ * their clients by a third, so that a slow client never holds up a job.
+ *
+ * <p>None of the pools is shut down when the application context closes: `JobDrainer` first lets
+ * the jobs they are running finish, and the log stream pool then still sends those jobs' final log
+ * lines and status to the clients streaming them.
+ */
+@Configuration
+public class JobExecutorConfig {
+
+  @Value("${app.jobs.executor.poolSize:4}")
+  private int poolSize;
+
+  @Value("${app.jobs.executor.queueCapacity:100}")
+  private int queueCapacity;
+
+  @Value("${app.jobs.executor.virtualThreads:false}")
+  private boolean virtualThreads;
+
+  @Value("${app.jobs.executor.reservedThreads:0}")
+  private int reservedThreads;
+
+  @Value("${app.jobs.executor.maxRunningPerUser:0}")
+  private int maxRunningPerUser;
+
+  @Value("${app.jobs.executor.shortJobMaxMs:0}")
+  private long shortJobMaxMs;
+
+  @Value("${app.jobs.subtasks.poolSize:0}")
+  private int subtaskPoolSize;
+
+  @Value("${app.jobs.logStream.senderThreads:2}")
+  private int logStreamSenderThreads;
+
+  /**
+   * The queue of the job executor.
+   *
+   * @return the queue
+   */
+  @Bean
+  public FairJobQueue jobQueue() {
+    return new FairJobQueue(
+        queueCapacity, poolSize, reservedThreads, maxRunningPerUser, shortJobMaxMs);
+  }
+
+  /**
+   * The executor that runs jobs; see `@Async("jobExecutor")` in `JobService`.
+   *
+   * @return the job executor
+   */
+  @Bean
+  public ThreadPoolTaskExecutor jobExecutor() {
+    FairJobQueue queue = jobQueue();
+    ThreadPoolTaskExecutor executor =
+        new ThreadPoolTaskExecutor() {
+          @Override
+          protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+            return queue;
+          }
+        };
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    // so that every job goes through the queue, rather than straight to a new thread
+    executor.setPrestartAllCoreThreads(true);
+    executor.setThreadNamePrefix("job-");
+    if (virtualThreads) {
+      executor.setThreadFactory(Thread.ofVirtual().name("job-", 1).factory());
+    }
+    executor.setTaskDecorator(DelegatingSecurityContextRunnable::new);
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * The executor that runs sub-tasks of jobs; see `JobContext.invokeAll`. It has one thread per
+   * processor unless app.jobs.subtasks.poolSize says otherwise. Its queue is unbounded: the job
+   * that started the sub-tasks waits for all of them, so rejecting one would only fail the job.
+   *
+   * @return the sub-task executor
+   */
+  @Bean
+  public ThreadPoolTaskExecutor jobSubtaskExecutor() {
+    int size = subtaskPoolSize > 0 ? subtaskPoolSize : Runtime.getRuntime().availableProcessors();
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(size);
+    executor.setMaxPoolSize(size);
+    executor.setThreadNamePrefix("job-subtask-");
+    executor.setTaskDecorator(DelegatingSecurityContextRunnable::new);
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * The executor that writes job log events to streaming clients; see `JobLogBroadcaster`. A slow
+   * client then holds up one of its app.jobs.logStream.senderThreads threads rather than the job
+   * whose log it streams. Its queue is unbounded, but holds at most one task per open stream.
+   *
+   * @return the log stream executor
+   */
+  @Bean
+  public ThreadPoolTaskExecutor jobLogStreamExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(logStreamSenderThreads);
+    executor.setMaxPoolSize(logStreamSenderThreads);
+    executor.setThreadNamePrefix("job-log-stream-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * Defining `jobExecutor` makes Spring Boot back off from creating its default task executor, so
+   * this recreates it for everything else that runs asynchronously (e.g. Spring MVC async
+   * requests).
+   *
+   * @param builder the builder configured from the `spring.task.execution.*` properties
+   * @return the default application task executor
+   */
+  @Lazy
+  @Bean(
+      name = {
+        TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+        AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+      })
+  public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+    return builder.build();
+  }
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/**
+ * The `JpaAuditingConfig` class turns on JPA auditing, so that fields annotated with `@CreatedDate`
+ * and `@LastModifiedDate` (e.g. on `Job`) are filled in when an entity is saved.
+ *
+ * <p>It is a separate class, rather than an annotation on the application class, so that
+ * `@WebMvcTest` tests, which have no JPA metamodel, do not pick it up.
+ */
+@Configuration
+@EnableJpaAuditing(dateTimeProviderRef = "auditingDateTimeProvider")
+public class JpaAuditingConfig {
+
+  /**
+   * Audit timestamps are `ZonedDateTime`s, which the default provider does not produce.
+   *
+   * @return a provider of the current time
+   */
+  @Bean
+  public DateTimeProvider auditingDateTimeProvider() {
+    return () -> Optional.of(ZonedDateTime.now());
+  }
+}
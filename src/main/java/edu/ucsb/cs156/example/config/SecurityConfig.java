@@ -77,7 +77,13 @@ public class SecurityConfig {
                 csrf.csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
                     .csrfTokenRequestHandler(new SpaCsrfTokenRequestHandler()))
         .addFilterAfter(new CsrfCookieFilter(), BasicAuthenticationFilter.class)
-        .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+        .authorizeHttpRequests(
+            auth ->
+                // the actuator lists every route and exposes the jobs.* and JVM meters
+                auth.requestMatchers(antMatcher("/actuator/**"))
+                    .hasRole("ADMIN")
+                    .anyRequest()
+                    .permitAll())
         .logout(
             logout ->
                 logout
@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import java.util.Map;
@@ -47,4 +48,18 @@ public abstract class ApiController {
         "type", e.getClass().getSimpleName(),
         "message", e.getMessage());
   }
+
+  /**
+   * This method handles the JobQueueFullException.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({JobQueueFullException.class})
+  @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+  public Object handleJobQueueFullException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
 }
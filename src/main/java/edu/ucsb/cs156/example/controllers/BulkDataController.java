@@ -0,0 +1,115 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.bulk.BulkExportService;
+import edu.ucsb.cs156.example.services.bulk.BulkFormat;
+import edu.ucsb.cs156.example.services.bulk.BulkImportService;
+import edu.ucsb.cs156.example.services.bulk.EntityTable;
+import edu.ucsb.cs156.example.services.bulk.EntityTables;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.io.IOException;
+import java.util.Locale;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/** This is a REST controller for loading and downloading many rows of an entity at once */
+@Tag(name = "Bulk data")
+@RequestMapping("/api")
+@RestController
+@Slf4j
+public class BulkDataController extends ApiController {
+
+  @Autowired EntityTables entityTables;
+
+  @Autowired BulkImportService bulkImportService;
+
+  @Autowired BulkExportService bulkExportService;
+
+  /**
+   * Start a job that imports rows of an entity from an uploaded file. The job's counters show how
+   * many rows were imported and how many failed; failed rows are in its "failed-rows.ndjson"
+   * artifact.
+   *
+   * @param entity the entity, as in its API path, e.g. ucsbdates
+   * @param format csv (with a header row of property names) or ndjson (one JSON object per line)
+   * @param file the file
+   * @return the import job
+   * @throws IOException if the upload cannot be saved
+   */
+  @Operation(summary = "Import rows of an entity from a CSV or NDJSON file, as a job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping(value = "/{entity}/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Job importRows(
+      @Parameter(name = "entity", description = "e.g. ucsbdates") @PathVariable String entity,
+      @Parameter(name = "format", description = "csv or ndjson") @RequestParam(defaultValue = "csv")
+          String format,
+      @Parameter(name = "file") @RequestParam MultipartFile file)
+      throws IOException {
+
+    return bulkImportService.startImport(table("import", entity), format(format), file);
+  }
+
+  /**
+   * Download every row of an entity. The rows are streamed as they are read from the database, so
+   * that exports of any size start at once and take constant memory.
+   *
+   * @param entity the entity, as in its API path, e.g. menuitemreviews
+   * @param format csv (with a header row of property names) or ndjson (one JSON object per line)
+   * @return the rows, as an attachment named after the entity
+   */
+  @Operation(summary = "Download every row of an entity as a CSV or NDJSON file")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/{entity}/export")
+  public ResponseEntity<StreamingResponseBody> exportRows(
+      @Parameter(name = "entity", description = "e.g. menuitemreviews") @PathVariable String entity,
+      @Parameter(name = "format", description = "csv or ndjson") @RequestParam(defaultValue = "csv")
+          String format) {
+
+    EntityTable table = table("export", entity);
+    BulkFormat bulkFormat = format(format);
+    String filename =
+        "%s.%s".formatted(table.getName(), bulkFormat.name().toLowerCase(Locale.ROOT));
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(bulkFormat.getContentType()))
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(filename).build().toString())
+        .body(out -> bulkExportService.export(table, bulkFormat, out));
+  }
+
+  private EntityTable table(String action, String entity) {
+    return entityTables
+        .get(entity)
+        .orElseThrow(
+            () ->
+                new ResponseStatusException(
+                    HttpStatus.NOT_FOUND,
+                    "Cannot %s %s; use one of %s"
+                        .formatted(action, entity, entityTables.getNames())));
+  }
+
+  private static BulkFormat format(String format) {
+    try {
+      return BulkFormat.of(format);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+}
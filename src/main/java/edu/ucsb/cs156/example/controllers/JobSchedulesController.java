@@ -0,0 +1,153 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import edu.ucsb.cs156.example.services.jobs.JobScheduler;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/** This is a REST controller for the recurring jobs that JobScheduler launches */
+@Tag(name = "Job schedules")
+@RequestMapping("/api/jobschedules")
+@RestController
+@Slf4j
+public class JobSchedulesController extends ApiController {
+
+  @Autowired JobSchedulesRepository jobSchedulesRepository;
+
+  @Autowired JobScheduler jobScheduler;
+
+  /**
+   * This method returns a list of all job schedules.
+   *
+   * @return a list of all job schedules
+   */
+  @Operation(summary = "List all job schedules")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/all")
+  public Iterable<JobSchedule> allSchedules() {
+    return jobSchedulesRepository.findAll();
+  }
+
+  /**
+   * This method returns a single job schedule.
+   *
+   * @param id id of the schedule
+   * @return a single job schedule
+   */
+  @Operation(summary = "Get a single job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("")
+  public JobSchedule getById(@Parameter(name = "id") @RequestParam Long id) {
+    return jobSchedulesRepository
+        .findById(id)
+        .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+  }
+
+  /**
+   * This method creates a new job schedule.
+   *
+   * @param name unique name of the schedule
+   * @param cron Spring cron expression, e.g. "0 0 3 * * *" for 3am every day
+   * @param jobType class name of the JobContextConsumer to run
+   * @param enabled whether the schedule fires
+   * @param spec the job's parameters, as the JSON form of the JobContextConsumer
+   * @return the saved schedule
+   */
+  @Operation(summary = "Create a new job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/post")
+  public JobSchedule postSchedule(
+      @Parameter(name = "name") @RequestParam String name,
+      @Parameter(name = "cron") @RequestParam String cron,
+      @Parameter(name = "jobType") @RequestParam String jobType,
+      @Parameter(name = "enabled") @RequestParam(defaultValue = "true") boolean enabled,
+      @RequestBody(required = false) String spec) {
+
+    JobSchedule schedule =
+        JobSchedule.builder()
+            .name(name)
+            .cron(cron)
+            .jobType(jobType)
+            .spec(spec == null ? "{}" : spec)
+            .enabled(enabled)
+            .build();
+    return save(schedule);
+  }
+
+  /**
+   * Delete a job schedule. Jobs it has already launched are not affected.
+   *
+   * @param id id of the schedule
+   * @return a message indicating the schedule was deleted
+   */
+  @Operation(summary = "Delete a job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("")
+  public Object deleteSchedule(@Parameter(name = "id") @RequestParam Long id) {
+    JobSchedule schedule =
+        jobSchedulesRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+
+    jobSchedulesRepository.delete(schedule);
+    return genericMessage("JobSchedule with id %s deleted".formatted(id));
+  }
+
+  /**
+   * Update a job schedule. Its next run is computed again from the new cron expression.
+   *
+   * @param id id of the schedule
+   * @param incoming the new schedule contents
+   * @return the updated schedule
+   */
+  @Operation(summary = "Update a single job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("")
+  public JobSchedule updateSchedule(
+      @Parameter(name = "id") @RequestParam Long id, @RequestBody JobSchedule incoming) {
+
+    JobSchedule schedule =
+        jobSchedulesRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+
+    schedule.setName(incoming.getName());
+    schedule.setCron(incoming.getCron());
+    schedule.setJobType(incoming.getJobType());
+    schedule.setSpec(incoming.getSpec());
+    schedule.setEnabled(incoming.getEnabled());
+    return save(schedule);
+  }
+
+  private JobSchedule save(JobSchedule schedule) {
+    try {
+      jobScheduler.prepare(schedule);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+    try {
+      return jobSchedulesRepository.save(schedule);
+    } catch (DataIntegrityViolationException e) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "A job schedule named %s already exists".formatted(schedule.getName()));
+    }
+  }
+}
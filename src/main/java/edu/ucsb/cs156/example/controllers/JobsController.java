@@ -3,24 +3,55 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobArtifact;
+import edu.ucsb.cs156.example.entities.JobPriority;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobLogSize;
+import edu.ucsb.cs156.example.models.JobLogSlice;
+import edu.ucsb.cs156.example.models.JobPurgeResult;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.JobWorkflowSpec;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobArtifactStore;
+import edu.ucsb.cs156.example.services.jobs.JobLogBroadcaster;
+import edu.ucsb.cs156.example.services.jobs.JobLogIndex;
+import edu.ucsb.cs156.example.services.jobs.JobPurger;
 import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Jobs")
 @RequestMapping("/api/jobs")
@@ -31,14 +62,56 @@ public class JobsController extends ApiController {
 
   @Autowired private JobService jobService;
 
+  @Autowired private JobLogBroadcaster jobLogBroadcaster;
+
+  @Autowired private JobLogIndex jobLogIndex;
+
+  @Autowired private JobPurger jobPurger;
+
+  @Autowired private JobArtifactStore jobArtifactStore;
+
   @Autowired ObjectMapper mapper;
 
-  @Operation(summary = "List all jobs")
+  private static final int MAX_PAGE_SIZE = 100;
+
+  private static final List<String> SORTABLE =
+      List.of("id", "status", "jobType", "createdAt", "updatedAt");
+
+  @Operation(summary = "List jobs, a page at a time, without their logs")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/all")
-  public Iterable<Job> allJobs() {
-    Iterable<Job> jobs = jobsRepository.findAll();
-    return jobs;
+  public PagedModel<JobSummary> allJobs(
+      @Parameter(name = "page", description = "page number, counting from 0")
+          @RequestParam(defaultValue = "0")
+          int page,
+      @Parameter(name = "size", description = "jobs per page, at most " + MAX_PAGE_SIZE)
+          @RequestParam(defaultValue = "20")
+          int size,
+      @Parameter(name = "sort", description = "id, status, jobType, createdAt or updatedAt")
+          @RequestParam(defaultValue = "id")
+          String sort,
+      @Parameter(name = "direction", description = "ASC or DESC")
+          @RequestParam(defaultValue = "DESC")
+          Sort.Direction direction,
+      @Parameter(name = "status", description = "only jobs with this status")
+          @RequestParam(required = false)
+          String status,
+      @Parameter(name = "createdBy", description = "only jobs launched by the user with this id")
+          @RequestParam(required = false)
+          Long createdBy) {
+
+    if (!SORTABLE.contains(sort)) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "Cannot sort jobs by %s; use one of %s".formatted(sort, SORTABLE));
+    }
+    Sort order = Sort.by(direction, sort);
+    if (!sort.equals("id")) {
+      order = order.and(Sort.by(direction, "id")); // so that paging is stable
+    }
+    PageRequest pageRequest =
+        PageRequest.of(Math.max(page, 0), Math.clamp(size, 1, MAX_PAGE_SIZE), order);
+    return new PagedModel<>(jobsRepository.findSummaries(status, createdBy, pageRequest));
   }
 
   @Operation(summary = "Delete all job records")
@@ -46,6 +119,7 @@ public class JobsController extends ApiController {
   @DeleteMapping("/all")
   public Map<String, String> deleteAllJobs() {
     jobsRepository.deleteAll();
+    jobArtifactStore.deleteAllFiles();
     return Map.of("message", "All jobs deleted");
   }
 
@@ -70,25 +144,247 @@ public class JobsController extends ApiController {
       return Map.of("message", String.format("Job with id %d not found", id));
     }
     jobsRepository.deleteById(id);
+    jobArtifactStore.deleteFiles(List.of(id));
     return Map.of("message", String.format("Job with id %d deleted", id));
   }
 
+  @Operation(
+      summary = "Purge the jobs that the retention policy no longer keeps",
+      description = "This runs the scheduled purge now, and returns how much it deleted")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/purge")
+  public JobPurgeResult purgeJobs() {
+    return jobPurger.purge();
+  }
+
   @Operation(summary = "Launch Test Job (click fail if you want to test exception handling)")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/launch/testjob")
   public Job launchTestJob(
       @Parameter(name = "fail") @RequestParam Boolean fail,
-      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs) {
+      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs,
+      @Parameter(name = "timeoutMs", description = "stop the job if it runs longer than this")
+          @RequestParam(required = false)
+          Long timeoutMs,
+      @Parameter(name = "priority", description = "HIGH, NORMAL or LOW")
+          @RequestParam(defaultValue = "NORMAL")
+          JobPriority priority,
+      @Parameter(
+              name = "dedupe",
+              description =
+                  "if you already have an identical job queued or running, return it instead of"
+                      + " launching another")
+          @RequestParam(defaultValue = "false")
+          boolean dedupe,
+      @Parameter(
+              name = "Idempotency-Key",
+              description =
+                  "your launches with the same key return the same job while it is queued or"
+                      + " running")
+          @RequestHeader(name = "Idempotency-Key", required = false)
+          String idempotencyKey) {
 
     TestJob testJob = TestJob.builder().fail(fail).sleepMs(sleepMs).build();
-    return jobService.runAsJob(testJob);
+    String dedupeKey = null;
+    if (idempotencyKey != null) {
+      dedupeKey = jobService.idempotencyKey(idempotencyKey);
+    } else if (dedupe) {
+      dedupeKey = jobService.fingerprint(testJob);
+    }
+    return jobService.runAsJob(
+        testJob, timeoutMs == null ? null : Duration.ofMillis(timeoutMs), dedupeKey, priority);
+  }
+
+  @Operation(
+      summary = "Launch a workflow: jobs that each start once the jobs they depend on complete",
+      description =
+          "Each step names a job as a job schedule does (jobType and spec) and the steps it"
+              + " depends on; steps that do not depend on each other run at the same time")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/launch/workflow")
+  public Job launchWorkflow(@RequestBody JobWorkflowSpec spec) {
+    try {
+      return jobService.runWorkflow(jobService.readWorkflow(spec));
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(summary = "List the steps of a workflow, with their status and progress")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/steps/{id}")
+  public List<Job> getWorkflowSteps(
+      @Parameter(name = "id", description = "ID of the workflow's job") @PathVariable Long id) {
+    if (!jobsRepository.existsById(id)) {
+      throw new EntityNotFoundException(Job.class, id);
+    }
+    return jobsRepository.findByWorkflowIdOrderByIdAsc(id);
+  }
+
+  @Operation(summary = "Cancel a queued or running job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/cancel")
+  public Map<String, String> cancelJob(
+      @Parameter(name = "id", description = "ID of the job") @RequestParam Long id) {
+    if (!jobsRepository.existsById(id)) {
+      throw new EntityNotFoundException(Job.class, id);
+    }
+    if (!jobService.cancelJob(id)) {
+      return Map.of("message", String.format("Job with id %d is not queued or running", id));
+    }
+    return Map.of("message", String.format("Job with id %d cancelled", id));
+  }
+
+  @Operation(
+      summary = "Retry a job that failed, timed out, was cancelled, abandoned or interrupted",
+      description =
+          "The job is put back in the durable queue and resumes from its last checkpoint, if it"
+              + " saved one")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/retry")
+  public Map<String, String> retryJob(
+      @Parameter(name = "id", description = "ID of the job") @RequestParam Long id) {
+    if (!jobsRepository.existsById(id)) {
+      throw new EntityNotFoundException(Job.class, id);
+    }
+    if (!jobService.retryJob(id)) {
+      return Map.of("message", String.format("Job with id %d cannot be retried", id));
+    }
+    return Map.of("message", String.format("Job with id %d queued for retry", id));
+  }
+
+  @Operation(summary = "Get job processing statistics")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/stats")
+  public Map<String, Object> getJobStats() {
+    return jobService.getStats();
+  }
+
+  @Operation(
+      summary = "Search job logs for lines that contain all the given words",
+      description =
+          "Words match whole words, ignoring case. Returns the jobs with matching lines, newest"
+              + " first, each with the first few lines that match")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/search")
+  public List<JobLogSearchResult> searchJobLogs(
+      @Parameter(name = "q", description = "words to search for") @RequestParam String q,
+      @Parameter(name = "limit", description = "maximum number of jobs to return")
+          @RequestParam(defaultValue = "20")
+          int limit) {
+    try {
+      return jobLogIndex.search(q, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
   }
 
   @Operation(summary = "Get long job logs")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/logs/{id}")
-  public String getJobLogs(@Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+  public void getJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      HttpServletResponse response)
+      throws IOException {
+
+    // written a chunk at a time as the chunks are read and decompressed
+    response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+    response.setCharacterEncoding("UTF-8");
+    jobService.writeJobLogs(id, response.getWriter());
+  }
+
+  @Operation(summary = "Get the size of a job log, before and after compression")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/logs/{id}/size")
+  public JobLogSize getJobLogSize(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+
+    return jobService.getJobLogSize(id);
+  }
+
+  @Operation(summary = "Get a range of lines from a job log, and the offset of the next range")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(
+      value = "/logs/{id}",
+      params = {"limit", "!tail"})
+  public JobLogSlice getJobLogSlice(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "offset", description = "first line to return, counting from 0")
+          @RequestParam(defaultValue = "0")
+          int offset,
+      @Parameter(name = "limit", description = "maximum number of lines to return") @RequestParam
+          int limit) {
+
+    return jobService.getJobLogSlice(id, offset, limit);
+  }
+
+  @Operation(summary = "Get the last lines of a job log")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "/logs/{id}", params = "tail")
+  public JobLogSlice getJobLogTail(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "tail", description = "number of lines to return") @RequestParam int tail) {
+
+    return jobService.getJobLogTail(id, tail);
+  }
+
+  @Operation(
+      summary =
+          "Stream a job's log as Server-Sent Events: \"log\" events as lines are written, then a"
+              + " \"status\" event when the job finishes")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "/logs/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "Last-Event-ID", description = "resume after this log event")
+          @RequestHeader(value = "Last-Event-ID", required = false)
+          Integer lastEventId) {
+
+    return jobLogBroadcaster.subscribe(id, lastEventId == null ? -1 : lastEventId);
+  }
+
+  @Operation(summary = "List the files a job has produced")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/artifacts/{id}")
+  public List<JobArtifact> getJobArtifacts(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+    if (!jobsRepository.existsById(id)) {
+      throw new EntityNotFoundException(Job.class, id);
+    }
+    return jobArtifactStore.list(id);
+  }
+
+  @Operation(
+      summary = "Download a file a job has produced",
+      description =
+          "Range and conditional requests are supported, so that large downloads can be resumed"
+              + " and unchanged files are not downloaded again")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/artifacts/{id}/{name}")
+  public ResponseEntity<Resource> downloadJobArtifact(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "name", description = "name of the artifact") @PathVariable String name)
+      throws IOException {
+
+    JobArtifact artifact =
+        jobArtifactStore
+            .find(id, name)
+            .orElseThrow(() -> new EntityNotFoundException(JobArtifact.class, id + "/" + name));
+    Path path = jobArtifactStore.path(artifact);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(
+        artifact.getContentType() == null
+            ? MediaType.APPLICATION_OCTET_STREAM
+            : MediaType.parseMediaType(artifact.getContentType()));
+    headers.setContentDisposition(ContentDisposition.attachment().filename(name).build());
 
-    return jobService.getJobLogs(id);
+    // Spring answers conditional requests that match these with 304, and Range requests for a
+    // Resource with 206 and just the requested regions
+    FileSystemResource resource = new FileSystemResource(path);
+    long lastModified = resource.lastModified();
+    headers.setLastModified(lastModified);
+    headers.setETag("W/\"%d-%d\"".formatted(resource.contentLength(), lastModified));
+    return ResponseEntity.ok().headers(headers).body(resource);
   }
 }
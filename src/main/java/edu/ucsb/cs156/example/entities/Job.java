@@ -3,6 +3,8 @@ package edu.ucsb.cs156.example.entities;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -29,6 +31,66 @@ public class Job {
 
   private String status;
 
+  private String jobType; // class name of the JobContextConsumer that does the work
+
+  // JSON form of the JobContextConsumer, so that a queued job can be run by any node
+  @Column(columnDefinition = "TEXT", length = 1048576)
+  private String spec;
+
+  private String claimedBy; // node that claimed this job from the durable queue
+
+  // while a job is running, the node running it keeps pushing this into the future;
+  // a running job whose lease has expired is orphaned (see JobReaper)
+  private ZonedDateTime leaseExpiresAt;
+
+  private int attempts; // number of times this job has been started
+
+  private Long timeoutMs; // a running job is stopped with status "timeout" after this long
+
+  // decides, with who created the job, when it gets a thread of the job executor (see FairJobQueue)
+  @Enumerated(EnumType.STRING)
+  @Builder.Default
+  private JobPriority priority = JobPriority.NORMAL;
+
+  // identifies the job for deduplication (see JobService.runAsJob); unique, and only set while the
+  // job is queued or running, so that an identical job can be started once this one has finished
+  @JsonIgnore private String dedupeKey;
+
+  // for a step of a workflow (see JobService.runWorkflow): the workflow's job, the step's name, and
+  // the names of the steps it waits for, comma-separated
+  private Long workflowId;
+  private String stepName;
+
+  @Column(length = 1024)
+  private String dependsOn;
+
+  // set by POST /api/jobs/cancel; the node running the job sees it when it renews the lease
+  private boolean cancelRequested;
+
+  // progress the job reports through JobContext.progress(done, total); null until it does
+  private Long progressDone;
+  private Long progressTotal;
+
+  // named counts the job reports through JobContext.increment
+  @ElementCollection(fetch = FetchType.EAGER)
+  @CollectionTable(name = "job_counters", joinColumns = @JoinColumn(name = "job_id"))
+  @MapKeyColumn(name = "counter_name")
+  @Column(name = "counter_value")
+  @Builder.Default
+  private Map<String, Long> counters = new HashMap<>();
+
+  // where the job has got to, as saved through JobContext.saveCheckpoint, e.g. the last id it
+  // processed; kept when the job is re-queued or retried, so that it can carry on from there
+  @Column(columnDefinition = "TEXT", length = 65536)
+  private String checkpoint;
+
+  // CPU time and heap allocation of the job's thread and its sub-tasks, added up over every time
+  // the job has run; null if the JVM does not measure them, e.g. for jobs on virtual threads
+  private Long cpuTimeMs;
+  private Long allocatedBytes;
+
+  // Logs are now written to job_log_chunks (see JobLogChunk); this column only holds
+  // the log of jobs that ran before chunked storage was introduced.
   // 1048576 is 2^20, which is the max size of a mediumtext in MySQL
   @Column(
       columnDefinition = "TEXT",
@@ -0,0 +1,43 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that describes a file a job has produced, such as a CSV export.
+ *
+ * <p>Only the metadata is stored in the database; the content is a file in the directory of {@link
+ * edu.ucsb.cs156.example.services.jobs.JobArtifactStore}, written through {@link
+ * edu.ucsb.cs156.example.services.jobs.JobContext#openArtifact(String, String)}. A row exists only
+ * once its file has been completely written.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_artifacts")
+public class JobArtifact {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private long jobId;
+
+  private String name; // unique per job; also the name of the downloaded file
+
+  private String contentType;
+
+  private long size; // bytes
+
+  private String sha256; // of the content, in hex
+
+  private ZonedDateTime createdAt;
+}
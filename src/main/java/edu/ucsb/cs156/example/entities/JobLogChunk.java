@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents one chunk of a job's log.
+ *
+ * <p>Job logs are stored append-only: each flush of a {@link
+ * edu.ucsb.cs156.example.services.jobs.JobContext} inserts a new chunk with the next sequence
+ * number, and the full log is reassembled by reading the chunks in {@code seq} order.
+ *
+ * <p>Each chunk also records which lines of the log it holds ({@code firstLine} and {@code
+ * lineCount}, counting lines from 0), so that a range of lines can be read without reading the
+ * chunks before it.
+ *
+ * <p>Chunks are stored gzip-compressed in {@code compressedContent} when that makes them smaller,
+ * and as plain text in {@code content} otherwise; exactly one of the two is set. Use {@link
+ * edu.ucsb.cs156.example.services.jobs.JobLogService#text(JobLogChunk)} to read either.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_log_chunks")
+public class JobLogChunk {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private long jobId;
+
+  private int seq;
+
+  private int firstLine;
+
+  private int lineCount;
+
+  @Column(columnDefinition = "TEXT", length = 1048576)
+  private String content;
+
+  private byte[] compressedContent;
+
+  private int rawSize; // bytes of the chunk's text, as UTF-8
+
+  private int storedSize; // bytes actually stored, after compression
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.entities;
+
+/** How urgently a job should run; see FairJobQueue for how the job executor uses it. */
+public enum JobPriority {
+  /** runs before other jobs, and may use the threads reserved for such jobs */
+  HIGH(2),
+  /** the default */
+  NORMAL(2),
+  /** gets half the share of the job executor that a normal job of another user gets */
+  LOW(1);
+
+  private final int weight;
+
+  JobPriority(int weight) {
+    this.weight = weight;
+  }
+
+  /**
+   * @return the job's share of the executor, relative to jobs of other priorities in its lane
+   */
+  public int getWeight() {
+    return weight;
+  }
+}
@@ -0,0 +1,45 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.*;
+import java.time.ZonedDateTime;
+import lombok.*;
+
+/**
+ * A recurring job: JobScheduler launches a job of type jobType with parameters spec whenever the
+ * cron expression fires.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_schedules")
+public class JobSchedule {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private String name; // unique
+
+  // Spring cron expression (second minute hour day-of-month month day-of-week), or a macro such
+  // as @daily; evaluated in the server's time zone
+  private String cron;
+
+  private String jobType; // class name of the JobContextConsumer that does the work
+
+  // JSON form of the JobContextConsumer, i.e. the job's parameters
+  @Column(columnDefinition = "TEXT", length = 1048576)
+  private String spec;
+
+  private boolean enabled;
+
+  private ZonedDateTime nextRunAt; // when the schedule next fires
+
+  private ZonedDateTime lastRunAt; // when the schedule last launched a job
+  private Long lastJobId; // the job it launched
+
+  // runs that did not happen: fire times that passed while no instance was polling, and fire times
+  // at which the previous run was still queued or running
+  private long missedRuns;
+  private ZonedDateTime lastMissedAt;
+  private String lastMissReason;
+}
@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a job
+ * could not be launched because the job executor's queue is full.
+ */
+public class JobQueueFullException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param message description of why the job was rejected
+   */
+  public JobQueueFullException(String message) {
+    super(message);
+  }
+}
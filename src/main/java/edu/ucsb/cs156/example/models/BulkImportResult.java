@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that reports what a bulk import did. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class BulkImportResult {
+  private long rows; // rows read from the file
+  private long imported; // rows inserted
+  private long failed; // rows that could not be read, were invalid, or were refused by the database
+  private long batches; // batched inserts sent to the database
+}
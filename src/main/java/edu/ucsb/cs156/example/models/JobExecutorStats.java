@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that describes the current load on the job executor. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobExecutorStats {
+  private int poolSize; // number of threads in the pool
+  private int activeCount; // number of threads currently running a job
+  private int queueDepth; // number of jobs waiting for a thread
+  private int queueRemainingCapacity; // number of jobs that can still be queued
+  private long completedJobs;
+  private long rejectedJobs; // launches refused because the queue was full
+}
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that summarizes how job log lines have been flushed to the database. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogFlushStats {
+  private long flushes; // number of chunks written
+  private long lines; // number of log lines written
+  private long bytes; // bytes of log text written, as UTF-8
+  private long storedBytes; // bytes stored, after compression
+  private double averageLinesPerFlush;
+  private long maxLinesPerFlush;
+}
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class for a line of a job's log that matched a search. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogMatch {
+  private int line; // number of the line, counting from 0, as in GET /api/jobs/logs/{id}?offset=
+  private String text; // the line, shortened if it is very long
+}
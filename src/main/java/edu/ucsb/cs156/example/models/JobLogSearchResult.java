@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class for a job whose log matched a search, with some of the lines that did. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogSearchResult {
+  private long jobId;
+  private String jobType;
+  private String status;
+  private List<JobLogMatch> matches; // in line order
+}
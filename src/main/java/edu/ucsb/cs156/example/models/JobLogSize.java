@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that describes how much space a job's log takes up. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogSize {
+  private long chunks; // number of log chunks
+  private long rawBytes; // bytes of log text, as UTF-8
+  private long storedBytes; // bytes stored in the database, after compression
+}
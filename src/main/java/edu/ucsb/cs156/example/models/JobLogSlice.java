@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for a range of lines from a job's log. Lines are numbered from 0; pass
+ * nextOffset as the offset of the next request to read on from where this one stopped.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogSlice {
+  private int offset; // number of the first line in lines
+  private int nextOffset; // number of the line after the last line in lines
+  private int totalLines; // number of lines in the log when it was read
+  private List<String> lines;
+}
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that reports what a purge of old jobs deleted. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobPurgeResult {
+  private long jobs; // job rows deleted
+  private long logChunks; // job_log_chunks rows deleted
+  private long bytes; // bytes of log and spec storage freed
+
+  /**
+   * @param other another result
+   * @return the sum of this result and the other
+   */
+  public JobPurgeResult plus(JobPurgeResult other) {
+    return new JobPurgeResult(jobs + other.jobs, logChunks + other.logChunks, bytes + other.bytes);
+  }
+}
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for one row of the job listing. It is read with a projection query, so
+ * listing jobs never loads their logs or specs.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobSummary {
+  private long id;
+  private String status;
+  private String jobType;
+  private ZonedDateTime createdAt;
+  private ZonedDateTime updatedAt;
+  private Long creatorId; // null for jobs launched by the system
+  private String creatorEmail;
+  private long logLength; // bytes of the log's chunks and of a legacy log column
+}
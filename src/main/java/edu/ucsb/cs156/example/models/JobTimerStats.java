@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that summarizes a set of timings, e.g. how long jobs ran. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobTimerStats {
+  private long count;
+  private double meanMs;
+  private double maxMs; // over the last few minutes
+}
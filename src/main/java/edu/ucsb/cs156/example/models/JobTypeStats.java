@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that summarizes how the jobs of one type have run since startup. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobTypeStats {
+  private JobTimerStats queueWait; // from launch to start
+  private JobTimerStats runTime; // from start to end, whatever the outcome
+  private Map<String, Long> outcomes; // number of runs by final status, e.g. "complete", "error"
+  private long rejected; // launches refused because the queue was full
+  private long logBytes; // bytes of log text written
+  private long cpuTimeMs; // CPU time used by the jobs' threads and their sub-tasks
+  private long allocatedBytes; // bytes allocated on the heap by the same threads
+}
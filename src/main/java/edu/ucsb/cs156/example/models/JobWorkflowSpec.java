@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.models;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that describes a workflow to launch through POST /api/jobs/workflow. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobWorkflowSpec {
+  private String name;
+  private List<Step> steps;
+
+  /** One step of the workflow: a job, as in a job schedule, and the steps it waits for. */
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor(access = AccessLevel.PROTECTED)
+  @Builder
+  public static class Step {
+    private String name;
+    private String jobType; // class name of the JobContextConsumer to run
+    private JsonNode spec; // the job's parameters, as the JSON form of the JobContextConsumer
+    private List<String> dependsOn;
+    private Long timeoutMs;
+  }
+}
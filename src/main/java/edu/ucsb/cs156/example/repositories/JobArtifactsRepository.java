@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobArtifact;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * The JobArtifactsRepository is a repository for JobArtifact entities. Rows are deleted with their
+ * job by the database (on delete cascade); the files are deleted by JobArtifactStore.
+ */
+@Repository
+public interface JobArtifactsRepository extends CrudRepository<JobArtifact, Long> {
+  /**
+   * This method returns the artifacts of a job.
+   *
+   * @param jobId id of the job
+   * @return the job's artifacts, in the order they were first written
+   */
+  List<JobArtifact> findByJobIdOrderByIdAsc(long jobId);
+
+  /**
+   * This method returns an artifact of a job by name.
+   *
+   * @param jobId id of the job
+   * @param name name of the artifact
+   * @return the artifact, if the job has written one with that name
+   */
+  Optional<JobArtifact> findByJobIdAndName(long jobId, String name);
+}
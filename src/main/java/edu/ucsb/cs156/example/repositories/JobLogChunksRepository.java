@@ -0,0 +1,100 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.JobLogSize;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/** The JobLogChunksRepository is a repository for JobLogChunk entities. */
+@Repository
+public interface JobLogChunksRepository extends CrudRepository<JobLogChunk, Long> {
+  /**
+   * This method streams the log chunks of a job in the order they were written. It must be called
+   * inside a transaction, and the stream must be closed by the caller.
+   *
+   * @param jobId id of the job
+   * @return stream of chunks ordered by sequence number
+   */
+  Stream<JobLogChunk> streamByJobIdOrderBySeqAsc(long jobId);
+
+  /**
+   * This method streams the log chunks of a job written after a given chunk, in order. It must be
+   * called inside a transaction, and the stream must be closed by the caller.
+   *
+   * @param jobId id of the job
+   * @param seq sequence number of the last chunk not to return
+   * @return stream of chunks ordered by sequence number
+   */
+  Stream<JobLogChunk> streamByJobIdAndSeqGreaterThanOrderBySeqAsc(long jobId, int seq);
+
+  /**
+   * This method returns the sequence number that the next chunk of a job's log should use.
+   *
+   * @param jobId id of the job
+   * @return one more than the highest sequence number so far, or 0 if the log is empty
+   */
+  @Query("select coalesce(max(c.seq), -1) + 1 from job_log_chunks c where c.jobId = :jobId")
+  int nextSeq(@Param("jobId") long jobId);
+
+  /**
+   * This method returns the number of lines in a job's log, from its last chunk.
+   *
+   * @param jobId id of the job
+   * @return the number of lines, or empty if the log has no chunks
+   */
+  @Query(
+      "select c.firstLine + c.lineCount from job_log_chunks c where c.jobId = :jobId"
+          + " order by c.seq desc limit 1")
+  Optional<Integer> countLines(@Param("jobId") long jobId);
+
+  /**
+   * This method returns the chunks of a job's log that hold any of the lines in a range.
+   *
+   * @param jobId id of the job
+   * @param from first line of the range
+   * @param to line after the last line of the range
+   * @return the chunks, ordered by sequence number
+   */
+  @Query(
+      "select c from job_log_chunks c where c.jobId = :jobId"
+          + " and c.firstLine < :to and c.firstLine + c.lineCount > :from order by c.seq")
+  List<JobLogChunk> findLines(
+      @Param("jobId") long jobId, @Param("from") int from, @Param("to") int to);
+
+  /**
+   * This method returns the number of bytes that the logs of some jobs take up in the database.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of bytes stored, after compression
+   */
+  @Query("select coalesce(sum(c.storedSize), 0) from job_log_chunks c where c.jobId in :jobIds")
+  long sumStoredSize(@Param("jobIds") Collection<Long> jobIds);
+
+  /**
+   * This method returns the size of a job's log chunks, before and after compression.
+   *
+   * @param jobId id of the job
+   * @return the number of chunks, and their total raw and stored size in bytes
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobLogSize(count(c), coalesce(sum(c.rawSize), 0),"
+          + " coalesce(sum(c.storedSize), 0)) from job_log_chunks c where c.jobId = :jobId")
+  JobLogSize sumSizes(@Param("jobId") long jobId);
+
+  /**
+   * This method deletes the log chunks of some jobs in a single statement.
+   *
+   * @param jobIds ids of the jobs
+   * @return number of chunks deleted
+   */
+  @Modifying
+  @Query("delete from job_log_chunks c where c.jobId in :jobIds")
+  int deleteByJobIdIn(@Param("jobIds") Collection<Long> jobIds);
+}
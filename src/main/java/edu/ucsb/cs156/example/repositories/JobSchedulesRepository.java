@@ -0,0 +1,68 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface JobSchedulesRepository extends CrudRepository<JobSchedule, Long> {
+  /**
+   * This method locks and returns the enabled schedules that are due, skipping rows that another
+   * transaction has already locked (SELECT ... FOR UPDATE SKIP LOCKED), so that each firing is
+   * claimed by exactly one node. It must be called inside a transaction.
+   *
+   * @param now the current time
+   * @param limit maximum number of schedules to return
+   * @return the locked schedules, earliest first
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+  @Query(
+      "select s from job_schedules s where s.enabled = true and s.nextRunAt <= :now"
+          + " order by s.nextRunAt")
+  List<JobSchedule> findDue(@Param("now") ZonedDateTime now, Limit limit);
+
+  /**
+   * This method records that a schedule has launched a job.
+   *
+   * @param id id of the schedule
+   * @param jobId id of the job
+   * @param at when the job was launched
+   * @return number of schedules updated
+   */
+  @Modifying
+  @Transactional
+  @Query("update job_schedules s set s.lastRunAt = :at, s.lastJobId = :jobId where s.id = :id")
+  int recordRun(@Param("id") long id, @Param("jobId") long jobId, @Param("at") ZonedDateTime at);
+
+  /**
+   * This method records runs of a schedule that did not happen.
+   *
+   * @param id id of the schedule
+   * @param count number of runs missed
+   * @param at when they were missed
+   * @param reason why they were missed
+   * @return number of schedules updated
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update job_schedules s set s.missedRuns = s.missedRuns + :count, s.lastMissedAt = :at,"
+          + " s.lastMissReason = :reason where s.id = :id")
+  int recordMisses(
+      @Param("id") long id,
+      @Param("count") long count,
+      @Param("at") ZonedDateTime at,
+      @Param("reason") String reason);
+}
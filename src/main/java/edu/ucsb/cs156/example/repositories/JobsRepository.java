@@ -1,8 +1,314 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobSummary;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface JobsRepository extends CrudRepository<Job, Long> {}
+public interface JobsRepository extends CrudRepository<Job, Long> {
+  /**
+   * This method locks and returns the oldest jobs with a given status, skipping rows that another
+   * transaction has already locked (SELECT ... FOR UPDATE SKIP LOCKED). Several nodes can call it
+   * at once and each will get a different set of jobs. It must be called inside a transaction.
+   *
+   * @param status status of the jobs, e.g. "queued"
+   * @param limit maximum number of jobs to return
+   * @return the locked jobs, oldest first
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+  List<Job> findByStatusOrderByIdAsc(String status, Limit limit);
+
+  /**
+   * This method extends the lease of running jobs in a single update.
+   *
+   * @param ids ids of the jobs
+   * @param until new lease expiry time
+   * @return number of jobs updated
+   */
+  @Modifying
+  @Transactional
+  @Query("update jobs j set j.leaseExpiresAt = :until where j.id in :ids and j.status = 'running'")
+  int renewLeases(@Param("ids") Collection<Long> ids, @Param("until") ZonedDateTime until);
+
+  /**
+   * This method puts running jobs whose lease has expired back in the queue, as long as they have a
+   * spec to run from, have not used up their attempts and have not been cancelled.
+   *
+   * @param now the current time
+   * @param maxAttempts jobs started this many times are not re-queued
+   * @return number of jobs re-queued
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = 'queued', j.claimedBy = null, j.leaseExpiresAt = null"
+          + " where j.status = 'running' and j.leaseExpiresAt < :now"
+          + " and j.spec is not null and j.attempts < :maxAttempts and j.cancelRequested = false")
+  int requeueExpired(@Param("now") ZonedDateTime now, @Param("maxAttempts") int maxAttempts);
+
+  /**
+   * This method marks running jobs whose lease has expired, or that never had one, as abandoned,
+   * releasing their dedupe keys.
+   *
+   * @param now the current time
+   * @return number of jobs abandoned
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = 'abandoned', j.leaseExpiresAt = null, j.dedupeKey = null"
+          + " where j.status = 'running'"
+          + " and (j.leaseExpiresAt < :now or j.leaseExpiresAt is null)")
+  int abandonExpired(@Param("now") ZonedDateTime now);
+
+  /**
+   * This method marks the waiting steps of workflows that are no longer running as abandoned. A
+   * workflow's steps only wait while the node running it is alive; once that node has died and the
+   * workflow has been abandoned, nothing will start them.
+   *
+   * @return number of steps abandoned
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = 'abandoned' where j.status = 'waiting'"
+          + " and not exists (select w.id from jobs w where w.id = j.workflowId"
+          + " and w.status = 'running')")
+  int abandonOrphanedSteps();
+
+  /**
+   * This method returns the steps of a workflow.
+   *
+   * @param workflowId id of the workflow's job
+   * @return the steps, in the order they were defined
+   */
+  List<Job> findByWorkflowIdOrderByIdAsc(long workflowId);
+
+  /**
+   * This method cancels a job that is still waiting in the durable queue. A job that a worker has
+   * already claimed is left alone.
+   *
+   * @param id id of the job
+   * @return 1 if the job was cancelled, otherwise 0
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = 'cancelled', j.dedupeKey = null"
+          + " where j.id = :id and j.status = 'queued'")
+  int cancelQueued(@Param("id") long id);
+
+  /**
+   * This method puts a job that has ended without completing back in the durable queue, keeping its
+   * checkpoint, progress and counters. Only jobs with a spec to run from can be retried.
+   *
+   * @param id id of the job
+   * @return 1 if the job was re-queued, otherwise 0
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = 'queued', j.claimedBy = null, j.leaseExpiresAt = null,"
+          + " j.cancelRequested = false"
+          + " where j.id = :id and j.spec is not null"
+          + " and j.status in ('error', 'timeout', 'cancelled', 'abandoned', 'interrupted')")
+  int requeueEnded(@Param("id") long id);
+
+  /**
+   * This method flags a running job to be cancelled by the node running it.
+   *
+   * @param id id of the job
+   * @return 1 if the job is running and has been flagged, otherwise 0
+   */
+  @Modifying
+  @Transactional
+  @Query("update jobs j set j.cancelRequested = true where j.id = :id and j.status = 'running'")
+  int requestCancel(@Param("id") long id);
+
+  /**
+   * This method returns which of the given jobs have been flagged to be cancelled.
+   *
+   * @param ids ids of the jobs
+   * @return ids of the flagged jobs
+   */
+  @Query("select j.id from jobs j where j.id in :ids and j.cancelRequested = true")
+  List<Long> findCancelRequested(@Param("ids") Collection<Long> ids);
+
+  /**
+   * This method returns a page of job summaries, optionally filtered by status and creator. The log
+   * length, in bytes, is computed in the database from the chunks' recorded sizes, so compressed
+   * chunks count in full; no log text is returned.
+   *
+   * @param status only return jobs with this status, or null for all
+   * @param creatorId only return jobs created by the user with this id, or null for all
+   * @param pageable page and sort order; sort properties are properties of Job
+   * @return the page of summaries
+   */
+  @Query(
+      value =
+          "select new edu.ucsb.cs156.example.models.JobSummary(j.id, j.status, j.jobType,"
+              + " j.createdAt, j.updatedAt, u.id, u.email,"
+              + " coalesce(octet_length(j.log), 0)"
+              + " + coalesce((select sum(c.rawSize) from job_log_chunks c"
+              + " where c.jobId = j.id), 0))"
+              + " from jobs j left join j.createdBy u"
+              + " where (:status is null or j.status = :status)"
+              + " and (:creatorId is null or u.id = :creatorId)",
+      countQuery =
+          "select count(j) from jobs j left join j.createdBy u"
+              + " where (:status is null or j.status = :status)"
+              + " and (:creatorId is null or u.id = :creatorId)")
+  Page<JobSummary> findSummaries(
+      @Param("status") String status, @Param("creatorId") Long creatorId, Pageable pageable);
+
+  /**
+   * This method returns the ids of the oldest jobs created before a given time, leaving out jobs
+   * with the given statuses. Jobs with no creation time, which ran before auditing and were never
+   * updated since, count as created before any time.
+   *
+   * @param cutoff only jobs created before this time
+   * @param excluded statuses of jobs to leave out, e.g. "queued" and "running"
+   * @param limit maximum number of ids to return
+   * @return the ids, oldest first
+   */
+  @Query(
+      "select j.id from jobs j where (j.createdAt is null or j.createdAt < :cutoff)"
+          + " and j.status not in :excluded"
+          + " order by j.id")
+  List<Long> findIdsCreatedBefore(
+      @Param("cutoff") ZonedDateTime cutoff,
+      @Param("excluded") Collection<String> excluded,
+      Limit limit);
+
+  /**
+   * This method returns the statuses that jobs have, leaving out the given ones.
+   *
+   * @param excluded statuses to leave out
+   * @return the statuses
+   */
+  @Query("select distinct j.status from jobs j where j.status not in :excluded")
+  List<String> findStatusesExcept(@Param("excluded") Collection<String> excluded);
+
+  /**
+   * This method returns the ids of jobs with a given status, newest first.
+   *
+   * @param status status of the jobs
+   * @param pageable which ids to return
+   * @return the ids
+   */
+  @Query("select j.id from jobs j where j.status = :status order by j.id desc")
+  List<Long> findIdsByStatusNewestFirst(@Param("status") String status, Pageable pageable);
+
+  /**
+   * This method returns the ids of the oldest jobs with a given status, up to a given id.
+   *
+   * @param status status of the jobs
+   * @param maxId highest id to return
+   * @param limit maximum number of ids to return
+   * @return the ids, oldest first
+   */
+  @Query("select j.id from jobs j where j.status = :status and j.id <= :maxId order by j.id")
+  List<Long> findIdsByStatusUpTo(
+      @Param("status") String status, @Param("maxId") long maxId, Limit limit);
+
+  /**
+   * This method returns the number of bytes in the log and spec columns of some jobs.
+   *
+   * @param ids ids of the jobs
+   * @return the number of bytes
+   */
+  @Query(
+      "select coalesce(sum(octet_length(j.log)), 0) + coalesce(sum(octet_length(j.spec)), 0)"
+          + " from jobs j where j.id in :ids")
+  long sumTextBytes(@Param("ids") Collection<Long> ids);
+
+  /**
+   * This method deletes jobs in a single statement. Their log chunks must be deleted first.
+   *
+   * @param ids ids of the jobs
+   * @return number of jobs deleted
+   */
+  @Modifying
+  @Query("delete from jobs j where j.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * This method sets the progress of a job, without touching its other columns.
+   *
+   * @param id id of the job
+   * @param done units of work done
+   * @param total units of work in all
+   * @return number of jobs updated
+   */
+  @Modifying
+  @Query("update jobs j set j.progressDone = :done, j.progressTotal = :total where j.id = :id")
+  int updateProgress(@Param("id") long id, @Param("done") Long done, @Param("total") Long total);
+
+  /**
+   * This method sets the checkpoint of a job, without touching its other columns.
+   *
+   * @param id id of the job
+   * @param checkpoint the checkpoint
+   * @return number of jobs updated
+   */
+  @Modifying
+  @Query("update jobs j set j.checkpoint = :checkpoint where j.id = :id")
+  int updateCheckpoint(@Param("id") long id, @Param("checkpoint") String checkpoint);
+
+  /**
+   * This method sets one of a job's counters, if the job already has it.
+   *
+   * @param id id of the job
+   * @param name name of the counter
+   * @param value new value of the counter
+   * @return number of counters updated; 0 if the job does not have the counter yet
+   */
+  @Modifying
+  @Query(
+      value =
+          "update job_counters set counter_value = :value"
+              + " where job_id = :id and counter_name = :name",
+      nativeQuery = true)
+  int updateCounter(@Param("id") long id, @Param("name") String name, @Param("value") long value);
+
+  /**
+   * This method adds a counter to a job.
+   *
+   * @param id id of the job
+   * @param name name of the counter
+   * @param value value of the counter
+   * @return number of counters inserted
+   */
+  @Modifying
+  @Query(
+      value =
+          "insert into job_counters (job_id, counter_name, counter_value)"
+              + " values (:id, :name, :value)",
+      nativeQuery = true)
+  int insertCounter(@Param("id") long id, @Param("name") String name, @Param("value") long value);
+
+  /**
+   * This method returns the queued or running job that holds a dedupe key, if any.
+   *
+   * @param dedupeKey the key
+   * @return the job
+   */
+  Optional<Job> findByDedupeKey(String dedupeKey);
+}
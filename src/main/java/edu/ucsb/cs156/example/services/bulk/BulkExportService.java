@@ -0,0 +1,153 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This is a service that writes every row of an entity's table to a stream, as CSV or NDJSON.
+ *
+ * <p>Rows are read through a forward-only cursor that fetches app.exports.fetchSize rows at a time,
+ * and each entity is detached once it has been written, so an export of any size runs in constant
+ * memory and its first rows are sent before the last ones are read. Rows are written as the JSON
+ * API returns them; a CSV file has a header row of property names and leaves null values empty, so
+ * that it can be imported again.
+ */
+@Service
+public class BulkExportService {
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Value("${app.exports.fetchSize:1000}")
+  private int fetchSize;
+
+  /**
+   * Write every row of an entity's table, in id order. This runs in a read-only transaction, which
+   * some drivers (e.g. PostgreSQL's) need in order to fetch rows in batches instead of all at once.
+   *
+   * @param table the entity to export
+   * @param format the format to write
+   * @param out where to write it; it is not closed
+   * @return the number of rows written
+   * @throws IOException if the rows cannot be written
+   */
+  @Transactional(readOnly = true)
+  public long export(EntityTable table, BulkFormat format, OutputStream out) throws IOException {
+    return switch (format) {
+      case CSV -> exportCsv(table, out);
+      case NDJSON -> exportNdjson(table, out);
+    };
+  }
+
+  private long exportCsv(EntityTable table, OutputStream out) throws IOException {
+    CsvSchema.Builder schema = CsvSchema.builder().setUseHeader(true);
+    columns(table.getType()).forEach(schema::addColumn);
+    try (SequenceWriter csv =
+        new CsvMapper()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .writerFor(Map.class)
+            .with(schema.build())
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .writeValues(out)) {
+      return forEachRow(table, row -> csv.write(cells(row)));
+    }
+  }
+
+  private long exportNdjson(EntityTable table, OutputStream out) throws IOException {
+    ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    try (JsonGenerator ndjson =
+        mapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+      ndjson.setRootValueSeparator(null);
+      return forEachRow(
+          table,
+          row -> {
+            writer.writeValue(ndjson, row);
+            ndjson.writeRaw('\n');
+          });
+    }
+  }
+
+  private interface RowWriter {
+    void write(JsonNode row) throws IOException;
+  }
+
+  /** Read the rows of a table through a cursor, detaching each entity once it is written. */
+  private long forEachRow(EntityTable table, RowWriter writer) throws IOException {
+    long rows = 0;
+    try (Stream<?> entities = query(table).getResultStream()) {
+      for (Iterator<?> it = entities.iterator(); it.hasNext(); ) {
+        Object entity = it.next();
+        writer.write(mapper.valueToTree(entity));
+        entityManager.detach(entity);
+        rows++;
+      }
+    }
+    return rows;
+  }
+
+  private <T> TypedQuery<T> query(EntityTable table) {
+    @SuppressWarnings("unchecked")
+    Class<T> type = (Class<T>) table.getType();
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<T> query = builder.createQuery(type);
+    Root<T> root = query.from(type);
+    query.select(root).orderBy(builder.asc(root.get(table.getIdProperty())));
+    return entityManager
+        .createQuery(query)
+        .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+        .setHint(HibernateHints.HINT_READ_ONLY, true);
+  }
+
+  /** The properties the JSON API returns for an entity, in the same order. */
+  private List<String> columns(Class<?> type) {
+    return mapper
+        .getSerializationConfig()
+        .introspect(mapper.constructType(type))
+        .findProperties()
+        .stream()
+        .filter(BeanPropertyDefinition::couldSerialize)
+        .map(BeanPropertyDefinition::getName)
+        .toList();
+  }
+
+  private static Map<String, String> cells(JsonNode row) {
+    Map<String, String> cells = new LinkedHashMap<>();
+    row.properties()
+        .forEach(
+            e ->
+                cells.put(
+                    e.getKey(),
+                    e.getValue().isNull()
+                        ? null
+                        : e.getValue().isValueNode()
+                            ? e.getValue().asText()
+                            : e.getValue().toString()));
+    return cells;
+  }
+}
@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import java.util.Locale;
+
+/** The file formats that entities can be imported from. */
+public enum BulkFormat {
+  /** comma-separated values, with a header row naming the entity's properties */
+  CSV("text/csv"),
+  /** newline-delimited JSON: one JSON object per line */
+  NDJSON("application/x-ndjson");
+
+  private final String contentType;
+
+  BulkFormat(String contentType) {
+    this.contentType = contentType;
+  }
+
+  /**
+   * @return the MIME type of the format
+   */
+  public String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * @param name "csv" or "ndjson", in any case
+   * @return the format
+   * @throws IllegalArgumentException if there is no such format
+   */
+  public static BulkFormat of(String name) {
+    for (BulkFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name)) return format;
+    }
+    throw new IllegalArgumentException(
+        "Unknown format %s; use csv or ndjson".formatted(name.toLowerCase(Locale.ROOT)));
+  }
+}
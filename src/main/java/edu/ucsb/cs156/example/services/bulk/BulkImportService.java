@@ -0,0 +1,244 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.BulkImportResult;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * This is a service that imports entities from CSV or NDJSON files, as a job.
+ *
+ * <p>Rows are read one at a time, converted to the entity with the same rules as a JSON request
+ * body (unknown properties are refused), and inserted with JDBC batch inserts of
+ * app.imports.batchSize rows, each batch in its own transaction. The inserts leave out database
+ * generated ids, so that the IDENTITY columns the entities use do not stop the rows from being
+ * batched, as they do with Hibernate. If the database refuses a batch, its rows are inserted again
+ * one at a time, so that only the offending rows fail.
+ *
+ * <p>Rows that fail are counted, the first few are logged, and all of them are written to the job's
+ * "failed-rows.ndjson" artifact with the reason, so that they can be fixed and imported again.
+ */
+@Service
+@Slf4j
+public class BulkImportService {
+  static final String FAILED_ROWS = "failed-rows.ndjson";
+  static final int MAX_LOGGED_FAILURES = 20;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Value("${app.imports.batchSize:500}")
+  private int batchSize;
+
+  /**
+   * Save an uploaded file and start a job that imports it. The job runs on this node, which holds
+   * the file, even with the durable queue.
+   *
+   * @param table the entity to import
+   * @param format the format of the file
+   * @param upload the file
+   * @return the job
+   * @throws IOException if the file cannot be saved
+   */
+  public Job startImport(EntityTable table, BulkFormat format, MultipartFile upload)
+      throws IOException {
+    Path file =
+        Files.createTempFile(
+            "import-%s-".formatted(table.getName()), "." + format.name().toLowerCase(Locale.ROOT));
+    try {
+      upload.transferTo(file);
+      return jobService.runAsJob(
+          ctx -> {
+            try {
+              importFile(ctx, table, format, file);
+            } finally {
+              Files.deleteIfExists(file);
+            }
+          });
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+  }
+
+  /**
+   * Import the rows of a file. Progress is reported as bytes of the file read.
+   *
+   * @param ctx the job's context
+   * @param table the entity to import
+   * @param format the format of the file
+   * @param file the file
+   * @return what was imported
+   * @throws IOException if the file cannot be read, or failed rows cannot be written
+   */
+  public BulkImportResult importFile(
+      JobContext ctx, EntityTable table, BulkFormat format, Path file) throws IOException {
+    ctx.log("Importing %s from %s (%d bytes)".formatted(table.getName(), format, Files.size(file)));
+    try (FileChannel channel = FileChannel.open(file);
+        Import run = new Import(ctx, table, channel)) {
+      Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8);
+      try (BulkRowReader rows = BulkRowReader.open(format, reader, mapper)) {
+        run.run(rows);
+      }
+      BulkImportResult result = run.result();
+      ctx.log(
+          "Imported %d of %d rows in %d batches; %d failed"
+              .formatted(
+                  result.getImported(), result.getRows(), result.getBatches(), result.getFailed()));
+      return result;
+    }
+  }
+
+  /** The state of one import. */
+  private class Import implements AutoCloseable {
+    private final JobContext ctx;
+    private final EntityTable table;
+    private final FileChannel channel;
+    private final long size;
+    private final ObjectReader reader;
+    private List<BulkRowReader.Row> batchRows = new ArrayList<>();
+    private List<Object[]> batch = new ArrayList<>();
+    private long rows = 0;
+    private long imported = 0;
+    private long failed = 0;
+    private long batches = 0;
+    private Writer failures;
+
+    Import(JobContext ctx, EntityTable table, FileChannel channel) throws IOException {
+      this.ctx = ctx;
+      this.table = table;
+      this.channel = channel;
+      this.size = channel.size();
+      this.reader =
+          mapper
+              .readerFor(table.getType())
+              .with(
+                  DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                  DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES);
+    }
+
+    void run(BulkRowReader rowReader) throws IOException {
+      BulkRowReader.Row row;
+      while ((row = rowReader.next()) != null) {
+        rows++;
+        if (row.error() != null) {
+          fail(row, row.error());
+          continue;
+        }
+        Object[] values;
+        try {
+          values = table.values(reader.readValue(row.data()));
+        } catch (JsonProcessingException e) {
+          fail(row, BulkRowReader.message(e));
+          continue;
+        }
+        if (!table.getIdGenerated() && values[0] == null) {
+          fail(row, "missing " + table.getProperties().get(0));
+          continue;
+        }
+        batchRows.add(row);
+        batch.add(values);
+        if (batch.size() >= batchSize) {
+          flush();
+          ctx.throwIfCancelled();
+          ctx.progress(channel.position(), size);
+        }
+      }
+      flush();
+      ctx.progress(size, size);
+    }
+
+    private void flush() throws IOException {
+      if (batch.isEmpty()) return;
+      try {
+        transactionTemplate.executeWithoutResult(
+            status -> jdbcTemplate.batchUpdate(table.getInsertSql(), batch));
+        batches++;
+        imported += batch.size();
+        ctx.increment("imported", batch.size());
+      } catch (DataAccessException batchFailure) {
+        // find the rows the database refuses; the others still go in
+        for (int i = 0; i < batch.size(); i++) {
+          try {
+            jdbcTemplate.update(table.getInsertSql(), batch.get(i));
+            imported++;
+            ctx.increment("imported");
+          } catch (DataAccessException e) {
+            fail(batchRows.get(i), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+          }
+        }
+      }
+      batch = new ArrayList<>();
+      batchRows = new ArrayList<>();
+    }
+
+    private void fail(BulkRowReader.Row row, String error) throws IOException {
+      failed++;
+      ctx.increment("failed");
+      if (failed <= MAX_LOGGED_FAILURES) {
+        ctx.log("Row %d: %s".formatted(row.number(), error));
+      } else if (failed == MAX_LOGGED_FAILURES + 1) {
+        ctx.log("More rows failed; see the artifact " + FAILED_ROWS);
+      }
+
+      if (failures == null) {
+        failures =
+            new OutputStreamWriter(
+                ctx.openArtifact(FAILED_ROWS, BulkFormat.NDJSON.getContentType()),
+                StandardCharsets.UTF_8);
+      }
+      Map<String, Object> line = new LinkedHashMap<>();
+      line.put("row", row.number());
+      line.put("error", error);
+      line.put("data", row.data());
+      failures.write(mapper.writeValueAsString(line));
+      failures.write('\n');
+    }
+
+    BulkImportResult result() {
+      return BulkImportResult.builder()
+          .rows(rows)
+          .imported(imported)
+          .failed(failed)
+          .batches(batches)
+          .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (failures != null) failures.close();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+ * Reads the rows of an import file one at a time, as JSON objects, so that a file of any size can
+ * be imported in constant memory. A row that cannot be parsed is returned with an error instead,
+ * and reading carries on with the next one.
+ */
+abstract class BulkRowReader implements Closeable {
+
+  /**
+   * A row of the file.
+   *
+   * @param number position of the row, counting from 1 and not counting a CSV header
+   * @param data the row, or null if it could not be parsed
+   * @param error why the row could not be parsed, or null
+   */
+  record Row(long number, JsonNode data, String error) {}
+
+  protected long rows = 0;
+
+  /**
+   * @return the next row, or null at the end of the file
+   * @throws IOException if the file cannot be read
+   */
+  abstract Row next() throws IOException;
+
+  static BulkRowReader open(BulkFormat format, Reader reader, ObjectMapper mapper)
+      throws IOException {
+    return switch (format) {
+      case CSV -> new Csv(reader, mapper);
+      case NDJSON -> new Ndjson(reader, mapper);
+    };
+  }
+
+  /** Short description of a parse error, without Jackson's source location. */
+  static String message(JsonProcessingException e) {
+    return e.getOriginalMessage();
+  }
+
+  private static class Ndjson extends BulkRowReader {
+    private final BufferedReader lines;
+    private final ObjectMapper mapper;
+
+    Ndjson(Reader reader, ObjectMapper mapper) {
+      this.lines = new BufferedReader(reader);
+      this.mapper = mapper;
+    }
+
+    @Override
+    Row next() throws IOException {
+      String line;
+      do {
+        line = lines.readLine();
+        if (line == null) return null;
+      } while (line.isBlank());
+      rows++;
+      try {
+        JsonNode data = mapper.readTree(line);
+        if (!data.isObject()) return new Row(rows, null, "not a JSON object");
+        return new Row(rows, data, null);
+      } catch (JsonProcessingException e) {
+        return new Row(rows, null, message(e));
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      lines.close();
+    }
+  }
+
+  private static class Csv extends BulkRowReader {
+    private final MappingIterator<Map<String, String>> records;
+    private final ObjectMapper mapper;
+
+    Csv(Reader reader, ObjectMapper mapper) throws IOException {
+      // the caller closes the file, and reads its position after the parser has reached the end
+      this.records =
+          new CsvMapper()
+              .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+              .readerForMapOf(String.class)
+              .with(CsvSchema.emptySchema().withHeader())
+              .readValues(reader);
+      this.mapper = mapper;
+    }
+
+    @Override
+    Row next() throws IOException {
+      try {
+        if (!records.hasNextValue()) return null;
+      } catch (JsonMappingException e) {
+        return new Row(++rows, null, message(e));
+      }
+      rows++;
+      try {
+        ObjectNode data = mapper.createObjectNode();
+        // an empty cell is a missing value, not an empty string
+        records.nextValue().forEach((k, v) -> data.put(k, v.isEmpty() ? null : v));
+        return new Row(rows, data, null);
+      } catch (RuntimeJsonMappingException e) {
+        return new Row(rows, null, e.getMessage());
+      } catch (JsonMappingException e) {
+        return new Row(rows, null, message(e));
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      records.close();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import java.util.List;
+import java.util.function.Function;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * How the rows of one entity are stored, taken from Hibernate's mapping so that bulk operations can
+ * use plain JDBC and still read and write the same columns as the entity's repository.
+ */
+@Builder
+@Getter
+public class EntityTable {
+  private final String name; // as in the entity's API path, e.g. "ucsbdates"
+
+  private final Class<?> type;
+
+  private final String tableName;
+
+  private final String idProperty;
+
+  // the properties that an insert sets, and their columns, in the same order; the id is left out
+  // when the database generates it
+  private final List<String> properties;
+  private final List<String> columns;
+
+  private final boolean idGenerated; // by the database, e.g. an IDENTITY column
+
+  @Getter(AccessLevel.NONE)
+  private final Function<Object, Object[]> values;
+
+  /**
+   * @return an INSERT statement with one parameter per column, in the order of {@link
+   *     #getColumns()}
+   */
+  public String getInsertSql() {
+    return "insert into %s (%s) values (%s)"
+        .formatted(
+            tableName,
+            String.join(", ", columns),
+            String.join(", ", columns.stream().map(c -> "?").toList()));
+  }
+
+  /**
+   * @param entity an entity of this table's type
+   * @return its values, in the order of {@link #getColumns()}
+   */
+  public Object[] values(Object entity) {
+    return values.apply(entity);
+  }
+}
@@ -0,0 +1,116 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * The entities that can be imported in bulk, by the name used in their API path (e.g. "ucsbdates"
+ * for /api/ucsbdates), with the table each is stored in.
+ */
+@Component
+public class EntityTables {
+  private static final Map<String, Class<?>> ENTITIES =
+      Map.of(
+          "articles", Articles.class,
+          "helprequests", HelpRequest.class,
+          "menuitemreviews", MenuItemReviews.class,
+          "recommendationrequest", RecommendationRequest.class,
+          "restaurants", Restaurant.class,
+          "ucsbdates", UCSBDate.class,
+          "ucsbdiningcommons", UCSBDiningCommons.class,
+          "ucsbdiningcommonsmenuitems", UCSBDiningCommonsMenuItem.class,
+          "ucsborganization", UCSBOrganization.class);
+
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  private final Map<String, EntityTable> tables = new TreeMap<>();
+
+  @PostConstruct
+  void init() {
+    SessionFactoryImplementor sessionFactory =
+        entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    ENTITIES.forEach(
+        (name, type) ->
+            tables.put(
+                name,
+                table(
+                    name,
+                    type,
+                    (AbstractEntityPersister)
+                        sessionFactory.getMappingMetamodel().getEntityDescriptor(type))));
+  }
+
+  /**
+   * @param name the name of an entity, as in its API path
+   * @return its table, if it can be imported
+   */
+  public Optional<EntityTable> get(String name) {
+    return Optional.ofNullable(tables.get(name));
+  }
+
+  /**
+   * @return the names of the entities that can be imported
+   */
+  public Set<String> getNames() {
+    return tables.keySet();
+  }
+
+  static EntityTable table(String name, Class<?> type, AbstractEntityPersister persister) {
+    boolean idGenerated = persister.getGenerator().generatedOnExecution();
+    List<String> properties = new ArrayList<>();
+    List<String> columns = new ArrayList<>();
+    if (!idGenerated) {
+      properties.add(persister.getIdentifierPropertyName());
+      columns.addAll(List.of(persister.getIdentifierColumnNames()));
+    }
+    String[] names = persister.getPropertyNames();
+    boolean[] insertable = persister.getPropertyInsertability();
+    List<Integer> indexes = new ArrayList<>();
+    for (int i = 0; i < names.length; i++) {
+      if (!insertable[i]) continue;
+      indexes.add(i);
+      properties.add(names[i]);
+      columns.addAll(List.of(persister.getPropertyColumnNames(i)));
+    }
+
+    return EntityTable.builder()
+        .name(name)
+        .type(type)
+        .tableName(persister.getTableName())
+        .idProperty(persister.getIdentifierPropertyName())
+        .properties(properties)
+        .columns(columns)
+        .idGenerated(idGenerated)
+        .values(
+            entity -> {
+              Object[] all = persister.getValues(entity);
+              Object[] row = new Object[columns.size()];
+              int column = 0;
+              if (!idGenerated) {
+                row[column++] = persister.getIdentifierMapping().getIdentifier(entity);
+              }
+              for (int i : indexes) row[column++] = all[i];
+              return row;
+            })
+        .build();
+  }
+}
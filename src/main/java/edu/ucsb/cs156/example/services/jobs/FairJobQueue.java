@@ -0,0 +1,484 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobPriority;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * The queue in which jobs wait for a thread of the job executor. Rather than starting jobs in the
+ * order they were launched, it shares the threads between the users who launched them, so that one
+ * user launching a hundred jobs does not hold up everyone else.
+ *
+ * <ul>
+ *   <li>Jobs wait in one of two lanes. {@link JobPriority#HIGH} jobs, and short jobs (those with a
+ *       timeout of at most app.jobs.executor.shortJobMaxMs), wait in the fast lane, which always
+ *       goes first. The last app.jobs.executor.reservedThreads threads only run jobs from the fast
+ *       lane, so those can start even while the other threads are all busy.
+ *   <li>Within a lane, users take turns by weighted round-robin. Each user has a pass, which goes
+ *       up by 1/weight for each of their jobs that starts, and the user with the lowest pass goes
+ *       next; a {@link JobPriority#LOW} job counts double. A user's own jobs start by priority,
+ *       then in the order they were launched. Jobs without a user, e.g. scheduled ones, share one
+ *       turn.
+ *   <li>No user has more than app.jobs.executor.maxRunningPerUser jobs running at once; their other
+ *       jobs wait even if threads are free.
+ * </ul>
+ *
+ * <p>The executor only hands the queue Runnables, so {@link JobService} says which job it is
+ * submitting through {@link #submit}. A task that the pool gives straight to a new thread bypasses
+ * the queue and is not counted, so the pool starts all its threads up front. {@link JobQueueWorker}
+ * asks the queue which queued jobs would start at once (see {@link #startable}), so that it does
+ * not claim jobs that would only wait here.
+ */
+public class FairJobQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+  private final int capacity;
+  private final int poolSize;
+  private final int normalThreads; // threads that may run jobs from the normal lane
+  private final int maxRunningPerUser; // 0 means no limit
+  private final long shortJobMaxMs; // 0 means no job counts as short
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition startable = lock.newCondition(); // a waiting job may be able to start
+  private final Condition notFull = lock.newCondition();
+  private final Lane fastLane = new Lane();
+  private final Lane normalLane = new Lane();
+  private final Map<Long, Integer> runningByUser = new HashMap<>(); // null key: jobs without a user
+  private int running = 0;
+  private int runningNormal = 0;
+  private int size = 0;
+
+  private final ThreadLocal<Job> submitting = new ThreadLocal<>();
+
+  /**
+   * @param capacity maximum number of waiting jobs
+   * @param poolSize number of threads in the job executor
+   * @param reservedThreads number of threads that only run jobs from the fast lane; at most
+   *     poolSize - 1 are reserved
+   * @param maxRunningPerUser maximum number of jobs a user may have running; 0 for no limit
+   * @param shortJobMaxMs jobs with a timeout of at most this go in the fast lane; 0 for none
+   */
+  public FairJobQueue(
+      int capacity, int poolSize, int reservedThreads, int maxRunningPerUser, long shortJobMaxMs) {
+    this.capacity = capacity;
+    this.poolSize = poolSize;
+    this.normalThreads = poolSize - Math.max(0, Math.min(reservedThreads, poolSize - 1));
+    this.maxRunningPerUser = maxRunningPerUser;
+    this.shortJobMaxMs = shortJobMaxMs;
+  }
+
+  /**
+   * Submit a job to the executor that uses this queue. The executor is called on this thread, so
+   * the job is passed to {@link #offer} through a thread-local.
+   *
+   * @param job the job
+   * @param submit submits the job to the executor, e.g. by calling an @Async method
+   */
+  public void submit(Job job, Runnable submit) {
+    submitting.set(job);
+    try {
+      submit.run();
+    } finally {
+      submitting.remove();
+    }
+  }
+
+  /** A task waiting in the queue, and what the queue knows of its job. */
+  private final class Entry implements Runnable {
+    private final Runnable task;
+    private final Long user;
+    private final JobPriority priority;
+    private final boolean fast;
+    private boolean started = false; // guarded by lock
+
+    private Entry(Runnable task, Job job) {
+      this.task = task;
+      this.user = userOf(job);
+      this.priority =
+          job == null || job.getPriority() == null ? JobPriority.NORMAL : job.getPriority();
+      this.fast = isFast(job);
+    }
+
+    @Override
+    public void run() {
+      try {
+        task.run();
+      } finally {
+        finished(this);
+      }
+    }
+  }
+
+  private static Long userOf(Job job) {
+    return job == null || job.getCreatedBy() == null ? null : job.getCreatedBy().getId();
+  }
+
+  /** Whether a job waits in the fast lane: it has high priority, or is short. */
+  private boolean isFast(Job job) {
+    if (job == null) return false;
+    if (job.getPriority() == JobPriority.HIGH) return true;
+    Long timeoutMs = job.getTimeoutMs();
+    return shortJobMaxMs > 0 && timeoutMs != null && timeoutMs > 0 && timeoutMs <= shortJobMaxMs;
+  }
+
+  /** The jobs of one user waiting in a lane. */
+  private static final class UserQueue {
+    private final Map<JobPriority, ArrayDeque<Entry>> byPriority = new EnumMap<>(JobPriority.class);
+    private double pass;
+
+    private UserQueue(double pass) {
+      this.pass = pass;
+      for (JobPriority priority : JobPriority.values())
+        byPriority.put(priority, new ArrayDeque<>());
+    }
+
+    private Entry poll() {
+      for (ArrayDeque<Entry> entries : byPriority.values()) {
+        if (!entries.isEmpty()) return entries.poll();
+      }
+      return null;
+    }
+
+    private boolean isEmpty() {
+      return byPriority.values().stream().allMatch(ArrayDeque::isEmpty);
+    }
+  }
+
+  /**
+   * One lane: the users with jobs waiting in it, and their turns. A user whose jobs have all
+   * started is kept until the others have caught up with their pass, so that launching jobs one at
+   * a time does not put them back at the front.
+   */
+  private static final class Lane {
+    private final Map<Long, UserQueue> users = new LinkedHashMap<>(); // in the order they came
+    private double pass = 0; // the pass of the user whose job started last
+    private int size = 0;
+
+    private void add(Entry entry) {
+      // a user who has had nothing waiting starts level with the others, not ahead of them
+      users.computeIfAbsent(entry.user, user -> new UserQueue(pass));
+      users.get(entry.user).byPriority.get(entry.priority).add(entry);
+      size++;
+    }
+
+    private Entry poll(Predicate<Long> mayStart) {
+      UserQueue next = null;
+      for (Map.Entry<Long, UserQueue> user : users.entrySet()) {
+        UserQueue queue = user.getValue();
+        if (queue.isEmpty() || !mayStart.test(user.getKey())) continue;
+        if (next == null || queue.pass < next.pass) next = queue;
+      }
+      if (next == null) return null;
+      Entry entry = next.poll();
+      size--;
+      pass = next.pass;
+      next.pass += 1.0 / entry.priority.getWeight();
+      users.values().removeIf(queue -> queue.isEmpty() && queue.pass <= pass);
+      return entry;
+    }
+
+    private boolean remove(Object task) {
+      for (UserQueue queue : users.values()) {
+        for (ArrayDeque<Entry> entries : queue.byPriority.values()) {
+          if (entries.removeIf(entry -> entry == task || entry.task == task)) {
+            size--;
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    private void addAllTo(List<Entry> out) {
+      for (UserQueue queue : users.values()) queue.byPriority.values().forEach(out::addAll);
+    }
+  }
+
+  /** Take the job that should start next, if any may start now. Must hold the lock. */
+  private Entry startNext() {
+    Entry entry = fastLane.poll(this::mayStart);
+    if (entry == null && runningNormal < normalThreads) entry = normalLane.poll(this::mayStart);
+    if (entry == null) return null;
+    entry.started = true;
+    runningByUser.merge(entry.user, 1, Integer::sum);
+    running++;
+    if (!entry.fast) runningNormal++;
+    size--;
+    notFull.signal();
+    return entry;
+  }
+
+  private boolean mayStart(Long user) {
+    return maxRunningPerUser <= 0 || runningByUser.getOrDefault(user, 0) < maxRunningPerUser;
+  }
+
+  private void finished(Entry entry) {
+    lock.lock();
+    try {
+      if (!entry.started) return;
+      runningByUser.computeIfPresent(entry.user, (user, count) -> count > 1 ? count - 1 : null);
+      running--;
+      if (!entry.fast) runningNormal--;
+      startable.signalAll(); // jobs of this user, or from the normal lane, may start now
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of threads that are idle and not about to take a waiting job
+   */
+  public int freeThreads() {
+    lock.lock();
+    try {
+      return Math.max(0, poolSize - running - size);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Of some jobs that could be submitted, those that would start at once, in order. A job is left
+   * out if the threads it may use are all busy or taken by jobs already waiting, or if its user
+   * already has app.jobs.executor.maxRunningPerUser jobs running or waiting. Used to claim no more
+   * jobs from the durable queue than can start; another job submitted in the meantime may still
+   * make one wait.
+   *
+   * @param jobs the jobs, e.g. the oldest queued ones
+   * @return the jobs that would start at once
+   */
+  public List<Job> startable(List<Job> jobs) {
+    lock.lock();
+    try {
+      int free = poolSize - running - size;
+      int freeNormal = Math.min(free, normalThreads - runningNormal - normalLane.size);
+      Map<Long, Integer> busy = new HashMap<>(runningByUser);
+      for (Entry entry : snapshot()) busy.merge(entry.user, 1, Integer::sum);
+
+      List<Job> startable = new ArrayList<>();
+      for (Job job : jobs) {
+        if (free <= 0) break;
+        boolean fast = isFast(job);
+        Long user = userOf(job);
+        if (!fast && freeNormal <= 0) continue;
+        if (maxRunningPerUser > 0 && busy.getOrDefault(user, 0) >= maxRunningPerUser) continue;
+        startable.add(job);
+        free--;
+        if (!fast) freeNormal--;
+        busy.merge(user, 1, Integer::sum);
+      }
+      return startable;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean enqueue(Runnable task) {
+    Entry entry = new Entry(task, submitting.get());
+    (entry.fast ? fastLane : normalLane).add(entry);
+    size++;
+    startable.signal();
+    return true;
+  }
+
+  @Override
+  public boolean offer(Runnable task) {
+    Objects.requireNonNull(task);
+    lock.lock();
+    try {
+      return size < capacity && enqueue(task);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+    Objects.requireNonNull(task);
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (size >= capacity) {
+        if (nanos <= 0) return false;
+        nanos = notFull.awaitNanos(nanos);
+      }
+      return enqueue(task);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(Runnable task) throws InterruptedException {
+    Objects.requireNonNull(task);
+    lock.lockInterruptibly();
+    try {
+      while (size >= capacity) notFull.await();
+      enqueue(task);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      Entry entry;
+      while ((entry = startNext()) == null) startable.await();
+      return entry;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      Entry entry;
+      while ((entry = startNext()) == null) {
+        if (nanos <= 0) return null;
+        nanos = startable.awaitNanos(nanos);
+      }
+      return entry;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll() {
+    lock.lock();
+    try {
+      return startNext();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * A job waiting in the queue, without taking it; not necessarily the one that will start next.
+   *
+   * @return the job, or null if none are waiting
+   */
+  @Override
+  public Runnable peek() {
+    List<Entry> entries = snapshot();
+    return entries.isEmpty() ? null : entries.get(0);
+  }
+
+  @Override
+  public boolean remove(Object task) {
+    lock.lock();
+    try {
+      if (!fastLane.remove(task) && !normalLane.remove(task)) return false;
+      size--;
+      notFull.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    lock.lock();
+    try {
+      return capacity - size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove waiting jobs whether or not they may start; used when the executor is shut down at once.
+   */
+  @Override
+  public int drainTo(Collection<? super Runnable> c, int maxElements) {
+    if (c == this) throw new IllegalArgumentException();
+    lock.lock();
+    try {
+      int drained = 0;
+      for (Entry entry : snapshot()) {
+        if (drained >= maxElements) break;
+        remove(entry);
+        c.add(entry);
+        drained++;
+      }
+      return drained;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  /** Iterates over the jobs waiting when it was created, fast lane first. */
+  @Override
+  public Iterator<Runnable> iterator() {
+    Iterator<Entry> entries = snapshot().iterator();
+    return new Iterator<>() {
+      private Entry last;
+
+      @Override
+      public boolean hasNext() {
+        return entries.hasNext();
+      }
+
+      @Override
+      public Runnable next() {
+        if (!entries.hasNext()) throw new NoSuchElementException();
+        last = entries.next();
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        if (last == null) throw new IllegalStateException();
+        FairJobQueue.this.remove(last);
+        last = null;
+      }
+    };
+  }
+
+  private List<Entry> snapshot() {
+    lock.lock();
+    try {
+      List<Entry> entries = new ArrayList<>(size);
+      fastLane.addAllTo(entries);
+      normalLane.addAllTo(entries);
+      return entries;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
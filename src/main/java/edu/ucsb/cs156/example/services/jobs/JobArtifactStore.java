@@ -0,0 +1,197 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobArtifact;
+import edu.ucsb.cs156.example.repositories.JobArtifactsRepository;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * This is a service that stores the files jobs produce, under app.jobs.artifacts.dir, one directory
+ * per job.
+ *
+ * <p>Artifacts are written straight to disk through the stream {@link #open} returns, so a large
+ * output never has to fit in memory or in the database. The content goes to a temporary file that
+ * is moved into place, and the artifact's row saved, only when the stream is closed; until then
+ * readers see the previous version, if any. Writing an artifact again with the same name (e.g. when
+ * a job is retried) replaces it.
+ */
+@Service
+@Slf4j
+public class JobArtifactStore {
+  private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,254}");
+
+  @Autowired private JobArtifactsRepository jobArtifactsRepository;
+
+  @Lazy @Autowired private JobArtifactStore self;
+
+  @Value("${app.jobs.artifacts.dir:job-artifacts}")
+  private Path dir;
+
+  /**
+   * Start writing an artifact of a job. The artifact exists once the stream has been closed.
+   *
+   * @param job the job
+   * @param name name of the artifact, e.g. "export.csv": letters, digits, '.', '_' and '-', not
+   *     starting with '.'
+   * @param contentType MIME type of the content, e.g. "text/csv"
+   * @return a buffered stream to write the content to
+   * @throws IOException if the file cannot be created
+   * @throws IllegalArgumentException if the name is not allowed
+   */
+  public OutputStream open(Job job, String name, String contentType) throws IOException {
+    if (name == null || !NAME.matcher(name).matches()) {
+      throw new IllegalArgumentException("Invalid artifact name: " + name);
+    }
+    Path jobDir = Files.createDirectories(jobDir(job.getId()));
+    Path part = jobDir.resolve(".%s.%s.part".formatted(name, UUID.randomUUID()));
+    return new ArtifactOutputStream(job.getId(), name, contentType, part);
+  }
+
+  /**
+   * @param jobId id of the job
+   * @return the job's artifacts
+   */
+  public List<JobArtifact> list(long jobId) {
+    return jobArtifactsRepository.findByJobIdOrderByIdAsc(jobId);
+  }
+
+  /**
+   * @param jobId id of the job
+   * @param name name of the artifact
+   * @return the artifact, if the job has written one with that name
+   */
+  public Optional<JobArtifact> find(long jobId, String name) {
+    return jobArtifactsRepository.findByJobIdAndName(jobId, name);
+  }
+
+  /**
+   * @param artifact an artifact
+   * @return the file holding its content
+   */
+  public Path path(JobArtifact artifact) {
+    return jobDir(artifact.getJobId()).resolve(artifact.getName());
+  }
+
+  /**
+   * Delete the files of jobs that have been deleted. Their rows go with the jobs.
+   *
+   * @param jobIds ids of the jobs
+   */
+  public void deleteFiles(Collection<Long> jobIds) {
+    for (long jobId : jobIds) delete(jobDir(jobId));
+  }
+
+  /** Delete the files of all jobs, after all jobs have been deleted. */
+  public void deleteAllFiles() {
+    if (!Files.isDirectory(dir)) return;
+    try (Stream<Path> jobDirs = Files.list(dir)) {
+      jobDirs.forEach(this::delete);
+    } catch (IOException e) {
+      log.warn("Could not list job artifacts in {}: {}", dir, e.toString());
+    }
+  }
+
+  /** Save the row of an artifact whose file has just been moved into place. */
+  @Transactional
+  public JobArtifact record(long jobId, String name, String contentType, long size, String sha256) {
+    JobArtifact artifact =
+        jobArtifactsRepository
+            .findByJobIdAndName(jobId, name)
+            .orElseGet(() -> JobArtifact.builder().jobId(jobId).name(name).build());
+    artifact.setContentType(contentType);
+    artifact.setSize(size);
+    artifact.setSha256(sha256);
+    artifact.setCreatedAt(ZonedDateTime.now());
+    return jobArtifactsRepository.save(artifact);
+  }
+
+  private Path jobDir(long jobId) {
+    return dir.resolve(Long.toString(jobId));
+  }
+
+  private void delete(Path path) {
+    try {
+      FileSystemUtils.deleteRecursively(path);
+    } catch (IOException e) {
+      log.warn("Could not delete job artifacts in {}: {}", path, e.toString());
+    }
+  }
+
+  /** Counts and hashes what is written; closing it publishes the artifact. */
+  private class ArtifactOutputStream extends FilterOutputStream {
+    private final long jobId;
+    private final String name;
+    private final String contentType;
+    private final Path part;
+    private final MessageDigest digest;
+    private long size = 0;
+    private boolean closed = false;
+
+    ArtifactOutputStream(long jobId, String name, String contentType, Path part)
+        throws IOException {
+      super(null);
+      this.jobId = jobId;
+      this.name = name;
+      this.contentType = contentType;
+      this.part = part;
+      try {
+        this.digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+      this.out =
+          new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(part)), digest);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      size += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) return;
+      closed = true;
+      try {
+        out.close();
+        Path target = part.resolveSibling(name);
+        Files.move(
+            part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        self.record(jobId, name, contentType, size, HexFormat.of().formatHex(digest.digest()));
+      } finally {
+        Files.deleteIfExists(part);
+      }
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/**
+ * Thrown by {@link JobContext#throwIfCancelled()} when the job has been cancelled or has timed out,
+ * so that a job stops at the next point where it is safe to do so.
+ */
+public class JobCancelledException extends RuntimeException {
+  public JobCancelledException(String message) {
+    super(message);
+  }
+}
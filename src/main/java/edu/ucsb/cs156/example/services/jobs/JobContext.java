@@ -1,20 +1,464 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import edu.ucsb.cs156.example.entities.Job;
-import edu.ucsb.cs156.example.repositories.JobsRepository;
-import lombok.AllArgsConstructor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
 
-@AllArgsConstructor
 @Slf4j
 public class JobContext {
-  private JobsRepository jobsRepository;
-  private Job job;
+  private final JobLogService jobLogService;
+  private final Job job;
+  private final JobLogBufferLimits limits;
+  private int nextSeq;
+  private int nextLine;
 
-  public void log(String message) {
+  private List<String> buffer = new ArrayList<>();
+  private int bufferedBytes = 0;
+  private long oldestBufferedAt = 0;
+
+  // guards thread, deadline, finished, cancelStatus and subtasks; separate from the log buffer's
+  // lock so that a cancel never waits on a log write
+  private final Object runLock = new Object();
+  private Thread thread;
+  private final Set<Future<?>> subtasks = new HashSet<>();
+  private AsyncTaskExecutor subtaskExecutor;
+  private ThreadUsage subtaskUsage = ThreadUsage.NONE; // of sub-tasks that ran on the pool
+  private long deadline = 0; // System.nanoTime() after which the job times out; 0 means never
+  private boolean finished = false;
+  private volatile String cancelStatus;
+
+  // guards the job's progress, counters and checkpoint, and the fields below
+  private final Object progressLock = new Object();
+  private JobProgressService jobProgressService;
+  private final Map<String, Long> changedCounters = new HashMap<>();
+  private boolean checkpointChanged = false;
+  private boolean progressChanged = false;
+  private boolean progressWritten = false;
+  private long lastProgressWrite = 0; // System.nanoTime() of the last write
+
+  private volatile JobArtifactStore jobArtifactStore;
+
+  public JobContext(JobLogService jobLogService, Job job) {
+    this(jobLogService, job, JobLogBufferLimits.UNBUFFERED);
+  }
+
+  public JobContext(JobLogService jobLogService, Job job, JobLogBufferLimits limits) {
+    this(jobLogService, job, limits, 0, 0);
+  }
+
+  /**
+   * @param jobLogService where log lines are written; if null, lines are only logged to the console
+   * @param job the job
+   * @param limits when buffered lines are flushed
+   * @param firstSeq sequence number of the first chunk written; non-zero when a job is re-run
+   * @param firstLine number of the first line written; non-zero when a job is re-run
+   */
+  public JobContext(
+      JobLogService jobLogService,
+      Job job,
+      JobLogBufferLimits limits,
+      int firstSeq,
+      int firstLine) {
+    this.jobLogService = jobLogService;
+    this.job = job;
+    this.limits = limits;
+    this.nextSeq = firstSeq;
+    this.nextLine = firstLine;
+  }
+
+  public synchronized void log(String message) {
     log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
-    if (jobsRepository != null) jobsRepository.save(job);
+    if (jobLogService == null) return;
+
+    if (buffer.isEmpty()) oldestBufferedAt = System.nanoTime();
+    buffer.add(message);
+    bufferedBytes += message == null ? 0 : message.length();
+
+    if (buffer.size() >= limits.getMaxLines()
+        || bufferedBytes >= limits.getMaxBytes()
+        || isStale()) {
+      flush();
+    }
+  }
+
+  /** Write any buffered lines to the log as a single chunk. */
+  public synchronized void flush() {
+    if (buffer.isEmpty()) return;
+    List<String> lines = buffer;
+    buffer = new ArrayList<>();
+    bufferedBytes = 0;
+    jobLogService.append(job, nextSeq++, nextLine, lines);
+    nextLine += JobLogService.countLines(lines);
+  }
+
+  /**
+   * Flush the buffer if its oldest line has waited longer than the configured delay. Called
+   * periodically so that lines logged just before a long pause still show up promptly.
+   */
+  public synchronized void flushIfStale() {
+    if (!buffer.isEmpty() && isStale()) flush();
+  }
+
+  private boolean isStale() {
+    long waited = System.nanoTime() - oldestBufferedAt;
+    return waited >= TimeUnit.MILLISECONDS.toNanos(limits.getMaxDelayMs());
+  }
+
+  /**
+   * Report how far the job has got, e.g. records processed out of records to process. The values
+   * are shown by GET /api/jobs?id=. Calling this for every record is fine: updates are kept in
+   * memory and written at most once every app.jobs.progress.flushIntervalMs.
+   *
+   * @param done units of work done
+   * @param total units of work in all
+   */
+  public void progress(long done, long total) {
+    synchronized (progressLock) {
+      job.setProgressDone(done);
+      job.setProgressTotal(total);
+      progressChanged = true;
+      flushProgressIfStale();
+    }
+  }
+
+  /**
+   * Add one to a named counter, e.g. "imported" or "skipped". Counters start at 0, are shown by GET
+   * /api/jobs?id= and are written like {@link #progress(long, long)}.
+   *
+   * @param counter name of the counter
+   */
+  public void increment(String counter) {
+    increment(counter, 1);
+  }
+
+  /**
+   * Add to a named counter.
+   *
+   * @param counter name of the counter
+   * @param delta amount to add
+   */
+  public void increment(String counter, long delta) {
+    synchronized (progressLock) {
+      changedCounters.put(counter, job.getCounters().merge(counter, delta, Long::sum));
+      progressChanged = true;
+      flushProgressIfStale();
+    }
+  }
+
+  /**
+   * Save where the job has got to, e.g. the id of the last record it has processed. If the job then
+   * fails, or its node dies, the run that retries it gets the checkpoint back from {@link
+   * #getCheckpoint()} and can carry on from there instead of starting over.
+   *
+   * <p>The value means nothing to the job system. It is written like {@link #progress(long, long)},
+   * in the same transaction as the counters, so save it once the work it covers has been done and
+   * counted. A checkpoint can be up to app.jobs.progress.flushIntervalMs old when a node dies, so
+   * the work after it may be done twice.
+   *
+   * @param checkpoint where the job has got to
+   */
+  public void saveCheckpoint(String checkpoint) {
+    if (checkpoint == null) {
+      throw new IllegalArgumentException("Checkpoint must not be null");
+    }
+    synchronized (progressLock) {
+      job.setCheckpoint(checkpoint);
+      checkpointChanged = true;
+      progressChanged = true;
+      flushProgressIfStale();
+    }
+  }
+
+  /**
+   * @return the checkpoint last saved by this job, by this run or by an earlier run that failed or
+   *     was interrupted; null if the job has never saved one
+   */
+  public String getCheckpoint() {
+    synchronized (progressLock) {
+      return job.getCheckpoint();
+    }
+  }
+
+  /**
+   * Write the job's progress, changed counters and checkpoint, if anything has changed since last
+   * time.
+   */
+  public void flushProgress() {
+    synchronized (progressLock) {
+      if (!progressChanged || jobProgressService == null) return;
+      jobProgressService.save(
+          job.getId(),
+          job.getProgressDone(),
+          job.getProgressTotal(),
+          Map.copyOf(changedCounters),
+          checkpointChanged ? job.getCheckpoint() : null);
+      changedCounters.clear();
+      checkpointChanged = false;
+      progressChanged = false;
+      progressWritten = true;
+      lastProgressWrite = System.nanoTime();
+    }
+  }
+
+  /**
+   * Write the job's progress if it has changed and the last write was at least
+   * app.jobs.progress.flushIntervalMs ago. Also called periodically, so that the last update before
+   * a long pause still shows up promptly.
+   */
+  public void flushProgressIfStale() {
+    synchronized (progressLock) {
+      if (!progressChanged || jobProgressService == null) return;
+      long interval = TimeUnit.MILLISECONDS.toNanos(jobProgressService.getFlushIntervalMs());
+      if (!progressWritten || System.nanoTime() - lastProgressWrite >= interval) flushProgress();
+    }
+  }
+
+  /**
+   * @param jobProgressService where progress is written; if never set, progress is only kept on the
+   *     job, which is saved when it finishes
+   */
+  void setJobProgressService(JobProgressService jobProgressService) {
+    synchronized (progressLock) {
+      this.jobProgressService = jobProgressService;
+    }
+  }
+
+  /**
+   * Start writing a file the job produces, such as a CSV export. The content goes straight to disk,
+   * never through the log, and can be downloaded from GET /api/jobs/artifacts/{id}/{name} once the
+   * stream has been closed. Writing the same name again replaces the artifact.
+   *
+   * @param name name of the artifact, e.g. "export.csv": letters, digits, '.', '_' and '-'
+   * @param contentType MIME type of the content, e.g. "text/csv"
+   * @return a buffered stream; close it to publish the artifact
+   * @throws IOException if the file cannot be created
+   * @throws IllegalArgumentException if the name is not allowed
+   */
+  public OutputStream openArtifact(String name, String contentType) throws IOException {
+    if (jobArtifactStore == null) {
+      throw new IllegalStateException("Job " + job.getId() + " has no artifact store");
+    }
+    return jobArtifactStore.open(job, name, contentType);
+  }
+
+  /**
+   * @param jobArtifactStore where artifacts opened through {@link #openArtifact} are written
+   */
+  void setJobArtifactStore(JobArtifactStore jobArtifactStore) {
+    this.jobArtifactStore = jobArtifactStore;
+  }
+
+  /**
+   * Apply a sub-task to each item in parallel, on the shared pool of app.jobs.subtasks.poolSize
+   * threads, and wait for all of them. Each sub-task gets its own {@link JobSubtaskContext}, whose
+   * log lines are tagged with its index. Cancelling the job cancels the sub-tasks that have not
+   * started and interrupts the ones that are running.
+   *
+   * <p>A failing sub-task does not stop the others. Once all have finished, the results are
+   * returned in the order of the items, or, if any failed, a {@link JobSubtaskException} holding
+   * both the results and the failures is thrown.
+   *
+   * <p>Sub-tasks cannot start sub-tasks of their own. Without a sub-task pool (e.g. in tests) they
+   * run one after another on the calling thread.
+   *
+   * @param items the items, one per sub-task
+   * @param subtask what to do with each item
+   * @return the result of each sub-task, in the order of the items
+   * @throws JobSubtaskException if any sub-task failed
+   * @throws JobCancelledException if the job was cancelled or timed out
+   * @throws InterruptedException if the calling thread was interrupted for another reason
+   */
+  public <T, R> List<R> invokeAll(List<T> items, JobSubtask<T, R> subtask)
+      throws InterruptedException {
+    List<Future<R>> futures = new ArrayList<>(items.size());
+    try {
+      for (int i = 0; i < items.size(); i++) {
+        throwIfCancelled();
+        T item = items.get(i);
+        JobSubtaskContext subtaskContext = new JobSubtaskContext(this, i);
+        futures.add(submit(() -> subtask.apply(item, subtaskContext)));
+      }
+
+      List<R> results = new ArrayList<>(items.size());
+      SortedMap<Integer, Throwable> failures = new TreeMap<>();
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          results.add(futures.get(i).get());
+        } catch (ExecutionException e) {
+          results.add(null);
+          failures.put(i, e.getCause());
+        } catch (CancellationException e) {
+          results.add(null);
+          failures.put(i, e);
+        }
+      }
+      throwIfCancelled();
+      if (!failures.isEmpty()) throw new JobSubtaskException(results, failures);
+      return results;
+    } catch (InterruptedException e) {
+      throwIfCancelled();
+      throw e;
+    } finally {
+      synchronized (runLock) {
+        futures.forEach(
+            future -> {
+              future.cancel(true);
+              subtasks.remove(future);
+            });
+      }
+    }
+  }
+
+  private <R> Future<R> submit(Callable<R> call) {
+    AsyncTaskExecutor executor;
+    synchronized (runLock) {
+      executor = subtaskExecutor;
+    }
+    if (executor == null) {
+      FutureTask<R> future = new FutureTask<>(call);
+      future.run();
+      return future;
+    }
+    Callable<R> measured =
+        () -> {
+          ThreadUsage start = ThreadUsage.current();
+          try {
+            return call.call();
+          } finally {
+            addSubtaskUsage(ThreadUsage.current().since(start));
+          }
+        };
+    synchronized (runLock) {
+      Future<R> future = executor.submit(measured);
+      if (cancelStatus != null) future.cancel(true); // the job was cancelled while submitting
+      subtasks.add(future);
+      return future;
+    }
+  }
+
+  private void addSubtaskUsage(ThreadUsage usage) {
+    synchronized (runLock) {
+      subtaskUsage = subtaskUsage.plus(usage);
+    }
+  }
+
+  /**
+   * The CPU time and allocation of the sub-tasks that ran on the sub-task pool; sub-tasks that ran
+   * on the job's own thread are counted with it. A sub-task that is still running, e.g. one that
+   * ignored being cancelled, has not been counted yet.
+   *
+   * @return the usage of the job's sub-tasks so far
+   */
+  ThreadUsage getSubtaskUsage() {
+    synchronized (runLock) {
+      return subtaskUsage;
+    }
+  }
+
+  /**
+   * @param subtaskExecutor the pool that runs sub-tasks started through {@link #invokeAll}
+   */
+  void setSubtaskExecutor(AsyncTaskExecutor subtaskExecutor) {
+    synchronized (runLock) {
+      this.subtaskExecutor = subtaskExecutor;
+    }
+  }
+
+  /**
+   * Whether the job has been asked to stop, either through POST /api/jobs/cancel or because it ran
+   * past its timeout. Long-running jobs should check this (or call {@link #throwIfCancelled()})
+   * between units of work; blocking calls are also interrupted.
+   *
+   * @return true if the job should stop
+   */
+  public boolean isCancelled() {
+    return cancelStatus != null;
+  }
+
+  /**
+   * Stop the job here if it has been cancelled or has timed out.
+   *
+   * @throws JobCancelledException if the job should stop
+   */
+  public void throwIfCancelled() {
+    if (isCancelled()) {
+      throw new JobCancelledException("Job " + job.getId() + " " + cancelStatus);
+    }
+  }
+
+  /**
+   * @return "cancelled" or "timeout" if the job has been asked to stop, otherwise null
+   */
+  public String getCancelStatus() {
+    return cancelStatus;
+  }
+
+  /**
+   * Mark the thread calling this as the one running the job, so that cancelling the job interrupts
+   * it.
+   *
+   * @param timeoutMs how long the job may run before it is stopped, or null for no limit
+   */
+  void start(Long timeoutMs) {
+    synchronized (runLock) {
+      thread = Thread.currentThread();
+      if (timeoutMs != null) {
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      }
+    }
+  }
+
+  /**
+   * The job has returned; later cancels are ignored, and any interrupt meant for the job is cleared
+   * so that it does not leak into whatever the pooled thread does next.
+   */
+  void finish() {
+    synchronized (runLock) {
+      finished = true;
+      thread = null;
+      Thread.interrupted();
+    }
+  }
+
+  /**
+   * Ask the job to stop: set the cancellation flag and interrupt its thread. Only the first request
+   * counts.
+   *
+   * @param status the status the job ends with, "cancelled" or "timeout"
+   * @return false if the job has already finished or been asked to stop
+   */
+  boolean cancel(String status) {
+    synchronized (runLock) {
+      if (finished || cancelStatus != null) return false;
+      cancelStatus = status;
+      if (thread != null) thread.interrupt();
+      subtasks.forEach(future -> future.cancel(true));
+      return true;
+    }
+  }
+
+  /**
+   * @return true if the job has a timeout and has been running longer than it
+   */
+  boolean isOverdue() {
+    synchronized (runLock) {
+      return deadline != 0 && System.nanoTime() - deadline >= 0;
+    }
   }
 }
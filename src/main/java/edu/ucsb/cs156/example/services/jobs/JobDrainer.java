@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets the jobs running on this node finish before the application shuts down, instead of having
+ * the JVM exit under them (see {@link JobService#drain(Duration)}).
+ *
+ * <p>It is stopped in the first shutdown phase, before the web server and the database connections,
+ * and stopping it blocks for up to app.jobs.shutdown.gracePeriodMs. The platform that stops the
+ * application (e.g. Kubernetes' terminationGracePeriodSeconds) must allow at least that long.
+ */
+@Component
+public class JobDrainer implements SmartLifecycle {
+  @Autowired private JobService jobService;
+
+  @Value("${app.jobs.shutdown.gracePeriodMs:30000}")
+  private long gracePeriodMs;
+
+  private volatile boolean running = false;
+
+  @Override
+  public void start() {
+    running = true;
+  }
+
+  /** Drain the job executor; returns once every job has ended or been interrupted. */
+  @Override
+  public void stop() {
+    try {
+      jobService.drain(Duration.ofMillis(gracePeriodMs));
+    } finally {
+      running = false;
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return Integer.MAX_VALUE;
+  }
+}
@@ -0,0 +1,298 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * This is a service that streams job logs to clients as Server-Sent Events.
+ *
+ * <p>A subscriber first gets the log written so far, read from the database once, and then each
+ * chunk as {@link JobLogService} writes it, pushed in-process to every subscriber of that job. Each
+ * chunk is sent as a "log" event whose id is the chunk's sequence number. When the job finishes, a
+ * "status" event with the job's final status is sent and the stream is closed.
+ *
+ * <p>Events are never written on the thread that publishes them, which is usually a job's: each
+ * subscriber has an outbox of up to app.jobs.logStream.maxPendingEvents events, which a thread of
+ * the jobLogStreamExecutor writes to the client. A client too slow to keep up with its outbox is
+ * disconnected rather than holding up the job.
+ *
+ * <p>Streams are closed after app.jobs.logStream.timeoutMs. Browsers reconnect automatically and
+ * send the id of the last event they saw as Last-Event-ID, so that they only get the chunks they
+ * missed. That is also how a client catches up on a job running on another node, whose chunks are
+ * not pushed to this one, or after being disconnected for falling behind.
+ */
+@Service
+@Slf4j
+public class JobLogBroadcaster {
+  private static final Set<String> UNFINISHED = Set.of("queued", "waiting", "running");
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogChunksRepository jobLogChunksRepository;
+
+  @Autowired
+  @Qualifier("jobLogStreamExecutor")
+  private Executor jobLogStreamExecutor;
+
+  @Value("${app.jobs.logStream.timeoutMs:300000}")
+  private long timeoutMs;
+
+  @Value("${app.jobs.logStream.maxPendingEvents:100}")
+  private int maxPendingEvents;
+
+  private final Map<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+  /**
+   * Open a stream of a job's log.
+   *
+   * @param jobId the job
+   * @param afterSeq only send chunks with a higher sequence number; -1 sends the whole log
+   * @return the stream
+   * @throws EntityNotFoundException if there is no such job
+   */
+  @Transactional(readOnly = true)
+  public SseEmitter subscribe(long jobId, int afterSeq) {
+    Subscriber subscriber = new Subscriber(jobId, newEmitter(), afterSeq);
+    // register before reading the backlog, so that no chunk falls between the two
+    subscribers.computeIfAbsent(jobId, id -> new CopyOnWriteArrayList<>()).add(subscriber);
+    subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+    subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+    subscriber.emitter.onError(e -> unsubscribe(subscriber));
+
+    Job job = jobsRepository.findById(jobId).orElse(null);
+    if (job == null) {
+      unsubscribe(subscriber);
+      throw new EntityNotFoundException(Job.class, jobId);
+    }
+
+    List<Event> backlog = new ArrayList<>();
+    if (afterSeq < 0 && job.getLog() != null) {
+      backlog.add(Event.log(-1, List.of(job.getLog())));
+    }
+    try (Stream<JobLogChunk> chunks =
+        jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(jobId, afterSeq)) {
+      chunks.forEach(
+          chunk -> backlog.add(Event.log(chunk.getSeq(), List.of(JobLogService.text(chunk)))));
+    }
+    subscriber.start(backlog, UNFINISHED.contains(job.getStatus()) ? null : job.getStatus());
+    return subscriber.emitter;
+  }
+
+  /**
+   * Send a chunk that has just been written to everyone streaming the job's log. This only adds it
+   * to each subscriber's outbox; it never waits for a client.
+   *
+   * @param jobId the job
+   * @param seq sequence number of the chunk
+   * @param lines the lines in the chunk
+   */
+  public void publish(long jobId, int seq, List<String> lines) {
+    List<Subscriber> list = subscribers.get(jobId);
+    if (list == null) return;
+    Event event = Event.log(seq, lines);
+    list.forEach(subscriber -> subscriber.send(event));
+  }
+
+  /**
+   * Tell everyone streaming the job's log that it has finished, and close their streams.
+   *
+   * @param jobId the job
+   * @param status the final status of the job
+   */
+  public void finish(long jobId, String status) {
+    List<Subscriber> list = subscribers.get(jobId);
+    if (list == null) return;
+    list.forEach(subscriber -> subscriber.finish(status));
+  }
+
+  SseEmitter newEmitter() {
+    return new SseEmitter(timeoutMs);
+  }
+
+  /**
+   * @param jobId the job
+   * @return number of open streams of the job's log
+   */
+  int subscriberCount(long jobId) {
+    List<Subscriber> list = subscribers.get(jobId);
+    return list == null ? 0 : list.size();
+  }
+
+  private void unsubscribe(Subscriber subscriber) {
+    subscribers.computeIfPresent(
+        subscriber.jobId,
+        (id, list) -> {
+          list.remove(subscriber);
+          return list.isEmpty() ? null : list;
+        });
+  }
+
+  /** A "log" event with a chunk's lines, or the final "status" event if status is set. */
+  private record Event(int seq, List<String> lines, String status) {
+    static Event log(int seq, List<String> lines) {
+      return new Event(seq, lines, null);
+    }
+
+    static Event status(String status) {
+      return new Event(-1, null, status);
+    }
+  }
+
+  /**
+   * One open stream. Chunks published while the backlog is still being read are held back and sent
+   * after it, skipping any that the backlog already contained. Events wait in the outbox until a
+   * thread of the jobLogStreamExecutor writes them, one subscriber at a time on each thread.
+   */
+  private class Subscriber {
+    private final long jobId;
+    private final SseEmitter emitter;
+    private int lastSeq; // only used by the thread writing the outbox
+    private final Deque<Event> outbox = new ArrayDeque<>(); // guarded by this
+    private int backlogLeft = 0; // backlog events at the head of the outbox, not held to the limit
+    private boolean started = false;
+    private boolean finishing = false; // the status event is in the outbox
+    private boolean sending = false; // a thread is writing the outbox
+    private boolean closed = false;
+
+    Subscriber(long jobId, SseEmitter emitter, int afterSeq) {
+      this.jobId = jobId;
+      this.emitter = emitter;
+      this.lastSeq = afterSeq;
+    }
+
+    synchronized void start(List<Event> backlog, String finalStatus) {
+      started = true;
+      List<Event> pending = new ArrayList<>(outbox);
+      outbox.clear();
+      outbox.addAll(backlog);
+      outbox.addAll(pending);
+      backlogLeft = backlog.size();
+      if (finalStatus != null && !finishing) {
+        finishing = true;
+        outbox.add(Event.status(finalStatus));
+      }
+      schedule();
+    }
+
+    synchronized void send(Event event) {
+      if (closed || finishing) return;
+      if (outbox.size() - backlogLeft >= maxPendingEvents) {
+        log.debug("Job {}: client is not keeping up; disconnecting it", jobId);
+        close();
+        return;
+      }
+      outbox.add(event);
+      schedule();
+    }
+
+    synchronized void finish(String status) {
+      if (closed || finishing) return;
+      finishing = true;
+      outbox.add(Event.status(status));
+      schedule();
+    }
+
+    /** Have a thread write the outbox, unless one already is. Must hold the lock. */
+    private void schedule() {
+      if (!started || sending || closed || outbox.isEmpty()) return;
+      sending = true;
+      try {
+        jobLogStreamExecutor.execute(this::drain);
+      } catch (RejectedExecutionException e) {
+        sending = false;
+        close(); // shutting down
+      }
+    }
+
+    /** Write the outbox to the client, without holding the lock while writing. */
+    private void drain() {
+      while (true) {
+        Event event;
+        synchronized (this) {
+          event = closed ? null : outbox.poll();
+          if (event == null) {
+            sending = false;
+            return;
+          }
+          if (backlogLeft > 0) backlogLeft--;
+        }
+        write(event);
+      }
+    }
+
+    private void write(Event event) {
+      if (event.status() != null) {
+        if (!emit(SseEmitter.event().name("status").data(event.status()))) return;
+        synchronized (this) {
+          closed = true;
+        }
+        emitter.complete();
+        unsubscribe(this);
+        return;
+      }
+      if (event.seq() >= 0 && event.seq() <= lastSeq) return;
+      SseEmitter.SseEventBuilder builder = SseEmitter.event().name("log");
+      if (event.seq() >= 0) {
+        builder.id(Integer.toString(event.seq()));
+        lastSeq = event.seq();
+      }
+      // one data field per line; SSE clients join them back with newlines
+      event.lines().stream()
+          .flatMap(line -> Stream.of(String.valueOf(line).split("\n", -1)))
+          .forEach(builder::data);
+      emit(builder);
+    }
+
+    private boolean emit(SseEmitter.SseEventBuilder builder) {
+      try {
+        emitter.send(builder);
+        return true;
+      } catch (IOException | IllegalStateException e) {
+        log.debug("Job {}: client has gone away", jobId, e);
+        synchronized (this) {
+          closed = true;
+        }
+        unsubscribe(this);
+        return false;
+      }
+    }
+
+    /**
+     * Drop the subscriber. The stream is completed on the executor, so that the publishing thread
+     * never touches the client's connection. Must hold the lock.
+     */
+    private void close() {
+      closed = true;
+      outbox.clear();
+      backlogLeft = 0;
+      unsubscribe(this);
+      try {
+        jobLogStreamExecutor.execute(emitter::complete);
+      } catch (RejectedExecutionException e) {
+        // shutting down; the stream is closed with the application
+      }
+    }
+  }
+}
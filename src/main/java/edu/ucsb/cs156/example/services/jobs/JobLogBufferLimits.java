@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Limits that decide when a {@link JobContext} flushes buffered log lines to the database.
+ *
+ * <p>A buffer is flushed as soon as any one limit is reached. {@link #UNBUFFERED} writes every line
+ * as soon as it is logged.
+ */
+@Value
+@Builder
+public class JobLogBufferLimits {
+  public static final JobLogBufferLimits UNBUFFERED =
+      JobLogBufferLimits.builder().maxLines(1).maxBytes(0).maxDelayMs(0).build();
+
+  /** flush once this many lines are buffered */
+  int maxLines;
+
+  /** flush once the buffered lines hold at least this many characters */
+  int maxBytes;
+
+  /** flush once the oldest buffered line has waited this long */
+  long maxDelayMs;
+}
@@ -0,0 +1,198 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This is a service that keeps an inverted index of job logs, so that they can be searched without
+ * reading and decompressing every chunk.
+ *
+ * <p>As each chunk is appended, its distinct terms (runs of letters, digits and underscores,
+ * lowercased) are inserted into job_log_terms, one row per term. A search looks up the chunks that
+ * have all of its terms, newest first, and reads only those for the lines that match. Deleting a
+ * chunk deletes its terms.
+ *
+ * <p>Logs written before the index was added, including the legacy log column of jobs, are not
+ * indexed.
+ */
+@Service
+@Slf4j
+public class JobLogIndex {
+  static final int MIN_TERM_LENGTH = 2;
+  static final int MAX_TERM_LENGTH = 64; // longer terms, e.g. encoded data, are not indexed
+  static final int MAX_QUERY_TERMS = 10;
+  static final int MAX_MATCHES_PER_JOB = 5;
+  static final int MAX_MATCH_LENGTH = 300;
+  private static final int CHUNK_BATCH_SIZE = 50;
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}_]+");
+
+  static final String INSERT_TERM = "insert into job_log_terms (term, chunk_id) values (?, ?)";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private JobLogChunksRepository jobLogChunksRepository;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Value("${app.jobs.log.search.maxChunks:1000}")
+  private int maxChunks;
+
+  /**
+   * Index a chunk that has just been saved. A failure is logged rather than thrown: the lines have
+   * been written, and only searching for them is lost.
+   *
+   * @param chunk the saved chunk, with its id
+   * @param content the chunk's text
+   */
+  public void index(JobLogChunk chunk, String content) {
+    Set<String> terms = terms(content);
+    if (terms.isEmpty()) return;
+    List<Object[]> rows = new ArrayList<>(terms.size());
+    for (String term : terms) rows.add(new Object[] {term, chunk.getId()});
+    try {
+      jdbcTemplate.batchUpdate(INSERT_TERM, rows);
+    } catch (DataAccessException e) {
+      log.warn("Could not index chunk {} of job {}", chunk.getSeq(), chunk.getJobId(), e);
+    }
+  }
+
+  /**
+   * Find the jobs whose logs have lines containing all the words of a query. Words match whole
+   * terms, ignoring case. Jobs are returned newest match first, each with up to {@value
+   * #MAX_MATCHES_PER_JOB} of its matching lines; at most app.jobs.log.search.maxChunks chunks are
+   * read.
+   *
+   * @param query the words to search for
+   * @param limit maximum number of jobs to return
+   * @return the jobs and their matching lines
+   * @throws IllegalArgumentException if the query has no words that can be searched for, or too
+   *     many
+   */
+  @Transactional(readOnly = true)
+  public List<JobLogSearchResult> search(String query, int limit) {
+    List<String> terms = List.copyOf(terms(query));
+    if (terms.isEmpty()) {
+      throw new IllegalArgumentException(
+          "Search for words of %d to %d letters or digits"
+              .formatted(MIN_TERM_LENGTH, MAX_TERM_LENGTH));
+    }
+    if (terms.size() > MAX_QUERY_TERMS) {
+      throw new IllegalArgumentException(
+          "Search for at most %d words at a time".formatted(MAX_QUERY_TERMS));
+    }
+
+    Map<Long, List<JobLogMatch>> matchesByJob = new LinkedHashMap<>();
+    List<Long> chunkIds = findChunks(terms);
+    for (int from = 0; from < chunkIds.size() && matchesByJob.size() < limit; ) {
+      List<Long> batch = chunkIds.subList(from, Math.min(from + CHUNK_BATCH_SIZE, chunkIds.size()));
+      from += batch.size();
+      Map<Long, JobLogChunk> chunks = new HashMap<>();
+      jobLogChunksRepository.findAllById(batch).forEach(chunk -> chunks.put(chunk.getId(), chunk));
+      for (Long chunkId : batch) {
+        JobLogChunk chunk = chunks.get(chunkId);
+        if (chunk == null) continue; // deleted since the index was read
+        List<JobLogMatch> found = matchingLines(chunk, terms);
+        if (found.isEmpty()) continue; // the terms are all in the chunk, but not on one line
+        if (!matchesByJob.containsKey(chunk.getJobId()) && matchesByJob.size() >= limit) continue;
+        List<JobLogMatch> matches =
+            matchesByJob.computeIfAbsent(chunk.getJobId(), id -> new ArrayList<>());
+        matches.addAll(found.subList(0, Math.min(found.size(), MAX_MATCHES_PER_JOB)));
+      }
+    }
+    return results(matchesByJob);
+  }
+
+  /** Ids of the chunks that have every term, newest first. */
+  private List<Long> findChunks(List<String> terms) {
+    String sql =
+        "select chunk_id from job_log_terms where term in (%s)"
+                .formatted(String.join(", ", Collections.nCopies(terms.size(), "?")))
+            + " group by chunk_id having count(*) = ? order by chunk_id desc limit ?";
+    List<Object> args = new ArrayList<>(terms);
+    args.add(terms.size());
+    args.add(maxChunks);
+    return jdbcTemplate.queryForList(sql, Long.class, args.toArray());
+  }
+
+  private static List<JobLogMatch> matchingLines(JobLogChunk chunk, List<String> terms) {
+    String[] lines = JobLogService.text(chunk).split("\n", -1);
+    List<JobLogMatch> matches = new ArrayList<>();
+    for (int i = 0; i < lines.length; i++) {
+      if (!terms(lines[i]).containsAll(terms)) continue;
+      String text = lines[i];
+      if (text.length() > MAX_MATCH_LENGTH) text = text.substring(0, MAX_MATCH_LENGTH) + "...";
+      matches.add(JobLogMatch.builder().line(chunk.getFirstLine() + i).text(text).build());
+    }
+    return matches;
+  }
+
+  private List<JobLogSearchResult> results(Map<Long, List<JobLogMatch>> matchesByJob) {
+    Map<Long, Job> jobs = new HashMap<>();
+    jobsRepository.findAllById(matchesByJob.keySet()).forEach(job -> jobs.put(job.getId(), job));
+    List<JobLogSearchResult> results = new ArrayList<>();
+    matchesByJob.forEach(
+        (jobId, matches) -> {
+          Job job = jobs.get(jobId);
+          if (job == null) return;
+          // line numbers in GET /api/jobs/logs/{id} count the legacy log's lines first
+          int offset = JobLogService.legacyLineCount(job);
+          List<JobLogMatch> sorted =
+              matches.stream()
+                  .sorted(Comparator.comparingInt(JobLogMatch::getLine))
+                  .limit(MAX_MATCHES_PER_JOB)
+                  .map(
+                      m ->
+                          JobLogMatch.builder()
+                              .line(offset + m.getLine())
+                              .text(m.getText())
+                              .build())
+                  .toList();
+          results.add(
+              JobLogSearchResult.builder()
+                  .jobId(jobId)
+                  .jobType(job.getJobType())
+                  .status(job.getStatus())
+                  .matches(sorted)
+                  .build());
+        });
+    return results;
+  }
+
+  /**
+   * The distinct terms of a text: runs of letters, digits and underscores, lowercased, of {@value
+   * #MIN_TERM_LENGTH} to {@value #MAX_TERM_LENGTH} characters.
+   *
+   * @param text the text
+   * @return the terms, in the order they first appear
+   */
+  static Set<String> terms(String text) {
+    Set<String> terms = new LinkedHashSet<>();
+    if (text == null) return terms;
+    for (String word : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+      if (word.length() >= MIN_TERM_LENGTH && word.length() <= MAX_TERM_LENGTH) terms.add(word);
+    }
+    return terms;
+  }
+}
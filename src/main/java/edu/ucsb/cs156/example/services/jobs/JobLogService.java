@@ -0,0 +1,318 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.JobLogFlushStats;
+import edu.ucsb.cs156.example.models.JobLogSize;
+import edu.ucsb.cs156.example.models.JobLogSlice;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This is a service that stores job logs as an append-only sequence of chunks.
+ *
+ * <p>Appending a line inserts one small row instead of rewriting the whole log, so a job that
+ * writes N lines writes O(N) bytes rather than O(N^2).
+ *
+ * <p>Chunks of at least app.jobs.log.compression.minBytes are gzip-compressed, and kept compressed
+ * if that makes them smaller; log text is repetitive, so it usually does. Smaller chunks are not
+ * worth the gzip header and are stored as plain text.
+ *
+ * <p>Each chunk is also added to the search index (see {@link JobLogIndex}).
+ */
+@Service
+public class JobLogService {
+  @Autowired private JobLogChunksRepository jobLogChunksRepository;
+
+  @Autowired private JobLogBroadcaster jobLogBroadcaster;
+
+  @Autowired private JobMetrics jobMetrics;
+
+  @Autowired private JobLogIndex jobLogIndex;
+
+  @Value("${app.jobs.log.compression.minBytes:256}")
+  private int compressionMinBytes;
+
+  private final AtomicLong flushes = new AtomicLong();
+  private final AtomicLong linesFlushed = new AtomicLong();
+  private final AtomicLong bytesFlushed = new AtomicLong();
+  private final AtomicLong bytesStored = new AtomicLong();
+  private final AtomicLong maxLinesPerFlush = new AtomicLong();
+
+  /**
+   * Append lines to the log of a job as a single chunk, and send them to anyone streaming the log.
+   *
+   * @param job the job whose log is appended to
+   * @param seq sequence number of the chunk; must be unique per job and increasing
+   * @param firstLine number of the first line in the chunk, i.e. the number of lines before it
+   * @param lines the lines to append
+   */
+  public void append(Job job, int seq, int firstLine, List<String> lines) {
+    String content = String.join("\n", lines);
+    byte[] raw = content.getBytes(UTF_8);
+    byte[] compressed = raw.length >= compressionMinBytes ? gzip(raw) : null;
+    JobLogChunk chunk =
+        JobLogChunk.builder()
+            .jobId(job.getId())
+            .seq(seq)
+            .firstLine(firstLine)
+            .lineCount(countLines(lines))
+            .rawSize(raw.length)
+            .build();
+    if (compressed != null && compressed.length < raw.length) {
+      chunk.setCompressedContent(compressed);
+      chunk.setStoredSize(compressed.length);
+    } else {
+      chunk.setContent(content);
+      chunk.setStoredSize(raw.length);
+    }
+    jobLogChunksRepository.save(chunk);
+    jobLogIndex.index(chunk, content);
+    jobLogBroadcaster.publish(job.getId(), seq, lines);
+
+    flushes.incrementAndGet();
+    linesFlushed.addAndGet(lines.size());
+    bytesFlushed.addAndGet(raw.length);
+    bytesStored.addAndGet(chunk.getStoredSize());
+    jobMetrics.logWritten(job, raw.length);
+    maxLinesPerFlush.accumulateAndGet(lines.size(), Math::max);
+  }
+
+  /**
+   * The sequence number that the next chunk of a job's log should use; needed when a job that
+   * already has log chunks is started again.
+   *
+   * @param job the job
+   * @return the next sequence number
+   */
+  public int nextSeq(Job job) {
+    return jobLogChunksRepository.nextSeq(job.getId());
+  }
+
+  /**
+   * The number of lines in a job's log chunks; the first line of the next chunk.
+   *
+   * @param job the job
+   * @return the number of lines
+   */
+  public int countLines(Job job) {
+    return jobLogChunksRepository.countLines(job.getId()).orElse(0);
+  }
+
+  /**
+   * The number of log lines that a list of messages takes up once written; a message that itself
+   * contains newlines counts as several lines.
+   *
+   * @param messages the messages
+   * @return the number of lines
+   */
+  public static int countLines(List<String> messages) {
+    int count = 0;
+    for (String message : messages) {
+      count += message == null ? 1 : message.split("\n", -1).length;
+    }
+    return count;
+  }
+
+  /**
+   * Counters describing how log lines have been batched into chunks since startup; useful for
+   * tuning the buffer limits.
+   *
+   * @return the flush statistics
+   */
+  public JobLogFlushStats getFlushStats() {
+    long flushCount = flushes.get();
+    long lineCount = linesFlushed.get();
+    return JobLogFlushStats.builder()
+        .flushes(flushCount)
+        .lines(lineCount)
+        .bytes(bytesFlushed.get())
+        .storedBytes(bytesStored.get())
+        .averageLinesPerFlush(flushCount == 0 ? 0.0 : (double) lineCount / flushCount)
+        .maxLinesPerFlush(maxLinesPerFlush.get())
+        .build();
+  }
+
+  /**
+   * Reassemble the full log of a job from its chunks, in the order they were written.
+   *
+   * <p>Jobs written before chunked storage keep their log in {@link Job#getLog()}; that text, if
+   * any, comes first.
+   *
+   * @param job the job
+   * @return the log, with lines separated by newlines
+   */
+  @Transactional(readOnly = true)
+  public String getLog(Job job) {
+    StringWriter writer = new StringWriter();
+    writeLog(job, writer);
+    return writer.toString();
+  }
+
+  /**
+   * Write the full log of a job, as {@link #getLog(Job)} returns it, one chunk at a time: each
+   * chunk is read from the database, decompressed and written before the next is read, so that a
+   * long log is never held in memory.
+   *
+   * @param job the job
+   * @param writer where to write the log
+   * @throws UncheckedIOException if the writer fails, e.g. because the client has gone away
+   */
+  @Transactional(readOnly = true)
+  public void writeLog(Job job, Writer writer) {
+    try (Stream<JobLogChunk> chunks =
+        jobLogChunksRepository.streamByJobIdOrderBySeqAsc(job.getId())) {
+      boolean first = true;
+      if (job.getLog() != null) {
+        writer.write(job.getLog());
+        first = false;
+      }
+      for (JobLogChunk chunk : (Iterable<JobLogChunk>) chunks::iterator) {
+        if (!first) writer.write('\n');
+        writer.write(text(chunk));
+        first = false;
+      }
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * How much space a job's log takes up, before and after compression.
+   *
+   * @param job the job
+   * @return the sizes
+   */
+  @Transactional(readOnly = true)
+  public JobLogSize getLogSize(Job job) {
+    JobLogSize size = jobLogChunksRepository.sumSizes(job.getId());
+    if (job.getLog() != null) {
+      int legacy = job.getLog().getBytes(UTF_8).length;
+      size.setRawBytes(size.getRawBytes() + legacy);
+      size.setStoredBytes(size.getStoredBytes() + legacy);
+    }
+    return size;
+  }
+
+  /**
+   * The text of a log chunk, decompressed if it was stored compressed.
+   *
+   * @param chunk the chunk
+   * @return its lines, separated by newlines
+   */
+  public static String text(JobLogChunk chunk) {
+    if (chunk.getCompressedContent() == null) return chunk.getContent();
+    try (InputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(chunk.getCompressedContent()))) {
+      return new String(in.readAllBytes(), UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Corrupt log chunk " + chunk.getId(), e);
+    }
+  }
+
+  private static byte[] gzip(byte[] raw) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(raw.length / 4 + 32);
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(raw);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // cannot happen writing to memory
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Read a range of lines from a job's log. Only the chunks that hold those lines are read.
+   *
+   * @param job the job
+   * @param offset number of the first line to return, counting from 0
+   * @param limit maximum number of lines to return
+   * @return the lines, and the offset to continue from
+   */
+  @Transactional(readOnly = true)
+  public JobLogSlice getLogSlice(Job job, int offset, int limit) {
+    List<String> legacy = legacyLines(job);
+    int totalLines = legacy.size() + countLines(job);
+    return slice(job, legacy, totalLines, Math.max(0, offset), Math.max(0, limit));
+  }
+
+  /**
+   * Read the last lines of a job's log. Only the chunks that hold those lines are read.
+   *
+   * @param job the job
+   * @param lines maximum number of lines to return
+   * @return the lines, and the offset to continue from
+   */
+  @Transactional(readOnly = true)
+  public JobLogSlice getLogTail(Job job, int lines) {
+    List<String> legacy = legacyLines(job);
+    int totalLines = legacy.size() + countLines(job);
+    int limit = Math.max(0, lines);
+    return slice(job, legacy, totalLines, Math.max(0, totalLines - limit), limit);
+  }
+
+  private JobLogSlice slice(Job job, List<String> legacy, int totalLines, int offset, int limit) {
+    int end = (int) Math.min((long) offset + limit, totalLines);
+    List<String> result = new ArrayList<>();
+
+    for (int line = offset; line < Math.min(end, legacy.size()); line++) {
+      result.add(legacy.get(line));
+    }
+
+    // line numbers within the chunks start after the legacy log
+    int from = Math.max(offset, legacy.size()) - legacy.size();
+    int to = end - legacy.size();
+    if (from < to) {
+      for (JobLogChunk chunk : jobLogChunksRepository.findLines(job.getId(), from, to)) {
+        String[] chunkLines = text(chunk).split("\n", -1);
+        int chunkEnd = chunk.getFirstLine() + chunk.getLineCount();
+        for (int line = Math.max(from, chunk.getFirstLine());
+            line < Math.min(to, chunkEnd);
+            line++) {
+          result.add(chunkLines[line - chunk.getFirstLine()]);
+        }
+      }
+    }
+
+    return JobLogSlice.builder()
+        .offset(offset)
+        .nextOffset(offset + result.size())
+        .totalLines(totalLines)
+        .lines(result)
+        .build();
+  }
+
+  /**
+   * The number of lines in a job's legacy log column, which come before the lines of its chunks.
+   *
+   * @param job the job
+   * @return the number of lines
+   */
+  static int legacyLineCount(Job job) {
+    return job.getLog() == null ? 0 : job.getLog().split("\n", -1).length;
+  }
+
+  /** Jobs that ran before chunked storage have their whole log in the job row. */
+  private List<String> legacyLines(Job job) {
+    return job.getLog() == null ? List.of() : List.of(job.getLog().split("\n", -1));
+  }
+}
@@ -0,0 +1,198 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobTimerStats;
+import edu.ucsb.cs156.example.models.JobTypeStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records how jobs run as Micrometer meters, tagged with the job's type (the simple name of its
+ * JobContextConsumer class, e.g. "TestJob"), so that they show up under /actuator/metrics:
+ *
+ * <ul>
+ *   <li>jobs.queue.wait: timer, from launch until the job starts on a thread
+ *   <li>jobs.execution: timer, from start to end, also tagged with the final status
+ *   <li>jobs.rejected: counter, launches refused because the executor's queue was full
+ *   <li>jobs.log.bytes: counter, bytes of log text written
+ *   <li>jobs.cpu.time: counter, seconds of CPU time used by jobs' threads and their sub-tasks
+ *   <li>jobs.allocated.bytes: counter, bytes allocated on the heap by the same threads
+ * </ul>
+ */
+@Component
+public class JobMetrics {
+  static final String QUEUE_WAIT = "jobs.queue.wait";
+  static final String EXECUTION = "jobs.execution";
+  static final String REJECTED = "jobs.rejected";
+  static final String LOG_BYTES = "jobs.log.bytes";
+  static final String CPU_TIME = "jobs.cpu.time";
+  static final String ALLOCATED_BYTES = "jobs.allocated.bytes";
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  /**
+   * Record that a job has started, and how long it waited to. Only first attempts are recorded; a
+   * job started again after its node died has not been waiting all that time.
+   *
+   * @param job the job
+   */
+  public void jobStarted(Job job) {
+    if (job.getAttempts() > 1 || job.getCreatedAt() == null) return;
+    Duration wait = Duration.between(job.getCreatedAt(), ZonedDateTime.now());
+    timer(QUEUE_WAIT, type(job)).record(wait.isNegative() ? Duration.ZERO : wait);
+  }
+
+  /**
+   * Record that a job has ended.
+   *
+   * @param job the job, with its final status
+   * @param runTime how long it ran
+   */
+  public void jobEnded(Job job, Duration runTime) {
+    Timer.builder(EXECUTION)
+        .tag("type", type(job))
+        .tag("status", String.valueOf(job.getStatus()))
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .register(meterRegistry)
+        .record(runTime);
+  }
+
+  /**
+   * Record that a job was refused because the executor's queue was full.
+   *
+   * @param job the job
+   */
+  public void jobRejected(Job job) {
+    counter(REJECTED, type(job)).increment();
+  }
+
+  /**
+   * Record log text that a job has written.
+   *
+   * @param job the job
+   * @param bytes number of bytes, as UTF-8
+   */
+  public void logWritten(Job job, long bytes) {
+    counter(LOG_BYTES, type(job)).increment(bytes);
+  }
+
+  /**
+   * Record the CPU time and heap allocation of a run of a job. Counts the JVM does not have (-1)
+   * are not recorded.
+   *
+   * @param job the job
+   * @param usage what its thread and sub-tasks used
+   */
+  void resourcesUsed(Job job, ThreadUsage usage) {
+    if (usage.cpuNanos() >= 0) {
+      Counter.builder(CPU_TIME)
+          .tag("type", type(job))
+          .baseUnit("seconds")
+          .register(meterRegistry)
+          .increment(usage.cpuNanos() / 1e9);
+    }
+    if (usage.allocatedBytes() >= 0) {
+      Counter.builder(ALLOCATED_BYTES)
+          .tag("type", type(job))
+          .baseUnit("bytes")
+          .register(meterRegistry)
+          .increment(usage.allocatedBytes());
+    }
+  }
+
+  /**
+   * A summary of the meters, for GET /api/jobs/stats.
+   *
+   * @return the statistics of each job type that has run since startup, by type
+   */
+  public Map<String, JobTypeStats> getStatsByType() {
+    Map<String, JobTypeStats> stats = new TreeMap<>();
+    for (Timer timer : meterRegistry.find(EXECUTION).timers()) {
+      JobTypeStats typeStats = stats.computeIfAbsent(timer.getId().getTag("type"), this::newStats);
+      typeStats.getOutcomes().put(timer.getId().getTag("status"), timer.count());
+      typeStats.setRunTime(merge(typeStats.getRunTime(), timer));
+    }
+    for (Timer timer : meterRegistry.find(QUEUE_WAIT).timers()) {
+      JobTypeStats typeStats = stats.computeIfAbsent(timer.getId().getTag("type"), this::newStats);
+      typeStats.setQueueWait(merge(typeStats.getQueueWait(), timer));
+    }
+    for (Counter counter : meterRegistry.find(REJECTED).counters()) {
+      stats
+          .computeIfAbsent(counter.getId().getTag("type"), this::newStats)
+          .setRejected((long) counter.count());
+    }
+    for (Counter counter : meterRegistry.find(LOG_BYTES).counters()) {
+      stats
+          .computeIfAbsent(counter.getId().getTag("type"), this::newStats)
+          .setLogBytes((long) counter.count());
+    }
+    for (Counter counter : meterRegistry.find(CPU_TIME).counters()) {
+      stats
+          .computeIfAbsent(counter.getId().getTag("type"), this::newStats)
+          .setCpuTimeMs(Math.round(counter.count() * 1000));
+    }
+    for (Counter counter : meterRegistry.find(ALLOCATED_BYTES).counters()) {
+      stats
+          .computeIfAbsent(counter.getId().getTag("type"), this::newStats)
+          .setAllocatedBytes((long) counter.count());
+    }
+    return stats;
+  }
+
+  /**
+   * The type tag of a job: the simple name of its class. All lambdas in one class share a tag, so
+   * that the number of tags stays bounded.
+   *
+   * @param jobType the job's class name
+   * @return the tag
+   */
+  static String type(String jobType) {
+    if (jobType == null) return "unknown";
+    String name = jobType.substring(jobType.lastIndexOf('.') + 1);
+    int lambda = name.indexOf("$$Lambda");
+    return lambda < 0 ? name : name.substring(0, lambda + "$$Lambda".length());
+  }
+
+  private static String type(Job job) {
+    return type(job.getJobType());
+  }
+
+  private Timer timer(String name, String type) {
+    return Timer.builder(name)
+        .tag("type", type)
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .register(meterRegistry);
+  }
+
+  private Counter counter(String name, String type) {
+    return Counter.builder(name).tag("type", type).register(meterRegistry);
+  }
+
+  private JobTypeStats newStats(String type) {
+    return JobTypeStats.builder()
+        .queueWait(timerStats(0, 0, 0))
+        .runTime(timerStats(0, 0, 0))
+        .outcomes(new TreeMap<>())
+        .build();
+  }
+
+  /** Combine timers with different statuses into one summary. */
+  private static JobTimerStats merge(JobTimerStats stats, Timer timer) {
+    long count = stats.getCount() + timer.count();
+    double totalMs = stats.getMeanMs() * stats.getCount() + timer.totalTime(TimeUnit.MILLISECONDS);
+    double maxMs = Math.max(stats.getMaxMs(), timer.max(TimeUnit.MILLISECONDS));
+    return timerStats(count, count == 0 ? 0 : totalMs / count, maxMs);
+  }
+
+  private static JobTimerStats timerStats(long count, double meanMs, double maxMs) {
+    return JobTimerStats.builder().count(count).meanMs(meanMs).maxMs(maxMs).build();
+  }
+}
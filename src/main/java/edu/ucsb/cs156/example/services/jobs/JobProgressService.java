@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This is a service that stores the progress, counters and checkpoints that running jobs report.
+ *
+ * <p>Only the progress columns, the changed counters and the checkpoint are written, so a progress
+ * update never overwrites the job's status, lease or cancel flag, which other nodes may be changing
+ * at the same time. {@link JobContext} calls this at most once every
+ * app.jobs.progress.flushIntervalMs per job.
+ */
+@Service
+public class JobProgressService {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Value("${app.jobs.progress.flushIntervalMs:500}")
+  private long flushIntervalMs;
+
+  /**
+   * Store the progress of a job. The checkpoint is written in the same transaction as the counters,
+   * so that a re-run job resumes from a checkpoint that matches the counts it starts from.
+   *
+   * @param jobId the job
+   * @param done units of work done, or null if the job has not reported any
+   * @param total units of work in all, or null if the job has not reported any
+   * @param counters the counters that have changed since the last call, with their new values
+   * @param checkpoint the job's new checkpoint, or null if it has not changed
+   */
+  @Transactional
+  public void save(
+      long jobId, Long done, Long total, Map<String, Long> counters, String checkpoint) {
+    jobsRepository.updateProgress(jobId, done, total);
+    if (checkpoint != null) jobsRepository.updateCheckpoint(jobId, checkpoint);
+    counters.forEach(
+        (name, value) -> {
+          // only the node running the job writes its counters, so this cannot race
+          if (jobsRepository.updateCounter(jobId, name, value) == 0) {
+            jobsRepository.insertCounter(jobId, name, value);
+          }
+        });
+  }
+
+  /**
+   * @return the shortest time between two writes of a job's progress
+   */
+  public long getFlushIntervalMs() {
+    return flushIntervalMs;
+  }
+}
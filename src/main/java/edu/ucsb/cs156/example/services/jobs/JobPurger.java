@@ -0,0 +1,145 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.JobPurgeResult;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Deletes finished jobs, and their logs and artifacts, according to the retention policy.
+ *
+ * <p>A job is deleted once it is older than app.jobs.retention.maxAgeDays, or once there are more
+ * than app.jobs.retention.maxJobsPerStatus newer jobs with the same status. Either limit is off
+ * when it is 0. Queued, waiting and running jobs are never deleted. A job with no creation time is
+ * older than any age limit.
+ *
+ * <p>Jobs are deleted in batches of app.jobs.retention.batchSize, each in its own short
+ * transaction, so that a large purge never holds locks for long or writes one huge transaction. A
+ * run deletes at most app.jobs.retention.maxBatchesPerRun batches and leaves the rest for the next
+ * one, so that a large backlog does not keep a scheduler thread busy for long.
+ */
+@Component
+@Slf4j
+public class JobPurger {
+  private static final List<String> ACTIVE = List.of("queued", "waiting", "running");
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogChunksRepository jobLogChunksRepository;
+
+  @Autowired private JobArtifactStore jobArtifactStore;
+
+  @Lazy @Autowired private JobPurger self;
+
+  @Value("${app.jobs.retention.maxAgeDays:0}")
+  private int maxAgeDays;
+
+  @Value("${app.jobs.retention.maxJobsPerStatus:0}")
+  private int maxJobsPerStatus;
+
+  @Value("${app.jobs.retention.batchSize:500}")
+  private int batchSize;
+
+  @Value("${app.jobs.retention.maxBatchesPerRun:100}")
+  private int maxBatchesPerRun;
+
+  private final AtomicReference<JobPurgeResult> totals =
+      new AtomicReference<>(JobPurgeResult.builder().build());
+
+  /**
+   * Delete the jobs that the retention policy no longer keeps, up to
+   * app.jobs.retention.maxBatchesPerRun batches of them.
+   *
+   * @return what was deleted
+   */
+  @Scheduled(
+      initialDelayString = "${app.jobs.retention.intervalMs:3600000}",
+      fixedDelayString = "${app.jobs.retention.intervalMs:3600000}")
+  public JobPurgeResult purge() {
+    JobPurgeResult result = JobPurgeResult.builder().build();
+    int batches = 0;
+
+    if (maxAgeDays > 0) {
+      ZonedDateTime cutoff = ZonedDateTime.now().minusDays(maxAgeDays);
+      List<Long> ids;
+      while (batches < maxBatchesPerRun
+          && !(ids = jobsRepository.findIdsCreatedBefore(cutoff, ACTIVE, Limit.of(batchSize)))
+              .isEmpty()) {
+        result = result.plus(purge(ids));
+        batches++;
+      }
+    }
+
+    if (maxJobsPerStatus > 0) {
+      for (String status : jobsRepository.findStatusesExcept(ACTIVE)) {
+        if (batches >= maxBatchesPerRun) break;
+        // the newest job past the ones kept; it and everything older goes
+        List<Long> newestPurged =
+            jobsRepository.findIdsByStatusNewestFirst(status, PageRequest.of(maxJobsPerStatus, 1));
+        if (newestPurged.isEmpty()) continue;
+        List<Long> ids;
+        while (batches < maxBatchesPerRun
+            && !(ids =
+                    jobsRepository.findIdsByStatusUpTo(
+                        status, newestPurged.get(0), Limit.of(batchSize)))
+                .isEmpty()) {
+          result = result.plus(purge(ids));
+          batches++;
+        }
+      }
+    }
+
+    if (result.getJobs() > 0) {
+      log.info(
+          "Purged {} jobs, {} log chunks, {} bytes",
+          result.getJobs(),
+          result.getLogChunks(),
+          result.getBytes());
+    }
+    if (batches >= maxBatchesPerRun) {
+      log.info("Purge stopped after {} batches; the next run carries on", batches);
+    }
+    JobPurgeResult purged = result;
+    totals.accumulateAndGet(purged, JobPurgeResult::plus);
+    return result;
+  }
+
+  /** Delete a batch of jobs, then, once that has committed, their artifacts' files. */
+  private JobPurgeResult purge(List<Long> ids) {
+    JobPurgeResult result = self.purgeBatch(ids);
+    jobArtifactStore.deleteFiles(ids);
+    return result;
+  }
+
+  /**
+   * Delete one batch of jobs and their log chunks in one transaction.
+   *
+   * @param ids ids of the jobs
+   * @return what was deleted
+   */
+  @Transactional
+  public JobPurgeResult purgeBatch(List<Long> ids) {
+    long bytes = jobsRepository.sumTextBytes(ids) + jobLogChunksRepository.sumStoredSize(ids);
+    int chunks = jobLogChunksRepository.deleteByJobIdIn(ids);
+    int jobs = jobsRepository.deleteByIdIn(ids);
+    return JobPurgeResult.builder().jobs(jobs).logChunks(chunks).bytes(bytes).build();
+  }
+
+  /**
+   * @return everything purged since startup
+   */
+  public JobPurgeResult getTotals() {
+    return totals.get();
+  }
+}
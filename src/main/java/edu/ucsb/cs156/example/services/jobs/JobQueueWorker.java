@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Claims jobs from the durable queue and runs them on this node's job executor.
+ *
+ * <p>Every node polls the jobs table for rows with status "queued". Rows are locked with SELECT ...
+ * FOR UPDATE SKIP LOCKED and marked "running" in the same transaction, so each queued job is
+ * claimed by exactly one node. A node only claims the jobs that its executor would start at once,
+ * given its free threads, the threads reserved for the fast lane and the per-user limit (see {@link
+ * FairJobQueue}), so adding nodes adds throughput and a claimed job does not sit waiting on one
+ * node while another is idle. Only active when app.jobs.queue.durable is true.
+ */
+@Component
+@Slf4j
+public class JobQueueWorker {
+  // how many queued jobs claim() looks at for each one it may claim, so that jobs of users at their
+  // limit, or that need a thread reserved for the fast lane, do not hold up the ones behind them
+  static final int CLAIM_LOOKAHEAD = 10;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobService jobService;
+
+  @Lazy @Autowired private JobQueueWorker self;
+
+  @Autowired private FairJobQueue jobQueue;
+
+  @Value("${app.jobs.queue.durable:false}")
+  private boolean durableQueue;
+
+  @Value("${app.jobs.nodeId:#{null}}")
+  private String nodeId;
+
+  /** Claim the queued jobs that the executor would start at once, and start them. */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.pollIntervalMs:1000}")
+  public void poll() {
+    if (!durableQueue) return;
+
+    int free = jobQueue.freeThreads();
+    if (free <= 0) return;
+
+    for (Job job : self.claim(free)) {
+      if (!jobService.startQueuedJob(job)) {
+        log.info("Job {}: executor is full; returning job to the queue", job.getId());
+        job.setStatus("queued");
+        job.setClaimedBy(null);
+        job.setAttempts(job.getAttempts() - 1);
+        job.setLeaseExpiresAt(null);
+        jobsRepository.save(job);
+      }
+    }
+  }
+
+  /**
+   * Lock the oldest queued jobs and mark up to max of them, those that the executor would start at
+   * once, as running on this node. The others stay queued.
+   *
+   * @param max maximum number of jobs to claim
+   * @return the claimed jobs
+   */
+  @Transactional
+  public List<Job> claim(int max) {
+    List<Job> queued =
+        jobsRepository.findByStatusOrderByIdAsc("queued", Limit.of(max * CLAIM_LOOKAHEAD));
+    List<Job> jobs = jobQueue.startable(queued);
+    jobs = jobs.subList(0, Math.min(jobs.size(), max));
+    for (Job job : jobs) {
+      job.setStatus("running");
+      job.setClaimedBy(getNodeId());
+      job.setAttempts(job.getAttempts() + 1);
+      job.setLeaseExpiresAt(jobService.newLeaseExpiry());
+    }
+    jobsRepository.saveAll(jobs);
+    return jobs;
+  }
+
+  /**
+   * Name of this node, used to record which node claimed a job.
+   *
+   * @return app.jobs.nodeId if set, otherwise the JVM name (pid@hostname)
+   */
+  public String getNodeId() {
+    return nodeId != null ? nodeId : ManagementFactory.getRuntimeMXBean().getName();
+  }
+}
@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cleans up jobs whose node died while running them.
+ *
+ * <p>A running job's lease is renewed by {@link JobService#renewLeases()} for as long as its thread
+ * is alive, or it is waiting for a thread of the node it was submitted to. Once the lease has
+ * expired, the job is put back in the durable queue if it can be run again (it has a spec and has
+ * attempts left), and is otherwise marked "abandoned". A workflow is abandoned the same way, and
+ * the steps of it that were waiting to start with it. These are all set-based updates, so it is
+ * safe for every node to run the reaper.
+ */
+@Component
+@Slf4j
+public class JobReaper {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Value("${app.jobs.queue.durable:false}")
+  private boolean durableQueue;
+
+  @Value("${app.jobs.lease.maxAttempts:3}")
+  private int maxAttempts;
+
+  /** Re-queue or abandon running jobs whose lease has expired, and orphaned workflow steps. */
+  @Scheduled(
+      initialDelayString = "${app.jobs.reaper.intervalMs:30000}",
+      fixedDelayString = "${app.jobs.reaper.intervalMs:30000}")
+  public void reap() {
+    ZonedDateTime now = ZonedDateTime.now();
+    int requeued = durableQueue ? jobsRepository.requeueExpired(now, maxAttempts) : 0;
+    int abandoned = jobsRepository.abandonExpired(now) + jobsRepository.abandonOrphanedSteps();
+    if (requeued > 0 || abandoned > 0) {
+      log.warn("Reaped orphaned jobs: {} re-queued, {} abandoned", requeued, abandoned);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Launches the recurring jobs in the job_schedules table through {@link JobService}.
+ *
+ * <p>Every app.jobs.schedules.pollIntervalMs, each node claims the schedules whose next run is due
+ * with SELECT ... FOR UPDATE SKIP LOCKED and moves their next run on, in one transaction, so that
+ * each firing is claimed by exactly one node however many are running. It then launches a job for
+ * each schedule it claimed.
+ *
+ * <p>A run is skipped, and counted as missed, when the schedule's previous run is still queued or
+ * running (the jobs of a schedule share a dedupe key), when its job cannot be started, and for
+ * every fire time that passed while no node was polling; a schedule that falls behind runs once,
+ * not once per fire time.
+ */
+@Component
+@Slf4j
+public class JobScheduler {
+  static final int MAX_COUNTED_MISSES = 1000;
+
+  private static final int MAX_REASON_LENGTH = 255;
+
+  @Autowired private JobSchedulesRepository jobSchedulesRepository;
+
+  @Autowired private JobService jobService;
+
+  @Lazy @Autowired private JobScheduler self;
+
+  @Value("${app.jobs.schedules.batchSize:100}")
+  private int batchSize;
+
+  /**
+   * Launch the schedules that are due.
+   *
+   * @return number of schedules claimed
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.schedules.pollIntervalMs:10000}")
+  public int fireDue() {
+    ZonedDateTime now = ZonedDateTime.now();
+    List<JobSchedule> due = self.claimDue(now);
+    due.forEach(schedule -> launch(schedule, now));
+    return due.size();
+  }
+
+  /**
+   * Lock the schedules that are due and move their next run past now, recording any fire times that
+   * were passed over.
+   *
+   * @param now the current time
+   * @return the schedules claimed
+   */
+  @Transactional
+  public List<JobSchedule> claimDue(ZonedDateTime now) {
+    List<JobSchedule> due = jobSchedulesRepository.findDue(now, Limit.of(batchSize));
+    for (JobSchedule schedule : due) {
+      CronExpression cron;
+      try {
+        cron = CronExpression.parse(schedule.getCron());
+      } catch (IllegalArgumentException e) {
+        log.warn("Schedule {} has an invalid cron expression; disabling it", schedule.getId(), e);
+        schedule.setEnabled(false);
+        schedule.setNextRunAt(null);
+        continue;
+      }
+
+      long missed = countFireTimes(cron, schedule.getNextRunAt(), now);
+      if (missed > 0) {
+        schedule.setMissedRuns(schedule.getMissedRuns() + missed);
+        schedule.setLastMissedAt(now);
+        schedule.setLastMissReason("no instance was running at the scheduled time");
+      }
+      schedule.setNextRunAt(cron.next(now));
+      if (schedule.getNextRunAt() == null) schedule.setEnabled(false); // never fires again
+    }
+    jobSchedulesRepository.saveAll(due);
+    return due.stream().filter(JobSchedule::getEnabled).toList();
+  }
+
+  /**
+   * Start a job for a schedule that has been claimed.
+   *
+   * @param schedule the schedule
+   * @param now when it was claimed
+   */
+  void launch(JobSchedule schedule, ZonedDateTime now) {
+    Job job;
+    try {
+      JobContextConsumer jobFunction =
+          jobService.fromSpec(schedule.getJobType(), schedule.getSpec());
+      job = jobService.runAsJob(jobFunction, null, jobService.scheduleKey(schedule.getId()));
+    } catch (Exception e) {
+      log.warn("Schedule {}: could not start job", schedule.getId(), e);
+      recordMiss(schedule, now, "could not start job: " + e.getMessage());
+      return;
+    }
+
+    if (schedule.getLastJobId() != null && job.getId() == schedule.getLastJobId()) {
+      log.info(
+          "Schedule {}: job {} is still active; skipping this run", schedule.getId(), job.getId());
+      recordMiss(schedule, now, "previous run (job %d) was still active".formatted(job.getId()));
+      return;
+    }
+    jobSchedulesRepository.recordRun(schedule.getId(), job.getId(), now);
+  }
+
+  /**
+   * Check a schedule before it is saved, and compute its next run.
+   *
+   * @param schedule the schedule
+   * @throws IllegalArgumentException if its cron expression or job cannot be read
+   */
+  public void prepare(JobSchedule schedule) {
+    CronExpression cron = CronExpression.parse(schedule.getCron());
+    try {
+      jobService.fromSpec(schedule.getJobType(), schedule.getSpec());
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Invalid job type or spec: " + e.getMessage(), e);
+    }
+    schedule.setNextRunAt(schedule.getEnabled() ? cron.next(ZonedDateTime.now()) : null);
+  }
+
+  /** Fire times after the one being run, up to now; the runs that will not happen. */
+  private static long countFireTimes(CronExpression cron, ZonedDateTime after, ZonedDateTime now) {
+    long count = 0;
+    ZonedDateTime next = cron.next(after);
+    while (next != null && !next.isAfter(now) && count < MAX_COUNTED_MISSES) {
+      count++;
+      next = cron.next(next);
+    }
+    return count;
+  }
+
+  private void recordMiss(JobSchedule schedule, ZonedDateTime now, String reason) {
+    if (reason.length() > MAX_REASON_LENGTH) reason = reason.substring(0, MAX_REASON_LENGTH);
+    jobSchedulesRepository.recordMisses(schedule.getId(), 1, now, reason);
+  }
+}
@@ -1,53 +1,873 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobPriority;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.models.JobLogSize;
+import edu.ucsb.cs156.example.models.JobLogSlice;
+import edu.ucsb.cs156.example.models.JobWorkflowSpec;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 @Service
+@Slf4j
 public class JobService {
+  private static final int MAX_INSERT_ATTEMPTS = 3;
+
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogService jobLogService;
+
+  @Autowired private JobLogBroadcaster jobLogBroadcaster;
+
+  @Autowired private JobProgressService jobProgressService;
+
+  @Autowired private JobPurger jobPurger;
+
+  @Autowired private JobArtifactStore jobArtifactStore;
+
+  @Autowired private JobMetrics jobMetrics;
+
   @Autowired private CurrentUserService currentUserService;
 
   @Lazy @Autowired private JobService self;
 
+  @Autowired
+  @Qualifier("jobExecutor")
+  private ThreadPoolTaskExecutor jobExecutor;
+
+  @Autowired private FairJobQueue jobQueue;
+
+  @Autowired
+  @Qualifier("jobSubtaskExecutor")
+  private ThreadPoolTaskExecutor jobSubtaskExecutor;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Value("${app.jobs.queue.durable:false}")
+  private boolean durableQueue;
+
+  @Value("${app.jobs.lease.durationMs:60000}")
+  private long leaseDurationMs;
+
+  @Value("${app.jobs.timeout.defaultMs:0}")
+  private long defaultTimeoutMs;
+
+  @Value("${app.jobs.log.buffer.maxLines:100}")
+  private int logBufferMaxLines;
+
+  @Value("${app.jobs.log.buffer.maxBytes:65536}")
+  private int logBufferMaxBytes;
+
+  @Value("${app.jobs.log.buffer.maxDelayMs:500}")
+  private long logBufferMaxDelayMs;
+
+  // how often drain() does the scheduler's work while it waits, and how long it waits for jobs to
+  // stop once interrupted
+  private static final Duration DRAIN_TICK = Duration.ofSeconds(1);
+  private static final Duration INTERRUPT_WAIT = Duration.ofSeconds(10);
+
+  private final Map<Long, JobContext> activeContexts = new ConcurrentHashMap<>();
+
+  private final Map<Long, JobWorkflowRun> activeWorkflows = new ConcurrentHashMap<>();
+
+  // jobs submitted to the job executor that have not started yet; their leases are renewed too, so
+  // that a job waiting for a thread is not taken for one whose node has died
+  private final Set<Long> submittedJobs = ConcurrentHashMap.newKeySet();
+
+  private final AtomicLong rejectedJobs = new AtomicLong();
+
+  // set by drain(): once draining, the job executor takes no new jobs; once interrupting, jobs
+  // still running or waiting in the executor's queue end with status "interrupted"
+  private volatile boolean draining = false;
+  private volatile boolean interrupting = false;
+
+  /**
+   * Save a new job and start it.
+   *
+   * <p>With the durable queue enabled (app.jobs.queue.durable), a job whose JobContextConsumer can
+   * be serialized to JSON is only saved with status "queued"; a {@link JobQueueWorker} on some node
+   * claims and runs it later. Otherwise (and always for lambdas) the job is submitted directly to
+   * this node's job executor.
+   *
+   * @param jobFunction the work the job does
+   * @return the saved job, with status "queued" or "running"
+   * @throws JobQueueFullException if the job executor's queue is full; the job is then saved with
+   *     status "rejected"
+   */
   public Job runAsJob(JobContextConsumer jobFunction) {
-    Job job = Job.builder().createdBy(currentUserService.getUser()).status("running").build();
+    return runAsJob(jobFunction, null);
+  }
 
-    jobsRepository.save(job);
-    self.runJobAsync(job, jobFunction);
+  /**
+   * Save a new job and start it, as {@link #runAsJob(JobContextConsumer)}, stopping it with status
+   * "timeout" if it runs for longer than the given time. The time spent waiting in a queue does not
+   * count.
+   *
+   * @param jobFunction the work the job does
+   * @param timeout how long the job may run; if null, app.jobs.timeout.defaultMs applies
+   * @return the saved job, with status "queued" or "running"
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, Duration timeout) {
+    return runAsJob(jobFunction, timeout, null);
+  }
+
+  /**
+   * Save a new job and start it, as {@link #runAsJob(JobContextConsumer, Duration)}, unless a job
+   * with the same dedupe key is already queued or running; that job is then returned instead, and
+   * nothing is started. Use {@link #idempotencyKey(String)} or {@link #fingerprint} to get a key.
+   *
+   * <p>Keys are held in a column with a unique index while a job is queued or running, and released
+   * when it ends. Of several launches with the same key, on any number of threads or nodes, exactly
+   * one inserts its job; the others find that job and return it.
+   *
+   * @param jobFunction the work the job does
+   * @param timeout how long the job may run; if null, app.jobs.timeout.defaultMs applies
+   * @param dedupeKey the job's dedupe key; if null, a new job is always started
+   * @return the saved job, with status "queued" or "running", or the job that holds the key
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, Duration timeout, String dedupeKey) {
+    return runAsJob(jobFunction, timeout, dedupeKey, JobPriority.NORMAL);
+  }
+
+  /**
+   * Save a new job and start it, as {@link #runAsJob(JobContextConsumer, Duration, String)}, with
+   * the given priority. A {@link JobPriority#HIGH} job starts before the jobs waiting for the job
+   * executor, and may use its reserved threads; a {@link JobPriority#LOW} one gets half the share
+   * of the executor that a normal job of another user gets (see {@link FairJobQueue}).
+   *
+   * @param jobFunction the work the job does
+   * @param timeout how long the job may run; if null, app.jobs.timeout.defaultMs applies
+   * @param dedupeKey the job's dedupe key; if null, a new job is always started
+   * @param priority the job's priority
+   * @return the saved job, with status "queued" or "running", or the job that holds the key
+   */
+  public Job runAsJob(
+      JobContextConsumer jobFunction, Duration timeout, String dedupeKey, JobPriority priority) {
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .jobType(jobFunction.getClass().getName())
+            .timeoutMs(timeoutMs(timeout))
+            .dedupeKey(dedupeKey)
+            .priority(priority)
+            .build();
+
+    String spec = durableQueue ? toSpec(jobFunction) : null;
+    if (spec != null) {
+      job.setStatus("queued");
+      job.setSpec(spec);
+      return insert(job).orElse(job);
+    }
+
+    job.setStatus("running");
+    job.setAttempts(1);
+    job.setLeaseExpiresAt(newLeaseExpiry());
+    Optional<Job> existing = insert(job);
+    if (existing.isPresent()) return existing.get();
+    try {
+      submit(job, jobFunction);
+    } catch (TaskRejectedException e) {
+      rejectedJobs.incrementAndGet();
+      jobMetrics.jobRejected(job);
+      job.setStatus("rejected");
+      job.setDedupeKey(null);
+      jobsRepository.save(job);
+      throw new JobQueueFullException(
+          draining
+              ? "This node is shutting down; try again later"
+              : "Job queue is full; try again later");
+    }
 
     return job;
   }
 
-  @Async
+  /**
+   * Submit a job that a {@link JobQueueWorker} has claimed from the durable queue to the job
+   * executor. A job whose spec cannot be read is marked "error".
+   *
+   * @param job the claimed job, with status "running"
+   * @return false if the executor rejected the job, so that it can be put back in the queue
+   */
+  public boolean startQueuedJob(Job job) {
+    JobContextConsumer jobFunction;
+    try {
+      jobFunction = fromSpec(job);
+    } catch (Exception e) {
+      job.setStatus("error");
+      JobContext context = newContext(job, JobLogBufferLimits.UNBUFFERED);
+      context.log("Could not read job spec: " + e.getMessage());
+      job.setLeaseExpiresAt(null);
+      job.setDedupeKey(null);
+      jobsRepository.save(job);
+      jobMetrics.jobEnded(job, Duration.ZERO);
+      jobLogBroadcaster.finish(job.getId(), job.getStatus());
+      return true;
+    }
+
+    try {
+      submit(job, jobFunction);
+      return true;
+    } catch (TaskRejectedException e) {
+      return false;
+    }
+  }
+
+  /** Submit a saved job to the job executor, renewing its lease until it starts. */
+  private void submit(Job job, JobContextConsumer jobFunction) {
+    submittedJobs.add(job.getId());
+    try {
+      jobQueue.submit(job, () -> self.runJobAsync(job, jobFunction));
+    } catch (TaskRejectedException e) {
+      submittedJobs.remove(job.getId());
+      throw e;
+    }
+  }
+
+  @Async("jobExecutor")
   public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+    JobContext context = newContext(job, logBufferLimits());
+    context.start(job.getTimeoutMs());
+    activeContexts.put(job.getId(), context);
+    submittedJobs.remove(job.getId());
+    // a job that only leaves the executor's queue once the node is shutting down never starts
+    if (interrupting) context.cancel("interrupted");
+    jobMetrics.jobStarted(job);
+    long startNanos = System.nanoTime();
+    ThreadUsage startUsage = ThreadUsage.current();
 
     try {
+      context.throwIfCancelled();
       jobFunction.accept(context);
+      job.setStatus("complete");
     } catch (Exception e) {
       job.setStatus("error");
-      context.log(e.getMessage());
-      return;
+      if (!context.isCancelled()) context.log(e.getMessage());
+    } finally {
+      activeContexts.remove(job.getId());
+      context.finish();
+    }
+    Duration runTime = Duration.ofNanos(System.nanoTime() - startNanos);
+    addUsage(job, ThreadUsage.current().since(startUsage).plus(context.getSubtaskUsage()));
+
+    // a job that was asked to stop ends as cancelled even if it returned normally
+    boolean requeue = false;
+    if (context.isCancelled()) {
+      job.setStatus(context.getCancelStatus());
+      requeue = job.getStatus().equals("interrupted") && canRequeue(job);
+      context.log(
+          switch (job.getStatus()) {
+            case "timeout" -> "Job timed out after %d ms".formatted(job.getTimeoutMs());
+            case "interrupted" ->
+                requeue
+                    ? "Job interrupted by shutdown; returned to the queue"
+                    : "Job interrupted by shutdown";
+            default -> "Job cancelled";
+          });
+    }
+    try {
+      context.flush();
+    } catch (RuntimeException e) {
+      log.error("Job {}: could not flush log", job.getId(), e);
     }
 
-    job.setStatus("complete");
+    job.setLeaseExpiresAt(null);
+    if (requeue) {
+      // another node claims it and resumes from its checkpoint, if it saved one
+      jobMetrics.jobEnded(job, runTime);
+      job.setStatus("queued");
+      job.setClaimedBy(null);
+      jobsRepository.save(job);
+      return;
+    }
+    job.setDedupeKey(null);
     jobsRepository.save(job);
+    jobMetrics.jobEnded(job, runTime);
+    jobLogBroadcaster.finish(job.getId(), job.getStatus());
+    if (job.getWorkflowId() != null) stepEnded(job);
+  }
+
+  /**
+   * Add what a run of a job cost to the job's totals and to the statistics of its type. A count the
+   * JVM does not have for the job's thread, or for one of its sub-tasks, is left as it was.
+   */
+  private void addUsage(Job job, ThreadUsage usage) {
+    if (usage.cpuNanos() >= 0) {
+      long cpuTimeMs = TimeUnit.NANOSECONDS.toMillis(usage.cpuNanos());
+      job.setCpuTimeMs(job.getCpuTimeMs() == null ? cpuTimeMs : job.getCpuTimeMs() + cpuTimeMs);
+    }
+    if (usage.allocatedBytes() >= 0) {
+      long bytes = usage.allocatedBytes();
+      job.setAllocatedBytes(
+          job.getAllocatedBytes() == null ? bytes : job.getAllocatedBytes() + bytes);
+    }
+    jobMetrics.resourcesUsed(job, usage);
+  }
+
+  /** Whether a job can be put back in the durable queue for another node to run. */
+  private boolean canRequeue(Job job) {
+    return durableQueue && job.getSpec() != null && job.getWorkflowId() == null;
+  }
+
+  /**
+   * Stop taking jobs and let the ones on this node finish; called when the application shuts down
+   * (see {@link JobDrainer}).
+   *
+   * <p>The job executor rejects new jobs at once, but runs the jobs it has already accepted. If
+   * they have not all finished within the grace period, the ones still running are interrupted as
+   * if cancelled, and the ones still in the executor's queue end without starting. Jobs that can be
+   * run from the durable queue are put back in it, keeping their checkpoint; the others end with
+   * status "interrupted". Either way their final log lines and progress are written.
+   *
+   * <p>The scheduler has already stopped by the time this is called, so while it waits it renews
+   * the running jobs' leases, flushes their logs and progress and enforces their timeouts itself.
+   * Jobs that ignore the interrupt are left running; once their lease expires the reaper on another
+   * node re-queues or abandons them.
+   *
+   * @param gracePeriod how long to wait for jobs before interrupting them
+   */
+  public void drain(Duration gracePeriod) {
+    draining = true;
+    ThreadPoolExecutor pool = jobExecutor.getThreadPoolExecutor();
+    pool.shutdown();
+    log.info(
+        "Shutting down: waiting up to {} ms for {} running and {} queued jobs",
+        gracePeriod.toMillis(),
+        pool.getActiveCount(),
+        pool.getQueue().size());
+    if (awaitJobs(pool, gracePeriod)) return;
+
+    interrupting = true;
+    log.warn("Shutting down: interrupting {} jobs", activeContexts.size());
+    activeContexts.forEach((jobId, context) -> cancelLocal(jobId, "interrupted"));
+    if (!awaitJobs(pool, INTERRUPT_WAIT)) {
+      log.warn(
+          "Shutting down: jobs {} did not stop; their leases will expire", activeContexts.keySet());
+    }
+  }
+
+  /**
+   * Wait for the job executor to finish, doing the scheduler's work for the running jobs meanwhile.
+   *
+   * @return true if every job has finished
+   */
+  private boolean awaitJobs(ThreadPoolExecutor pool, Duration wait) {
+    long deadline = System.nanoTime() + wait.toNanos();
+    try {
+      for (long left = wait.toNanos(); left > 0; left = deadline - System.nanoTime()) {
+        if (pool.awaitTermination(Math.min(left, DRAIN_TICK.toNanos()), TimeUnit.NANOSECONDS)) {
+          return true;
+        }
+        enforceTimeouts();
+        flushStaleLogs();
+        flushStaleProgress();
+        renewLeases();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return pool.isTerminated();
+  }
+
+  /**
+   * Save a workflow and start the steps that depend on no other step. Each step is a job of its
+   * own, listed by GET /api/jobs/steps/{id} with its status and progress; the workflow's job
+   * reports how many steps have ended, and its log says when each step starts and ends.
+   *
+   * <p>Each step starts, on this node's job executor, as soon as all the steps it depends on have
+   * completed, so independent steps run at the same time. Steps wait with status "waiting". When a
+   * step does not complete, the steps downstream of it are "skipped", and the workflow ends with
+   * status "error" once the other steps have ended. Cancelling the workflow's job cancels its
+   * running steps and the ones that have not started.
+   *
+   * <p>The workflow runs on the node that started it, like a lambda job, even with the durable
+   * queue.
+   *
+   * @param workflow the steps and their dependencies
+   * @return the workflow's job, with status "running"
+   * @throws IllegalArgumentException if the steps do not form a directed acyclic graph
+   */
+  public Job runWorkflow(JobWorkflow workflow) {
+    List<JobWorkflow.Step> steps = workflow.inOrder();
+    User user = currentUserService.getUser();
+    Job workflowJob =
+        Job.builder()
+            .createdBy(user)
+            .jobType(JobWorkflow.class.getName())
+            .status("running")
+            .attempts(1)
+            .leaseExpiresAt(newLeaseExpiry())
+            .build();
+    jobsRepository.save(workflowJob);
+
+    Map<String, Job> stepJobs = new LinkedHashMap<>();
+    for (JobWorkflow.Step step : steps) {
+      stepJobs.put(
+          step.getName(),
+          Job.builder()
+              .createdBy(user)
+              .jobType(step.getJob().getClass().getName())
+              .status("waiting")
+              .timeoutMs(timeoutMs(step.getTimeout()))
+              .workflowId(workflowJob.getId())
+              .stepName(step.getName())
+              .dependsOn(
+                  step.getDependencies().isEmpty()
+                      ? null
+                      : String.join(",", step.getDependencies()))
+              .build());
+    }
+    jobsRepository.saveAll(stepJobs.values());
+
+    JobWorkflowRun run =
+        new JobWorkflowRun(
+            workflowJob, newContext(workflowJob, JobLogBufferLimits.UNBUFFERED), steps, stepJobs);
+    activeWorkflows.put(workflowJob.getId(), run);
+    jobMetrics.jobStarted(workflowJob);
+    run.getContext()
+        .log("Starting workflow %s with %d steps".formatted(workflow.getName(), steps.size()));
+    run.getContext().progress(0, steps.size());
+    advance(run);
+    return workflowJob;
+  }
+
+  /**
+   * Build a workflow from its JSON description, reading each step's job as a queued job's is read.
+   *
+   * @param spec the workflow
+   * @return the workflow, ready for {@link #runWorkflow(JobWorkflow)}
+   * @throws IllegalArgumentException if a step's job type or spec cannot be read
+   */
+  public JobWorkflow readWorkflow(JobWorkflowSpec spec) {
+    JobWorkflow.JobWorkflowBuilder workflow = JobWorkflow.builder().name(spec.getName());
+    for (JobWorkflowSpec.Step step :
+        spec.getSteps() == null ? List.<JobWorkflowSpec.Step>of() : spec.getSteps()) {
+      JobContextConsumer job;
+      try {
+        job =
+            fromSpec(step.getJobType(), step.getSpec() == null ? "{}" : step.getSpec().toString());
+      } catch (Exception e) {
+        throw new IllegalArgumentException(
+            "Invalid job type or spec for step %s: %s".formatted(step.getName(), e.getMessage()),
+            e);
+      }
+      workflow.step(
+          JobWorkflow.Step.builder()
+              .name(step.getName())
+              .job(job)
+              .dependencies(step.getDependsOn() == null ? List.of() : step.getDependsOn())
+              .timeout(step.getTimeoutMs() == null ? null : Duration.ofMillis(step.getTimeoutMs()))
+              .build());
+    }
+    return workflow.build();
+  }
+
+  /** Start the steps of a workflow that are ready, and finish the workflow once all have ended. */
+  private void advance(JobWorkflowRun run) {
+    for (JobWorkflow.Step step : run.takeReady()) {
+      Job job = run.getJob(step.getName());
+      job.setAttempts(1);
+      job.setLeaseExpiresAt(newLeaseExpiry());
+      jobsRepository.save(job);
+      run.getContext().log("Step %s: started as job %d".formatted(step.getName(), job.getId()));
+      try {
+        submit(job, step.getJob());
+      } catch (TaskRejectedException e) {
+        rejectedJobs.incrementAndGet();
+        jobMetrics.jobRejected(job);
+        job.setStatus("rejected");
+        job.setLeaseExpiresAt(null);
+        jobsRepository.save(job);
+        stepEnded(job);
+      }
+    }
+
+    String status = run.finish();
+    if (status == null) return;
+    Job workflowJob = run.getWorkflow();
+    activeWorkflows.remove(workflowJob.getId());
+    workflowJob.setStatus(status);
+    workflowJob.setLeaseExpiresAt(null);
+    run.getContext().log("Workflow " + status);
+    // the thread that finishes the workflow may have counted the ended steps before the last one
+    // ended, and the thread that saw it end finds the workflow already finished
+    run.reportProgress();
+    run.getContext().flushProgress();
+    jobsRepository.save(workflowJob);
+    jobMetrics.jobEnded(workflowJob, Duration.ofNanos(System.nanoTime() - run.getStartNanos()));
+    jobLogBroadcaster.finish(workflowJob.getId(), status);
+  }
+
+  /** A step of a workflow has ended: skip what can no longer run, and start what now can. */
+  private void stepEnded(Job job) {
+    JobWorkflowRun run = activeWorkflows.get(job.getWorkflowId());
+    if (run == null) return;
+    List<Job> skipped = run.stepEnded(job);
+    run.getContext().log("Step %s: %s".formatted(job.getStepName(), job.getStatus()));
+    for (Job step : skipped) {
+      jobsRepository.save(step);
+      jobLogBroadcaster.finish(step.getId(), step.getStatus());
+      run.getContext().log("Step %s: skipped".formatted(step.getStepName()));
+    }
+    run.reportProgress();
+    advance(run);
+  }
+
+  /** Cancel a workflow running on this node: its steps that have not started, then the others. */
+  private void cancelWorkflow(JobWorkflowRun run) {
+    for (Job step : run.cancel()) {
+      jobsRepository.save(step);
+      jobLogBroadcaster.finish(step.getId(), step.getStatus());
+    }
+    for (long stepId : run.runningStepIds()) {
+      if (jobsRepository.requestCancel(stepId) > 0) cancelLocal(stepId, "cancelled");
+    }
+    run.reportProgress();
+    advance(run);
+  }
+
+  /**
+   * Save a new job. If it has a dedupe key that a queued or running job already holds, the unique
+   * index makes the insert fail, and that job is returned instead.
+   *
+   * @param job the new job
+   * @return the job that already holds the key, or empty if the new job was saved
+   */
+  private Optional<Job> insert(Job job) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        jobsRepository.save(job);
+        return Optional.empty();
+      } catch (DataIntegrityViolationException e) {
+        if (job.getDedupeKey() == null) throw e;
+        Optional<Job> existing = jobsRepository.findByDedupeKey(job.getDedupeKey());
+        if (existing.isPresent()) {
+          log.info(
+              "Job {} is already queued or running; not starting another", existing.get().getId());
+          return existing;
+        }
+        // the job holding the key ended between the insert and the lookup; try again
+        if (attempt == MAX_INSERT_ATTEMPTS) throw e;
+      }
+    }
+  }
+
+  /**
+   * The dedupe key for a key that a client sent with a request, e.g. in an Idempotency-Key header.
+   * Keys are scoped to the current user, so that two users cannot collide by choosing the same one.
+   *
+   * @param idempotencyKey the client's key
+   * @return the dedupe key to pass to {@link #runAsJob(JobContextConsumer, Duration, String)}
+   */
+  public String idempotencyKey(String idempotencyKey) {
+    User user = currentUserService.getUser();
+    return sha256(
+        "idempotency-key", user == null ? "" : Long.toString(user.getId()), idempotencyKey);
+  }
+
+  /**
+   * The dedupe key of a job computed from what it does: its type and parameters, i.e. the JSON form
+   * of the JobContextConsumer. Two jobs with the same fingerprint do the same work for the same
+   * user; like idempotency keys, fingerprints are scoped to the current user, so that one user's
+   * launch never returns another's job.
+   *
+   * @param jobFunction the work the job does
+   * @return the dedupe key, or null if the job cannot be serialized and so has no fingerprint
+   */
+  public String fingerprint(JobContextConsumer jobFunction) {
+    String spec = toSpec(jobFunction);
+    if (spec == null) return null;
+    User user = currentUserService.getUser();
+    return sha256(
+        "fingerprint",
+        user == null ? "" : Long.toString(user.getId()),
+        jobFunction.getClass().getName(),
+        spec);
+  }
+
+  /**
+   * The dedupe key of the jobs a {@link JobScheduler} schedule launches, so that a schedule never
+   * has two runs queued or running at once.
+   *
+   * @param scheduleId id of the schedule
+   * @return the dedupe key
+   */
+  String scheduleKey(long scheduleId) {
+    return sha256("schedule", Long.toString(scheduleId));
+  }
+
+  private static String sha256(String... parts) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(String.join("\n", parts).getBytes(UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every JVM has SHA-256
+    }
+  }
+
+  /**
+   * Periodically flush log buffers of running jobs whose oldest line has waited longer than the
+   * configured delay, so that a job that logs and then goes quiet is not left with unwritten lines.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.log.buffer.maxDelayMs:500}")
+  public void flushStaleLogs() {
+    activeContexts.forEach(
+        (jobId, context) -> {
+          try {
+            context.flushIfStale();
+          } catch (RuntimeException e) {
+            log.error("Job {}: could not flush log", jobId, e);
+          }
+        });
+  }
+
+  /**
+   * Periodically write progress that running jobs reported since their last write, so that the last
+   * update before a job goes quiet is not held back until it finishes.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.progress.flushIntervalMs:500}")
+  public void flushStaleProgress() {
+    activeContexts.forEach(
+        (jobId, context) -> {
+          try {
+            context.flushProgressIfStale();
+          } catch (RuntimeException e) {
+            log.error("Job {}: could not write progress", jobId, e);
+          }
+        });
+  }
+
+  /**
+   * Periodically extend the leases of the jobs running on this node, and of those waiting for one
+   * of its threads, in one batched update, so that {@link JobReaper} can tell them apart from jobs
+   * whose node has died.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.lease.renewIntervalMs:15000}")
+  public void renewLeases() {
+    Set<Long> ids = new HashSet<>(activeContexts.keySet());
+    ids.addAll(activeWorkflows.keySet());
+    ids.addAll(submittedJobs);
+    if (ids.isEmpty()) return;
+    jobsRepository.renewLeases(ids, newLeaseExpiry());
+
+    // a cancel request for a job running on this node may have been made on another node
+    for (Long id : jobsRepository.findCancelRequested(ids)) {
+      cancelLocal(id, "cancelled");
+    }
+  }
+
+  /** Periodically stop jobs on this node that have run past their timeout. */
+  @Scheduled(fixedDelayString = "${app.jobs.timeout.checkIntervalMs:1000}")
+  public void enforceTimeouts() {
+    activeContexts.forEach(
+        (jobId, context) -> {
+          if (context.isOverdue()) cancelLocal(jobId, "timeout");
+        });
+  }
+
+  /**
+   * Ask a job to stop. A queued job is marked "cancelled" straight away. A running job is flagged
+   * and, if it is running on this node, interrupted; a job running on another node is interrupted
+   * when that node next renews its lease. The job ends with status "cancelled" once its thread
+   * returns.
+   *
+   * @param jobId the job
+   * @return false if the job was neither queued nor running
+   */
+  public boolean cancelJob(long jobId) {
+    if (jobsRepository.cancelQueued(jobId) > 0) {
+      jobLogBroadcaster.finish(jobId, "cancelled");
+      return true;
+    }
+    if (jobsRepository.requestCancel(jobId) == 0) return false;
+    cancelLocal(jobId, "cancelled");
+    return true;
+  }
+
+  /**
+   * Put a job that ended with status "error", "timeout", "cancelled", "abandoned" or "interrupted"
+   * back in the durable queue. It keeps its checkpoint, progress and counters, so a job that saves
+   * checkpoints (see {@link JobContext#saveCheckpoint}) carries on from where it got to.
+   *
+   * @param jobId the job
+   * @return false if the job has not ended that way, has no spec to run from (lambda jobs, and jobs
+   *     started without the durable queue), or the durable queue is disabled
+   */
+  public boolean retryJob(long jobId) {
+    if (!durableQueue) return false;
+    return jobsRepository.requeueEnded(jobId) > 0;
+  }
+
+  private void cancelLocal(long jobId, String status) {
+    JobWorkflowRun workflow = activeWorkflows.get(jobId);
+    if (workflow != null) {
+      log.warn("Workflow {}: cancelling", jobId);
+      cancelWorkflow(workflow);
+      return;
+    }
+    JobContext context = activeContexts.get(jobId);
+    if (context != null && context.cancel(status)) {
+      log.warn("Job {}: stopping, status {}", jobId, status);
+    }
+  }
+
+  /**
+   * The lease expiry time for a job that starts (or renews its lease) now.
+   *
+   * @return now plus the lease duration
+   */
+  public ZonedDateTime newLeaseExpiry() {
+    return ZonedDateTime.now().plus(Duration.ofMillis(leaseDurationMs));
   }
 
   public String getJobLogs(Long jobId) {
-    Job job =
-        jobsRepository
-            .findById(jobId)
-            .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+    Job job = requireJob(jobId);
+    return jobLogService.getLog(job);
+  }
+
+  public void writeJobLogs(Long jobId, Writer writer) {
+    Job job = requireJob(jobId);
+    jobLogService.writeLog(job, writer);
+  }
+
+  public JobLogSize getJobLogSize(Long jobId) {
+    Job job = requireJob(jobId);
+    return jobLogService.getLogSize(job);
+  }
+
+  public JobLogSlice getJobLogSlice(Long jobId, int offset, int limit) {
+    Job job = requireJob(jobId);
+    return jobLogService.getLogSlice(job, offset, limit);
+  }
+
+  public JobLogSlice getJobLogTail(Long jobId, int lines) {
+    Job job = requireJob(jobId);
+    return jobLogService.getLogTail(job, lines);
+  }
+
+  private Job requireJob(long jobId) {
+    return jobsRepository
+        .findById(jobId)
+        .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+  }
+
+  /**
+   * Summary statistics about job processing, grouped by area.
+   *
+   * @return a map from area (e.g. "logFlush", "executor") to the statistics for that area
+   */
+  public Map<String, Object> getStats() {
+    return Map.of(
+        "logFlush",
+        jobLogService.getFlushStats(),
+        "executor",
+        getExecutorStats(),
+        "retention",
+        jobPurger.getTotals(),
+        "byType",
+        jobMetrics.getStatsByType());
+  }
+
+  JobExecutorStats getExecutorStats() {
+    ThreadPoolExecutor pool = jobExecutor.getThreadPoolExecutor();
+    return JobExecutorStats.builder()
+        .poolSize(pool.getPoolSize())
+        .activeCount(pool.getActiveCount())
+        .queueDepth(pool.getQueue().size())
+        .queueRemainingCapacity(pool.getQueue().remainingCapacity())
+        .completedJobs(pool.getCompletedTaskCount())
+        .rejectedJobs(rejectedJobs.get())
+        .build();
+  }
+
+  String toSpec(JobContextConsumer jobFunction) {
+    Class<?> type = jobFunction.getClass();
+    if (type.isHidden() || type.isAnonymousClass() || type.isSynthetic()) {
+      return null; // lambdas and anonymous classes can only run on the node that created them
+    }
+    try {
+      String spec = mapper.writeValueAsString(jobFunction);
+      mapper.readValue(spec, type); // make sure a worker will be able to read it back
+      return spec;
+    } catch (JsonProcessingException e) {
+      log.warn("{} cannot be serialized; running it in memory", type.getName(), e);
+      return null;
+    }
+  }
+
+  JobContextConsumer fromSpec(Job job) throws ClassNotFoundException, JsonProcessingException {
+    return fromSpec(job.getJobType(), job.getSpec());
+  }
+
+  JobContextConsumer fromSpec(String jobType, String spec)
+      throws ClassNotFoundException, JsonProcessingException {
+    Class<?> type = Class.forName(jobType);
+    if (!JobContextConsumer.class.isAssignableFrom(type)) {
+      throw new IllegalArgumentException(type.getName() + " is not a JobContextConsumer");
+    }
+    return (JobContextConsumer) mapper.readValue(spec, type);
+  }
+
+  private Long timeoutMs(Duration timeout) {
+    if (timeout != null) return timeout.toMillis();
+    return defaultTimeoutMs > 0 ? defaultTimeoutMs : null;
+  }
+
+  /** A job that has run before may already have log chunks; continue after them. */
+  private JobContext newContext(Job job, JobLogBufferLimits limits) {
+    JobContext context =
+        job.getAttempts() > 1
+            ? new JobContext(
+                jobLogService,
+                job,
+                limits,
+                jobLogService.nextSeq(job),
+                jobLogService.countLines(job))
+            : new JobContext(jobLogService, job, limits);
+    context.setJobProgressService(jobProgressService);
+    context.setJobArtifactStore(jobArtifactStore);
+    context.setSubtaskExecutor(jobSubtaskExecutor);
+    return context;
+  }
 
-    String log = job.getLog();
-    return log != null ? log : "";
+  JobLogBufferLimits logBufferLimits() {
+    return JobLogBufferLimits.builder()
+        .maxLines(logBufferMaxLines)
+        .maxBytes(logBufferMaxBytes)
+        .maxDelayMs(logBufferMaxDelayMs)
+        .build();
   }
 }
@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/**
+ * One unit of work that a job hands to {@link JobContext#invokeAll}, applied to each item in
+ * parallel.
+ *
+ * @param <T> type of the items
+ * @param <R> type of the results
+ */
+@FunctionalInterface
+public interface JobSubtask<T, R> {
+  R apply(T item, JobSubtaskContext ctx) throws Exception;
+}
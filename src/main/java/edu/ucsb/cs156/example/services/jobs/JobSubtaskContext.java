@@ -0,0 +1,64 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * What a {@link JobSubtask} sees of the job that runs it. Log lines go to the job's log, tagged
+ * with the index of the sub-task, and cancelling the job cancels its sub-tasks too.
+ */
+public class JobSubtaskContext {
+  private final JobContext parent;
+  private final int index;
+
+  JobSubtaskContext(JobContext parent, int index) {
+    this.parent = parent;
+    this.index = index;
+  }
+
+  /**
+   * @return the position of this sub-task's item in the list passed to {@link JobContext#invokeAll}
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  public void log(String message) {
+    parent.log("[subtask %d] %s".formatted(index, message));
+  }
+
+  /**
+   * @see JobContext#increment(String, long)
+   */
+  public void increment(String counter, long delta) {
+    parent.increment(counter, delta);
+  }
+
+  /**
+   * @see JobContext#increment(String)
+   */
+  public void increment(String counter) {
+    parent.increment(counter);
+  }
+
+  /**
+   * @see JobContext#openArtifact(String, String)
+   */
+  public OutputStream openArtifact(String name, String contentType) throws IOException {
+    return parent.openArtifact(name, contentType);
+  }
+
+  /**
+   * @see JobContext#isCancelled()
+   */
+  public boolean isCancelled() {
+    return parent.isCancelled();
+  }
+
+  /**
+   * @see JobContext#throwIfCancelled()
+   */
+  public void throwIfCancelled() {
+    parent.throwIfCancelled();
+  }
+}
@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Thrown by {@link JobContext#invokeAll} when one or more sub-tasks failed, after all of them have
+ * finished. It holds the results of the sub-tasks that succeeded and the exception of each one that
+ * failed; the latter are also attached as suppressed exceptions.
+ */
+public class JobSubtaskException extends RuntimeException {
+  private final List<?> results;
+  private final SortedMap<Integer, Throwable> failures;
+
+  /**
+   * @param results result of each sub-task, in order; null where the sub-task failed
+   * @param failures exception of each failed sub-task, by index; must not be empty
+   */
+  public JobSubtaskException(List<?> results, SortedMap<Integer, Throwable> failures) {
+    super(
+        "%d of %d sub-tasks failed; first failure (subtask %d): %s"
+            .formatted(
+                failures.size(),
+                results.size(),
+                failures.firstKey(),
+                failures.get(failures.firstKey()).getMessage()));
+    this.results = Collections.unmodifiableList(results);
+    this.failures = Collections.unmodifiableSortedMap(failures);
+    failures.values().forEach(this::addSuppressed);
+  }
+
+  /**
+   * @return result of each sub-task, in order; null where the sub-task failed
+   */
+  public List<?> getResults() {
+    return results;
+  }
+
+  /**
+   * @return exception of each failed sub-task, by index
+   */
+  public Map<Integer, Throwable> getFailures() {
+    return failures;
+  }
+}
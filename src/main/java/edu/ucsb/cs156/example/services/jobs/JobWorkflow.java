@@ -0,0 +1,105 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+
+/**
+ * A set of jobs, called steps, that are started together by {@link JobService#runWorkflow} and run
+ * in the order their dependencies allow: a step starts as soon as every step it depends on has
+ * completed, so steps that do not depend on each other run at the same time.
+ *
+ * <pre>
+ * JobWorkflow.builder()
+ *     .name("nightly")
+ *     .step(Step.builder().name("import").job(importJob).build())
+ *     .step(Step.builder().name("aggregates").job(aggregatesJob).dependency("import").build())
+ *     .step(Step.builder().name("purge").job(purgeJob).dependency("aggregates").build())
+ *     .build();
+ * </pre>
+ */
+@Builder
+@Getter
+public class JobWorkflow {
+  private final String name;
+
+  @Singular private final List<Step> steps;
+
+  /** One job of a workflow. */
+  @Builder
+  @Getter
+  public static class Step {
+    private final String name; // unique within the workflow
+
+    private final JobContextConsumer job;
+
+    @Singular private final List<String> dependencies; // names of steps that must complete first
+
+    private final Duration timeout; // if null, app.jobs.timeout.defaultMs applies
+  }
+
+  /**
+   * Check that the steps form a directed acyclic graph.
+   *
+   * @return the steps, each after the steps it depends on
+   * @throws IllegalArgumentException if there are no steps, two steps have the same name, a step
+   *     depends on a step that does not exist, or the dependencies form a cycle
+   */
+  public List<Step> inOrder() {
+    if (steps.isEmpty()) {
+      throw new IllegalArgumentException("Workflow %s has no steps".formatted(name));
+    }
+    Map<String, Step> byName = new LinkedHashMap<>();
+    for (Step step : steps) {
+      if (step.getName() == null || step.getName().isBlank() || step.getName().contains(",")) {
+        throw new IllegalArgumentException(
+            "Invalid step name in workflow %s: %s".formatted(name, step.getName()));
+      }
+      if (byName.put(step.getName(), step) != null) {
+        throw new IllegalArgumentException(
+            "Workflow %s has two steps named %s".formatted(name, step.getName()));
+      }
+      if (step.getJob() == null) {
+        throw new IllegalArgumentException(
+            "Step %s of workflow %s has no job".formatted(step.getName(), name));
+      }
+    }
+    for (Step step : steps) {
+      for (String dependency : step.getDependencies()) {
+        if (!byName.containsKey(dependency)) {
+          throw new IllegalArgumentException(
+              "Step %s of workflow %s depends on unknown step %s"
+                  .formatted(step.getName(), name, dependency));
+        }
+      }
+    }
+
+    List<Step> ordered = new ArrayList<>(steps.size());
+    Set<String> done = new HashSet<>();
+    Set<String> visiting = new HashSet<>();
+    for (Step step : steps) visit(step, byName, done, visiting, ordered);
+    return ordered;
+  }
+
+  private void visit(
+      Step step, Map<String, Step> byName, Set<String> done, Set<String> visiting, List<Step> out) {
+    if (done.contains(step.getName())) return;
+    if (!visiting.add(step.getName())) {
+      throw new IllegalArgumentException(
+          "Workflow %s has a dependency cycle through step %s".formatted(name, step.getName()));
+    }
+    for (String dependency : step.getDependencies()) {
+      visit(byName.get(dependency), byName, done, visiting, out);
+    }
+    visiting.remove(step.getName());
+    done.add(step.getName());
+    out.add(step);
+  }
+}
@@ -0,0 +1,165 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of a workflow running on this node: which steps are waiting, running and finished. It
+ * only decides what happens next; {@link JobService} saves and starts the jobs.
+ */
+class JobWorkflowRun {
+  private final Job workflow;
+  private final JobContext context;
+  private final long startNanos = System.nanoTime();
+  private final Map<String, JobWorkflow.Step> steps = new LinkedHashMap<>();
+  private final Map<String, Job> jobs = new LinkedHashMap<>();
+  private boolean cancelled = false;
+  private boolean finished = false;
+
+  /**
+   * @param workflow the workflow's own job
+   * @param context where the workflow's log lines and progress go
+   * @param steps the steps, each after the steps it depends on
+   * @param jobs the saved job of each step, by step name, with status "waiting"
+   */
+  JobWorkflowRun(
+      Job workflow, JobContext context, List<JobWorkflow.Step> steps, Map<String, Job> jobs) {
+    this.workflow = workflow;
+    this.context = context;
+    steps.forEach(step -> this.steps.put(step.getName(), step));
+    this.jobs.putAll(jobs);
+  }
+
+  Job getWorkflow() {
+    return workflow;
+  }
+
+  JobContext getContext() {
+    return context;
+  }
+
+  long getStartNanos() {
+    return startNanos;
+  }
+
+  synchronized Job getJob(String stepName) {
+    return jobs.get(stepName);
+  }
+
+  /**
+   * Mark the waiting steps whose dependencies have all completed as running.
+   *
+   * @return the steps to start now
+   */
+  synchronized List<JobWorkflow.Step> takeReady() {
+    List<JobWorkflow.Step> ready = new ArrayList<>();
+    if (cancelled) return ready;
+    for (JobWorkflow.Step step : steps.values()) {
+      Job job = jobs.get(step.getName());
+      if (!"waiting".equals(job.getStatus())) continue;
+      if (step.getDependencies().stream().allMatch(d -> isComplete(jobs.get(d)))) {
+        job.setStatus("running");
+        ready.add(step);
+      }
+    }
+    return ready;
+  }
+
+  /**
+   * Record that a step has ended. If it did not complete, the steps that depend on it, directly or
+   * not, can never start, and are marked "skipped".
+   *
+   * @param job the step's job, with its final status
+   * @return the steps that have been skipped
+   */
+  synchronized List<Job> stepEnded(Job job) {
+    jobs.put(job.getStepName(), job);
+    List<Job> skipped = new ArrayList<>();
+    if (isComplete(job)) return skipped;
+    // steps are in dependency order, so one pass reaches every step downstream
+    for (JobWorkflow.Step step : steps.values()) {
+      Job waiting = jobs.get(step.getName());
+      if (!"waiting".equals(waiting.getStatus())) continue;
+      if (step.getDependencies().stream().anyMatch(d -> isFailed(jobs.get(d)))) {
+        waiting.setStatus("skipped");
+        skipped.add(waiting);
+      }
+    }
+    return skipped;
+  }
+
+  /**
+   * Stop starting steps. Steps that are already running are left to be cancelled by the caller.
+   *
+   * @return the steps that had not started, now marked "cancelled"
+   */
+  synchronized List<Job> cancel() {
+    cancelled = true;
+    List<Job> notStarted = new ArrayList<>();
+    for (Job job : jobs.values()) {
+      if ("waiting".equals(job.getStatus())) {
+        job.setStatus("cancelled");
+        notStarted.add(job);
+      }
+    }
+    return notStarted;
+  }
+
+  /**
+   * @return ids of the steps that are running
+   */
+  synchronized List<Long> runningStepIds() {
+    return jobs.values().stream()
+        .filter(job -> "running".equals(job.getStatus()))
+        .map(Job::getId)
+        .toList();
+  }
+
+  /**
+   * @return how many steps have ended, whether or not they completed
+   */
+  synchronized long endedSteps() {
+    return jobs.values().stream()
+        .filter(job -> !"waiting".equals(job.getStatus()) && !"running".equals(job.getStatus()))
+        .count();
+  }
+
+  /**
+   * Report the number of steps that have ended as the workflow's progress. Steps end on different
+   * threads; reporting under the run's lock keeps a thread that counted earlier from reporting
+   * after one that counted later.
+   */
+  synchronized void reportProgress() {
+    context.progress(endedSteps(), steps.size());
+  }
+
+  /**
+   * Once every step has ended, decide the workflow's status. Only the first call after that returns
+   * it, so that the workflow is finished exactly once however many threads see its last step end.
+   *
+   * @return "complete" if every step completed, "cancelled" if the workflow was cancelled,
+   *     "interrupted" if a step was interrupted by the node shutting down, "error" otherwise; or
+   *     null if a step is still waiting or running, or the status has been returned before
+   */
+  synchronized String finish() {
+    if (finished || endedSteps() < steps.size()) return null;
+    finished = true;
+    if (jobs.values().stream().allMatch(JobWorkflowRun::isComplete)) return "complete";
+    if (cancelled) return "cancelled";
+    boolean interrupted =
+        jobs.values().stream().anyMatch(job -> "interrupted".equals(job.getStatus()));
+    return interrupted ? "interrupted" : "error";
+  }
+
+  private static boolean isComplete(Job job) {
+    return "complete".equals(job.getStatus());
+  }
+
+  private static boolean isFailed(Job job) {
+    String status = job.getStatus();
+    return !"waiting".equals(status) && !"running".equals(status) && !"complete".equals(status);
+  }
+}
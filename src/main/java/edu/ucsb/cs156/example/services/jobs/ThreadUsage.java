@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * CPU time and heap allocation of a thread, as counted by the JVM, in nanoseconds and bytes. A
+ * value of -1 means the JVM does not count it for the thread: virtual threads have no CPU time of
+ * their own, and a JVM may not support either count or may have it switched off.
+ *
+ * @param cpuNanos CPU time, user and system
+ * @param allocatedBytes bytes allocated on the heap
+ */
+record ThreadUsage(long cpuNanos, long allocatedBytes) {
+  static final ThreadUsage NONE = new ThreadUsage(0, 0);
+
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+      ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+          ? bean
+          : null;
+
+  /**
+   * @return the CPU time and allocation of the calling thread so far
+   */
+  static ThreadUsage current() {
+    com.sun.management.ThreadMXBean bean = THREAD_MX_BEAN;
+    if (bean == null) return new ThreadUsage(-1, -1);
+    long cpuNanos =
+        bean.isCurrentThreadCpuTimeSupported() && bean.isThreadCpuTimeEnabled()
+            ? bean.getCurrentThreadCpuTime()
+            : -1;
+    long allocatedBytes =
+        bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()
+            ? bean.getCurrentThreadAllocatedBytes()
+            : -1;
+    return new ThreadUsage(cpuNanos, allocatedBytes);
+  }
+
+  /**
+   * @param start the usage of the same thread earlier
+   * @return the usage between then and this; a count that either does not have is -1
+   */
+  ThreadUsage since(ThreadUsage start) {
+    return new ThreadUsage(
+        difference(cpuNanos, start.cpuNanos), difference(allocatedBytes, start.allocatedBytes));
+  }
+
+  /**
+   * @param other usage of another thread
+   * @return the usage of both; a count that either does not have is -1
+   */
+  ThreadUsage plus(ThreadUsage other) {
+    return new ThreadUsage(
+        sum(cpuNanos, other.cpuNanos), sum(allocatedBytes, other.allocatedBytes));
+  }
+
+  private static long difference(long end, long start) {
+    return end < 0 || start < 0 ? -1 : Math.max(0, end - start);
+  }
+
+  private static long sum(long a, long b) {
+    return a < 0 || b < 0 ? -1 : a + b;
+  }
+}
@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.SystemInfoController;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SystemInfoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+@WebMvcTest(controllers = SystemInfoController.class)
+public class SecurityConfigTests extends ControllerTestCase {
+
+  @MockitoBean UserRepository userRepository;
+
+  @MockitoBean SystemInfoService systemInfoService;
+
+  @Test
+  public void logged_out_users_cannot_read_actuator_metrics() throws Exception {
+    mockMvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_read_actuator_mappings() throws Exception {
+    mockMvc.perform(get("/actuator/mappings")).andExpect(status().isForbidden());
+  }
+
+  @Test
+  public void logged_out_users_can_still_reach_other_routes() throws Exception {
+    mockMvc.perform(get("/api/systemInfo")).andExpect(status().isOk());
+  }
+}
@@ -0,0 +1,254 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.bulk.BulkExportService;
+import edu.ucsb.cs156.example.services.bulk.BulkFormat;
+import edu.ucsb.cs156.example.services.bulk.BulkImportService;
+import edu.ucsb.cs156.example.services.bulk.EntityTable;
+import edu.ucsb.cs156.example.services.bulk.EntityTables;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MvcResult;
+
+@WebMvcTest(controllers = BulkDataController.class)
+@Import(TestConfig.class)
+public class BulkDataControllerTests extends ControllerTestCase {
+
+  @MockitoBean EntityTables entityTables;
+
+  @MockitoBean BulkImportService bulkImportService;
+
+  @MockitoBean BulkExportService bulkExportService;
+
+  @MockitoBean UserRepository userRepository;
+
+  private final EntityTable restaurants =
+      EntityTable.builder().name("restaurants").type(Restaurant.class).build();
+
+  private final MockMultipartFile file =
+      new MockMultipartFile(
+          "file",
+          "restaurants.csv",
+          "text/csv",
+          "name,description\nFreebirds,burritos\n".getBytes(StandardCharsets.UTF_8));
+
+  // Authorization tests for /api/{entity}/import
+
+  @Test
+  public void logged_out_users_cannot_import() throws Exception {
+    mockMvc
+        .perform(multipart("/api/restaurants/import").file(file).with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_import() throws Exception {
+    mockMvc
+        .perform(multipart("/api/restaurants/import").file(file).with(csrf()))
+        .andExpect(status().is(403));
+    verify(bulkImportService, never()).startImport(any(), any(), any());
+  }
+
+  // Tests with mocks for the import service
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_start_an_import() throws Exception {
+    // arrange
+    Job job = Job.builder().id(7L).status("running").build();
+    when(entityTables.get("restaurants")).thenReturn(Optional.of(restaurants));
+    when(bulkImportService.startImport(eq(restaurants), eq(BulkFormat.CSV), any())).thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(multipart("/api/restaurants/import").file(file).with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_import_ndjson() throws Exception {
+    // arrange
+    Job job = Job.builder().id(7L).status("running").build();
+    when(entityTables.get("restaurants")).thenReturn(Optional.of(restaurants));
+    when(bulkImportService.startImport(eq(restaurants), eq(BulkFormat.NDJSON), any()))
+        .thenReturn(job);
+
+    // act & assert
+    mockMvc
+        .perform(
+            multipart("/api/restaurants/import").file(file).param("format", "NDJSON").with(csrf()))
+        .andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void import_of_an_unknown_entity_returns_404() throws Exception {
+    // arrange
+    when(entityTables.get("users")).thenReturn(Optional.empty());
+    when(entityTables.getNames()).thenReturn(new TreeSet<>(List.of("restaurants", "ucsbdates")));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(multipart("/api/users/import").file(file).with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        "Cannot import users; use one of [restaurants, ucsbdates]",
+        response.getResponse().getErrorMessage());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void import_in_an_unknown_format_returns_400() throws Exception {
+    // arrange
+    when(entityTables.get("restaurants")).thenReturn(Optional.of(restaurants));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/restaurants/import")
+                    .file(file)
+                    .param("format", "xlsx")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        "Unknown format xlsx; use csv or ndjson", response.getResponse().getErrorMessage());
+    verify(bulkImportService, never()).startImport(any(), any(), any());
+  }
+
+  // Authorization tests for /api/{entity}/export
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/restaurants/export")).andExpect(status().is(403));
+  }
+
+  // Tests with mocks for the export service
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_users_can_export() throws Exception {
+    // arrange
+    when(entityTables.get("restaurants")).thenReturn(Optional.of(restaurants));
+    when(bulkExportService.export(eq(restaurants), eq(BulkFormat.CSV), any(OutputStream.class)))
+        .thenAnswer(
+            invocation -> {
+              invocation
+                  .getArgument(2, OutputStream.class)
+                  .write("id,name\n1,Freebirds\n".getBytes(StandardCharsets.UTF_8));
+              return 1L;
+            });
+
+    // act
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/restaurants/export"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals("text/csv", response.getResponse().getContentType());
+    assertEquals(
+        "attachment; filename=\"restaurants.csv\"",
+        response.getResponse().getHeader("Content-Disposition"));
+    assertEquals("id,name\n1,Freebirds\n", response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void export_as_ndjson_is_named_after_the_format() throws Exception {
+    // arrange
+    when(entityTables.get("restaurants")).thenReturn(Optional.of(restaurants));
+
+    // act
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/restaurants/export?format=ndjson"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals("application/x-ndjson", response.getResponse().getContentType());
+    assertEquals(
+        "attachment; filename=\"restaurants.ndjson\"",
+        response.getResponse().getHeader("Content-Disposition"));
+    verify(bulkExportService).export(eq(restaurants), eq(BulkFormat.NDJSON), any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void export_of_an_unknown_entity_returns_404() throws Exception {
+    // arrange
+    when(entityTables.get("users")).thenReturn(Optional.empty());
+    when(entityTables.getNames()).thenReturn(new TreeSet<>(List.of("restaurants", "ucsbdates")));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/users/export")).andExpect(status().isNotFound()).andReturn();
+
+    // assert
+    assertEquals(
+        "Cannot export users; use one of [restaurants, ucsbdates]",
+        response.getResponse().getErrorMessage());
+    verify(bulkExportService, never()).export(any(), any(), any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void export_in_an_unknown_format_returns_400() throws Exception {
+    // arrange
+    when(entityTables.get("restaurants")).thenReturn(Optional.of(restaurants));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants/export?format=json"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        "Unknown format json; use csv or ndjson", response.getResponse().getErrorMessage());
+  }
+}
@@ -0,0 +1,291 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobScheduler;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MvcResult;
+
+@WebMvcTest(controllers = JobSchedulesController.class)
+@Import(TestConfig.class)
+public class JobSchedulesControllerTests extends ControllerTestCase {
+
+  @MockitoBean JobSchedulesRepository jobSchedulesRepository;
+
+  @MockitoBean JobScheduler jobScheduler;
+
+  @MockitoBean UserRepository userRepository;
+
+  private static final ZonedDateTime NEXT_RUN = ZonedDateTime.parse("2024-05-02T03:00:00Z");
+
+  private JobSchedule nightly() {
+    return JobSchedule.builder()
+        .id(7L)
+        .name("nightly")
+        .cron("0 0 3 * * *")
+        .jobType(TestJob.class.getName())
+        .spec("{\"fail\":false,\"sleepMs\":0}")
+        .enabled(true)
+        .nextRunAt(NEXT_RUN)
+        .build();
+  }
+
+  // Authorization tests for /api/jobschedules
+
+  @Test
+  public void logged_out_users_cannot_get_all() throws Exception {
+    mockMvc.perform(get("/api/jobschedules/all")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_get_all() throws Exception {
+    mockMvc.perform(get("/api/jobschedules/all")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_post() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/jobschedules/post")
+                .param("name", "nightly")
+                .param("cron", "0 0 3 * * *")
+                .param("jobType", TestJob.class.getName())
+                .with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  // Tests with mocks for database actions
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_get_all_schedules() throws Exception {
+    // arrange
+    List<JobSchedule> schedules = List.of(nightly());
+    when(jobSchedulesRepository.findAll()).thenReturn(schedules);
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobschedules/all")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(schedules), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_get_a_schedule_by_id() throws Exception {
+    // arrange
+    when(jobSchedulesRepository.findById(eq(7L))).thenReturn(Optional.of(nightly()));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobschedules?id=7")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(nightly()), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void get_by_id_returns_404_when_the_schedule_does_not_exist() throws Exception {
+    // arrange
+    when(jobSchedulesRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobschedules?id=7")).andExpect(status().isNotFound()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("EntityNotFoundException", json.get("type"));
+    assertEquals("JobSchedule with id 7 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_post_a_schedule() throws Exception {
+    // arrange
+    doAnswer(
+            invocation -> {
+              invocation.getArgument(0, JobSchedule.class).setNextRunAt(NEXT_RUN);
+              return null;
+            })
+        .when(jobScheduler)
+        .prepare(any(JobSchedule.class));
+    when(jobSchedulesRepository.save(any(JobSchedule.class)))
+        .thenAnswer(
+            invocation -> {
+              JobSchedule saved = invocation.getArgument(0);
+              saved.setId(7L);
+              return saved;
+            });
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobschedules/post")
+                    .param("name", "nightly")
+                    .param("cron", "0 0 3 * * *")
+                    .param("jobType", TestJob.class.getName())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"fail\":false,\"sleepMs\":0}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(jobSchedulesRepository, times(1)).save(nightly());
+    assertEquals(mapper.writeValueAsString(nightly()), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void post_rejects_an_invalid_schedule() throws Exception {
+    // arrange
+    doThrow(new IllegalArgumentException("Invalid job type or spec: no.such.Job"))
+        .when(jobScheduler)
+        .prepare(any(JobSchedule.class));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobschedules/post")
+                    .param("name", "nightly")
+                    .param("cron", "0 0 3 * * *")
+                    .param("jobType", "no.such.Job")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    assertEquals("Invalid job type or spec: no.such.Job", response.getResponse().getErrorMessage());
+    verify(jobSchedulesRepository, never()).save(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void post_rejects_a_duplicate_name() throws Exception {
+    // arrange
+    when(jobSchedulesRepository.save(any(JobSchedule.class)))
+        .thenThrow(new DataIntegrityViolationException("JOB_SCHEDULE_NAME_UK"));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobschedules/post")
+                    .param("name", "nightly")
+                    .param("cron", "0 0 3 * * *")
+                    .param("jobType", TestJob.class.getName())
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        "A job schedule named nightly already exists", response.getResponse().getErrorMessage());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_update_a_schedule() throws Exception {
+    // arrange
+    JobSchedule existing = nightly();
+    existing.setLastJobId(42L);
+    existing.setMissedRuns(2);
+    when(jobSchedulesRepository.findById(eq(7L))).thenReturn(Optional.of(existing));
+    when(jobSchedulesRepository.save(existing)).thenReturn(existing);
+    JobSchedule incoming =
+        JobSchedule.builder()
+            .name("hourly")
+            .cron("0 0 * * * *")
+            .jobType(TestJob.class.getName())
+            .spec("{}")
+            .enabled(false)
+            .build();
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/jobschedules?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(jobScheduler).prepare(existing);
+    verify(jobSchedulesRepository).save(existing);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("hourly", json.get("name"));
+    assertEquals("0 0 * * * *", json.get("cron"));
+    assertEquals(false, json.get("enabled"));
+    assertEquals(42, json.get("lastJobId"));
+    assertEquals(2, json.get("missedRuns"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_delete_a_schedule() throws Exception {
+    // arrange
+    JobSchedule existing = nightly();
+    when(jobSchedulesRepository.findById(eq(7L))).thenReturn(Optional.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/jobschedules?id=7").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(jobSchedulesRepository).delete(existing);
+    assertEquals("JobSchedule with id 7 deleted", responseToJson(response).get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void delete_returns_404_when_the_schedule_does_not_exist() throws Exception {
+    // arrange
+    when(jobSchedulesRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+    // act
+    mockMvc.perform(delete("/api/jobschedules?id=7").with(csrf())).andExpect(status().isNotFound());
+
+    // assert
+    verify(jobSchedulesRepository, never()).delete(any());
+  }
+}
@@ -1,9 +1,12 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.joining;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -11,39 +14,89 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobArtifact;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.entities.JobPriority;
 import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobLogSize;
+import edu.ucsb.cs156.example.models.JobLogSlice;
+import edu.ucsb.cs156.example.models.JobPurgeResult;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobArtifactStore;
+import edu.ucsb.cs156.example.services.jobs.JobLogBroadcaster;
+import edu.ucsb.cs156.example.services.jobs.JobLogIndex;
+import edu.ucsb.cs156.example.services.jobs.JobLogService;
+import edu.ucsb.cs156.example.services.jobs.JobMetrics;
+import edu.ucsb.cs156.example.services.jobs.JobProgressService;
+import edu.ucsb.cs156.example.services.jobs.JobPurger;
 import edu.ucsb.cs156.example.services.jobs.JobService;
-import java.util.ArrayList;
-import java.util.Arrays;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MvcResult;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({
+  JobService.class,
+  JobLogService.class,
+  JobLogBroadcaster.class,
+  JobProgressService.class,
+  JobMetrics.class,
+  SimpleMeterRegistry.class,
+  JobExecutorConfig.class
+})
 @AutoConfigureDataJpa
 public class JobsControllerTests extends ControllerTestCase {
 
   @MockitoBean JobsRepository jobsRepository;
 
+  @MockitoBean JobLogChunksRepository jobLogChunksRepository;
+
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean JobPurger jobPurger;
+
+  @MockitoBean JobArtifactStore jobArtifactStore;
+
+  @MockitoBean JobLogIndex jobLogIndex;
+
   @Autowired JobService jobService;
 
   @Autowired ObjectMapper objectMapper;
@@ -54,13 +107,12 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    Job job1 = Job.builder().log("this is job 1").build();
-    Job job2 = Job.builder().log("this is job 2").build();
+    JobSummary job1 = JobSummary.builder().id(2L).status("complete").logLength(13).build();
+    JobSummary job2 = JobSummary.builder().id(1L).status("error").logLength(13).build();
+    PageRequest expectedRequest = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "id"));
 
-    ArrayList<Job> expectedJobs = new ArrayList<>();
-    expectedJobs.addAll(Arrays.asList(job1, job2));
-
-    when(jobsRepository.findAll()).thenReturn(expectedJobs);
+    when(jobsRepository.findSummaries(null, null, expectedRequest))
+        .thenReturn(new PageImpl<>(List.of(job1, job2), expectedRequest, 2));
 
     // act
     MvcResult response =
@@ -68,10 +120,49 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, atLeastOnce()).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedJobs);
-    String responseString = response.getResponse().getContentAsString();
-    assertEquals(expectedJson, responseString);
+    verify(jobsRepository, never()).findAll();
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(
+        mapper.readValue(mapper.writeValueAsString(List.of(job1, job2)), List.class),
+        json.get("content"));
+    assertEquals(
+        Map.of("size", 20, "number", 0, "totalElements", 2, "totalPages", 1), json.get("page"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_filter_and_sort_jobs() throws Exception {
+
+    // arrange
+
+    PageRequest expectedRequest =
+        PageRequest.of(
+            2,
+            100,
+            Sort.by(Sort.Direction.ASC, "createdAt").and(Sort.by(Sort.Direction.ASC, "id")));
+    when(jobsRepository.findSummaries("error", 7L, expectedRequest))
+        .thenReturn(new PageImpl<>(List.of(), expectedRequest, 0));
+
+    // act
+    mockMvc
+        .perform(
+            get(
+                "/api/jobs/all?page=2&size=1000&sort=createdAt&direction=ASC&status=error&createdBy=7"))
+        .andExpect(status().isOk());
+
+    // assert
+    verify(jobsRepository, times(1)).findSummaries("error", 7L, expectedRequest);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_cannot_sort_jobs_by_unknown_property() throws Exception {
+
+    // act
+    mockMvc.perform(get("/api/jobs/all?sort=log")).andExpect(status().isBadRequest());
+
+    // assert
+    verify(jobsRepository, never()).findSummaries(any(), any(), any());
   }
 
   @WithMockUser(roles = {"ADMIN"})
@@ -135,6 +226,7 @@ public class JobsControllerTests extends ControllerTestCase {
     // assert
 
     verify(jobsRepository, times(1)).deleteAll();
+    verify(jobArtifactStore, times(1)).deleteAllFiles();
     String expectedJson = mapper.writeValueAsString(Map.of("message", "All jobs deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -173,6 +265,134 @@ public class JobsControllerTests extends ControllerTestCase {
         .andExpect(content().string(""));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_the_size_of_a_job_log() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(1L).log("légacy").build();
+    when(jobsRepository.findById(1L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.sumSizes(1L))
+        .thenReturn(JobLogSize.builder().chunks(3).rawBytes(5000).storedBytes(400).build());
+
+    // Act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/logs/{id}/size", 1L)).andExpect(status().isOk()).andReturn();
+
+    // Assert
+    JobLogSize expected = JobLogSize.builder().chunks(3).rawBytes(5007).storedBytes(407).build();
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_search_job_logs() throws Exception {
+    // arrange
+    List<JobLogSearchResult> results =
+        List.of(
+            JobLogSearchResult.builder()
+                .jobId(7L)
+                .jobType(TestJob.class.getName())
+                .status("error")
+                .matches(List.of(JobLogMatch.builder().line(3).text("Fail!").build()))
+                .build());
+    when(jobLogIndex.search("fail", 100)).thenReturn(results);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/search").param("q", "fail").param("limit", "500"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(results), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void searching_job_logs_for_nothing_is_a_bad_request() throws Exception {
+    // arrange
+    when(jobLogIndex.search("!", 20))
+        .thenThrow(new IllegalArgumentException("Search for words of 2 to 64 letters or digits"));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/search").param("q", "!"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        "Search for words of 2 to 64 letters or digits", response.getResponse().getErrorMessage());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_search_job_logs() throws Exception {
+    mockMvc.perform(get("/api/jobs/search").param("q", "fail")).andExpect(status().is(403));
+    verifyNoInteractions(jobLogIndex);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_job_stats() throws Exception {
+    // arrange
+    when(jobPurger.getTotals())
+        .thenReturn(JobPurgeResult.builder().jobs(5).logChunks(7).bytes(1000).build());
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/stats")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    Map<String, Object> logFlush = (Map<String, Object>) json.get("logFlush");
+    assertEquals(
+        Set.of(
+            "flushes", "lines", "bytes", "storedBytes", "averageLinesPerFlush", "maxLinesPerFlush"),
+        logFlush.keySet());
+    Map<String, Object> executor = (Map<String, Object>) json.get("executor");
+    assertEquals(
+        Set.of(
+            "poolSize",
+            "activeCount",
+            "queueDepth",
+            "queueRemainingCapacity",
+            "completedJobs",
+            "rejectedJobs"),
+        executor.keySet());
+    assertEquals(Map.of("jobs", 5, "logChunks", 7, "bytes", 1000), json.get("retention"));
+    assertTrue(json.containsKey("byType"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_purge_jobs() throws Exception {
+    // arrange
+    JobPurgeResult purged = JobPurgeResult.builder().jobs(2).logChunks(3).bytes(400).build();
+    when(jobPurger.purge()).thenReturn(purged);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/purge").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(jobPurger).purge();
+    assertEquals(
+        objectMapper.writeValueAsString(purged), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_purge_jobs() throws Exception {
+    mockMvc.perform(post("/api/jobs/purge").with(csrf())).andExpect(status().is(403));
+    verify(jobPurger, never()).purge();
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_delete_specific_job() throws Exception {
@@ -192,6 +412,7 @@ public class JobsControllerTests extends ControllerTestCase {
     // assert
 
     verify(jobsRepository, times(1)).deleteById(eq(1L));
+    verify(jobArtifactStore, times(1)).deleteFiles(List.of(1L));
     String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 1 deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -228,16 +449,6 @@ public class JobsControllerTests extends ControllerTestCase {
 
     User user = currentUserService.getUser();
 
-    Job jobStarted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
-            .build();
-
     Job jobCompleted =
         Job.builder()
             .id(0L)
@@ -245,10 +456,11 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("complete")
-            .log("Hello World! from test job!\nGoodbye from test job!")
+            .jobType(TestJob.class.getName())
+            .attempts(1)
             .build();
 
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
     // act
     MvcResult response =
@@ -264,11 +476,220 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals("running", jobReturned.getStatus());
 
     await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .atMost(2, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobLogChunksRepository, times(1))
+                    .save(eq(chunk(0, "Hello World! from test job!"))));
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(endedAs(jobCompleted)));
+    verify(jobLogChunksRepository, times(1)).save(eq(chunk(1, "Goodbye from test job!")));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_a_high_priority_test_job() throws Exception {
+    // arrange
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=0&priority=HIGH").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(JobPriority.HIGH, jobReturned.getPriority());
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobsRepository, times(2))
+                    .save(argThat(job -> "complete".equals(job.getStatus()))));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_test_job_with_an_unknown_priority_returns_400() throws Exception {
+    mockMvc
+        .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0&priority=URGENT").with(csrf()))
+        .andExpect(status().isBadRequest());
+    verify(jobsRepository, never()).save(any(Job.class));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_duplicate_test_job_returns_the_running_one() throws Exception {
+    // arrange
+    Job running = Job.builder().id(17L).status("running").jobType(TestJob.class.getName()).build();
+    when(jobsRepository.save(any(Job.class)))
+        .thenThrow(new DataIntegrityViolationException("duplicate key"));
+    when(jobsRepository.findByDedupeKey(any())).thenReturn(Optional.of(running));
+    String expectedIdempotencyKey = jobService.idempotencyKey("abc");
+    String expectedFingerprint =
+        jobService.fingerprint(TestJob.builder().fail(false).sleepMs(0).build());
+
+    // act
+    MvcResult withDedupe =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0&dedupe=true").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    MvcResult withKey =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=0")
+                    .header("Idempotency-Key", "abc")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expected = objectMapper.writeValueAsString(running);
+    assertEquals(expected, withDedupe.getResponse().getContentAsString());
+    assertEquals(expected, withKey.getResponse().getContentAsString());
+    ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+    verify(jobsRepository, times(2)).findByDedupeKey(keys.capture());
+    assertEquals(expectedFingerprint, keys.getAllValues().get(0));
+    assertEquals(expectedIdempotencyKey, keys.getAllValues().get(1));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_test_job_twice_starts_two_jobs_by_default() throws Exception {
+    // arrange
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // act
+    for (int i = 0; i < 2; i++) {
+      mockMvc
+          .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0").with(csrf()))
+          .andExpect(status().isOk());
+    }
+
+    // assert
+    verify(jobsRepository, never()).findByDedupeKey(any());
+    verify(jobsRepository, atLeast(2)).save(argThat(job -> job.getDedupeKey() == null));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_a_workflow() throws Exception {
+    // arrange
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    when(jobsRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    String body =
+        """
+        {"name": "nightly", "steps": [
+          {"name": "first", "jobType": "%1$s", "spec": {"fail": false, "sleepMs": 0}},
+          {"name": "second", "jobType": "%1$s", "spec": {"fail": false, "sleepMs": 0},
+           "dependsOn": ["first"]}
+        ]}
+        """
+            .formatted(TestJob.class.getName());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/workflow")
+                    .contentType("application/json")
+                    .content(body)
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job workflow = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals("edu.ucsb.cs156.example.services.jobs.JobWorkflow", workflow.getJobType());
+    ArgumentCaptor<Collection<Job>> saved = ArgumentCaptor.forClass(Collection.class);
+    verify(jobsRepository).saveAll(saved.capture());
+    List<Job> steps = List.copyOf(saved.getValue());
+    assertEquals(List.of("first", "second"), steps.stream().map(Job::getStepName).toList());
+    assertEquals("first", steps.get(1).getDependsOn());
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobCompleted)));
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    List.of("complete", "complete"), steps.stream().map(Job::getStatus).toList()));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_workflow_with_a_cycle_returns_400() throws Exception {
+    // arrange
+    String body =
+        """
+        {"name": "nightly", "steps": [
+          {"name": "a", "jobType": "%1$s", "spec": {}, "dependsOn": ["b"]},
+          {"name": "b", "jobType": "%1$s", "spec": {}, "dependsOn": ["a"]}
+        ]}
+        """
+            .formatted(TestJob.class.getName());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/workflow")
+                    .contentType("application/json")
+                    .content(body)
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        "Workflow nightly has a dependency cycle through step a",
+        response.getResponse().getErrorMessage());
+    verify(jobsRepository, never()).save(any(Job.class));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_launch_workflows() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/jobs/launch/workflow")
+                .contentType("application/json")
+                .content("{}")
+                .with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_list_the_steps_of_a_workflow() throws Exception {
+    // arrange
+    Job step = Job.builder().id(8L).status("waiting").workflowId(7L).stepName("purge").build();
+    when(jobsRepository.existsById(7L)).thenReturn(true);
+    when(jobsRepository.findByWorkflowIdOrderByIdAsc(7L)).thenReturn(List.of(step));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/steps/7")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(
+        objectMapper.writeValueAsString(List.of(step)),
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void listing_the_steps_of_a_missing_workflow_returns_404() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(7L)).thenReturn(false);
+
+    // act & assert
+    mockMvc.perform(get("/api/jobs/steps/7")).andExpect(status().isNotFound());
+    verify(jobsRepository, never()).findByWorkflowIdOrderByIdAsc(anyLong());
   }
 
   @WithMockUser(roles = {"ADMIN"})
@@ -279,16 +700,6 @@ public class JobsControllerTests extends ControllerTestCase {
 
     User user = currentUserService.getUser();
 
-    Job jobStarted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
-            .build();
-
     Job jobFailed =
         Job.builder()
             .id(0L)
@@ -296,10 +707,11 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("error")
-            .log("Hello World! from test job!\nFail!")
+            .jobType(TestJob.class.getName())
+            .attempts(1)
             .build();
 
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
     // act
     MvcResult response =
@@ -314,11 +726,507 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals("running", jobReturned.getStatus());
 
     await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .atMost(2, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobLogChunksRepository, times(1))
+                    .save(eq(chunk(0, "Hello World! from test job!"))));
+
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(endedAs(jobFailed)));
+    verify(jobLogChunksRepository, times(1)).save(eq(chunk(1, "Fail!")));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_test_job_with_timeout() throws Exception {
+
+    // arrange
+
+    User user = currentUserService.getUser();
+
+    Job jobTimedOut =
+        Job.builder()
+            .id(0L)
+            .createdBy(user)
+            .status("timeout")
+            .jobType(TestJob.class.getName())
+            .attempts(1)
+            .timeoutMs(1000L)
+            .build();
+
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=60000&timeoutMs=1000")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals("running", jobReturned.getStatus());
+    assertEquals(1000L, jobReturned.getTimeoutMs());
+
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(endedAs(jobTimedOut)));
+    // the first line may or may not have been flushed on its own before the timeout
+    ArgumentCaptor<JobLogChunk> chunks = ArgumentCaptor.forClass(JobLogChunk.class);
+    verify(jobLogChunksRepository, atLeastOnce()).save(chunks.capture());
+    assertEquals(
+        "Hello World! from test job!\nJob timed out after 1000 ms",
+        chunks.getAllValues().stream().map(JobLogChunk::getContent).collect(joining("\n")));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_running_job() throws Exception {
+
+    // arrange
+
+    User user = currentUserService.getUser();
+
+    Job jobCancelled =
+        Job.builder()
+            .id(0L)
+            .createdBy(user)
+            .status("cancelled")
+            .jobType(TestJob.class.getName())
+            .attempts(1)
+            .build();
+
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    when(jobsRepository.existsById(eq(0L))).thenReturn(true);
+    when(jobsRepository.requestCancel(eq(0L))).thenReturn(1);
+
+    mockMvc
+        .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=60000").with(csrf()))
+        .andExpect(status().isOk());
+    await()
+        .atMost(2, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobLogChunksRepository, times(1))
+                    .save(eq(chunk(0, "Hello World! from test job!"))));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 0 cancelled"));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
 
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobFailed)));
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(endedAs(jobCancelled)));
+    verify(jobLogChunksRepository, times(1)).save(eq(chunk(1, "Job cancelled")));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_gets_message_when_cancelling_job_that_is_not_running() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.existsById(eq(5L))).thenReturn(true);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=5").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(jobsRepository, times(1)).cancelQueued(eq(5L));
+    verify(jobsRepository, times(1)).requestCancel(eq(5L));
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("message", "Job with id 5 is not queued or running"));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_gets_not_found_when_cancelling_non_existing_job() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.existsById(eq(5L))).thenReturn(false);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=5").with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("EntityNotFoundException", json.get("type"));
+    assertEquals("Job with id 5 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_retry_a_failed_job() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(eq(5L))).thenReturn(true);
+    when(jobsRepository.requeueEnded(5L)).thenReturn(1);
+    JobService target = AopTestUtils.getTargetObject(jobService);
+
+    // act
+    MvcResult response;
+    ReflectionTestUtils.setField(target, "durableQueue", true);
+    try {
+      response =
+          mockMvc
+              .perform(post("/api/jobs/retry?id=5").with(csrf()))
+              .andExpect(status().isOk())
+              .andReturn();
+    } finally {
+      ReflectionTestUtils.setField(target, "durableQueue", false);
+    }
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("message", "Job with id 5 queued for retry"));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_gets_message_when_retrying_job_that_cannot_be_retried() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(eq(5L))).thenReturn(true);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/retry?id=5").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("message", "Job with id 5 cannot be retried"));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_gets_not_found_when_retrying_non_existing_job() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(eq(5L))).thenReturn(false);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/retry?id=5").with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    assertEquals("Job with id 5 not found", responseToJson(response).get("message"));
+    verify(jobsRepository, never()).requeueEnded(anyLong());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_log_of_finished_job() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(0L).status("complete").build();
+    when(jobsRepository.findById(eq(0L))).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(eq(0L), eq(-1)))
+        .thenReturn(Stream.of(chunk(0, "Hello World! from test job!\nGoodbye from test job!")));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/0/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // assert: events are written by the log stream's sender threads
+    assertEquals("text/event-stream", response.getResponse().getContentType());
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "event:log\nid:0\ndata:Hello World! from test job!\ndata:Goodbye from test job!\n\n"
+                        + "event:status\ndata:complete\n\n",
+                    response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_resume_log_stream_after_last_event() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(0L).status("running").log("legacy").build();
+    when(jobsRepository.findById(eq(0L))).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(eq(0L), eq(3)))
+        .thenReturn(Stream.of(chunk(4, "more")));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/0/stream").header("Last-Event-ID", "3"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // assert
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "event:log\nid:4\ndata:more\n\n", response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_gets_not_found_when_streaming_log_of_non_existing_job() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findById(eq(5L))).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/5/stream"))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 5 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_range_of_job_log() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(0L).status("complete").build();
+    when(jobsRepository.findById(eq(0L))).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.countLines(eq(0L))).thenReturn(Optional.of(3));
+    when(jobLogChunksRepository.findLines(eq(0L), eq(1), eq(3)))
+        .thenReturn(List.of(chunk(1, "two"), chunk(2, "three")));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/0?offset=1&limit=5"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    JobLogSlice expected =
+        JobLogSlice.builder()
+            .offset(1)
+            .nextOffset(3)
+            .totalLines(3)
+            .lines(List.of("two", "three"))
+            .build();
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_tail_of_job_log() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(0L).status("complete").build();
+    when(jobsRepository.findById(eq(0L))).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.countLines(eq(0L))).thenReturn(Optional.of(3));
+    when(jobLogChunksRepository.findLines(eq(0L), eq(2), eq(3)))
+        .thenReturn(List.of(chunk(2, "three")));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/logs/0?tail=1")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    JobLogSlice expected =
+        JobLogSlice.builder().offset(2).nextOffset(3).totalLines(3).lines(List.of("three")).build();
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+  }
+
+  /**
+   * Matches a job that has ended as expected. The CPU time and allocation the run recorded vary
+   * from run to run, so they only have to have been recorded.
+   */
+  private static Job endedAs(Job expected) {
+    return argThat(
+        job -> {
+          if (job.getCpuTimeMs() == null || job.getAllocatedBytes() == null) return false;
+          expected.setCpuTimeMs(job.getCpuTimeMs());
+          expected.setAllocatedBytes(job.getAllocatedBytes());
+          return expected.equals(job);
+        });
+  }
+
+  /** A chunk of the log of job 0, whose first line is numbered the same as the chunk. */
+  private static JobLogChunk chunk(int seq, String content) {
+    return JobLogChunk.builder()
+        .jobId(0L)
+        .seq(seq)
+        .firstLine(seq)
+        .lineCount(content.split("\n", -1).length)
+        .content(content)
+        .rawSize(content.length())
+        .storedSize(content.length())
+        .build();
+  }
+
+  @Test
+  public void logged_out_users_cannot_download_artifacts() throws Exception {
+    mockMvc.perform(get("/api/jobs/artifacts/1/export.csv")).andExpect(status().is(403));
+  }
+
+  private JobArtifact export(Path dir) throws Exception {
+    Path file = dir.resolve("export.csv");
+    Files.writeString(file, "id,name\n1,alpha\n2,beta\n");
+    JobArtifact artifact =
+        JobArtifact.builder()
+            .id(5L)
+            .jobId(1L)
+            .name("export.csv")
+            .contentType("text/csv")
+            .size(Files.size(file))
+            .build();
+    when(jobArtifactStore.find(1L, "export.csv")).thenReturn(Optional.of(artifact));
+    when(jobArtifactStore.path(artifact)).thenReturn(file);
+    return artifact;
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_list_the_artifacts_of_a_job() throws Exception {
+    // arrange
+    JobArtifact artifact =
+        JobArtifact.builder().id(5L).jobId(1L).name("export.csv").contentType("text/csv").build();
+    when(jobsRepository.existsById(1L)).thenReturn(true);
+    when(jobArtifactStore.list(1L)).thenReturn(List.of(artifact));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/artifacts/1")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(
+        mapper.writeValueAsString(List.of(artifact)), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void listing_the_artifacts_of_a_missing_job_returns_404() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(1L)).thenReturn(false);
+
+    // act & assert
+    mockMvc.perform(get("/api/jobs/artifacts/1")).andExpect(status().isNotFound());
+    verify(jobArtifactStore, never()).list(anyLong());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_download_an_artifact(@TempDir Path dir) throws Exception {
+    // arrange
+    export(dir);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/artifacts/1/export.csv"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals("text/csv", response.getResponse().getContentType());
+    assertEquals(
+        "attachment; filename=\"export.csv\"",
+        response.getResponse().getHeader("Content-Disposition"));
+    assertEquals("bytes", response.getResponse().getHeader("Accept-Ranges"));
+    assertEquals(
+        "id,name\n1,alpha\n2,beta\n",
+        response.getResponse().getContentAsString(StandardCharsets.UTF_8));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_download_part_of_an_artifact(@TempDir Path dir) throws Exception {
+    // arrange
+    export(dir);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/artifacts/1/export.csv").header("Range", "bytes=8-15"))
+            .andExpect(status().isPartialContent())
+            .andReturn();
+
+    // assert
+    assertEquals("bytes 8-15/23", response.getResponse().getHeader("Content-Range"));
+    assertEquals("1,alpha\n", response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void an_unchanged_artifact_is_not_downloaded_again(@TempDir Path dir) throws Exception {
+    // arrange
+    export(dir);
+    String etag =
+        mockMvc
+            .perform(get("/api/jobs/artifacts/1/export.csv"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/artifacts/1/export.csv").header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+    // assert
+    assertEquals("", response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void downloading_a_missing_artifact_returns_404() throws Exception {
+    // arrange
+    when(jobArtifactStore.find(1L, "export.csv")).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/artifacts/1/export.csv"))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        "JobArtifact with id 1/export.csv not found", responseToJson(response).get("message"));
   }
 }
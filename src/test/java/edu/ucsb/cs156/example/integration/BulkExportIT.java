@@ -0,0 +1,139 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(properties = {"app.exports.fetchSize=100"})
+public class BulkExportIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockitoBean UserRepository userRepository;
+
+  private byte[] export(String entity, String format) throws Exception {
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/{entity}/export", entity).param("format", format))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    return mockMvc
+        .perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andReturn()
+        .getResponse()
+        .getContentAsByteArray();
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void user_can_export_every_row_as_ndjson() throws Exception {
+    // arrange
+    List<UCSBDiningCommonsMenuItem> items = new ArrayList<>();
+    for (int i = 0; i < 1050; i++) {
+      items.add(
+          UCSBDiningCommonsMenuItem.builder()
+              .diningCommonsCode("ortega")
+              .name("item " + i)
+              .station("Entrees")
+              .build());
+    }
+    ucsbDiningCommonsMenuItemRepository.saveAll(items);
+
+    // act
+    String ndjson = new String(export("ucsbdiningcommonsmenuitems", "ndjson"));
+
+    // assert
+    List<String> lines = ndjson.lines().toList();
+    assertEquals(1050, lines.size());
+    assertEquals(
+        "item 0", mapper.readValue(lines.get(0), UCSBDiningCommonsMenuItem.class).getName());
+    assertEquals(
+        "item 1049", mapper.readValue(lines.get(1049), UCSBDiningCommonsMenuItem.class).getName());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_exported_csv_file_can_be_imported_again() throws Exception {
+    // arrange
+    List<UCSBDiningCommons> commons =
+        List.of(
+            UCSBDiningCommons.builder()
+                .code("carrillo")
+                .name("Carrillo, the \"one\" by the beach")
+                .hasSackMeal(true)
+                .latitude(34.4)
+                .longitude(-119.8)
+                .build(),
+            UCSBDiningCommons.builder().code("ortega").name("Ortega").build());
+    ucsbDiningCommonsRepository.saveAll(commons);
+    byte[] csv = export("ucsbdiningcommons", "csv");
+    ucsbDiningCommonsRepository.deleteAll();
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/ucsbdiningcommons/import")
+                    .file(new MockMultipartFile("file", "ucsbdiningcommons.csv", "text/csv", csv))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job launched = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(30, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(launched.getId()).get().getStatus()));
+
+    // assert
+    List<UCSBDiningCommons> imported = new ArrayList<>();
+    ucsbDiningCommonsRepository.findAll().forEach(imported::add);
+    assertEquals(commons, imported);
+  }
+}
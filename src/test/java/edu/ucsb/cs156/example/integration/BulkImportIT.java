@@ -0,0 +1,137 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class BulkImportIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired UCSBDateRepository ucsbDateRepository;
+
+  @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockitoBean UserRepository userRepository;
+
+  private Job importFile(String entity, String format, String content) throws Exception {
+    MockMultipartFile file =
+        new MockMultipartFile(
+            "file", "upload", "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/{entity}/import", entity)
+                    .file(file)
+                    .param("format", format)
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job launched = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(30, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(launched.getId()).get().getStatus()));
+    return jobsRepository.findById(launched.getId()).get();
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_import_a_large_csv_file_in_batches() throws Exception {
+    // arrange
+    StringBuilder csv = new StringBuilder("quarterYYYYQ,name,localDateTime\n");
+    for (int i = 0; i < 1234; i++) {
+      csv.append("20241,day %d,2024-01-01T00:00:00\n".formatted(i));
+    }
+
+    // act
+    Job job = importFile("ucsbdates", "csv", csv.toString());
+
+    // assert
+    assertEquals(Map.of("imported", 1234L), job.getCounters());
+    List<UCSBDate> dates = new ArrayList<>();
+    ucsbDateRepository.findAll().forEach(dates::add);
+    assertEquals(1234, dates.size());
+    assertEquals("20241", dates.get(0).getQuarterYYYYQ());
+    assertEquals(LocalDateTime.parse("2024-01-01T00:00:00"), dates.get(0).getLocalDateTime());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void rows_the_database_refuses_are_written_to_an_artifact() throws Exception {
+    // arrange
+    ucsbDiningCommonsRepository.save(
+        UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build());
+    String ndjson =
+        """
+        {"code":"ortega","name":"Ortega","hasSackMeal":true}
+        {"code":"carrillo","name":"Carrillo again"}
+        {"code":"portola","name":"Portola","seats":100}
+        """;
+
+    // act
+    Job job = importFile("ucsbdiningcommons", "ndjson", ndjson);
+
+    // assert
+    assertEquals(Map.of("imported", 1L, "failed", 2L), job.getCounters());
+    assertEquals(2, ucsbDiningCommonsRepository.count());
+    MvcResult artifact =
+        mockMvc
+            .perform(get("/api/jobs/artifacts/{id}/failed-rows.ndjson", job.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    List<JsonNode> failures = new ArrayList<>();
+    for (String line : artifact.getResponse().getContentAsString().split("\n")) {
+      failures.add(mapper.readTree(line));
+    }
+    assertEquals(2, failures.size());
+    assertEquals(3, failures.get(0).get("row").asInt());
+    assertEquals(2, failures.get(1).get("row").asInt());
+    assertEquals("Carrillo again", failures.get(1).get("data").get("name").asText());
+  }
+}
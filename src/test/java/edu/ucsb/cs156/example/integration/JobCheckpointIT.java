@@ -0,0 +1,174 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobReaper;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(
+    properties = {
+      "app.jobs.queue.durable=true",
+      "app.jobs.queue.pollIntervalMs=100",
+      "app.jobs.reaper.intervalMs=3600000"
+    })
+public class JobCheckpointIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobService jobService;
+
+  @Autowired JobReaper jobReaper;
+
+  @Autowired public MockMvc mockMvc;
+
+  @MockitoBean UserRepository userRepository;
+
+  // ids processed by every run of CountingJob, in order
+  private static final List<Integer> processed = new CopyOnWriteArrayList<>();
+
+  /** Processes the ids 1 to {@code to}, failing before {@code failAt} unless it is resuming. */
+  @Builder
+  @Jacksonized
+  @Getter
+  public static class CountingJob implements JobContextConsumer {
+    private int to;
+    private int failAt;
+
+    @Override
+    public void accept(JobContext ctx) {
+      String checkpoint = ctx.getCheckpoint();
+      int from = checkpoint == null ? 1 : Integer.parseInt(checkpoint) + 1;
+      for (int id = from; id <= to; id++) {
+        if (id == failAt && checkpoint == null) throw new IllegalStateException("Failed at " + id);
+        processed.add(id);
+        ctx.increment("processed");
+        ctx.saveCheckpoint(Integer.toString(id));
+      }
+    }
+  }
+
+  @BeforeEach
+  public void setup() {
+    processed.clear();
+  }
+
+  private void awaitStatus(long jobId, String status) {
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals(status, jobsRepository.findById(jobId).get().getStatus()));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_retried_job_resumes_from_its_checkpoint() throws Exception {
+    // arrange
+    Job launched = jobService.runAsJob(CountingJob.builder().to(10).failAt(5).build());
+    awaitStatus(launched.getId(), "error");
+    assertEquals("4", jobsRepository.findById(launched.getId()).get().getCheckpoint());
+
+    // act
+    mockMvc
+        .perform(post("/api/jobs/retry").param("id", "" + launched.getId()).with(csrf()))
+        .andExpect(status().isOk())
+        .andExpect(
+            content()
+                .json(
+                    "{\"message\": \"Job with id %d queued for retry\"}"
+                        .formatted(launched.getId())));
+
+    // assert
+    awaitStatus(launched.getId(), "complete");
+    assertEquals(IntStream.rangeClosed(1, 10).boxed().toList(), processed);
+    Job finished = jobsRepository.findById(launched.getId()).get();
+    assertEquals("10", finished.getCheckpoint());
+    assertEquals(Map.of("processed", 10L), finished.getCounters());
+    assertEquals(2, finished.getAttempts());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_job_requeued_after_its_node_died_resumes_from_its_checkpoint() throws Exception {
+    // arrange: a job that got to id 6 on a node that has since died
+    Job orphan =
+        jobsRepository.save(
+            Job.builder()
+                .status("running")
+                .jobType(CountingJob.class.getName())
+                .spec("{\"to\":10,\"failAt\":0}")
+                .claimedBy("dead-node")
+                .attempts(1)
+                .leaseExpiresAt(ZonedDateTime.now().minusMinutes(1))
+                .checkpoint("6")
+                .counters(Map.of("processed", 6L))
+                .build());
+
+    // act
+    jobReaper.reap();
+
+    // assert
+    awaitStatus(orphan.getId(), "complete");
+    assertEquals(List.of(7, 8, 9, 10), processed);
+    Job finished = jobsRepository.findById(orphan.getId()).get();
+    assertEquals("10", finished.getCheckpoint());
+    assertEquals(Map.of("processed", 10L), finished.getCounters());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_job_that_completed_cannot_be_retried() throws Exception {
+    // arrange
+    Job launched = jobService.runAsJob(CountingJob.builder().to(3).build());
+    awaitStatus(launched.getId(), "complete");
+
+    // act & assert
+    mockMvc
+        .perform(post("/api/jobs/retry").param("id", "" + launched.getId()).with(csrf()))
+        .andExpect(status().isOk())
+        .andExpect(
+            content()
+                .json(
+                    "{\"message\": \"Job with id %d cannot be retried\"}"
+                        .formatted(launched.getId())));
+    assertEquals("complete", jobsRepository.findById(launched.getId()).get().getStatus());
+  }
+}
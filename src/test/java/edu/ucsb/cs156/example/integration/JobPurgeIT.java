@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.JobPurgeResult;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(
+    properties = {
+      "app.jobs.retention.maxAgeDays=30",
+      "app.jobs.retention.maxJobsPerStatus=1",
+      "app.jobs.retention.batchSize=1",
+      "app.jobs.retention.intervalMs=3600000"
+    })
+public class JobPurgeIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobLogChunksRepository jobLogChunksRepository;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockitoBean UserRepository userRepository;
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void purge_deletes_old_jobs_and_all_but_the_newest_per_status() throws Exception {
+    // arrange
+    save("complete", 40, "abé"); // 4 bytes
+    Job oldRunning = save("running", 40, null);
+    Job olderComplete = save("complete", 0, null);
+    jobLogChunksRepository.save(
+        JobLogChunk.builder()
+            .jobId(olderComplete.getId())
+            .seq(0)
+            .lineCount(1)
+            .content("hello")
+            .rawSize(5)
+            .storedSize(5)
+            .build());
+    Job newestComplete = save("complete", 0, null);
+    Job error = save("error", 0, null);
+    Job queued = save("queued", 0, null);
+    Job undated = jobsRepository.save(Job.builder().status("cancelled").build());
+    undated.setCreatedAt(null); // as for jobs that ran before auditing
+    jobsRepository.save(undated);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/purge").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    JobPurgeResult expected = JobPurgeResult.builder().jobs(3).logChunks(1).bytes(9).build();
+    assertEquals(
+        expected,
+        mapper.readValue(response.getResponse().getContentAsString(), JobPurgeResult.class));
+    Set<Long> remaining = new HashSet<>();
+    jobsRepository.findAll().forEach(job -> remaining.add(job.getId()));
+    assertEquals(
+        Set.of(oldRunning.getId(), newestComplete.getId(), error.getId(), queued.getId()),
+        remaining);
+    assertEquals(0, jobLogChunksRepository.count());
+  }
+
+  private Job save(String status, int ageDays, String log) {
+    Job job = jobsRepository.save(Job.builder().status(status).log(log).build());
+    if (ageDays == 0) return job;
+    // createdAt is only set by auditing when the job is first saved
+    job.setCreatedAt(ZonedDateTime.now().minusDays(ageDays));
+    return jobsRepository.save(job);
+  }
+}
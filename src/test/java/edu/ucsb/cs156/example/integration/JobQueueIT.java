@@ -0,0 +1,227 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobLogSlice;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobQueueWorker;
+import edu.ucsb.cs156.example.services.jobs.JobReaper;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(
+    properties = {
+      "app.jobs.queue.durable=true",
+      "app.jobs.queue.pollIntervalMs=100",
+      "app.jobs.reaper.intervalMs=3600000",
+      "app.jobs.executor.poolSize=2",
+      "app.jobs.executor.reservedThreads=0",
+      "app.jobs.lease.durationMs=1000",
+      "app.jobs.lease.renewIntervalMs=200"
+    })
+public class JobQueueIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobQueueWorker jobQueueWorker;
+
+  @Autowired JobReaper jobReaper;
+
+  @Autowired JobService jobService;
+
+  @Autowired JobLogChunksRepository jobLogChunksRepository;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockitoBean UserRepository userRepository;
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void queued_job_is_claimed_and_run_by_a_worker() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job launched = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+
+    // assert
+    assertEquals("queued", launched.getStatus());
+    assertNotNull(launched.getSpec());
+
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(launched.getId()).get().getStatus()));
+
+    Job finished = jobsRepository.findById(launched.getId()).get();
+    assertEquals(jobQueueWorker.getNodeId(), finished.getClaimedBy());
+
+    MvcResult logs =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    assertEquals(
+        "Hello World! from test job!\nGoodbye from test job!",
+        logs.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void orphaned_job_is_requeued_by_reaper_and_run_again() throws Exception {
+    // arrange
+    Job orphan =
+        jobsRepository.save(
+            Job.builder()
+                .status("running")
+                .jobType(TestJob.class.getName())
+                .spec("{\"fail\":false,\"sleepMs\":0}")
+                .claimedBy("dead-node")
+                .attempts(1)
+                .leaseExpiresAt(ZonedDateTime.now().minusMinutes(1))
+                .build());
+    jobLogChunksRepository.save(
+        JobLogChunk.builder()
+            .jobId(orphan.getId())
+            .seq(0)
+            .lineCount(1)
+            .content("before crash")
+            .build());
+
+    // act
+    jobReaper.reap();
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(orphan.getId()).get().getStatus()));
+
+    Job finished = jobsRepository.findById(orphan.getId()).get();
+    assertEquals(2, finished.getAttempts());
+    assertEquals(jobQueueWorker.getNodeId(), finished.getClaimedBy());
+
+    MvcResult logs =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", orphan.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    assertEquals(
+        "before crash\nHello World! from test job!\nGoodbye from test job!",
+        logs.getResponse().getContentAsString());
+
+    MvcResult tail =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}?tail=2", orphan.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    JobLogSlice expected =
+        JobLogSlice.builder()
+            .offset(1)
+            .nextOffset(3)
+            .totalLines(3)
+            .lines(List.of("Hello World! from test job!", "Goodbye from test job!"))
+            .build();
+    assertEquals(
+        expected, mapper.readValue(tail.getResponse().getContentAsString(), JobLogSlice.class));
+  }
+
+  @Test
+  public void job_that_used_up_its_attempts_is_abandoned() throws Exception {
+    // arrange
+    Job orphan =
+        jobsRepository.save(
+            Job.builder()
+                .status("running")
+                .jobType(TestJob.class.getName())
+                .spec("{}")
+                .attempts(3)
+                .leaseExpiresAt(ZonedDateTime.now().minusMinutes(1))
+                .build());
+    Job live =
+        jobsRepository.save(
+            Job.builder()
+                .status("running")
+                .attempts(1)
+                .leaseExpiresAt(ZonedDateTime.now().plusMinutes(1))
+                .build());
+
+    // act
+    jobReaper.reap();
+
+    // assert
+    assertEquals("abandoned", jobsRepository.findById(orphan.getId()).get().getStatus());
+    assertEquals("running", jobsRepository.findById(live.getId()).get().getStatus());
+  }
+
+  @Test
+  public void job_waiting_for_a_thread_longer_than_its_lease_is_not_reaped() throws Exception {
+    // arrange: both threads are busy, so the third job waits past its one-second lease
+    CountDownLatch release = new CountDownLatch(1);
+    Job busy1 = jobService.runAsJob(ctx -> release.await());
+    Job busy2 = jobService.runAsJob(ctx -> release.await());
+    Job waiting = jobService.runAsJob(ctx -> ctx.log("ran"));
+    Thread.sleep(2000);
+
+    // act
+    jobReaper.reap();
+
+    // assert
+    Job stillWaiting = jobsRepository.findById(waiting.getId()).get();
+    assertEquals("running", stillWaiting.getStatus());
+    assertTrue(stillWaiting.getLeaseExpiresAt().isAfter(ZonedDateTime.now()));
+    release.countDown();
+    for (Job job : List.of(busy1, busy2, waiting)) {
+      await()
+          .atMost(10, SECONDS)
+          .untilAsserted(
+              () ->
+                  assertEquals("complete", jobsRepository.findById(job.getId()).get().getStatus()));
+    }
+    assertEquals(1, jobsRepository.findById(waiting.getId()).get().getAttempts());
+  }
+}
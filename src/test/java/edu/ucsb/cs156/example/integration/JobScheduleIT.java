@@ -0,0 +1,167 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobScheduler;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(properties = {"app.jobs.schedules.pollIntervalMs=3600000"})
+public class JobScheduleIT {
+  @Autowired JobSchedulesRepository jobSchedulesRepository;
+
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobScheduler jobScheduler;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockitoBean UserRepository userRepository;
+
+  private JobSchedule due(String name, int sleepMs) throws Exception {
+    return jobSchedulesRepository.save(
+        JobSchedule.builder()
+            .name(name)
+            .cron("0 0 3 * * *")
+            .jobType(TestJob.class.getName())
+            .spec(mapper.writeValueAsString(TestJob.builder().sleepMs(sleepMs).build()))
+            .enabled(true)
+            .nextRunAt(ZonedDateTime.now().minusSeconds(1))
+            .build());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_create_a_schedule_and_it_is_not_due_yet() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobschedules/post")
+                    .param("name", "nightly")
+                    .param("cron", "0 0 3 * * *")
+                    .param("jobType", TestJob.class.getName())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"fail\":false,\"sleepMs\":0}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    JobSchedule saved =
+        mapper.readValue(response.getResponse().getContentAsString(), JobSchedule.class);
+    assertTrue(saved.getNextRunAt().isAfter(ZonedDateTime.now()));
+    assertEquals(0, jobScheduler.fireDue());
+  }
+
+  @Test
+  public void a_due_schedule_launches_one_job_and_moves_its_next_run() throws Exception {
+    // arrange
+    JobSchedule schedule = due("nightly", 0);
+
+    // act
+    int fired = jobScheduler.fireDue();
+
+    // assert
+    assertEquals(1, fired);
+    JobSchedule after = jobSchedulesRepository.findById(schedule.getId()).get();
+    assertNotNull(after.getLastJobId());
+    assertNotNull(after.getLastRunAt());
+    assertTrue(after.getNextRunAt().isAfter(ZonedDateTime.now()));
+    assertEquals(0, after.getMissedRuns());
+    await()
+        .atMost(10, SECONDS)
+        .until(
+            () -> jobsRepository.findById(after.getLastJobId()).get().getStatus(),
+            "complete"::equals);
+    assertEquals(0, jobScheduler.fireDue());
+  }
+
+  @Test
+  public void a_run_is_skipped_and_recorded_while_the_previous_one_is_active() throws Exception {
+    // arrange
+    JobSchedule schedule = due("slow", 5000);
+    jobScheduler.fireDue();
+    long firstJobId = jobSchedulesRepository.findById(schedule.getId()).get().getLastJobId();
+    JobSchedule dueAgain = jobSchedulesRepository.findById(schedule.getId()).get();
+    dueAgain.setNextRunAt(ZonedDateTime.now().minusSeconds(1));
+    jobSchedulesRepository.save(dueAgain);
+
+    // act
+    int fired = jobScheduler.fireDue();
+
+    // assert
+    assertEquals(1, fired);
+    JobSchedule after = jobSchedulesRepository.findById(schedule.getId()).get();
+    assertEquals(firstJobId, after.getLastJobId());
+    assertEquals(1, after.getMissedRuns());
+    assertEquals(
+        "previous run (job %d) was still active".formatted(firstJobId), after.getLastMissReason());
+    assertEquals(1, ((List<Job>) jobsRepository.findAll()).size());
+  }
+
+  @Test
+  public void concurrent_pollers_fire_each_schedule_once() throws Exception {
+    // arrange
+    for (int i = 0; i < 5; i++) due("schedule-" + i, 0);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    // act
+    List<Future<Integer>> results;
+    try {
+      Callable<Integer> poll = () -> jobScheduler.fireDue();
+      results = pool.invokeAll(List.of(poll, poll, poll, poll));
+    } finally {
+      pool.shutdown();
+    }
+
+    // assert
+    int fired = 0;
+    for (Future<Integer> result : results) fired += result.get();
+    assertEquals(5, fired);
+    assertEquals(5, ((List<Job>) jobsRepository.findAll()).size());
+  }
+}
@@ -0,0 +1,189 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.services.jobs.JobWorkflow;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobWorkflowIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobService jobService;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockitoBean UserRepository userRepository;
+
+  private Job launch(String body) throws Exception {
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/workflow")
+                    .contentType("application/json")
+                    .content(body.formatted(TestJob.class.getName()))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    return mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+  }
+
+  private void awaitStatus(long jobId, String status) {
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals(status, jobsRepository.findById(jobId).get().getStatus()));
+  }
+
+  private Map<String, String> stepStatuses(long workflowId) throws Exception {
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/steps/{id}", workflowId))
+            .andExpect(status().isOk())
+            .andReturn();
+    List<Job> steps =
+        mapper.readValue(response.getResponse().getContentAsString(), new TypeReference<>() {});
+    return steps.stream().collect(Collectors.toMap(Job::getStepName, Job::getStatus));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void independent_steps_run_at_the_same_time() throws Exception {
+    // arrange: the two middle steps can only get past the barrier together
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("diamond")
+            .step(JobWorkflow.Step.builder().name("import").job(ctx -> {}).build())
+            .step(
+                JobWorkflow.Step.builder()
+                    .name("aggregates")
+                    .job(ctx -> barrier.await(5, SECONDS))
+                    .dependency("import")
+                    .build())
+            .step(
+                JobWorkflow.Step.builder()
+                    .name("report")
+                    .job(ctx -> barrier.await(5, SECONDS))
+                    .dependency("import")
+                    .build())
+            .step(
+                JobWorkflow.Step.builder()
+                    .name("purge")
+                    .job(ctx -> {})
+                    .dependency("aggregates")
+                    .dependency("report")
+                    .build())
+            .build();
+
+    // act
+    Job launched = jobService.runWorkflow(workflow);
+
+    // assert
+    awaitStatus(launched.getId(), "complete");
+    assertEquals(
+        Map.of(
+            "import", "complete",
+            "aggregates", "complete",
+            "report", "complete",
+            "purge", "complete"),
+        stepStatuses(launched.getId()));
+    Job finished = jobsRepository.findById(launched.getId()).get();
+    assertEquals(4L, finished.getProgressDone());
+    assertEquals(4L, finished.getProgressTotal());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void steps_after_a_failed_step_are_skipped() throws Exception {
+    // act
+    Job launched =
+        launch(
+            """
+            {"name": "nightly", "steps": [
+              {"name": "import", "jobType": "%1$s", "spec": {"fail": true, "sleepMs": 0}},
+              {"name": "purge", "jobType": "%1$s", "spec": {"fail": false, "sleepMs": 0},
+               "dependsOn": ["import"]},
+              {"name": "cleanup", "jobType": "%1$s", "spec": {"fail": false, "sleepMs": 0}}
+            ]}
+            """);
+
+    // assert
+    awaitStatus(launched.getId(), "error");
+    assertEquals(
+        Map.of("import", "error", "purge", "skipped", "cleanup", "complete"),
+        stepStatuses(launched.getId()));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void cancelling_a_workflow_cancels_its_steps() throws Exception {
+    // arrange
+    Job launched =
+        launch(
+            """
+            {"name": "nightly", "steps": [
+              {"name": "import", "jobType": "%1$s", "spec": {"fail": false, "sleepMs": 60000}},
+              {"name": "purge", "jobType": "%1$s", "spec": {"fail": false, "sleepMs": 0},
+               "dependsOn": ["import"]}
+            ]}
+            """);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "running",
+                    jobsRepository
+                        .findByWorkflowIdOrderByIdAsc(launched.getId())
+                        .get(0)
+                        .getStatus()));
+
+    // act
+    mockMvc
+        .perform(post("/api/jobs/cancel").param("id", "" + launched.getId()).with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    awaitStatus(launched.getId(), "cancelled");
+    assertEquals(
+        Map.of("import", "cancelled", "purge", "cancelled"), stepStatuses(launched.getId()));
+  }
+}
@@ -0,0 +1,622 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobLogSize;
+import edu.ucsb.cs156.example.models.JobLogSlice;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobArtifactStore;
+import edu.ucsb.cs156.example.services.jobs.JobLogService;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobsIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobService jobService;
+
+  @Autowired JobLogService jobLogService;
+
+  @Autowired JobArtifactStore jobArtifactStore;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockitoBean UserRepository userRepository;
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_launch_test_job_and_read_its_log() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job launched = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(launched.getId()).get().getStatus()));
+
+    MvcResult logs =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    assertEquals(
+        "Hello World! from test job!\nGoodbye from test job!",
+        logs.getResponse().getContentAsString());
+
+    MvcResult page =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}?offset=1&limit=10", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    JobLogSlice expected =
+        JobLogSlice.builder()
+            .offset(1)
+            .nextOffset(2)
+            .totalLines(2)
+            .lines(List.of("Goodbye from test job!"))
+            .build();
+    assertEquals(
+        expected, mapper.readValue(page.getResponse().getContentAsString(), JobLogSlice.class));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_search_job_logs_until_the_job_is_deleted() throws Exception {
+    // arrange
+    List<Long> ids = new ArrayList<>();
+    for (String fail : List.of("false", "true")) {
+      MvcResult response =
+          mockMvc
+              .perform(post("/api/jobs/launch/testjob?fail={fail}&sleepMs=0", fail).with(csrf()))
+              .andExpect(status().isOk())
+              .andReturn();
+      ids.add(mapper.readValue(response.getResponse().getContentAsString(), Job.class).getId());
+    }
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    List.of("complete", "error"),
+                    ids.stream()
+                        .map(id -> jobsRepository.findById(id).get().getStatus())
+                        .toList()));
+
+    // act
+    JsonNode goodbye = search("GOODBYE test");
+    JsonNode hello = search("hello world");
+
+    // assert
+    assertEquals(1, goodbye.size());
+    assertEquals(ids.get(0).longValue(), goodbye.at("/0/jobId").asLong());
+    assertEquals("complete", goodbye.at("/0/status").asText());
+    assertEquals(1, goodbye.at("/0/matches/0/line").asInt());
+    assertEquals("Goodbye from test job!", goodbye.at("/0/matches/0/text").asText());
+    assertEquals(2, hello.size());
+    assertEquals(ids.get(1).longValue(), hello.at("/0/jobId").asLong());
+
+    mockMvc
+        .perform(delete("/api/jobs?id={id}", ids.get(0)).with(csrf()))
+        .andExpect(status().isOk());
+    assertEquals(0, search("goodbye").size());
+  }
+
+  private JsonNode search(String q) throws Exception {
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/search").param("q", q))
+            .andExpect(status().isOk())
+            .andReturn();
+    return mapper.readTree(response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void long_logs_are_stored_compressed_and_read_back_whole() throws Exception {
+    // arrange
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 250; i++) lines.add("Processed record " + i + " of 250: ok");
+
+    // act
+    Job launched =
+        jobService.runAsJob(
+            ctx -> {
+              for (String line : lines) ctx.log(line);
+            });
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(launched.getId()).get().getStatus()));
+
+    // assert
+    MvcResult logs =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    assertEquals(String.join("\n", lines), logs.getResponse().getContentAsString());
+
+    MvcResult size =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}/size", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    JobLogSize logSize =
+        mapper.readValue(size.getResponse().getContentAsString(), JobLogSize.class);
+    assertEquals(
+        String.join("\n", lines).length() - logSize.getChunks() + 1, logSize.getRawBytes());
+    assertTrue(logSize.getStoredBytes() * 3 < logSize.getRawBytes());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void job_metrics_are_recorded_by_type() throws Exception {
+    // arrange
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=true&sleepMs=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job launched = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals("error", jobsRepository.findById(launched.getId()).get().getStatus()));
+
+    // act
+    MvcResult stats =
+        mockMvc.perform(get("/api/jobs/stats")).andExpect(status().isOk()).andReturn();
+    MvcResult metric =
+        mockMvc
+            .perform(get("/actuator/metrics/jobs.execution?tag=type:TestJob&tag=status:error"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    JsonNode testJob =
+        mapper.readTree(stats.getResponse().getContentAsString()).at("/byType/TestJob");
+    assertEquals(1, testJob.at("/outcomes/error").asInt());
+    assertEquals(1, testJob.at("/runTime/count").asInt());
+    assertEquals(1, testJob.at("/queueWait/count").asInt());
+    assertTrue(testJob.at("/logBytes").asLong() > 0);
+    assertTrue(testJob.at("/cpuTimeMs").isNumber());
+    assertTrue(testJob.at("/allocatedBytes").asLong() > 0);
+    JsonNode measurements =
+        mapper.readTree(metric.getResponse().getContentAsString()).at("/measurements/0");
+    assertEquals("COUNT", measurements.at("/statistic").asText());
+    assertEquals(1, measurements.at("/value").asInt());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void deleting_a_job_deletes_its_log_chunks() throws Exception {
+    // arrange
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=true&sleepMs=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job launched = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals("error", jobsRepository.findById(launched.getId()).get().getStatus()));
+
+    // act
+    mockMvc.perform(delete("/api/jobs/all").with(csrf())).andExpect(status().isOk());
+
+    // assert
+    assertEquals(0, jobsRepository.count());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_download_the_artifacts_a_job_writes() throws Exception {
+    // arrange
+    Job launched =
+        jobService.runAsJob(
+            ctx -> {
+              try (Writer csv =
+                  new OutputStreamWriter(
+                      ctx.openArtifact("export.csv", "text/csv"), StandardCharsets.UTF_8)) {
+                csv.write("id,name\n");
+                for (int i = 0; i < 100_000; i++) csv.write(i + ",row " + i + "\n");
+              }
+            });
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(launched.getId()).get().getStatus()));
+
+    // act
+    MvcResult list =
+        mockMvc
+            .perform(get("/api/jobs/artifacts/{id}", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    MvcResult whole =
+        mockMvc
+            .perform(get("/api/jobs/artifacts/{id}/export.csv", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    MvcResult part =
+        mockMvc
+            .perform(
+                get("/api/jobs/artifacts/{id}/export.csv", launched.getId())
+                    .header("Range", "bytes=8-23"))
+            .andExpect(status().isPartialContent())
+            .andReturn();
+
+    // assert
+    JsonNode artifact = mapper.readTree(list.getResponse().getContentAsString()).get(0);
+    assertEquals("export.csv", artifact.get("name").asText());
+    assertEquals("text/csv", artifact.get("contentType").asText());
+    byte[] content = whole.getResponse().getContentAsByteArray();
+    assertEquals(content.length, artifact.get("size").asLong());
+    assertEquals(
+        HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)),
+        artifact.get("sha256").asText());
+    assertEquals("0,row 0\n1,row 1\n", part.getResponse().getContentAsString());
+
+    // act
+    Path file = jobArtifactStore.path(jobArtifactStore.find(launched.getId(), "export.csv").get());
+    mockMvc
+        .perform(delete("/api/jobs?id={id}", launched.getId()).with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    assertFalse(Files.exists(file));
+    assertTrue(jobArtifactStore.list(launched.getId()).isEmpty());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_see_the_progress_of_a_running_job() throws Exception {
+    // arrange
+    CountDownLatch release = new CountDownLatch(1);
+    Job launched =
+        jobService.runAsJob(
+            ctx -> {
+              ctx.progress(2, 5);
+              ctx.increment("imported", 2);
+              ctx.increment("skipped");
+              release.await();
+              ctx.progress(5, 5);
+              ctx.increment("imported", 3);
+            });
+
+    // act & assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                // the counters come one flush interval after the first progress write
+                assertEquals(
+                    Map.of("imported", 2L, "skipped", 1L),
+                    jobsRepository.findById(launched.getId()).get().getCounters()));
+    JsonNode running = getJob(launched.getId());
+    assertEquals(2, running.get("progressDone").asLong());
+    assertEquals(5, running.get("progressTotal").asLong());
+    assertEquals(
+        Map.of("imported", 2, "skipped", 1),
+        mapper.convertValue(running.get("counters"), Map.class));
+
+    release.countDown();
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(launched.getId()).get().getStatus()));
+    JsonNode finished = getJob(launched.getId());
+    assertEquals(5, finished.get("progressDone").asLong());
+    assertEquals(
+        Map.of("imported", 5, "skipped", 1),
+        mapper.convertValue(finished.get("counters"), Map.class));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void job_can_fan_out_subtasks() throws Exception {
+    // act
+    Job launched =
+        jobService.runAsJob(
+            ctx -> {
+              List<String> threads =
+                  ctx.invokeAll(
+                      List.of("a", "b", "c"),
+                      (item, sub) -> {
+                        sub.log("item " + item);
+                        return Thread.currentThread().getName();
+                      });
+              ctx.log(
+                  "all on subtask threads: "
+                      + threads.stream().allMatch(t -> t.startsWith("job-subtask-")));
+            });
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(launched.getId()).get().getStatus()));
+    MvcResult logs =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    List<String> lines = List.of(logs.getResponse().getContentAsString().split("\n"));
+    assertEquals(
+        Set.of("[subtask 0] item a", "[subtask 1] item b", "[subtask 2] item c"),
+        Set.copyOf(lines.subList(0, 3)));
+    assertEquals("all on subtask threads: true", lines.get(3));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void concurrent_launches_of_the_same_job_start_it_once() throws Exception {
+    // arrange
+    CountDownLatch go = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService launchers =
+        new DelegatingSecurityContextExecutorService(Executors.newFixedThreadPool(8));
+    List<Future<Job>> launches = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      launches.add(
+          launchers.submit(
+              () -> {
+                go.await();
+                return jobService.runAsJob(ctx -> release.await(), null, "same-key");
+              }));
+    }
+
+    // act
+    go.countDown();
+    Set<Long> ids = new HashSet<>();
+    for (Future<Job> launch : launches) {
+      ids.add(launch.get(10, SECONDS).getId());
+    }
+
+    // assert
+    assertEquals(1, ids.size());
+    assertEquals(1, jobsRepository.count());
+
+    // once the job has ended, the key is free again
+    release.countDown();
+    long first = ids.iterator().next();
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals("complete", jobsRepository.findById(first).get().getStatus()));
+    Job second = jobService.runAsJob(ctx -> {}, null, "same-key");
+    assertNotEquals(first, second.getId());
+    launchers.shutdown();
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void relaunching_a_running_test_job_returns_it() throws Exception {
+    // arrange
+    Job launched = launch("/api/jobs/launch/testjob?fail=false&sleepMs=60000&dedupe=true", null);
+
+    // act
+    Job again = launch("/api/jobs/launch/testjob?fail=false&sleepMs=60000&dedupe=true", null);
+    Job withoutDedupe = launch("/api/jobs/launch/testjob?fail=false&sleepMs=60000", null);
+    Job withKey = launch("/api/jobs/launch/testjob?fail=false&sleepMs=60000", "k1");
+    Job withKeyAgain = launch("/api/jobs/launch/testjob?fail=false&sleepMs=60000", "k1");
+    Job other = launch("/api/jobs/launch/testjob?fail=false&sleepMs=0&dedupe=true", null);
+
+    // assert
+    assertEquals(launched.getId(), again.getId());
+    assertNotEquals(launched.getId(), withoutDedupe.getId());
+    assertNotEquals(launched.getId(), withKey.getId());
+    assertEquals(withKey.getId(), withKeyAgain.getId());
+    assertNotEquals(launched.getId(), other.getId());
+    jobService.cancelJob(withoutDedupe.getId());
+
+    // a cancelled job releases its key
+    mockMvc
+        .perform(post("/api/jobs/cancel?id={id}", launched.getId()).with(csrf()))
+        .andExpect(status().isOk());
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "cancelled", jobsRepository.findById(launched.getId()).get().getStatus()));
+    Job relaunched = launch("/api/jobs/launch/testjob?fail=false&sleepMs=60000&dedupe=true", null);
+    assertNotEquals(launched.getId(), relaunched.getId());
+    jobService.cancelJob(relaunched.getId());
+    jobService.cancelJob(withKey.getId());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_cancel_a_running_job() throws Exception {
+    // arrange
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=60000").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job launched = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+
+    // act
+    mockMvc
+        .perform(post("/api/jobs/cancel?id={id}", launched.getId()).with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "cancelled", jobsRepository.findById(launched.getId()).get().getStatus()));
+
+    MvcResult logs =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", launched.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    assertTrue(logs.getResponse().getContentAsString().endsWith("Job cancelled"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_stream_the_log_of_a_running_job() throws Exception {
+    // arrange
+    MvcResult launch =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=1000").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job launched = mapper.readValue(launch.getResponse().getContentAsString(), Job.class);
+
+    // act
+    MvcResult stream =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}/stream", launched.getId()))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertTrue(
+                    stream
+                        .getResponse()
+                        .getContentAsString()
+                        .endsWith("event:status\ndata:complete\n\n")));
+    String events = stream.getResponse().getContentAsString();
+    assertTrue(events.contains("data:Hello World! from test job!\n"));
+    assertTrue(events.contains("data:Goodbye from test job!\n"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_list_job_summaries() throws Exception {
+    // arrange
+    Job old = jobsRepository.save(Job.builder().status("complete").log("legacy log é").build());
+    // long enough to be stored compressed, without its text in the content column
+    jobLogService.append(old, 0, 0, List.of("x".repeat(1000)));
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=true&sleepMs=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job failed = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals("error", jobsRepository.findById(failed.getId()).get().getStatus()));
+
+    // act
+    MvcResult all =
+        mockMvc.perform(get("/api/jobs/all?sort=createdAt")).andExpect(status().isOk()).andReturn();
+    MvcResult errors =
+        mockMvc
+            .perform(get("/api/jobs/all?status=error&size=1"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    JsonNode allJobs = mapper.readTree(all.getResponse().getContentAsString());
+    assertEquals(2, allJobs.at("/page/totalElements").asInt());
+    JsonNode newest = allJobs.at("/content/0");
+    assertEquals(failed.getId(), newest.get("id").asLong());
+    assertEquals("Hello World! from test job!\nFail!".length(), newest.get("logLength").asLong());
+    assertFalse(newest.get("createdAt").isNull());
+    assertFalse(newest.has("log"));
+    JsonNode oldest = allJobs.at("/content/1");
+    assertEquals(old.getId(), oldest.get("id").asLong());
+    assertEquals(
+        "legacy log é".getBytes(StandardCharsets.UTF_8).length + 1000,
+        oldest.get("logLength").asLong());
+
+    JsonNode errorJobs = mapper.readTree(errors.getResponse().getContentAsString());
+    assertEquals(1, errorJobs.at("/page/totalElements").asInt());
+    assertEquals(failed.getId(), errorJobs.at("/content/0/id").asLong());
+  }
+
+  private JsonNode getJob(long id) throws Exception {
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs?id={id}", id)).andExpect(status().isOk()).andReturn();
+    return mapper.readTree(response.getResponse().getContentAsString());
+  }
+
+  private Job launch(String url, String idempotencyKey) throws Exception {
+    var request = post(url).with(csrf());
+    if (idempotencyKey != null) request.header("Idempotency-Key", idempotencyKey);
+    MvcResult response = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+    return mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+  }
+}
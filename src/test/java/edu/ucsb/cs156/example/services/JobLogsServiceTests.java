@@ -6,6 +6,7 @@ import static org.mockito.Mockito.*;
 
 import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,6 +17,8 @@ public class JobLogsServiceTests {
 
   @Mock private JobsRepository jobRepository;
 
+  @Mock private JobLogService jobLogService;
+
   @InjectMocks private JobService jobService;
 
   @BeforeEach
@@ -28,23 +31,24 @@ public class JobLogsServiceTests {
     // Arrange
     Long jobId = 1L;
     Job job = Job.builder().build();
-    job.setLog("This is a job log");
     when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogService.getLog(job)).thenReturn("This is a job log");
 
     // Act
     String result = jobService.getJobLogs(jobId);
 
     // Assert
     assertEquals("This is a job log", result);
+    verify(jobLogService).getLog(job);
   }
 
   @Test
-  void test_getJobLogs_with_null_log() {
+  void test_getJobLogs_with_empty_log() {
     // Arrange
     Long jobId = 2L;
     Job job = Job.builder().build();
-    job.setLog(null);
     when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogService.getLog(job)).thenReturn("");
 
     // Act
     String result = jobService.getJobLogs(jobId);
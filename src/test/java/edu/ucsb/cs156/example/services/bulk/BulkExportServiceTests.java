@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaQuery;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class BulkExportServiceTests {
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private EntityManager entityManager;
+
+  @Mock private TypedQuery<Object> query;
+
+  @Spy private ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+  @InjectMocks private BulkExportService bulkExportService;
+
+  private final EntityTable restaurants =
+      EntityTable.builder().name("restaurants").type(Restaurant.class).idProperty("id").build();
+
+  private final Restaurant freebirds =
+      Restaurant.builder()
+          .id(1)
+          .name("Freebirds")
+          .description("burritos, \"world\" famous")
+          .build();
+
+  private final Restaurant deli = Restaurant.builder().id(2).name("IV Deli").build();
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(bulkExportService, "fetchSize", 50);
+    when(entityManager.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+    when(query.setHint(anyString(), any())).thenReturn(query);
+    when(query.getResultStream()).thenReturn(Stream.of(freebirds, deli));
+  }
+
+  @Test
+  void csv_has_a_header_and_empty_cells_for_nulls() throws Exception {
+    // Act
+    long rows = bulkExportService.export(restaurants, BulkFormat.CSV, out);
+
+    // Assert
+    assertEquals(2, rows);
+    assertEquals(
+        """
+        id,name,description
+        1,Freebirds,"burritos, ""world"" famous"
+        2,"IV Deli",
+        """,
+        out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void ndjson_has_one_object_per_line() throws Exception {
+    // Act
+    long rows = bulkExportService.export(restaurants, BulkFormat.NDJSON, out);
+
+    // Assert
+    assertEquals(2, rows);
+    List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+    assertEquals(2, lines.size());
+    assertEquals(freebirds, mapper.readValue(lines.get(0), Restaurant.class));
+    assertEquals(deli, mapper.readValue(lines.get(1), Restaurant.class));
+    assertEquals('\n', out.toString(StandardCharsets.UTF_8).charAt(out.size() - 1));
+  }
+
+  @Test
+  void rows_are_read_through_a_bounded_read_only_cursor_and_detached() throws Exception {
+    // Act
+    bulkExportService.export(restaurants, BulkFormat.NDJSON, out);
+
+    // Assert
+    verify(query).setHint(HibernateHints.HINT_FETCH_SIZE, 50);
+    verify(query).setHint(HibernateHints.HINT_READ_ONLY, true);
+    verify(query, never()).getResultList();
+    verify(entityManager).detach(freebirds);
+    verify(entityManager).detach(deli);
+  }
+
+  @Test
+  void an_empty_table_gives_an_empty_file() throws Exception {
+    // Arrange
+    when(query.getResultStream()).thenReturn(Stream.empty());
+
+    // Act
+    long rows = bulkExportService.export(restaurants, BulkFormat.NDJSON, out);
+
+    // Assert
+    assertEquals(0, rows);
+    assertEquals(0, out.size());
+  }
+}
@@ -0,0 +1,264 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.BulkImportResult;
+import edu.ucsb.cs156.example.services.jobs.JobCancelledException;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class BulkImportServiceTests {
+
+  private static final String RESTAURANT_SQL =
+      "insert into restaurants (description, name) values (?, ?)";
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Mock private JobContext ctx;
+
+  @Spy private ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+  @InjectMocks private BulkImportService bulkImportService;
+
+  @TempDir Path dir;
+
+  private final ByteArrayOutputStream failedRows = new ByteArrayOutputStream();
+
+  private final EntityTable restaurants =
+      EntityTable.builder()
+          .name("restaurants")
+          .type(Restaurant.class)
+          .tableName("restaurants")
+          .properties(List.of("description", "name"))
+          .columns(List.of("description", "name"))
+          .idGenerated(true)
+          .values(
+              entity -> {
+                Restaurant r = (Restaurant) entity;
+                return new Object[] {r.getDescription(), r.getName()};
+              })
+          .build();
+
+  private final EntityTable diningCommons =
+      EntityTable.builder()
+          .name("ucsbdiningcommons")
+          .type(UCSBDiningCommons.class)
+          .tableName("ucsbdiningcommons")
+          .properties(List.of("code", "name"))
+          .columns(List.of("code", "name"))
+          .idGenerated(false)
+          .values(
+              entity -> {
+                UCSBDiningCommons c = (UCSBDiningCommons) entity;
+                return new Object[] {c.getCode(), c.getName()};
+              })
+          .build();
+
+  @BeforeEach
+  public void setup() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(bulkImportService, "batchSize", 2);
+    doAnswer(
+            invocation -> {
+              invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    when(ctx.openArtifact(BulkImportService.FAILED_ROWS, "application/x-ndjson"))
+        .thenReturn(failedRows);
+  }
+
+  private Path file(String content) throws Exception {
+    Path file = dir.resolve("upload");
+    Files.writeString(file, content);
+    return file;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<List<Object[]>> batches(int count) {
+    ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+    verify(jdbcTemplate, times(count)).batchUpdate(eq(RESTAURANT_SQL), batches.capture());
+    return batches.getAllValues();
+  }
+
+  @Test
+  void csv_rows_are_inserted_in_batches() throws Exception {
+    // Arrange
+    Path file =
+        file(
+            """
+            name,description
+            Freebirds,burritos
+            Woodstock's,pizza
+            IV Deli,"sandwiches, salads"
+            """);
+
+    // Act
+    BulkImportResult result = bulkImportService.importFile(ctx, restaurants, BulkFormat.CSV, file);
+
+    // Assert
+    assertEquals(
+        BulkImportResult.builder().rows(3).imported(3).failed(0).batches(2).build(), result);
+    List<List<Object[]>> batches = batches(2);
+    assertEquals(2, batches.get(0).size());
+    assertEquals(List.of("sandwiches, salads", "IV Deli"), List.of(batches.get(1).get(0)));
+    verify(ctx).increment("imported", 2);
+    verify(ctx).increment("imported", 1);
+    verify(ctx, atLeastOnce()).progress(Files.size(file), Files.size(file));
+    verify(ctx, never()).openArtifact(anyString(), anyString());
+  }
+
+  @Test
+  void invalid_rows_are_reported_and_the_others_imported() throws Exception {
+    // Arrange
+    Path file =
+        file(
+            """
+            {"name":"Freebirds","description":"burritos"}
+            {"name":"Woodstock's","cuisine":"pizza"}
+
+            {"name": oops}
+            [1, 2]
+            {"name":"IV Deli"}
+            """);
+
+    // Act
+    BulkImportResult result =
+        bulkImportService.importFile(ctx, restaurants, BulkFormat.NDJSON, file);
+
+    // Assert
+    assertEquals(
+        BulkImportResult.builder().rows(5).imported(2).failed(3).batches(1).build(), result);
+    assertEquals(List.of("burritos", "Freebirds"), List.of(batches(1).get(0).get(0)));
+    verify(ctx, times(3)).increment("failed");
+    String[] failures = failedRows.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(3, failures.length);
+    assertEquals(2, mapper.readTree(failures[0]).get("row").asInt());
+    assertEquals(
+        "pizza", mapper.readTree(failures[0]).get("data").get("cuisine").asText(), failures[0]);
+    assertEquals(3, mapper.readTree(failures[1]).get("row").asInt());
+    assertEquals("not a JSON object", mapper.readTree(failures[2]).get("error").asText());
+    verify(ctx).log(startsWith("Row 2: Unrecognized field \"cuisine\""));
+  }
+
+  @Test
+  void csv_rows_that_cannot_be_parsed_fail_and_reading_goes_on() throws Exception {
+    // Arrange
+    Path file =
+        file(
+            """
+            name,description
+            Freebirds,burritos,extra
+            IV Deli,sandwiches
+            """);
+
+    // Act
+    BulkImportResult result = bulkImportService.importFile(ctx, restaurants, BulkFormat.CSV, file);
+
+    // Assert
+    assertEquals(
+        BulkImportResult.builder().rows(2).imported(1).failed(1).batches(1).build(), result);
+    assertEquals(List.of("sandwiches", "IV Deli"), List.of(batches(1).get(0).get(0)));
+    verify(ctx).log(startsWith("Row 1: Too many entries"));
+  }
+
+  @Test
+  void a_refused_batch_is_retried_row_by_row() throws Exception {
+    // Arrange
+    Path file =
+        file(
+            """
+            code,name
+            carrillo,Carrillo
+            de-la-guerra,De La Guerra
+            """);
+    String sql = "insert into ucsbdiningcommons (code, name) values (?, ?)";
+    when(jdbcTemplate.batchUpdate(eq(sql), anyList()))
+        .thenThrow(new DuplicateKeyException("batch"));
+    when(jdbcTemplate.update(sql, "carrillo", "Carrillo"))
+        .thenThrow(new DuplicateKeyException("duplicate code carrillo"));
+
+    // Act
+    BulkImportResult result =
+        bulkImportService.importFile(ctx, diningCommons, BulkFormat.CSV, file);
+
+    // Assert
+    assertEquals(
+        BulkImportResult.builder().rows(2).imported(1).failed(1).batches(0).build(), result);
+    verify(jdbcTemplate).update(sql, "de-la-guerra", "De La Guerra");
+    verify(ctx).increment("imported");
+    verify(ctx).log("Row 1: duplicate code carrillo");
+  }
+
+  @Test
+  void rows_without_an_assigned_id_fail() throws Exception {
+    // Arrange
+    Path file = file("code,name\n,Ortega\n");
+
+    // Act
+    BulkImportResult result =
+        bulkImportService.importFile(ctx, diningCommons, BulkFormat.CSV, file);
+
+    // Assert
+    assertEquals(1, result.getFailed());
+    verify(ctx).log("Row 1: missing code");
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+  }
+
+  @Test
+  void only_the_first_failures_are_logged() throws Exception {
+    // Arrange
+    Path file = file("[]\n".repeat(BulkImportService.MAX_LOGGED_FAILURES + 5));
+
+    // Act
+    BulkImportResult result =
+        bulkImportService.importFile(ctx, restaurants, BulkFormat.NDJSON, file);
+
+    // Assert
+    assertEquals(BulkImportService.MAX_LOGGED_FAILURES + 5, result.getFailed());
+    verify(ctx, times(BulkImportService.MAX_LOGGED_FAILURES)).log(startsWith("Row "));
+    verify(ctx).log("More rows failed; see the artifact failed-rows.ndjson");
+    assertEquals(
+        BulkImportService.MAX_LOGGED_FAILURES + 5,
+        failedRows.toString(StandardCharsets.UTF_8).lines().count());
+  }
+
+  @Test
+  void a_cancelled_import_stops_after_the_current_batch() throws Exception {
+    // Arrange
+    Path file = file("name\na\nb\nc\nd\n");
+    doThrow(new JobCancelledException("Job 1 cancelled")).when(ctx).throwIfCancelled();
+
+    // Act & Assert
+    assertThrows(
+        JobCancelledException.class,
+        () -> bulkImportService.importFile(ctx, restaurants, BulkFormat.CSV, file));
+    batches(1);
+  }
+}
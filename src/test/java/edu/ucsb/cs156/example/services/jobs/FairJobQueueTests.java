@@ -0,0 +1,242 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobPriority;
+import edu.ucsb.cs156.example.entities.User;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.junit.jupiter.api.Test;
+
+public class FairJobQueueTests {
+
+  private static Job job(Long userId, JobPriority priority, Long timeoutMs) {
+    return Job.builder()
+        .createdBy(userId == null ? null : User.builder().id(userId).build())
+        .priority(priority)
+        .timeoutMs(timeoutMs)
+        .build();
+  }
+
+  /** A task that records its name in a list when it runs. */
+  private static Runnable task(String name, List<String> ran) {
+    return () -> ran.add(name);
+  }
+
+  private static void offer(FairJobQueue queue, Job job, Runnable task) {
+    queue.submit(job, () -> assertTrue(queue.offer(task)));
+  }
+
+  /** Take and run the jobs that may start, one at a time, until none may. */
+  private static void runAll(FairJobQueue queue) {
+    Runnable next;
+    while ((next = queue.poll()) != null) next.run();
+  }
+
+  @Test
+  void users_take_turns() {
+    // Arrange
+    FairJobQueue queue = new FairJobQueue(100, 4, 0, 0, 0);
+    List<String> ran = new ArrayList<>();
+    for (int i = 1; i <= 3; i++) offer(queue, job(1L, null, null), task("a" + i, ran));
+    for (int i = 1; i <= 2; i++) offer(queue, job(2L, null, null), task("b" + i, ran));
+
+    // Act
+    runAll(queue);
+
+    // Assert
+    assertEquals(List.of("a1", "b1", "a2", "b2", "a3"), ran);
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  void a_user_whose_job_just_started_does_not_go_first_again() {
+    // Arrange
+    FairJobQueue queue = new FairJobQueue(100, 4, 0, 0, 0);
+    List<String> ran = new ArrayList<>();
+    offer(queue, job(1L, null, null), task("a1", ran));
+    runAll(queue);
+
+    // Act
+    offer(queue, job(1L, null, null), task("a2", ran));
+    offer(queue, job(2L, null, null), task("b1", ran));
+    runAll(queue);
+
+    // Assert
+    assertEquals(List.of("a1", "b1", "a2"), ran);
+  }
+
+  @Test
+  void low_priority_jobs_get_half_a_turn() {
+    // Arrange
+    FairJobQueue queue = new FairJobQueue(100, 4, 0, 0, 0);
+    List<String> ran = new ArrayList<>();
+    for (int i = 1; i <= 4; i++) offer(queue, job(1L, null, null), task("a" + i, ran));
+    for (int i = 1; i <= 2; i++) offer(queue, job(2L, JobPriority.LOW, null), task("b" + i, ran));
+
+    // Act
+    runAll(queue);
+
+    // Assert
+    assertEquals(List.of("a1", "b1", "a2", "a3", "b2", "a4"), ran);
+  }
+
+  @Test
+  void a_users_own_jobs_start_by_priority() {
+    // Arrange
+    FairJobQueue queue = new FairJobQueue(100, 4, 0, 0, 0);
+    List<String> ran = new ArrayList<>();
+    offer(queue, job(1L, JobPriority.LOW, null), task("low", ran));
+    offer(queue, job(1L, JobPriority.NORMAL, null), task("normal", ran));
+    offer(queue, job(null, null, null), task("scheduled", ran));
+
+    // Act
+    runAll(queue);
+
+    // Assert
+    assertEquals(List.of("normal", "scheduled", "low"), ran);
+  }
+
+  @Test
+  void fast_jobs_go_first_and_have_reserved_threads() {
+    // Arrange: two threads, one of them reserved; jobs of at most 1s are short
+    FairJobQueue queue = new FairJobQueue(100, 2, 1, 0, 1000);
+    List<String> ran = new ArrayList<>();
+    offer(queue, job(1L, null, null), task("n1", ran));
+    offer(queue, job(1L, null, null), task("n2", ran));
+    offer(queue, job(2L, JobPriority.HIGH, null), task("high", ran));
+    offer(queue, job(2L, null, 500L), task("short", ran));
+
+    // Act
+    Runnable high = queue.poll();
+    Runnable shortJob = queue.poll();
+    Runnable n1 = queue.poll();
+    Runnable none = queue.poll();
+
+    // Assert: n2 waits for n1, since the other thread is reserved
+    assertNull(none);
+    high.run();
+    shortJob.run();
+    assertNull(queue.poll());
+    n1.run();
+    runAll(queue);
+    assertEquals(List.of("high", "short", "n1", "n2"), ran);
+  }
+
+  @Test
+  void users_may_not_run_more_than_the_limit() {
+    // Arrange
+    FairJobQueue queue = new FairJobQueue(100, 4, 0, 1, 0);
+    List<String> ran = new ArrayList<>();
+    offer(queue, job(1L, null, null), task("a1", ran));
+    offer(queue, job(1L, null, null), task("a2", ran));
+    offer(queue, job(2L, null, null), task("b1", ran));
+
+    // Act
+    Runnable a1 = queue.poll();
+    Runnable b1 = queue.poll();
+    Runnable none = queue.poll();
+
+    // Assert
+    assertNull(none);
+    assertEquals(1, queue.size());
+    a1.run();
+    b1.run();
+    runAll(queue);
+    assertEquals(List.of("a1", "b1", "a2"), ran);
+  }
+
+  @Test
+  void startable_leaves_out_jobs_that_would_wait() {
+    // Arrange: two threads and at most one running job per user; user 1 has a job running
+    FairJobQueue queue = new FairJobQueue(100, 2, 0, 1, 0);
+    offer(queue, job(1L, null, null), () -> {});
+    Runnable running = queue.poll();
+    Job mine = job(1L, null, null);
+    Job theirs = job(2L, null, null);
+    Job another = job(3L, null, null);
+
+    // Act
+    List<Job> startable = queue.startable(List.of(mine, theirs, another));
+
+    // Assert
+    assertEquals(List.of(theirs), startable);
+    assertEquals(1, queue.freeThreads());
+    running.run();
+    assertEquals(2, queue.freeThreads());
+    assertEquals(List.of(mine, theirs), queue.startable(List.of(mine, theirs, another)));
+  }
+
+  @Test
+  void offer_fails_when_full_and_remove_finds_the_original_task() {
+    // Arrange
+    FairJobQueue queue = new FairJobQueue(2, 4, 0, 0, 0);
+    List<String> ran = new ArrayList<>();
+    Runnable first = task("first", ran);
+    offer(queue, job(1L, null, null), first);
+    offer(queue, job(2L, JobPriority.HIGH, null), task("second", ran));
+
+    // Act
+    boolean offered = queue.offer(task("third", ran));
+    boolean removed = queue.remove(first);
+
+    // Assert
+    assertFalse(offered);
+    assertTrue(removed);
+    assertFalse(queue.remove(first));
+    assertEquals(1, queue.size());
+    assertEquals(1, queue.remainingCapacity());
+    List<Runnable> drained = new ArrayList<>();
+    assertEquals(1, queue.drainTo(drained));
+    drained.get(0).run();
+    assertEquals(List.of("second"), ran);
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  void a_thread_pool_shares_its_threads_between_users() throws Exception {
+    // Arrange: one thread, busy with a job of user 1
+    FairJobQueue queue = new FairJobQueue(100, 1, 0, 0, 0);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, SECONDS, queue);
+    executor.prestartAllCoreThreads();
+    List<String> ran = new CopyOnWriteArrayList<>();
+    CountDownLatch release = new CountDownLatch(1);
+    Job a = job(1L, null, null);
+    Job b = job(2L, null, null);
+    queue.submit(
+        a,
+        () ->
+            executor.execute(
+                () -> {
+                  ran.add("a1");
+                  try {
+                    release.await();
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                }));
+    await().atMost(5, SECONDS).until(() -> ran.contains("a1"));
+
+    // Act
+    queue.submit(a, () -> executor.execute(task("a2", ran)));
+    queue.submit(a, () -> executor.execute(task("a3", ran)));
+    queue.submit(b, () -> executor.execute(task("b1", ran)));
+    queue.submit(b, () -> executor.execute(task("b2", ran)));
+    release.countDown();
+
+    // Assert
+    await().atMost(5, SECONDS).until(() -> ran.size() == 5);
+    assertEquals(List.of("a1", "b1", "a2", "b2", "a3"), ran);
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, SECONDS));
+  }
+}
@@ -0,0 +1,149 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobArtifact;
+import edu.ucsb.cs156.example.repositories.JobArtifactsRepository;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobArtifactStoreTests {
+
+  // sha256 of "hello\n"
+  private static final String HELLO_SHA256 =
+      "5891b5b522d5df086d0ff0b110fbd9d21bb4fc7163af34d08286a2e846f6be03";
+
+  @Mock private JobArtifactsRepository jobArtifactsRepository;
+
+  @InjectMocks private JobArtifactStore jobArtifactStore;
+
+  @TempDir Path dir;
+
+  private final Job job = Job.builder().id(7L).build();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobArtifactStore, "self", jobArtifactStore);
+    ReflectionTestUtils.setField(jobArtifactStore, "dir", dir);
+    when(jobArtifactsRepository.findByJobIdAndName(anyLong(), anyString()))
+        .thenReturn(Optional.empty());
+    when(jobArtifactsRepository.save(any(JobArtifact.class))).thenAnswer(i -> i.getArgument(0));
+  }
+
+  @Test
+  void an_artifact_is_published_when_its_stream_is_closed() throws Exception {
+    // Act
+    OutputStream out = jobArtifactStore.open(job, "hello.txt", "text/plain");
+    out.write("hello\n".getBytes(StandardCharsets.UTF_8));
+    assertFalse(Files.exists(dir.resolve("7/hello.txt")));
+    verify(jobArtifactsRepository, never()).save(any());
+    out.close();
+    out.close();
+
+    // Assert
+    assertEquals("hello\n", Files.readString(dir.resolve("7/hello.txt")));
+    try (var files = Files.list(dir.resolve("7"))) {
+      assertEquals(List.of(dir.resolve("7/hello.txt")), files.toList());
+    }
+    ArgumentCaptor<JobArtifact> saved = ArgumentCaptor.forClass(JobArtifact.class);
+    verify(jobArtifactsRepository, times(1)).save(saved.capture());
+    assertEquals(7L, saved.getValue().getJobId());
+    assertEquals("hello.txt", saved.getValue().getName());
+    assertEquals("text/plain", saved.getValue().getContentType());
+    assertEquals(6, saved.getValue().getSize());
+    assertEquals(HELLO_SHA256, saved.getValue().getSha256());
+    assertEquals(dir.resolve("7/hello.txt"), jobArtifactStore.path(saved.getValue()));
+  }
+
+  @Test
+  void writing_an_artifact_again_replaces_it() throws Exception {
+    // Arrange
+    JobArtifact existing =
+        JobArtifact.builder().id(3L).jobId(7L).name("hello.txt").size(100).build();
+    when(jobArtifactsRepository.findByJobIdAndName(7L, "hello.txt"))
+        .thenReturn(Optional.of(existing));
+    Files.createDirectories(dir.resolve("7"));
+    Files.writeString(dir.resolve("7/hello.txt"), "an earlier attempt, much longer than this one");
+
+    // Act
+    try (OutputStream out = jobArtifactStore.open(job, "hello.txt", "text/plain")) {
+      out.write('h');
+      out.write("ello\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Assert
+    assertEquals("hello\n", Files.readString(dir.resolve("7/hello.txt")));
+    verify(jobArtifactsRepository).save(existing);
+    assertEquals(3L, existing.getId());
+    assertEquals(6, existing.getSize());
+    assertEquals(HELLO_SHA256, existing.getSha256());
+  }
+
+  @Test
+  void the_partial_file_is_removed_when_publishing_fails() throws Exception {
+    // Arrange
+    when(jobArtifactsRepository.save(any(JobArtifact.class)))
+        .thenThrow(new IllegalStateException("database is down"));
+    OutputStream out = jobArtifactStore.open(job, "hello.txt", "text/plain");
+    out.write("hello\n".getBytes(StandardCharsets.UTF_8));
+
+    // Act & Assert
+    assertThrows(IllegalStateException.class, out::close);
+    try (var files = Files.list(dir.resolve("7"))) {
+      assertTrue(files.noneMatch(f -> f.getFileName().toString().endsWith(".part")));
+    }
+  }
+
+  @Test
+  void names_that_could_leave_the_job_directory_are_rejected() {
+    for (String name : new String[] {"../7/x.csv", "a/b.csv", ".hidden", "", "a b", null}) {
+      IllegalArgumentException e =
+          assertThrows(
+              IllegalArgumentException.class,
+              () -> jobArtifactStore.open(job, name, "text/csv"),
+              String.valueOf(name));
+      assertEquals("Invalid artifact name: " + name, e.getMessage());
+    }
+    assertFalse(Files.exists(dir.resolve("7")));
+  }
+
+  @Test
+  void deleteFiles_removes_only_the_given_jobs_directories() throws Exception {
+    // Arrange
+    for (String jobId : List.of("7", "8", "9")) {
+      Files.createDirectories(dir.resolve(jobId));
+      Files.writeString(dir.resolve(jobId).resolve("a.csv"), "x");
+    }
+
+    // Act
+    jobArtifactStore.deleteFiles(List.of(7L, 9L, 10L));
+
+    // Assert
+    assertFalse(Files.exists(dir.resolve("7")));
+    assertTrue(Files.exists(dir.resolve("8/a.csv")));
+    assertFalse(Files.exists(dir.resolve("9")));
+
+    // Act
+    jobArtifactStore.deleteAllFiles();
+
+    // Assert
+    assertFalse(Files.exists(dir.resolve("8")));
+    assertTrue(Files.isDirectory(dir));
+  }
+}
@@ -1,13 +1,39 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.entities.Job;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 public class JobContextTests {
   @Test
-  public void when_jobs_repository_is_null_does_not_save() throws Exception {
+  public void when_job_log_service_is_null_does_not_save() throws Exception {
 
     // arrange
 
@@ -18,6 +44,573 @@ public class JobContextTests {
     ctx.log("This is a log message");
 
     // assert
-    assertEquals("This is a log message", job1.getLog());
+    assertNull(job1.getLog());
+  }
+
+  @Test
+  public void log_appends_chunks_with_increasing_sequence_numbers() throws Exception {
+
+    // arrange
+
+    JobLogService jobLogService = mock(JobLogService.class);
+    Job job1 = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(jobLogService, job1);
+
+    // act
+    ctx.log("first");
+    ctx.log("second");
+
+    // assert
+    verify(jobLogService).append(job1, 0, 0, List.of("first"));
+    verify(jobLogService).append(job1, 1, 1, List.of("second"));
+    assertNull(job1.getLog());
+  }
+
+  @Test
+  public void buffered_lines_are_written_when_line_limit_is_reached() throws Exception {
+
+    // arrange
+
+    JobLogService jobLogService = mock(JobLogService.class);
+    Job job1 = Job.builder().id(7L).build();
+    JobLogBufferLimits limits =
+        JobLogBufferLimits.builder().maxLines(3).maxBytes(1000).maxDelayMs(60_000).build();
+    JobContext ctx = new JobContext(jobLogService, job1, limits);
+
+    // act
+    ctx.log("a");
+    ctx.log("b");
+
+    // assert
+    verifyNoInteractions(jobLogService);
+
+    // act
+    ctx.log("c");
+
+    // assert
+    verify(jobLogService).append(job1, 0, 0, List.of("a", "b", "c"));
+  }
+
+  @Test
+  public void buffered_lines_are_written_when_byte_limit_is_reached() throws Exception {
+
+    // arrange
+
+    JobLogService jobLogService = mock(JobLogService.class);
+    Job job1 = Job.builder().id(7L).build();
+    JobLogBufferLimits limits =
+        JobLogBufferLimits.builder().maxLines(100).maxBytes(10).maxDelayMs(60_000).build();
+    JobContext ctx = new JobContext(jobLogService, job1, limits);
+
+    // act
+    ctx.log("12345");
+    ctx.log(null);
+    ctx.log("123456789");
+    ctx.log("next");
+
+    // assert
+    verify(jobLogService).append(job1, 0, 0, Arrays.asList("12345", null, "123456789"));
+    verifyNoMoreInteractions(jobLogService);
+  }
+
+  @Test
+  public void flush_writes_remaining_lines_once() throws Exception {
+
+    // arrange
+
+    JobLogService jobLogService = mock(JobLogService.class);
+    Job job1 = Job.builder().id(7L).build();
+    JobLogBufferLimits limits =
+        JobLogBufferLimits.builder().maxLines(100).maxBytes(1000).maxDelayMs(60_000).build();
+    JobContext ctx = new JobContext(jobLogService, job1, limits);
+    ctx.log("a");
+
+    // act
+    ctx.flush();
+    ctx.flush();
+    ctx.log("b");
+    ctx.flush();
+
+    // assert
+    verify(jobLogService).append(job1, 0, 0, List.of("a"));
+    verify(jobLogService).append(job1, 1, 1, List.of("b"));
+    verifyNoMoreInteractions(jobLogService);
+  }
+
+  @Test
+  public void flushIfStale_only_flushes_lines_older_than_the_delay() throws Exception {
+
+    // arrange
+
+    JobLogService jobLogService = mock(JobLogService.class);
+    Job job1 = Job.builder().id(7L).build();
+    JobLogBufferLimits slow =
+        JobLogBufferLimits.builder().maxLines(100).maxBytes(1000).maxDelayMs(60_000).build();
+    JobLogBufferLimits fast =
+        JobLogBufferLimits.builder().maxLines(100).maxBytes(1000).maxDelayMs(0).build();
+    JobContext slowCtx = new JobContext(jobLogService, job1, slow);
+    JobContext fastCtx = new JobContext(jobLogService, job1, fast);
+
+    // act
+    slowCtx.log("waiting");
+    slowCtx.flushIfStale();
+    fastCtx.flushIfStale();
+
+    // assert
+    verifyNoInteractions(jobLogService);
+
+    // act
+    fastCtx.log("stale");
+
+    // assert
+    verify(jobLogService).append(job1, 0, 0, List.of("stale"));
+  }
+
+  @Test
+  public void chunks_record_their_first_line_counting_lines_inside_messages() throws Exception {
+
+    // arrange
+
+    JobLogService jobLogService = mock(JobLogService.class);
+    Job job1 = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(jobLogService, job1, JobLogBufferLimits.UNBUFFERED, 3, 10);
+
+    // act
+    ctx.log("one\ntwo");
+    ctx.log("three");
+
+    // assert
+    verify(jobLogService).append(job1, 3, 10, List.of("one\ntwo"));
+    verify(jobLogService).append(job1, 4, 12, List.of("three"));
+  }
+
+  @Test
+  public void cancel_sets_flag_and_interrupts_the_job_thread() throws Exception {
+
+    // arrange
+
+    Job job1 = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(null, job1);
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean interrupted = new AtomicBoolean();
+    Thread worker =
+        new Thread(
+            () -> {
+              ctx.start(null);
+              started.countDown();
+              try {
+                Thread.sleep(60_000);
+              } catch (InterruptedException e) {
+                interrupted.set(true);
+              }
+            });
+    worker.start();
+    started.await();
+
+    // act
+    boolean cancelled = ctx.cancel("cancelled");
+    worker.join(10_000);
+
+    // assert
+    assertTrue(cancelled);
+    assertTrue(interrupted.get());
+    assertTrue(ctx.isCancelled());
+    assertEquals("cancelled", ctx.getCancelStatus());
+    JobCancelledException e = assertThrows(JobCancelledException.class, ctx::throwIfCancelled);
+    assertEquals("Job 7 cancelled", e.getMessage());
+  }
+
+  @Test
+  public void only_the_first_cancel_counts() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().build());
+
+    // act & assert
+    assertFalse(ctx.isCancelled());
+    assertNull(ctx.getCancelStatus());
+    ctx.throwIfCancelled();
+    assertTrue(ctx.cancel("timeout"));
+    assertFalse(ctx.cancel("cancelled"));
+    assertEquals("timeout", ctx.getCancelStatus());
+  }
+
+  @Test
+  public void finish_ignores_later_cancels_and_clears_interrupt() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    ctx.start(null);
+    Thread.currentThread().interrupt();
+
+    // act
+    ctx.finish();
+
+    // assert
+    assertFalse(Thread.currentThread().isInterrupted());
+    assertFalse(ctx.cancel("cancelled"));
+    assertFalse(ctx.isCancelled());
+  }
+
+  @Test
+  public void isOverdue_only_after_timeout() throws Exception {
+
+    // arrange
+
+    JobContext noLimit = new JobContext(null, Job.builder().build());
+    JobContext longLimit = new JobContext(null, Job.builder().build());
+    JobContext expired = new JobContext(null, Job.builder().build());
+
+    // act
+    noLimit.start(null);
+    longLimit.start(60_000L);
+    expired.start(0L);
+
+    // assert
+    assertFalse(noLimit.isOverdue());
+    assertFalse(longLimit.isOverdue());
+    assertTrue(expired.isOverdue());
+  }
+
+  @Test
+  public void progress_and_counters_are_kept_on_the_job_without_a_progress_service() {
+    // arrange
+    Job job = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(null, job);
+
+    // act
+    ctx.progress(3, 10);
+    ctx.increment("imported");
+    ctx.increment("imported", 4);
+    ctx.increment("skipped");
+    ctx.flushProgress();
+
+    // assert
+    assertEquals(3L, job.getProgressDone());
+    assertEquals(10L, job.getProgressTotal());
+    assertEquals(Map.of("imported", 5L, "skipped", 1L), job.getCounters());
+  }
+
+  @Test
+  public void progress_updates_within_the_interval_are_coalesced() {
+    // arrange
+    JobProgressService jobProgressService = mock(JobProgressService.class);
+    when(jobProgressService.getFlushIntervalMs()).thenReturn(60000L);
+    Job job = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(null, job);
+    ctx.setJobProgressService(jobProgressService);
+
+    // act
+    ctx.progress(1, 10);
+    ctx.progress(2, 10);
+    ctx.increment("imported");
+    ctx.increment("imported");
+    ctx.flushProgressIfStale();
+
+    // assert: the first update is written at once, the rest wait for the interval
+    verify(jobProgressService).save(7L, 1L, 10L, Map.of(), null);
+    verify(jobProgressService, times(1)).save(anyLong(), any(), any(), anyMap(), any());
+
+    // act
+    ctx.flushProgress();
+    ctx.flushProgress();
+
+    // assert: only changed counters are written, and nothing when nothing changed
+    verify(jobProgressService).save(7L, 2L, 10L, Map.of("imported", 2L), null);
+    verify(jobProgressService, times(2)).save(anyLong(), any(), any(), anyMap(), any());
+  }
+
+  @Test
+  public void progress_updates_after_the_interval_are_written() {
+    // arrange
+    JobProgressService jobProgressService = mock(JobProgressService.class);
+    when(jobProgressService.getFlushIntervalMs()).thenReturn(0L);
+    Job job = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(null, job);
+    ctx.setJobProgressService(jobProgressService);
+
+    // act
+    ctx.progress(1, 2);
+    ctx.increment("imported");
+    ctx.increment("skipped", 3);
+
+    // assert
+    verify(jobProgressService).save(7L, 1L, 2L, Map.of(), null);
+    verify(jobProgressService).save(7L, 1L, 2L, Map.of("imported", 1L), null);
+    verify(jobProgressService).save(7L, 1L, 2L, Map.of("skipped", 3L), null);
+  }
+
+  @Test
+  public void checkpoints_are_written_with_the_counters_they_go_with() {
+    // arrange
+    JobProgressService jobProgressService = mock(JobProgressService.class);
+    when(jobProgressService.getFlushIntervalMs()).thenReturn(60000L);
+    Job job = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(null, job);
+    ctx.setJobProgressService(jobProgressService);
+
+    // act
+    ctx.increment("imported");
+    ctx.saveCheckpoint("100");
+    ctx.increment("imported");
+    ctx.saveCheckpoint("200");
+    ctx.flushProgress();
+    ctx.increment("imported");
+    ctx.flushProgress();
+
+    // assert: the first write goes out at once, the next holds the latest checkpoint, and a write
+    // without a new checkpoint leaves it alone
+    verify(jobProgressService).save(7L, null, null, Map.of("imported", 1L), null);
+    verify(jobProgressService).save(7L, null, null, Map.of("imported", 2L), "200");
+    verify(jobProgressService).save(7L, null, null, Map.of("imported", 3L), null);
+    assertEquals("200", job.getCheckpoint());
+  }
+
+  @Test
+  public void a_rerun_job_gets_the_checkpoint_of_the_earlier_run() {
+    // arrange
+    JobContext fresh = new JobContext(null, Job.builder().id(7L).build());
+    JobContext rerun = new JobContext(null, Job.builder().id(7L).checkpoint("offset=42").build());
+
+    // act & assert
+    assertNull(fresh.getCheckpoint());
+    assertEquals("offset=42", rerun.getCheckpoint());
+    rerun.saveCheckpoint("offset=43");
+    assertEquals("offset=43", rerun.getCheckpoint());
+  }
+
+  @Test
+  public void a_checkpoint_cannot_be_null() {
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).checkpoint("1").build());
+    assertThrows(IllegalArgumentException.class, () -> ctx.saveCheckpoint(null));
+    assertEquals("1", ctx.getCheckpoint());
+  }
+
+  @Test
+  public void invokeAll_runs_subtasks_in_parallel_and_returns_results_in_order() throws Exception {
+    // arrange
+    ThreadPoolTaskExecutor pool = subtaskPool(4);
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+    ctx.setSubtaskExecutor(pool);
+    CountDownLatch allStarted = new CountDownLatch(4);
+
+    // act: no sub-task can finish until all four are running at once
+    List<Integer> results =
+        ctx.invokeAll(
+            List.of(1, 2, 3, 4),
+            (item, sub) -> {
+              allStarted.countDown();
+              assertTrue(allStarted.await(10, SECONDS));
+              return item * item;
+            });
+
+    // assert
+    assertEquals(List.of(1, 4, 9, 16), results);
+    pool.shutdown();
+  }
+
+  @Test
+  public void invokeAll_collects_results_and_failures_of_all_subtasks() throws Exception {
+    // arrange
+    ThreadPoolTaskExecutor pool = subtaskPool(2);
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+    ctx.setSubtaskExecutor(pool);
+
+    // act
+    JobSubtaskException e =
+        assertThrows(
+            JobSubtaskException.class,
+            () ->
+                ctx.invokeAll(
+                    List.of(0, 1, 2, 3),
+                    (item, sub) -> {
+                      if (item % 2 == 1) throw new Exception("bad item " + item);
+                      return item;
+                    }));
+
+    // assert
+    assertEquals("2 of 4 sub-tasks failed; first failure (subtask 1): bad item 1", e.getMessage());
+    assertEquals(Arrays.asList(0, null, 2, null), e.getResults());
+    assertEquals(Set.of(1, 3), e.getFailures().keySet());
+    assertEquals("bad item 3", e.getFailures().get(3).getMessage());
+    assertEquals(2, e.getSuppressed().length);
+    pool.shutdown();
+  }
+
+  @Test
+  public void invokeAll_tags_log_lines_of_subtasks() throws Exception {
+    // arrange
+    JobLogService jobLogService = mock(JobLogService.class);
+    Job job = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(jobLogService, job);
+
+    // act
+    ctx.invokeAll(
+        List.of("a", "b"),
+        (item, sub) -> {
+          sub.log("processing " + item);
+          sub.increment("processed");
+          sub.throwIfCancelled();
+          return sub.getIndex();
+        });
+
+    // assert
+    verify(jobLogService).append(job, 0, 0, List.of("[subtask 0] processing a"));
+    verify(jobLogService).append(job, 1, 1, List.of("[subtask 1] processing b"));
+    assertEquals(Map.of("processed", 2L), job.getCounters());
+  }
+
+  @Test
+  public void invokeAll_adds_up_what_subtasks_on_the_pool_used() throws Exception {
+    // arrange
+    ThreadPoolTaskExecutor pool = subtaskPool(2);
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+    ctx.setSubtaskExecutor(pool);
+
+    // act
+    ctx.invokeAll(List.of(1, 2, 3), (item, sub) -> new byte[1_000_000].length);
+
+    // assert
+    ThreadUsage used = ctx.getSubtaskUsage();
+    assertTrue(used.allocatedBytes() >= 3_000_000, "allocated " + used.allocatedBytes());
+    assertTrue(used.cpuNanos() >= 0);
+    pool.shutdown();
+  }
+
+  @Test
+  public void invokeAll_without_a_pool_leaves_usage_to_the_calling_thread() throws Exception {
+    // arrange
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+
+    // act
+    ctx.invokeAll(List.of(1, 2), (item, sub) -> new byte[1_000_000].length);
+
+    // assert
+    assertEquals(ThreadUsage.NONE, ctx.getSubtaskUsage());
+  }
+
+  @Test
+  public void invokeAll_without_a_pool_runs_subtasks_on_the_calling_thread() throws Exception {
+    // arrange
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+    Thread caller = Thread.currentThread();
+
+    // act
+    List<Boolean> onCaller =
+        ctx.invokeAll(List.of(1, 2), (item, sub) -> Thread.currentThread() == caller);
+
+    // assert
+    assertEquals(List.of(true, true), onCaller);
+  }
+
+  @Test
+  public void cancelling_the_job_cancels_its_subtasks() throws Exception {
+    // arrange
+    ThreadPoolTaskExecutor pool = subtaskPool(2);
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+    ctx.setSubtaskExecutor(pool);
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch interrupted = new CountDownLatch(2);
+    AtomicInteger runs = new AtomicInteger();
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    Thread worker =
+        new Thread(
+            () -> {
+              ctx.start(null);
+              try {
+                ctx.invokeAll(
+                    List.of(1, 2, 3),
+                    (item, sub) -> {
+                      runs.incrementAndGet();
+                      started.countDown();
+                      try {
+                        Thread.sleep(60_000);
+                      } catch (InterruptedException e) {
+                        assertTrue(sub.isCancelled());
+                        interrupted.countDown();
+                      }
+                      return item;
+                    });
+              } catch (Exception e) {
+                thrown.set(e);
+              }
+            });
+    worker.start();
+    assertTrue(started.await(10, SECONDS));
+
+    // act
+    ctx.cancel("cancelled");
+    worker.join(10_000);
+
+    // assert: the running sub-tasks are interrupted and the queued one never starts
+    assertTrue(interrupted.await(10, SECONDS));
+    assertEquals("Job 7 cancelled", thrown.get().getMessage());
+    assertTrue(thrown.get() instanceof JobCancelledException);
+    pool.shutdown();
+    assertTrue(pool.getThreadPoolExecutor().awaitTermination(10, SECONDS));
+    assertEquals(2, runs.get());
+  }
+
+  @Test
+  public void invokeAll_without_a_pool_stops_at_the_next_subtask_when_cancelled() throws Exception {
+    // arrange
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+    List<Integer> ran = new ArrayList<>();
+
+    // act
+    JobCancelledException e =
+        assertThrows(
+            JobCancelledException.class,
+            () ->
+                ctx.invokeAll(
+                    List.of(1, 2),
+                    (item, sub) -> {
+                      ran.add(item);
+                      ctx.cancel("timeout");
+                      return item;
+                    }));
+
+    // assert
+    assertEquals("Job 7 timeout", e.getMessage());
+    assertEquals(List.of(1), ran);
+  }
+
+  @Test
+  public void openArtifact_opens_the_artifact_in_the_store() throws Exception {
+    // arrange
+    JobArtifactStore store = mock(JobArtifactStore.class);
+    Job job = Job.builder().id(7L).build();
+    OutputStream out = new ByteArrayOutputStream();
+    when(store.open(job, "export.csv", "text/csv")).thenReturn(out);
+    JobContext ctx = new JobContext(null, job);
+    ctx.setJobArtifactStore(store);
+
+    // act
+    List<OutputStream> opened =
+        ctx.invokeAll(List.of(0), (item, sub) -> sub.openArtifact("export.csv", "text/csv"));
+
+    // assert
+    assertEquals(List.of(out), opened);
+  }
+
+  @Test
+  public void openArtifact_fails_without_a_store() {
+    // arrange
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+
+    // act & assert
+    IllegalStateException e =
+        assertThrows(IllegalStateException.class, () -> ctx.openArtifact("a.csv", "text/csv"));
+    assertEquals("Job 7 has no artifact store", e.getMessage());
+  }
+
+  private static ThreadPoolTaskExecutor subtaskPool(int size) {
+    ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+    pool.setCorePoolSize(size);
+    pool.setMaxPoolSize(size);
+    pool.initialize();
+    return pool;
   }
 }
@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobDrainerTests {
+
+  @Mock private JobService jobService;
+
+  @InjectMocks private JobDrainer jobDrainer;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobDrainer, "gracePeriodMs", 5000L);
+  }
+
+  @Test
+  void stop_drains_jobs_with_the_configured_grace_period() {
+    // Arrange
+    jobDrainer.start();
+    assertTrue(jobDrainer.isRunning());
+
+    // Act
+    jobDrainer.stop();
+
+    // Assert
+    verify(jobService).drain(Duration.ofSeconds(5));
+    assertFalse(jobDrainer.isRunning());
+  }
+
+  @Test
+  void drainer_stops_before_every_other_lifecycle_bean() {
+    assertEquals(Integer.MAX_VALUE, jobDrainer.getPhase());
+  }
+}
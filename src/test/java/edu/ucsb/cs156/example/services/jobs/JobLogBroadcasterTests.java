@@ -0,0 +1,382 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class JobLogBroadcasterTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogChunksRepository jobLogChunksRepository;
+
+  private RecordingEmitter emitter = new RecordingEmitter();
+
+  @InjectMocks
+  private JobLogBroadcaster broadcaster =
+      new JobLogBroadcaster() {
+        @Override
+        SseEmitter newEmitter() {
+          return emitter;
+        }
+      };
+
+  // runs each write at once, on the publishing thread, unless a test holds writes back
+  private final List<Runnable> heldBack = new ArrayList<>();
+  private boolean holdBack = false;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    Executor executor =
+        task -> {
+          if (holdBack) heldBack.add(task);
+          else task.run();
+        };
+    ReflectionTestUtils.setField(broadcaster, "jobLogStreamExecutor", executor);
+    ReflectionTestUtils.setField(broadcaster, "maxPendingEvents", 2);
+  }
+
+  @Test
+  void newEmitter_uses_configured_timeout() {
+    JobLogBroadcaster plain = new JobLogBroadcaster();
+    ReflectionTestUtils.setField(plain, "timeoutMs", 1234L);
+
+    assertEquals(1234L, plain.newEmitter().getTimeout());
+  }
+
+  @Test
+  void subscribe_sends_backlog_then_new_chunks_then_status() {
+    // Arrange
+    Job job = Job.builder().id(7L).status("running").log("legacy").build();
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(7L, -1))
+        .thenReturn(Stream.of(chunk(0, "a\nb")));
+
+    // Act
+    broadcaster.subscribe(7L, -1);
+    broadcaster.publish(7L, 0, List.of("a", "b")); // already in the backlog
+    broadcaster.publish(7L, 1, List.of("c"));
+    broadcaster.finish(7L, "complete");
+
+    // Assert
+    assertEquals(
+        List.of(
+            "event:log\ndata:legacy\n\n",
+            "event:log\nid:0\ndata:a\ndata:b\n\n",
+            "event:log\nid:1\ndata:c\n\n",
+            "event:status\ndata:complete\n\n"),
+        emitter.events);
+    assertTrue(emitter.completed);
+    assertEquals(0, broadcaster.subscriberCount(7L));
+  }
+
+  @Test
+  void subscribe_to_finished_job_sends_log_and_status_and_closes() {
+    // Arrange
+    Job job = Job.builder().id(7L).status("error").build();
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(7L, -1))
+        .thenReturn(Stream.of(chunk(0, "Fail!")));
+
+    // Act
+    broadcaster.subscribe(7L, -1);
+
+    // Assert
+    assertEquals(
+        List.of("event:log\nid:0\ndata:Fail!\n\n", "event:status\ndata:error\n\n"), emitter.events);
+    assertTrue(emitter.completed);
+    assertEquals(0, broadcaster.subscriberCount(7L));
+  }
+
+  @Test
+  void chunks_written_while_backlog_is_read_are_sent_once_after_it() {
+    // Arrange
+    Job job = Job.builder().id(7L).status("running").build();
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(7L, -1))
+        .thenAnswer(
+            invocation -> {
+              // the job writes two chunks and finishes while the backlog is being read, and
+              // the read sees the first of them
+              broadcaster.publish(7L, 0, List.of("a"));
+              broadcaster.publish(7L, 1, List.of("b"));
+              broadcaster.finish(7L, "complete");
+              return Stream.of(chunk(0, "a"));
+            });
+
+    // Act
+    broadcaster.subscribe(7L, -1);
+
+    // Assert
+    assertEquals(
+        List.of(
+            "event:log\nid:0\ndata:a\n\n",
+            "event:log\nid:1\ndata:b\n\n",
+            "event:status\ndata:complete\n\n"),
+        emitter.events);
+    assertTrue(emitter.completed);
+  }
+
+  @Test
+  void resuming_after_an_event_skips_the_legacy_log() {
+    // Arrange
+    Job job = Job.builder().id(7L).status("running").log("legacy").build();
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(7L, 4))
+        .thenReturn(Stream.of(chunk(5, "e")));
+
+    // Act
+    broadcaster.subscribe(7L, 4);
+
+    // Assert
+    assertEquals(List.of("event:log\nid:5\ndata:e\n\n"), emitter.events);
+    assertEquals(1, broadcaster.subscriberCount(7L));
+  }
+
+  @Test
+  void subscribe_to_missing_job_throws() {
+    // Arrange
+    when(jobsRepository.findById(7L)).thenReturn(Optional.empty());
+
+    // Act & Assert
+    assertThrows(EntityNotFoundException.class, () -> broadcaster.subscribe(7L, -1));
+    assertEquals(0, broadcaster.subscriberCount(7L));
+  }
+
+  @Test
+  void client_that_has_gone_away_is_dropped() {
+    // Arrange
+    Job job = Job.builder().id(7L).status("running").build();
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(7L, -1))
+        .thenReturn(Stream.empty());
+    broadcaster.subscribe(7L, -1);
+    emitter.broken = true;
+
+    // Act
+    broadcaster.publish(7L, 0, List.of("a"));
+    broadcaster.publish(7L, 1, List.of("b"));
+    broadcaster.finish(7L, "complete");
+
+    // Assert
+    assertEquals(List.of(), emitter.events);
+    assertEquals(0, broadcaster.subscriberCount(7L));
+  }
+
+  @Test
+  void publish_leaves_writing_to_the_executor() {
+    // Arrange
+    Job job = Job.builder().id(7L).status("running").build();
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(7L, -1))
+        .thenReturn(Stream.empty());
+    broadcaster.subscribe(7L, -1);
+    holdBack = true;
+
+    // Act
+    broadcaster.publish(7L, 0, List.of("a"));
+    broadcaster.publish(7L, 1, List.of("b"));
+
+    // Assert: one write task for the subscriber, however many events it has waiting
+    assertEquals(List.of(), emitter.events);
+    assertEquals(1, heldBack.size());
+    heldBack.get(0).run();
+    assertEquals(
+        List.of("event:log\nid:0\ndata:a\n\n", "event:log\nid:1\ndata:b\n\n"), emitter.events);
+  }
+
+  @Test
+  void client_that_falls_behind_is_disconnected() {
+    // Arrange: the writes are held back, as if the client had stopped reading
+    Job job = Job.builder().id(7L).status("running").build();
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(7L, -1))
+        .thenReturn(Stream.empty());
+    broadcaster.subscribe(7L, -1);
+    holdBack = true;
+
+    // Act
+    broadcaster.publish(7L, 0, List.of("a"));
+    broadcaster.publish(7L, 1, List.of("b"));
+    broadcaster.publish(7L, 2, List.of("c"));
+
+    // Assert
+    assertEquals(0, broadcaster.subscriberCount(7L));
+    holdBack = false;
+    heldBack.forEach(Runnable::run);
+    assertEquals(List.of(), emitter.events);
+    assertTrue(emitter.completed);
+  }
+
+  @Test
+  void backlog_does_not_count_towards_the_limit() {
+    // Arrange: a backlog longer than the limit, not yet written
+    Job job = Job.builder().id(7L).status("running").build();
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(7L, -1))
+        .thenReturn(Stream.of(chunk(0, "a"), chunk(1, "b"), chunk(2, "c")));
+    holdBack = true;
+    broadcaster.subscribe(7L, -1);
+
+    // Act
+    broadcaster.publish(7L, 3, List.of("d"));
+
+    // Assert
+    assertEquals(1, broadcaster.subscriberCount(7L));
+    heldBack.forEach(Runnable::run);
+    assertEquals(4, emitter.events.size());
+  }
+
+  @Test
+  void status_of_a_job_that_ends_while_draining_is_still_sent() {
+    // Arrange: streams of two running jobs with one sender thread, which the slow client of job 8
+    // keeps busy while the drain ends job 7
+    for (long id : List.of(7L, 8L)) {
+      when(jobsRepository.findById(id))
+          .thenReturn(Optional.of(Job.builder().id(id).status("running").build()));
+      when(jobLogChunksRepository.streamByJobIdAndSeqGreaterThanOrderBySeqAsc(id, -1))
+          .thenReturn(Stream.empty());
+    }
+    RecordingEmitter slow =
+        new RecordingEmitter() {
+          @Override
+          public void send(SseEventBuilder builder) throws IOException {
+            try {
+              Thread.sleep(500);
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+            super.send(builder);
+          }
+        };
+    List<SseEmitter> emitters = new ArrayList<>(List.of(emitter, slow));
+    ApplicationContextRunner runner =
+        new ApplicationContextRunner()
+            .withPropertyValues("app.jobs.logStream.senderThreads=1")
+            .withUserConfiguration(JobExecutorConfig.class, DrainConfig.class)
+            .withBean(ThreadPoolTaskExecutorBuilder.class)
+            .withBean(JobsRepository.class, () -> jobsRepository)
+            .withBean(JobLogChunksRepository.class, () -> jobLogChunksRepository)
+            .withBean(
+                JobLogBroadcaster.class,
+                () ->
+                    new JobLogBroadcaster() {
+                      @Override
+                      SseEmitter newEmitter() {
+                        return emitters.remove(0);
+                      }
+                    });
+
+    // Act: the context is closed once the streams are open
+    runner.run(
+        context -> {
+          JobLogBroadcaster contextBroadcaster = context.getBean(JobLogBroadcaster.class);
+          contextBroadcaster.subscribe(7L, -1);
+          contextBroadcaster.subscribe(8L, -1);
+        });
+
+    // Assert
+    await().atMost(5, SECONDS).until(() -> emitter.completed);
+    assertEquals(List.of("event:status\ndata:interrupted\n\n"), emitter.events);
+  }
+
+  @Configuration
+  static class DrainConfig {
+    @Bean
+    InterruptOnDrain interruptOnDrain() {
+      return new InterruptOnDrain();
+    }
+  }
+
+  /** Stands in for JobDrainer: in the first shutdown phase, job 8 logs a line and job 7 ends. */
+  static class InterruptOnDrain implements SmartLifecycle {
+    @Autowired private JobLogBroadcaster broadcaster;
+
+    private volatile boolean running = false;
+
+    @Override
+    public void start() {
+      running = true;
+    }
+
+    @Override
+    public void stop() {
+      broadcaster.publish(8L, 0, List.of("last line"));
+      broadcaster.finish(7L, "interrupted");
+      running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+      return running;
+    }
+
+    @Override
+    public int getPhase() {
+      return Integer.MAX_VALUE;
+    }
+  }
+
+  @Test
+  void publish_and_finish_without_subscribers_do_nothing() {
+    broadcaster.publish(7L, 0, List.of("a"));
+    broadcaster.finish(7L, "complete");
+
+    assertEquals(List.of(), emitter.events);
+  }
+
+  private static JobLogChunk chunk(int seq, String content) {
+    return JobLogChunk.builder().jobId(7L).seq(seq).content(content).build();
+  }
+
+  /** Records events as the text that would be written to the response. */
+  private static class RecordingEmitter extends SseEmitter {
+    final List<String> events = new CopyOnWriteArrayList<>();
+    volatile boolean completed = false;
+    boolean broken = false;
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      if (broken) throw new IOException("Broken pipe");
+      events.add(
+          builder.build().stream()
+              .map(data -> data.getData().toString())
+              .collect(Collectors.joining()));
+    }
+
+    @Override
+    public void complete() {
+      completed = true;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobLogIndexTests {
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private JobLogChunksRepository jobLogChunksRepository;
+
+  @Mock private JobsRepository jobsRepository;
+
+  @InjectMocks private JobLogIndex jobLogIndex;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobLogIndex, "maxChunks", 1000);
+  }
+
+  private static JobLogChunk chunk(long id, long jobId, int firstLine, String content) {
+    return JobLogChunk.builder()
+        .id(id)
+        .jobId(jobId)
+        .firstLine(firstLine)
+        .lineCount(content.split("\n", -1).length)
+        .content(content)
+        .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void givenChunks(JobLogChunk... chunks) {
+    List<Long> ids = new ArrayList<>();
+    for (JobLogChunk chunk : chunks) ids.add(chunk.getId());
+    when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+        .thenReturn(ids);
+    when(jobLogChunksRepository.findAllById(any(Iterable.class))).thenReturn(List.of(chunks));
+  }
+
+  @Test
+  void terms_are_distinct_lowercased_words() {
+    assertEquals(
+        Set.of("error", "row_17", "déjà", "vu", "42"),
+        JobLogIndex.terms("ERROR: row_17 -- déjà vu (42) error a " + "x".repeat(65)));
+    assertEquals(Set.of(), JobLogIndex.terms(null));
+  }
+
+  @Test
+  void index_inserts_one_row_per_distinct_term() {
+    // Act
+    jobLogIndex.index(
+        chunk(9L, 3L, 0, "Timeout talking to db\ntimeout again"),
+        "Timeout talking to db\ntimeout again");
+
+    // Assert
+    ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+    verify(jdbcTemplate).batchUpdate(eq(JobLogIndex.INSERT_TERM), rows.capture());
+    assertEquals(
+        List.of("timeout", "talking", "to", "db", "again"),
+        rows.getValue().stream().map(row -> row[0]).toList());
+    rows.getValue().forEach(row -> assertEquals(9L, row[1]));
+  }
+
+  @Test
+  void index_skips_chunks_without_terms_and_survives_failures() {
+    // Act
+    jobLogIndex.index(chunk(9L, 3L, 0, "-- 1 --"), "-- 1 --");
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+        .thenThrow(new DataIntegrityViolationException("duplicate"));
+    jobLogIndex.index(chunk(10L, 3L, 0, "hello"), "hello");
+
+    // Assert
+    verify(jdbcTemplate).batchUpdate(eq(JobLogIndex.INSERT_TERM), anyList());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void search_returns_matching_lines_by_job_newest_first() {
+    // Arrange: the terms of chunk 7 are on different lines, so it does not match
+    givenChunks(
+        chunk(8L, 2L, 10, "starting\nFailed to parse row 12\nfailed TO PARSE row 13"),
+        chunk(7L, 1L, 0, "failed\nto parse"),
+        chunk(5L, 1L, 4, "older: failed to parse header"));
+    Job one = Job.builder().id(1L).jobType("ImportJob").status("error").log("a\nb").build();
+    Job two = Job.builder().id(2L).jobType("ImportJob").status("complete").build();
+    when(jobsRepository.findAllById(any(Collection.class))).thenReturn(List.of(one, two));
+
+    // Act
+    List<JobLogSearchResult> results = jobLogIndex.search("Failed to PARSE", 20);
+
+    // Assert
+    ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+    verify(jdbcTemplate).queryForList(anyString(), eq(Long.class), args.capture());
+    assertEquals(List.of("failed", "to", "parse", 3, 1000), List.of(args.getValue()));
+    assertEquals(
+        List.of(
+            JobLogSearchResult.builder()
+                .jobId(2L)
+                .jobType("ImportJob")
+                .status("complete")
+                .matches(
+                    List.of(
+                        JobLogMatch.builder().line(11).text("Failed to parse row 12").build(),
+                        JobLogMatch.builder().line(12).text("failed TO PARSE row 13").build()))
+                .build(),
+            JobLogSearchResult.builder()
+                .jobId(1L)
+                .jobType("ImportJob")
+                .status("error")
+                .matches(
+                    List.of(
+                        JobLogMatch.builder()
+                            .line(6)
+                            .text("older: failed to parse header")
+                            .build()))
+                .build()),
+        results);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void search_stops_at_the_limit_and_shortens_long_lines() {
+    // Arrange
+    String longLine = "error " + "x".repeat(400);
+    givenChunks(chunk(8L, 2L, 0, longLine), chunk(7L, 1L, 0, "error"));
+    when(jobsRepository.findAllById(any(Collection.class)))
+        .thenReturn(List.of(Job.builder().id(2L).build()));
+
+    // Act
+    List<JobLogSearchResult> results = jobLogIndex.search("error", 1);
+
+    // Assert
+    assertEquals(1, results.size());
+    assertEquals(2L, results.get(0).getJobId());
+    String text = results.get(0).getMatches().get(0).getText();
+    assertEquals(JobLogIndex.MAX_MATCH_LENGTH + 3, text.length());
+  }
+
+  @Test
+  void search_needs_a_searchable_word() {
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> jobLogIndex.search("a ! ?", 20));
+    assertEquals("Search for words of 2 to 64 letters or digits", e.getMessage());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> jobLogIndex.search("aa bb cc dd ee ff gg hh ii jj kk", 20));
+    verifyNoInteractions(jdbcTemplate);
+  }
+}
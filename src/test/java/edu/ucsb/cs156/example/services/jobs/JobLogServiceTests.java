@@ -0,0 +1,388 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.JobLogFlushStats;
+import edu.ucsb.cs156.example.models.JobLogSize;
+import edu.ucsb.cs156.example.models.JobLogSlice;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobLogServiceTests {
+
+  @Mock private JobLogChunksRepository jobLogChunksRepository;
+
+  @Mock private JobLogBroadcaster jobLogBroadcaster;
+
+  @Mock private JobMetrics jobMetrics;
+
+  @Mock private JobLogIndex jobLogIndex;
+
+  @InjectMocks private JobLogService jobLogService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void test_append_saves_a_chunk() {
+    // Arrange
+    Job job = Job.builder().id(3L).build();
+
+    // Act
+    jobLogService.append(job, 4, 10, List.of("hello", "world"));
+
+    // Assert
+    JobLogChunk expected =
+        JobLogChunk.builder()
+            .jobId(3L)
+            .seq(4)
+            .firstLine(10)
+            .lineCount(2)
+            .content("hello\nworld")
+            .rawSize(11)
+            .storedSize(11)
+            .build();
+    InOrder inOrder = inOrder(jobLogChunksRepository, jobLogIndex, jobLogBroadcaster);
+    inOrder.verify(jobLogChunksRepository).save(eq(expected));
+    inOrder.verify(jobLogIndex).index(eq(expected), eq("hello\nworld"));
+    inOrder.verify(jobLogBroadcaster).publish(3L, 4, List.of("hello", "world"));
+    verify(jobMetrics).logWritten(job, 11);
+  }
+
+  @Test
+  void test_append_compresses_large_chunks() {
+    // Arrange
+    ReflectionTestUtils.setField(jobLogService, "compressionMinBytes", 256);
+    Job job = Job.builder().id(3L).build();
+    List<String> lines = Collections.nCopies(100, "Processing item... ok");
+    String text = String.join("\n", lines);
+
+    // Act
+    jobLogService.append(job, 0, 0, lines);
+
+    // Assert
+    ArgumentCaptor<JobLogChunk> saved = ArgumentCaptor.forClass(JobLogChunk.class);
+    verify(jobLogChunksRepository).save(saved.capture());
+    JobLogChunk chunk = saved.getValue();
+    assertNull(chunk.getContent());
+    assertEquals(text.length(), chunk.getRawSize());
+    assertEquals(chunk.getCompressedContent().length, chunk.getStoredSize());
+    assertTrue(chunk.getStoredSize() < text.length() / 10);
+    assertEquals(text, JobLogService.text(chunk));
+    assertEquals(text.length(), jobLogService.getFlushStats().getBytes());
+    assertEquals(chunk.getStoredSize(), jobLogService.getFlushStats().getStoredBytes());
+  }
+
+  @Test
+  void test_append_stores_small_or_incompressible_chunks_as_text() {
+    // Arrange
+    ReflectionTestUtils.setField(jobLogService, "compressionMinBytes", 4);
+    Job job = Job.builder().id(3L).build();
+
+    // Act
+    jobLogService.append(job, 0, 0, List.of("abc"));
+    jobLogService.append(job, 1, 1, List.of("q7Zx!")); // gzip would make it bigger
+
+    // Assert
+    ArgumentCaptor<JobLogChunk> saved = ArgumentCaptor.forClass(JobLogChunk.class);
+    verify(jobLogChunksRepository, times(2)).save(saved.capture());
+    for (JobLogChunk chunk : saved.getAllValues()) {
+      assertNull(chunk.getCompressedContent());
+      assertEquals(chunk.getRawSize(), chunk.getStoredSize());
+    }
+    assertEquals("q7Zx!", JobLogService.text(saved.getValue()));
+  }
+
+  @Test
+  void test_text_rejects_a_corrupt_chunk() {
+    // Arrange
+    JobLogChunk chunk =
+        JobLogChunk.builder().id(9L).compressedContent(new byte[] {1, 2, 3}).build();
+
+    // Act & Assert
+    UncheckedIOException e =
+        assertThrows(UncheckedIOException.class, () -> JobLogService.text(chunk));
+    assertEquals("Corrupt log chunk 9", e.getMessage());
+  }
+
+  @Test
+  void test_nextSeq_comes_from_repository() {
+    // Arrange
+    Job job = Job.builder().id(3L).build();
+    when(jobLogChunksRepository.nextSeq(3L)).thenReturn(12);
+
+    // Act & Assert
+    assertEquals(12, jobLogService.nextSeq(job));
+  }
+
+  @Test
+  void test_countLines_comes_from_last_chunk() {
+    // Arrange
+    Job job = Job.builder().id(3L).build();
+    Job empty = Job.builder().id(4L).build();
+    when(jobLogChunksRepository.countLines(3L)).thenReturn(Optional.of(42));
+    when(jobLogChunksRepository.countLines(4L)).thenReturn(Optional.empty());
+
+    // Act & Assert
+    assertEquals(42, jobLogService.countLines(job));
+    assertEquals(0, jobLogService.countLines(empty));
+  }
+
+  @Test
+  void test_countLines_counts_lines_inside_messages() {
+    assertEquals(0, JobLogService.countLines(List.of()));
+    assertEquals(4, JobLogService.countLines(Arrays.asList("a", null, "b\nc")));
+  }
+
+  @Test
+  void test_getFlushStats_before_any_flush() {
+    // Act
+    JobLogFlushStats stats = jobLogService.getFlushStats();
+
+    // Assert
+    JobLogFlushStats expected =
+        JobLogFlushStats.builder()
+            .flushes(0)
+            .lines(0)
+            .bytes(0)
+            .storedBytes(0)
+            .averageLinesPerFlush(0.0)
+            .maxLinesPerFlush(0)
+            .build();
+    assertEquals(expected, stats);
+  }
+
+  @Test
+  void test_getFlushStats_counts_flushes_and_lines() {
+    // Arrange
+    Job job = Job.builder().id(3L).build();
+
+    // Act
+    jobLogService.append(job, 0, 0, List.of("abc"));
+    jobLogService.append(job, 1, 1, List.of("d", "e", "f"));
+    JobLogFlushStats stats = jobLogService.getFlushStats();
+
+    // Assert
+    JobLogFlushStats expected =
+        JobLogFlushStats.builder()
+            .flushes(2)
+            .lines(4)
+            .bytes(8)
+            .storedBytes(8)
+            .averageLinesPerFlush(2.0)
+            .maxLinesPerFlush(3)
+            .build();
+    assertEquals(expected, stats);
+  }
+
+  @Test
+  void test_getLog_joins_chunks_in_order() {
+    // Arrange
+    Job job = Job.builder().id(1L).build();
+    when(jobLogChunksRepository.streamByJobIdOrderBySeqAsc(1L))
+        .thenReturn(
+            Stream.of(
+                JobLogChunk.builder().jobId(1L).seq(0).content("line 1").build(),
+                JobLogChunk.builder().jobId(1L).seq(1).content("line 2\nline 3").build()));
+
+    // Act
+    String result = jobLogService.getLog(job);
+
+    // Assert
+    assertEquals("line 1\nline 2\nline 3", result);
+  }
+
+  @Test
+  void test_getLog_puts_legacy_log_first() {
+    // Arrange
+    Job job = Job.builder().id(2L).log("legacy").build();
+    when(jobLogChunksRepository.streamByJobIdOrderBySeqAsc(2L))
+        .thenReturn(Stream.of(JobLogChunk.builder().jobId(2L).seq(0).content("new").build()));
+
+    // Act
+    String result = jobLogService.getLog(job);
+
+    // Assert
+    assertEquals("legacy\nnew", result);
+  }
+
+  @Test
+  void test_writeLog_decompresses_chunks_as_it_writes_them() throws Exception {
+    // Arrange
+    ReflectionTestUtils.setField(jobLogService, "compressionMinBytes", 0);
+    Job job = Job.builder().id(1L).log("legacy").build();
+    List<String> lines = Collections.nCopies(50, "the same line again");
+    jobLogService.append(job, 0, 0, lines);
+    ArgumentCaptor<JobLogChunk> saved = ArgumentCaptor.forClass(JobLogChunk.class);
+    verify(jobLogChunksRepository).save(saved.capture());
+    when(jobLogChunksRepository.streamByJobIdOrderBySeqAsc(1L))
+        .thenReturn(
+            Stream.of(
+                saved.getValue(), JobLogChunk.builder().jobId(1L).seq(1).content("end").build()));
+    StringWriter writer = new StringWriter();
+
+    // Act
+    jobLogService.writeLog(job, writer);
+
+    // Assert
+    assertEquals("legacy\n" + String.join("\n", lines) + "\nend", writer.toString());
+  }
+
+  @Test
+  void test_writeLog_reports_a_failed_write() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(1L).log("legacy").build();
+    Writer writer = mock(Writer.class);
+    doThrow(new IOException("Broken pipe")).when(writer).write(anyString());
+
+    // Act & Assert
+    assertThrows(UncheckedIOException.class, () -> jobLogService.writeLog(job, writer));
+  }
+
+  @Test
+  void test_getLogSize_adds_the_legacy_log() {
+    // Arrange
+    Job job = Job.builder().id(1L).log("légacy").build();
+    Job chunksOnly = Job.builder().id(2L).build();
+    when(jobLogChunksRepository.sumSizes(1L))
+        .thenReturn(JobLogSize.builder().chunks(2).rawBytes(1000).storedBytes(100).build());
+    when(jobLogChunksRepository.sumSizes(2L))
+        .thenReturn(JobLogSize.builder().chunks(1).rawBytes(10).storedBytes(10).build());
+
+    // Act & Assert
+    assertEquals(
+        JobLogSize.builder().chunks(2).rawBytes(1007).storedBytes(107).build(),
+        jobLogService.getLogSize(job));
+    assertEquals(
+        JobLogSize.builder().chunks(1).rawBytes(10).storedBytes(10).build(),
+        jobLogService.getLogSize(chunksOnly));
+  }
+
+  @Test
+  void test_getLog_with_no_chunks_and_no_legacy_log() {
+    // Arrange
+    Job job = Job.builder().id(5L).build();
+    when(jobLogChunksRepository.streamByJobIdOrderBySeqAsc(5L)).thenReturn(Stream.empty());
+
+    // Act
+    String result = jobLogService.getLog(job);
+
+    // Assert
+    assertEquals("", result);
+  }
+
+  @Test
+  void test_getLogSlice_reads_legacy_log_then_only_the_chunks_needed() {
+    // Arrange
+    Job job = Job.builder().id(1L).log("l0\nl1").build();
+    when(jobLogChunksRepository.countLines(1L)).thenReturn(Optional.of(5));
+    when(jobLogChunksRepository.findLines(1L, 0, 2)).thenReturn(List.of(chunkAB()));
+
+    // Act
+    JobLogSlice slice = jobLogService.getLogSlice(job, 1, 3);
+
+    // Assert
+    JobLogSlice expected =
+        JobLogSlice.builder()
+            .offset(1)
+            .nextOffset(4)
+            .totalLines(7)
+            .lines(List.of("l1", "a", "b"))
+            .build();
+    assertEquals(expected, slice);
+  }
+
+  @Test
+  void test_getLogSlice_trims_chunks_to_the_range() {
+    // Arrange
+    Job job = Job.builder().id(1L).log("l0\nl1").build();
+    when(jobLogChunksRepository.countLines(1L)).thenReturn(Optional.of(5));
+    when(jobLogChunksRepository.findLines(1L, 1, 5)).thenReturn(List.of(chunkAB(), chunkCDE()));
+
+    // Act
+    JobLogSlice slice = jobLogService.getLogSlice(job, 3, 100);
+
+    // Assert
+    assertEquals(List.of("b", "c", "d", "e"), slice.getLines());
+    assertEquals(7, slice.getNextOffset());
+  }
+
+  @Test
+  void test_getLogSlice_past_the_end_is_empty() {
+    // Arrange
+    Job job = Job.builder().id(1L).build();
+    when(jobLogChunksRepository.countLines(1L)).thenReturn(Optional.of(5));
+
+    // Act
+    JobLogSlice past = jobLogService.getLogSlice(job, 10, 5);
+    JobLogSlice negative = jobLogService.getLogSlice(job, -5, -1);
+
+    // Assert
+    assertEquals(List.of(), past.getLines());
+    assertEquals(10, past.getNextOffset());
+    assertEquals(List.of(), negative.getLines());
+    assertEquals(0, negative.getOffset());
+    verify(jobLogChunksRepository, never()).findLines(anyLong(), anyInt(), anyInt());
+  }
+
+  @Test
+  void test_getLogTail_reads_only_the_last_chunks() {
+    // Arrange
+    Job job = Job.builder().id(1L).build();
+    when(jobLogChunksRepository.countLines(1L)).thenReturn(Optional.of(5));
+    when(jobLogChunksRepository.findLines(1L, 3, 5)).thenReturn(List.of(chunkCDE()));
+
+    // Act
+    JobLogSlice tail = jobLogService.getLogTail(job, 2);
+    JobLogSlice all = jobLogService.getLogTail(job, -1);
+
+    // Assert
+    JobLogSlice expected =
+        JobLogSlice.builder()
+            .offset(3)
+            .nextOffset(5)
+            .totalLines(5)
+            .lines(List.of("d", "e"))
+            .build();
+    assertEquals(expected, tail);
+    assertEquals(5, all.getOffset());
+    assertEquals(List.of(), all.getLines());
+  }
+
+  private static JobLogChunk chunkAB() {
+    return JobLogChunk.builder().jobId(1L).seq(0).firstLine(0).lineCount(2).content("a\nb").build();
+  }
+
+  private static JobLogChunk chunkCDE() {
+    return JobLogChunk.builder()
+        .jobId(1L)
+        .seq(1)
+        .firstLine(2)
+        .lineCount(3)
+        .content("c\nd\ne")
+        .build();
+  }
+}
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobTimerStats;
+import edu.ucsb.cs156.example.models.JobTypeStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobMetricsTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final JobMetrics jobMetrics = new JobMetrics();
+
+  @BeforeEach
+  public void setup() {
+    ReflectionTestUtils.setField(jobMetrics, "meterRegistry", meterRegistry);
+  }
+
+  private static Job testJob(String status) {
+    return Job.builder().jobType(TestJob.class.getName()).status(status).attempts(1).build();
+  }
+
+  @Test
+  void type_is_the_simple_class_name() {
+    assertEquals("TestJob", JobMetrics.type(TestJob.class.getName()));
+    assertEquals("Plain", JobMetrics.type("Plain"));
+    assertEquals("unknown", JobMetrics.type(null));
+    assertEquals(
+        "JobsController$$Lambda",
+        JobMetrics.type("edu.ucsb.cs156.example.controllers.JobsController$$Lambda/0x0000012345"));
+  }
+
+  @Test
+  void jobEnded_records_run_time_by_type_and_status() {
+    // Act
+    jobMetrics.jobEnded(testJob("complete"), Duration.ofMillis(100));
+    jobMetrics.jobEnded(testJob("complete"), Duration.ofMillis(300));
+    jobMetrics.jobEnded(testJob("error"), Duration.ofMillis(200));
+
+    // Assert
+    assertEquals(
+        2,
+        meterRegistry
+            .get(JobMetrics.EXECUTION)
+            .tags("type", "TestJob", "status", "complete")
+            .timer()
+            .count());
+    JobTypeStats stats = jobMetrics.getStatsByType().get("TestJob");
+    assertEquals(Map.of("complete", 2L, "error", 1L), stats.getOutcomes());
+    assertEquals(3, stats.getRunTime().getCount());
+    assertEquals(200.0, stats.getRunTime().getMeanMs(), 0.001);
+    assertEquals(300.0, stats.getRunTime().getMaxMs(), 0.001);
+  }
+
+  @Test
+  void jobStarted_records_queue_wait_of_first_attempts_only() {
+    // Arrange
+    Job first = testJob("running");
+    first.setCreatedAt(ZonedDateTime.now().minusSeconds(2));
+    Job retried = testJob("running");
+    retried.setCreatedAt(ZonedDateTime.now().minusHours(1));
+    retried.setAttempts(2);
+    Job unsaved = testJob("running");
+
+    // Act
+    jobMetrics.jobStarted(first);
+    jobMetrics.jobStarted(retried);
+    jobMetrics.jobStarted(unsaved);
+
+    // Assert
+    JobTimerStats queueWait = jobMetrics.getStatsByType().get("TestJob").getQueueWait();
+    assertEquals(1, queueWait.getCount());
+    assertTrue(queueWait.getMeanMs() >= 2000 && queueWait.getMeanMs() < 60_000);
+  }
+
+  @Test
+  void rejections_and_log_bytes_are_counted_by_type() {
+    // Act
+    jobMetrics.jobRejected(testJob("rejected"));
+    jobMetrics.logWritten(testJob("running"), 100);
+    jobMetrics.logWritten(testJob("running"), 50);
+    jobMetrics.logWritten(Job.builder().build(), 7);
+
+    // Assert
+    Map<String, JobTypeStats> stats = jobMetrics.getStatsByType();
+    assertEquals(1, stats.get("TestJob").getRejected());
+    assertEquals(150, stats.get("TestJob").getLogBytes());
+    assertEquals(0, stats.get("TestJob").getRunTime().getCount());
+    assertEquals(7, stats.get("unknown").getLogBytes());
+  }
+
+  @Test
+  void cpu_time_and_allocation_are_added_up_by_type() {
+    // Act
+    jobMetrics.resourcesUsed(testJob("complete"), new ThreadUsage(1_500_000_000L, 4096));
+    jobMetrics.resourcesUsed(testJob("error"), new ThreadUsage(250_000_000L, 1024));
+    jobMetrics.resourcesUsed(testJob("complete"), new ThreadUsage(-1, -1));
+
+    // Assert
+    assertEquals(
+        1.75,
+        meterRegistry.get(JobMetrics.CPU_TIME).tags("type", "TestJob").counter().count(),
+        0.001);
+    JobTypeStats stats = jobMetrics.getStatsByType().get("TestJob");
+    assertEquals(1750, stats.getCpuTimeMs());
+    assertEquals(5120, stats.getAllocatedBytes());
+  }
+
+  @Test
+  void getStatsByType_is_empty_before_any_job_runs() {
+    assertEquals(Map.of(), jobMetrics.getStatsByType());
+  }
+}
@@ -0,0 +1,60 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+
+public class JobProgressServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @InjectMocks private JobProgressService jobProgressService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void save_updates_progress_and_existing_counters_and_inserts_new_ones() {
+    // Arrange
+    when(jobsRepository.updateCounter(7L, "imported", 5L)).thenReturn(1);
+    when(jobsRepository.updateCounter(7L, "skipped", 1L)).thenReturn(0);
+
+    // Act
+    jobProgressService.save(7L, 5L, 10L, Map.of("imported", 5L, "skipped", 1L), null);
+
+    // Assert
+    verify(jobsRepository).updateProgress(7L, 5L, 10L);
+    verify(jobsRepository).insertCounter(7L, "skipped", 1L);
+    verify(jobsRepository, never()).insertCounter(7L, "imported", 5L);
+  }
+
+  @Test
+  void save_without_changed_counters_only_updates_progress() {
+    // Act
+    jobProgressService.save(7L, null, null, Map.of(), null);
+
+    // Assert
+    verify(jobsRepository).updateProgress(7L, null, null);
+    verify(jobsRepository, never()).updateCounter(anyLong(), anyString(), anyLong());
+    verify(jobsRepository, never()).updateCheckpoint(anyLong(), any());
+  }
+
+  @Test
+  void save_writes_a_new_checkpoint() {
+    // Act
+    jobProgressService.save(7L, 5L, 10L, Map.of(), "last-id=5");
+
+    // Assert
+    verify(jobsRepository).updateProgress(7L, 5L, 10L);
+    verify(jobsRepository).updateCheckpoint(7L, "last-id=5");
+  }
+}
@@ -0,0 +1,153 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.models.JobPurgeResult;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobPurgerTests {
+
+  private static final List<String> ACTIVE = List.of("queued", "waiting", "running");
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogChunksRepository jobLogChunksRepository;
+
+  @Mock private JobArtifactStore jobArtifactStore;
+
+  @InjectMocks private JobPurger jobPurger;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobPurger, "self", jobPurger);
+    ReflectionTestUtils.setField(jobPurger, "batchSize", 2);
+    ReflectionTestUtils.setField(jobPurger, "maxBatchesPerRun", 100);
+  }
+
+  @Test
+  void purge_does_nothing_when_retention_is_off() {
+    // Act
+    JobPurgeResult result = jobPurger.purge();
+
+    // Assert
+    assertEquals(JobPurgeResult.builder().build(), result);
+    verifyNoInteractions(jobsRepository, jobLogChunksRepository, jobArtifactStore);
+  }
+
+  @Test
+  void purge_deletes_old_jobs_in_batches() {
+    // Arrange
+    ReflectionTestUtils.setField(jobPurger, "maxAgeDays", 7);
+    when(jobsRepository.findIdsCreatedBefore(any(ZonedDateTime.class), eq(ACTIVE), eq(Limit.of(2))))
+        .thenReturn(List.of(1L, 2L), List.of(3L), List.of());
+    when(jobsRepository.sumTextBytes(List.of(1L, 2L))).thenReturn(10L);
+    when(jobLogChunksRepository.sumStoredSize(List.of(1L, 2L))).thenReturn(100L);
+    when(jobLogChunksRepository.deleteByJobIdIn(List.of(1L, 2L))).thenReturn(4);
+    when(jobsRepository.deleteByIdIn(List.of(1L, 2L))).thenReturn(2);
+    when(jobsRepository.sumTextBytes(List.of(3L))).thenReturn(5L);
+    when(jobLogChunksRepository.sumStoredSize(List.of(3L))).thenReturn(0L);
+    when(jobLogChunksRepository.deleteByJobIdIn(List.of(3L))).thenReturn(0);
+    when(jobsRepository.deleteByIdIn(List.of(3L))).thenReturn(1);
+    ZonedDateTime before = ZonedDateTime.now().minusDays(7);
+
+    // Act
+    JobPurgeResult result = jobPurger.purge();
+
+    // Assert
+    JobPurgeResult expected = JobPurgeResult.builder().jobs(3).logChunks(4).bytes(115).build();
+    assertEquals(expected, result);
+    assertEquals(expected, jobPurger.getTotals());
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(3)).findIdsCreatedBefore(cutoff.capture(), eq(ACTIVE), any());
+    assertFalse(cutoff.getValue().isBefore(before));
+    assertTrue(cutoff.getValue().isBefore(ZonedDateTime.now().minusDays(6)));
+    InOrder inOrder = inOrder(jobsRepository, jobLogChunksRepository, jobArtifactStore);
+    inOrder.verify(jobLogChunksRepository).deleteByJobIdIn(List.of(1L, 2L));
+    inOrder.verify(jobsRepository).deleteByIdIn(List.of(1L, 2L));
+    inOrder.verify(jobArtifactStore).deleteFiles(List.of(1L, 2L));
+    inOrder.verify(jobArtifactStore).deleteFiles(List.of(3L));
+    verify(jobsRepository, never()).findStatusesExcept(any());
+  }
+
+  @Test
+  void purge_keeps_the_newest_jobs_per_status() {
+    // Arrange
+    ReflectionTestUtils.setField(jobPurger, "maxJobsPerStatus", 10);
+    when(jobsRepository.findStatusesExcept(ACTIVE)).thenReturn(List.of("complete", "error"));
+    when(jobsRepository.findIdsByStatusNewestFirst("complete", PageRequest.of(10, 1)))
+        .thenReturn(List.of(40L));
+    when(jobsRepository.findIdsByStatusNewestFirst("error", PageRequest.of(10, 1)))
+        .thenReturn(List.of());
+    when(jobsRepository.findIdsByStatusUpTo("complete", 40L, Limit.of(2)))
+        .thenReturn(List.of(5L, 6L), List.of());
+    when(jobLogChunksRepository.deleteByJobIdIn(List.of(5L, 6L))).thenReturn(2);
+    when(jobsRepository.deleteByIdIn(List.of(5L, 6L))).thenReturn(2);
+    when(jobsRepository.sumTextBytes(List.of(5L, 6L))).thenReturn(20L);
+
+    // Act
+    JobPurgeResult result = jobPurger.purge();
+
+    // Assert
+    assertEquals(JobPurgeResult.builder().jobs(2).logChunks(2).bytes(20).build(), result);
+    verify(jobsRepository, never()).findIdsByStatusUpTo(eq("error"), anyLong(), any());
+    verify(jobsRepository, never()).findIdsCreatedBefore(any(), any(), any());
+  }
+
+  @Test
+  void purge_stops_after_the_maximum_number_of_batches() {
+    // Arrange
+    ReflectionTestUtils.setField(jobPurger, "maxBatchesPerRun", 2);
+    ReflectionTestUtils.setField(jobPurger, "maxAgeDays", 7);
+    ReflectionTestUtils.setField(jobPurger, "maxJobsPerStatus", 10);
+    when(jobsRepository.findIdsCreatedBefore(any(ZonedDateTime.class), eq(ACTIVE), eq(Limit.of(2))))
+        .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+    when(jobsRepository.deleteByIdIn(anyList())).thenReturn(2);
+
+    // Act
+    JobPurgeResult result = jobPurger.purge();
+
+    // Assert
+    assertEquals(4, result.getJobs());
+    verify(jobsRepository, times(2)).findIdsCreatedBefore(any(), any(), any());
+    verify(jobsRepository, never()).deleteByIdIn(List.of(5L));
+    verify(jobsRepository, never()).findIdsByStatusUpTo(anyString(), anyLong(), any());
+  }
+
+  @Test
+  void totals_accumulate_across_purges() {
+    // Arrange
+    ReflectionTestUtils.setField(jobPurger, "maxJobsPerStatus", 1);
+    when(jobsRepository.findStatusesExcept(ACTIVE)).thenReturn(List.of("complete"));
+    when(jobsRepository.findIdsByStatusNewestFirst(anyString(), any(Pageable.class)))
+        .thenReturn(List.of(1L));
+    when(jobsRepository.findIdsByStatusUpTo("complete", 1L, Limit.of(2)))
+        .thenReturn(List.of(1L), List.of(), List.of(1L), List.of());
+    when(jobsRepository.deleteByIdIn(List.of(1L))).thenReturn(1);
+
+    // Act
+    jobPurger.purge();
+    jobPurger.purge();
+
+    // Assert
+    assertEquals(JobPurgeResult.builder().jobs(2).build(), jobPurger.getTotals());
+  }
+}
@@ -0,0 +1,172 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobPriority;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.lang.management.ManagementFactory;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobQueueWorkerTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobQueueWorker self;
+
+  // three threads, one of them reserved for the fast lane; at most one running job per user
+  @Spy private FairJobQueue jobQueue = new FairJobQueue(10, 3, 1, 1, 0);
+
+  @InjectMocks private JobQueueWorker worker;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(worker, "durableQueue", true);
+    ReflectionTestUtils.setField(worker, "nodeId", "node-a");
+  }
+
+  private static Job queued(long id, long userId, JobPriority priority) {
+    return Job.builder()
+        .id(id)
+        .status("queued")
+        .createdBy(User.builder().id(userId).build())
+        .priority(priority)
+        .build();
+  }
+
+  @Test
+  void poll_does_nothing_when_durable_queue_is_disabled() {
+    ReflectionTestUtils.setField(worker, "durableQueue", false);
+
+    worker.poll();
+
+    verifyNoInteractions(self, jobService, jobQueue);
+  }
+
+  @Test
+  void poll_does_nothing_when_executor_has_no_free_threads() {
+    jobQueue.addAll(List.of(() -> {}, () -> {}, () -> {}));
+
+    worker.poll();
+
+    verifyNoInteractions(self, jobService);
+  }
+
+  @Test
+  void poll_claims_only_as_many_jobs_as_there_are_free_threads() {
+    // Arrange
+    jobQueue.add(() -> {});
+    Job job1 = Job.builder().id(1L).status("running").build();
+    Job job2 = Job.builder().id(2L).status("running").build();
+    when(self.claim(2)).thenReturn(List.of(job1, job2));
+    when(jobService.startQueuedJob(job1)).thenReturn(true);
+    when(jobService.startQueuedJob(job2)).thenReturn(true);
+
+    // Act
+    worker.poll();
+
+    // Assert
+    verify(self).claim(2);
+    verify(jobService).startQueuedJob(job1);
+    verify(jobService).startQueuedJob(job2);
+    verifyNoInteractions(jobsRepository);
+  }
+
+  @Test
+  void poll_returns_job_to_queue_when_executor_rejects_it() {
+    // Arrange
+    Job job =
+        Job.builder()
+            .id(1L)
+            .status("running")
+            .claimedBy("node-a")
+            .attempts(1)
+            .leaseExpiresAt(ZonedDateTime.now())
+            .build();
+    when(self.claim(anyInt())).thenReturn(List.of(job));
+    when(jobService.startQueuedJob(job)).thenReturn(false);
+
+    // Act
+    worker.poll();
+
+    // Assert
+    assertEquals("queued", job.getStatus());
+    assertNull(job.getClaimedBy());
+    assertEquals(0, job.getAttempts());
+    assertNull(job.getLeaseExpiresAt());
+    verify(jobsRepository).save(job);
+  }
+
+  @Test
+  void claim_marks_locked_jobs_as_running_on_this_node() {
+    // Arrange
+    Job job1 = queued(1L, 1L, JobPriority.NORMAL);
+    Job job2 = queued(2L, 2L, JobPriority.NORMAL);
+    job2.setAttempts(1);
+    when(jobsRepository.findByStatusOrderByIdAsc(
+            "queued", Limit.of(2 * JobQueueWorker.CLAIM_LOOKAHEAD)))
+        .thenReturn(List.of(job1, job2));
+    ZonedDateTime lease = ZonedDateTime.now().plusMinutes(1);
+    when(jobService.newLeaseExpiry()).thenReturn(lease);
+
+    // Act
+    List<Job> claimed = worker.claim(2);
+
+    // Assert
+    assertEquals(List.of(job1, job2), claimed);
+    assertEquals("running", job1.getStatus());
+    assertEquals("node-a", job1.getClaimedBy());
+    assertEquals("running", job2.getStatus());
+    assertEquals("node-a", job2.getClaimedBy());
+    assertEquals(1, job1.getAttempts());
+    assertEquals(2, job2.getAttempts());
+    assertEquals(lease, job1.getLeaseExpiresAt());
+    assertEquals(lease, job2.getLeaseExpiresAt());
+    verify(jobsRepository).saveAll(List.of(job1, job2));
+  }
+
+  @Test
+  void claim_leaves_jobs_the_executor_would_not_start_at_once_in_the_queue() {
+    // Arrange: user 1 is at their limit, and job 4 would need the reserved thread
+    jobQueue.submit(queued(10L, 1L, JobPriority.NORMAL), () -> jobQueue.add(() -> {}));
+    assertEquals(2, jobQueue.freeThreads());
+    Job job1 = queued(1L, 1L, JobPriority.NORMAL);
+    Job job2 = queued(2L, 2L, JobPriority.NORMAL);
+    Job job3 = queued(3L, 2L, JobPriority.HIGH);
+    Job job4 = queued(4L, 3L, JobPriority.NORMAL);
+    Job job5 = queued(5L, 3L, JobPriority.HIGH);
+    when(jobsRepository.findByStatusOrderByIdAsc(
+            "queued", Limit.of(2 * JobQueueWorker.CLAIM_LOOKAHEAD)))
+        .thenReturn(List.of(job1, job2, job3, job4, job5));
+
+    // Act
+    List<Job> claimed = worker.claim(2);
+
+    // Assert
+    assertEquals(List.of(job2, job5), claimed);
+    assertEquals("running", job2.getStatus());
+    assertEquals("running", job5.getStatus());
+    for (Job job : List.of(job1, job3, job4)) assertEquals("queued", job.getStatus());
+    verify(jobsRepository).saveAll(List.of(job2, job5));
+  }
+
+  @Test
+  void getNodeId_defaults_to_jvm_name() {
+    ReflectionTestUtils.setField(worker, "nodeId", null);
+
+    assertEquals(ManagementFactory.getRuntimeMXBean().getName(), worker.getNodeId());
+  }
+}
@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobReaperTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @InjectMocks private JobReaper jobReaper;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobReaper, "maxAttempts", 3);
+  }
+
+  @Test
+  void reap_requeues_then_abandons_expired_jobs_with_durable_queue() {
+    // Arrange
+    ReflectionTestUtils.setField(jobReaper, "durableQueue", true);
+    when(jobsRepository.requeueExpired(any(ZonedDateTime.class), eq(3))).thenReturn(2);
+    when(jobsRepository.abandonExpired(any(ZonedDateTime.class))).thenReturn(1);
+    ZonedDateTime before = ZonedDateTime.now();
+
+    // Act
+    jobReaper.reap();
+
+    // Assert
+    ArgumentCaptor<ZonedDateTime> now = ArgumentCaptor.forClass(ZonedDateTime.class);
+    InOrder inOrder = inOrder(jobsRepository);
+    inOrder.verify(jobsRepository).requeueExpired(now.capture(), eq(3));
+    inOrder.verify(jobsRepository).abandonExpired(now.getValue());
+    verify(jobsRepository).abandonOrphanedSteps();
+    assertFalse(now.getValue().isBefore(before));
+  }
+
+  @Test
+  void reap_only_abandons_expired_jobs_without_durable_queue() {
+    // Arrange
+    ReflectionTestUtils.setField(jobReaper, "durableQueue", false);
+
+    // Act
+    jobReaper.reap();
+
+    // Assert
+    verify(jobsRepository, never()).requeueExpired(any(ZonedDateTime.class), anyInt());
+    verify(jobsRepository).abandonExpired(any(ZonedDateTime.class));
+    verify(jobsRepository).abandonOrphanedSteps();
+  }
+}
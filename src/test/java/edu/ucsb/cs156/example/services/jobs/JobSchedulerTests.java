@@ -0,0 +1,228 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobSchedulerTests {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.parse("2024-05-01T12:00:30Z");
+
+  @Mock private JobSchedulesRepository jobSchedulesRepository;
+
+  @Mock private JobService jobService;
+
+  @InjectMocks private JobScheduler jobScheduler;
+
+  private final TestJob testJob = TestJob.builder().build();
+
+  @BeforeEach
+  public void setup() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobScheduler, "self", jobScheduler);
+    ReflectionTestUtils.setField(jobScheduler, "batchSize", 10);
+    when(jobService.fromSpec(TestJob.class.getName(), "{}")).thenReturn(testJob);
+    when(jobService.scheduleKey(anyLong())).thenAnswer(i -> "key-" + i.getArgument(0));
+  }
+
+  private JobSchedule schedule(String cron, ZonedDateTime nextRunAt) {
+    return JobSchedule.builder()
+        .id(7L)
+        .name("nightly")
+        .cron(cron)
+        .jobType(TestJob.class.getName())
+        .spec("{}")
+        .enabled(true)
+        .nextRunAt(nextRunAt)
+        .build();
+  }
+
+  @Test
+  void claimDue_moves_next_run_past_now() {
+    // Arrange
+    JobSchedule schedule = schedule("0 * * * * *", NOW.minusSeconds(30));
+    when(jobSchedulesRepository.findDue(NOW, Limit.of(10))).thenReturn(List.of(schedule));
+
+    // Act
+    List<JobSchedule> claimed = jobScheduler.claimDue(NOW);
+
+    // Assert
+    assertEquals(List.of(schedule), claimed);
+    assertEquals(ZonedDateTime.parse("2024-05-01T12:01:00Z"), schedule.getNextRunAt());
+    assertEquals(0, schedule.getMissedRuns());
+    verify(jobSchedulesRepository).saveAll(List.of(schedule));
+  }
+
+  @Test
+  void claimDue_counts_fire_times_that_were_passed_over() {
+    // Arrange
+    JobSchedule schedule = schedule("0 * * * * *", NOW.minusMinutes(3).minusSeconds(30));
+    when(jobSchedulesRepository.findDue(NOW, Limit.of(10))).thenReturn(List.of(schedule));
+
+    // Act
+    List<JobSchedule> claimed = jobScheduler.claimDue(NOW);
+
+    // Assert
+    assertEquals(List.of(schedule), claimed);
+    assertEquals(3, schedule.getMissedRuns());
+    assertEquals(NOW, schedule.getLastMissedAt());
+    assertEquals("no instance was running at the scheduled time", schedule.getLastMissReason());
+    assertEquals(ZonedDateTime.parse("2024-05-01T12:01:00Z"), schedule.getNextRunAt());
+  }
+
+  @Test
+  void claimDue_caps_the_number_of_misses_counted() {
+    // Arrange
+    JobSchedule schedule = schedule("* * * * * *", NOW.minusDays(1));
+    when(jobSchedulesRepository.findDue(NOW, Limit.of(10))).thenReturn(List.of(schedule));
+
+    // Act
+    jobScheduler.claimDue(NOW);
+
+    // Assert
+    assertEquals(JobScheduler.MAX_COUNTED_MISSES, schedule.getMissedRuns());
+  }
+
+  @Test
+  void claimDue_disables_a_schedule_with_an_invalid_cron_expression() {
+    // Arrange
+    JobSchedule schedule = schedule("not a cron expression", NOW.minusSeconds(30));
+    when(jobSchedulesRepository.findDue(NOW, Limit.of(10))).thenReturn(List.of(schedule));
+
+    // Act
+    List<JobSchedule> claimed = jobScheduler.claimDue(NOW);
+
+    // Assert
+    assertEquals(List.of(), claimed);
+    assertFalse(schedule.getEnabled());
+    assertNull(schedule.getNextRunAt());
+    verify(jobSchedulesRepository).saveAll(List.of(schedule));
+  }
+
+  @Test
+  void fireDue_launches_claimed_schedules() {
+    // Arrange
+    JobSchedule schedule = schedule("0 * * * * *", ZonedDateTime.now().minusSeconds(1));
+    when(jobSchedulesRepository.findDue(any(), eq(Limit.of(10)))).thenReturn(List.of(schedule));
+    when(jobService.runAsJob(testJob, null, "key-7")).thenReturn(Job.builder().id(42L).build());
+
+    // Act
+    int count = jobScheduler.fireDue();
+
+    // Assert
+    assertEquals(1, count);
+    verify(jobSchedulesRepository).recordRun(eq(7L), eq(42L), any(ZonedDateTime.class));
+    verify(jobSchedulesRepository, never()).recordMisses(anyLong(), anyLong(), any(), any());
+  }
+
+  @Test
+  void launch_records_a_miss_when_the_previous_run_is_still_active() {
+    // Arrange
+    JobSchedule schedule = schedule("0 * * * * *", NOW);
+    schedule.setLastJobId(42L);
+    when(jobService.runAsJob(testJob, null, "key-7")).thenReturn(Job.builder().id(42L).build());
+
+    // Act
+    jobScheduler.launch(schedule, NOW);
+
+    // Assert
+    verify(jobSchedulesRepository)
+        .recordMisses(7L, 1, NOW, "previous run (job 42) was still active");
+    verify(jobSchedulesRepository, never()).recordRun(anyLong(), anyLong(), any());
+  }
+
+  @Test
+  void launch_records_a_miss_when_the_spec_cannot_be_read() throws Exception {
+    // Arrange
+    JobSchedule schedule = schedule("0 * * * * *", NOW);
+    schedule.setJobType("no.such.Job");
+    when(jobService.fromSpec("no.such.Job", "{}"))
+        .thenThrow(new ClassNotFoundException("no.such.Job"));
+
+    // Act
+    jobScheduler.launch(schedule, NOW);
+
+    // Assert
+    verify(jobSchedulesRepository).recordMisses(7L, 1, NOW, "could not start job: no.such.Job");
+    verify(jobService, never()).runAsJob(any(), any(), anyString());
+  }
+
+  @Test
+  void launch_records_a_miss_when_the_job_queue_is_full() {
+    // Arrange
+    JobSchedule schedule = schedule("0 * * * * *", NOW);
+    when(jobService.runAsJob(testJob, null, "key-7"))
+        .thenThrow(new JobQueueFullException("x".repeat(300)));
+
+    // Act
+    jobScheduler.launch(schedule, NOW);
+
+    // Assert
+    ArgumentCaptor<String> reason = ArgumentCaptor.forClass(String.class);
+    verify(jobSchedulesRepository).recordMisses(eq(7L), eq(1L), eq(NOW), reason.capture());
+    assertEquals(255, reason.getValue().length());
+    assertTrue(reason.getValue().startsWith("could not start job: xxx"));
+  }
+
+  @Test
+  void prepare_computes_next_run() {
+    // Arrange
+    JobSchedule schedule = schedule("0 0 3 * * *", null);
+
+    // Act
+    jobScheduler.prepare(schedule);
+
+    // Assert
+    assertTrue(schedule.getNextRunAt().isAfter(ZonedDateTime.now()));
+    assertEquals(3, schedule.getNextRunAt().getHour());
+  }
+
+  @Test
+  void prepare_clears_next_run_of_a_disabled_schedule() {
+    // Arrange
+    JobSchedule schedule = schedule("0 0 3 * * *", NOW);
+    schedule.setEnabled(false);
+
+    // Act
+    jobScheduler.prepare(schedule);
+
+    // Assert
+    assertNull(schedule.getNextRunAt());
+  }
+
+  @Test
+  void prepare_rejects_invalid_cron_expressions_and_specs() throws Exception {
+    // Arrange
+    when(jobService.fromSpec(eq(TestJob.class.getName()), isNull()))
+        .thenThrow(new IllegalArgumentException("argument \"content\" is null"));
+
+    // Act & Assert
+    assertThrows(IllegalArgumentException.class, () -> jobScheduler.prepare(schedule("bad", null)));
+    JobSchedule badSpec = schedule("0 0 3 * * *", null);
+    badSpec.setSpec(null);
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> jobScheduler.prepare(badSpec));
+    assertEquals("Invalid job type or spec: argument \"content\" is null", e.getMessage());
+  }
+}
@@ -0,0 +1,1310 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobPriority;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.models.JobLogFlushStats;
+import edu.ucsb.cs156.example.models.JobPurgeResult;
+import edu.ucsb.cs156.example.models.JobTypeStats;
+import edu.ucsb.cs156.example.models.JobWorkflowSpec;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogService jobLogService;
+
+  @Mock private JobLogBroadcaster jobLogBroadcaster;
+
+  @Mock private JobPurger jobPurger;
+
+  @Mock private JobArtifactStore jobArtifactStore;
+
+  @Mock private JobMetrics jobMetrics;
+
+  @Mock private JobProgressService jobProgressService;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Mock private JobService self;
+
+  @Mock private ThreadPoolTaskExecutor jobExecutor;
+
+  @Mock private ThreadPoolTaskExecutor jobSubtaskExecutor;
+
+  @Spy private ObjectMapper mapper = new ObjectMapper();
+
+  @Spy private FairJobQueue jobQueue = new FairJobQueue(100, 4, 0, 0, 0);
+
+  @InjectMocks private JobService jobService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobService, "logBufferMaxLines", 100);
+    ReflectionTestUtils.setField(jobService, "logBufferMaxBytes", 65536);
+    ReflectionTestUtils.setField(jobService, "logBufferMaxDelayMs", 60_000L);
+    ReflectionTestUtils.setField(jobService, "leaseDurationMs", 60_000L);
+  }
+
+  @Test
+  void runJobAsync_flushes_buffered_lines_when_job_completes() {
+    // Arrange
+    Job job = Job.builder().id(1L).status("running").build();
+
+    // Act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.log("one");
+          ctx.log("two");
+        });
+
+    // Assert
+    verify(jobLogService).append(job, 0, 0, List.of("one", "two"));
+    verify(jobsRepository).save(job);
+    assertEquals("complete", job.getStatus());
+    assertNull(job.getLeaseExpiresAt());
+    verify(jobLogService, never()).nextSeq(any(Job.class));
+    verify(jobLogBroadcaster).finish(job.getId(), "complete");
+    InOrder inOrder = inOrder(jobMetrics);
+    inOrder.verify(jobMetrics).jobStarted(job);
+    inOrder.verify(jobMetrics).jobEnded(eq(job), any(Duration.class));
+  }
+
+  @Test
+  void runJobAsync_continues_log_of_job_that_ran_before() {
+    // Arrange
+    Job job =
+        Job.builder()
+            .id(1L)
+            .status("running")
+            .attempts(2)
+            .leaseExpiresAt(ZonedDateTime.now())
+            .build();
+    when(jobLogService.nextSeq(job)).thenReturn(5);
+    when(jobLogService.countLines(job)).thenReturn(9);
+
+    // Act
+    jobService.runJobAsync(job, ctx -> ctx.log("again"));
+
+    // Assert
+    verify(jobLogService).append(job, 5, 9, List.of("again"));
+    assertEquals("complete", job.getStatus());
+    assertNull(job.getLeaseExpiresAt());
+  }
+
+  @Test
+  void renewLeases_does_nothing_when_no_jobs_are_running() {
+    jobService.renewLeases();
+
+    verifyNoInteractions(jobsRepository);
+  }
+
+  @Test
+  void renewLeases_extends_leases_of_running_jobs() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(6L).status("running").build();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      started.countDown();
+                      release.await();
+                    }));
+    worker.start();
+    started.await();
+    ZonedDateTime before = ZonedDateTime.now();
+
+    // Act
+    jobService.renewLeases();
+    release.countDown();
+    worker.join();
+
+    // Assert
+    ArgumentCaptor<ZonedDateTime> until = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository).renewLeases(eq(Set.of(6L)), until.capture());
+    assertFalse(until.getValue().isBefore(before.plusSeconds(60)));
+  }
+
+  @Test
+  void renewLeases_extends_leases_of_jobs_waiting_for_a_thread_until_they_start() {
+    // Arrange: self is a mock, so the submitted job waits until runJobAsync is called
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              Job saved = invocation.getArgument(0);
+              saved.setId(9L);
+              return saved;
+            });
+    JobContextConsumer jobFunction = ctx -> {};
+    Job job = jobService.runAsJob(jobFunction);
+
+    // Act
+    jobService.renewLeases();
+    jobService.runJobAsync(job, jobFunction);
+    jobService.renewLeases();
+
+    // Assert
+    verify(jobsRepository, times(1)).renewLeases(eq(Set.of(9L)), any(ZonedDateTime.class));
+  }
+
+  @Test
+  void runAsJob_stops_renewing_the_lease_of_a_rejected_job() {
+    // Arrange
+    doThrow(new TaskRejectedException("full"))
+        .when(self)
+        .runJobAsync(any(Job.class), any(JobContextConsumer.class));
+    when(jobExecutor.getThreadPoolExecutor())
+        .thenReturn(new ThreadPoolExecutor(1, 1, 0, SECONDS, new ArrayBlockingQueue<>(1)));
+    assertThrows(JobQueueFullException.class, () -> jobService.runAsJob(ctx -> {}));
+
+    // Act
+    jobService.renewLeases();
+
+    // Assert
+    verify(jobsRepository, never()).renewLeases(anyCollection(), any(ZonedDateTime.class));
+  }
+
+  @Test
+  void cancelJob_stops_job_running_on_this_node() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(8L).status("running").build();
+    Thread worker = startBlockedJob(job);
+    when(jobsRepository.requestCancel(8L)).thenReturn(1);
+
+    // Act
+    boolean cancelled = jobService.cancelJob(8L);
+    worker.join(10_000);
+
+    // Assert
+    assertTrue(cancelled);
+    assertEquals("cancelled", job.getStatus());
+    verify(jobLogService).append(job, 0, 0, List.of("Job cancelled"));
+    verify(jobsRepository).save(job);
+  }
+
+  @Test
+  void runJobAsync_job_that_returns_after_cancel_is_cancelled() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(8L).status("running").build();
+    CountDownLatch started = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      started.countDown();
+                      while (!ctx.isCancelled()) Thread.onSpinWait();
+                    }));
+    worker.start();
+    started.await();
+    when(jobsRepository.requestCancel(8L)).thenReturn(1);
+
+    // Act
+    jobService.cancelJob(8L);
+    worker.join(10_000);
+
+    // Assert
+    assertEquals("cancelled", job.getStatus());
+  }
+
+  @Test
+  void cancelJob_cancels_queued_job_without_flagging_it() {
+    // Arrange
+    when(jobsRepository.cancelQueued(3L)).thenReturn(1);
+
+    // Act & Assert
+    assertTrue(jobService.cancelJob(3L));
+    verify(jobsRepository, never()).requestCancel(anyLong());
+    verify(jobLogBroadcaster).finish(3L, "cancelled");
+  }
+
+  @Test
+  void cancelJob_flags_job_running_on_another_node() {
+    // Arrange
+    when(jobsRepository.requestCancel(3L)).thenReturn(1);
+
+    // Act & Assert
+    assertTrue(jobService.cancelJob(3L));
+    verify(jobsRepository).cancelQueued(3L);
+  }
+
+  @Test
+  void cancelJob_returns_false_for_job_that_is_not_queued_or_running() {
+    assertFalse(jobService.cancelJob(3L));
+  }
+
+  @Test
+  void retryJob_puts_an_ended_job_back_in_the_durable_queue() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "durableQueue", true);
+    when(jobsRepository.requeueEnded(3L)).thenReturn(1);
+
+    // Act & Assert
+    assertTrue(jobService.retryJob(3L));
+    assertFalse(jobService.retryJob(4L));
+  }
+
+  @Test
+  void retryJob_returns_false_without_the_durable_queue() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "durableQueue", false);
+
+    // Act & Assert
+    assertFalse(jobService.retryJob(3L));
+    verify(jobsRepository, never()).requeueEnded(anyLong());
+  }
+
+  @Test
+  void renewLeases_stops_jobs_cancelled_on_another_node() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(6L).status("running").build();
+    Thread worker = startBlockedJob(job);
+    when(jobsRepository.findCancelRequested(Set.of(6L))).thenReturn(List.of(6L));
+
+    // Act
+    jobService.renewLeases();
+    worker.join(10_000);
+
+    // Assert
+    assertEquals("cancelled", job.getStatus());
+  }
+
+  @Test
+  void enforceTimeouts_stops_only_jobs_past_their_timeout() throws Exception {
+    // Arrange
+    Job slow = Job.builder().id(1L).status("running").timeoutMs(50L).build();
+    Job unlimited = Job.builder().id(2L).status("running").build();
+    Thread slowWorker = startBlockedJob(slow);
+    Thread unlimitedWorker = startBlockedJob(unlimited);
+
+    // Act
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(
+            () -> {
+              jobService.enforceTimeouts();
+              assertEquals("timeout", slow.getStatus());
+            });
+    slowWorker.join(10_000);
+
+    // Assert
+    verify(jobLogService).append(slow, 0, 0, List.of("Job timed out after 50 ms"));
+    assertEquals("running", unlimited.getStatus());
+
+    // Clean up
+    unlimitedWorker.interrupt();
+    unlimitedWorker.join(10_000);
+  }
+
+  @Test
+  void runJobAsync_flushes_buffered_lines_and_error_when_job_fails() {
+    // Arrange
+    Job job = Job.builder().id(2L).status("running").build();
+
+    // Act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.log("working");
+          throw new Exception("boom");
+        });
+
+    // Assert
+    verify(jobLogService).append(job, 0, 0, List.of("working", "boom"));
+    verify(jobsRepository).save(job);
+    assertEquals("error", job.getStatus());
+  }
+
+  @Test
+  void runJobAsync_saves_status_even_if_final_flush_fails() {
+    // Arrange
+    Job job = Job.builder().id(3L).status("running").build();
+    doThrow(new RuntimeException("db down"))
+        .when(jobLogService)
+        .append(any(Job.class), anyInt(), anyInt(), anyList());
+
+    // Act
+    jobService.runJobAsync(job, ctx -> ctx.log("lost"));
+
+    // Assert
+    verify(jobsRepository).save(job);
+    assertEquals("complete", job.getStatus());
+  }
+
+  @Test
+  void flushStaleLogs_flushes_lines_of_running_jobs() throws Exception {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "logBufferMaxDelayMs", 50L);
+    Job job = Job.builder().id(4L).status("running").build();
+    CountDownLatch logged = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      ctx.log("still working");
+                      logged.countDown();
+                      release.await();
+                    }));
+    worker.start();
+    logged.await();
+
+    // Act & Assert
+    await()
+        .atMost(2, SECONDS)
+        .untilAsserted(
+            () -> {
+              jobService.flushStaleLogs();
+              verify(jobLogService).append(job, 0, 0, List.of("still working"));
+            });
+
+    release.countDown();
+    worker.join();
+    verify(jobLogService, times(1)).append(any(Job.class), anyInt(), anyInt(), anyList());
+  }
+
+  @Test
+  void runJobAsync_runs_subtasks_on_the_subtask_executor() {
+    // Arrange
+    when(jobSubtaskExecutor.submit(any(Callable.class)))
+        .thenAnswer(
+            invocation ->
+                CompletableFuture.completedFuture(
+                    invocation.getArgument(0, Callable.class).call()));
+    Job job = Job.builder().id(6L).status("running").build();
+
+    // Act
+    jobService.runJobAsync(
+        job, ctx -> ctx.log("sum " + ctx.invokeAll(List.of(1, 2, 3), (item, sub) -> item * 2)));
+
+    // Assert
+    verify(jobSubtaskExecutor, times(3)).submit(any(Callable.class));
+    verify(jobLogService).append(job, 0, 0, List.of("sum [2, 4, 6]"));
+    assertEquals("complete", job.getStatus());
+  }
+
+  @Test
+  void runJobAsync_adds_cpu_time_and_allocation_to_the_jobs_totals() {
+    // Arrange: the job ran once before
+    Job job = Job.builder().id(6L).status("running").cpuTimeMs(1000L).allocatedBytes(5L).build();
+
+    // Act
+    jobService.runJobAsync(job, ctx -> ctx.log("length " + new byte[2_000_000].length));
+
+    // Assert
+    assertTrue(job.getCpuTimeMs() >= 1000);
+    assertTrue(job.getAllocatedBytes() >= 2_000_005, "allocated " + job.getAllocatedBytes());
+    ArgumentCaptor<ThreadUsage> usage = ArgumentCaptor.forClass(ThreadUsage.class);
+    verify(jobMetrics).resourcesUsed(eq(job), usage.capture());
+    assertEquals(job.getAllocatedBytes() - 5, usage.getValue().allocatedBytes());
+    verify(jobsRepository).save(job);
+  }
+
+  @Test
+  void flushStaleProgress_writes_progress_of_running_jobs() throws Exception {
+    // Arrange
+    when(jobProgressService.getFlushIntervalMs()).thenReturn(60000L);
+    Job job = Job.builder().id(4L).status("running").build();
+    CountDownLatch reported = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      ctx.progress(1, 3);
+                      ctx.progress(2, 3);
+                      reported.countDown();
+                      release.await();
+                    }));
+    worker.start();
+    reported.await();
+    verify(jobProgressService).save(4L, 1L, 3L, Map.of(), null);
+    when(jobProgressService.getFlushIntervalMs()).thenReturn(0L);
+
+    // Act
+    jobService.flushStaleProgress();
+
+    // Assert
+    verify(jobProgressService).save(4L, 2L, 3L, Map.of(), null);
+    release.countDown();
+    worker.join();
+  }
+
+  @Test
+  void flushStaleProgress_keeps_going_when_a_write_fails() throws Exception {
+    // Arrange
+    when(jobProgressService.getFlushIntervalMs()).thenReturn(60000L);
+    Job job = Job.builder().id(5L).status("running").build();
+    CountDownLatch reported = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      ctx.progress(1, 3);
+                      ctx.progress(2, 3);
+                      reported.countDown();
+                      release.await();
+                    }));
+    worker.start();
+    reported.await();
+    when(jobProgressService.getFlushIntervalMs()).thenReturn(0L);
+    doThrow(new RuntimeException("db down"))
+        .when(jobProgressService)
+        .save(anyLong(), any(), any(), anyMap(), any());
+
+    // Act
+    jobService.flushStaleProgress();
+
+    // Assert
+    verify(jobProgressService).save(5L, 2L, 3L, Map.of(), null);
+    release.countDown();
+    worker.join();
+    verify(jobsRepository).save(job);
+    assertEquals("complete", job.getStatus());
+  }
+
+  @Test
+  void flushStaleLogs_keeps_going_when_a_flush_fails() throws Exception {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "logBufferMaxDelayMs", 50L);
+    doThrow(new RuntimeException("db down"))
+        .when(jobLogService)
+        .append(any(Job.class), anyInt(), anyInt(), anyList());
+    Job job = Job.builder().id(5L).status("running").build();
+    CountDownLatch logged = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      ctx.log("still working");
+                      logged.countDown();
+                      release.await();
+                    }));
+    worker.start();
+    logged.await();
+
+    // Act & Assert
+    await()
+        .atMost(2, SECONDS)
+        .untilAsserted(
+            () -> {
+              jobService.flushStaleLogs();
+              verify(jobLogService).append(job, 0, 0, List.of("still working"));
+            });
+
+    release.countDown();
+    worker.join();
+    assertEquals("complete", job.getStatus());
+  }
+
+  @Test
+  void runAsJob_submits_job_to_executor() {
+    // Arrange
+    JobContextConsumer jobFunction = ctx -> {};
+    ZonedDateTime before = ZonedDateTime.now();
+
+    // Act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // Assert
+    assertEquals("running", job.getStatus());
+    assertEquals(1, job.getAttempts());
+    assertFalse(job.getLeaseExpiresAt().isBefore(before.plusSeconds(60)));
+    assertNull(job.getTimeoutMs());
+    verify(jobsRepository, times(1)).save(job);
+    verify(self).runJobAsync(job, jobFunction);
+  }
+
+  @Test
+  void runAsJob_records_priority_and_tells_the_queue_which_job_it_submits() {
+    // Arrange
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // Act
+    Job job = jobService.runAsJob(jobFunction, null, null, JobPriority.HIGH);
+    Job normal = jobService.runAsJob(jobFunction);
+
+    // Assert
+    assertEquals(JobPriority.HIGH, job.getPriority());
+    assertEquals(JobPriority.NORMAL, normal.getPriority());
+    verify(jobQueue).submit(eq(job), any(Runnable.class));
+    verify(jobQueue).submit(eq(normal), any(Runnable.class));
+    verify(self).runJobAsync(job, jobFunction);
+  }
+
+  @Test
+  void runAsJob_records_timeout_of_job() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "defaultTimeoutMs", 1000L);
+
+    // Act
+    Job withTimeout = jobService.runAsJob(ctx -> {}, Duration.ofSeconds(5));
+    Job withDefault = jobService.runAsJob(ctx -> {});
+
+    // Assert
+    assertEquals(5000L, withTimeout.getTimeoutMs());
+    assertEquals(1000L, withDefault.getTimeoutMs());
+  }
+
+  @Test
+  void runAsJob_marks_job_rejected_when_queue_is_full() {
+    // Arrange
+    doThrow(new TaskRejectedException("full"))
+        .when(self)
+        .runJobAsync(any(Job.class), any(JobContextConsumer.class));
+    when(jobExecutor.getThreadPoolExecutor())
+        .thenReturn(new ThreadPoolExecutor(1, 1, 0, SECONDS, new ArrayBlockingQueue<>(1)));
+
+    // Act
+    JobQueueFullException e =
+        assertThrows(JobQueueFullException.class, () -> jobService.runAsJob(ctx -> {}));
+
+    // Assert
+    assertEquals("Job queue is full; try again later", e.getMessage());
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, times(2)).save(saved.capture());
+    assertEquals("rejected", saved.getValue().getStatus());
+    assertEquals(1L, jobService.getExecutorStats().getRejectedJobs());
+    verify(jobMetrics).jobRejected(saved.getValue());
+  }
+
+  @Test
+  void runAsJob_with_durable_queue_saves_queued_job_with_spec() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "durableQueue", true);
+    TestJob testJob = TestJob.builder().fail(true).sleepMs(25).build();
+
+    // Act
+    Job job = jobService.runAsJob(testJob);
+
+    // Assert
+    assertEquals("queued", job.getStatus());
+    assertEquals(TestJob.class.getName(), job.getJobType());
+    assertEquals("{\"fail\":true,\"sleepMs\":25}", job.getSpec());
+    verify(jobsRepository, times(1)).save(job);
+    verifyNoInteractions(self);
+  }
+
+  @Test
+  void runAsJob_with_durable_queue_runs_lambdas_in_memory() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "durableQueue", true);
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // Act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // Assert
+    assertEquals("running", job.getStatus());
+    assertNull(job.getSpec());
+    verify(self).runJobAsync(job, jobFunction);
+  }
+
+  @Test
+  void runAsJob_returns_the_job_that_holds_the_dedupe_key() {
+    // Arrange
+    Job existing = Job.builder().id(9L).status("running").build();
+    doThrow(new DataIntegrityViolationException("duplicate key"))
+        .when(jobsRepository)
+        .save(any(Job.class));
+    when(jobsRepository.findByDedupeKey("key")).thenReturn(Optional.of(existing));
+
+    // Act
+    Job job = jobService.runAsJob(ctx -> {}, null, "key");
+
+    // Assert
+    assertSame(existing, job);
+    verifyNoInteractions(self);
+  }
+
+  @Test
+  void runAsJob_with_durable_queue_returns_the_job_that_holds_the_dedupe_key() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "durableQueue", true);
+    Job existing = Job.builder().id(9L).status("queued").build();
+    doThrow(new DataIntegrityViolationException("duplicate key"))
+        .when(jobsRepository)
+        .save(any(Job.class));
+    when(jobsRepository.findByDedupeKey("key")).thenReturn(Optional.of(existing));
+
+    // Act
+    Job job = jobService.runAsJob(TestJob.builder().build(), null, "key");
+
+    // Assert
+    assertSame(existing, job);
+  }
+
+  @Test
+  void runAsJob_tries_again_when_the_job_holding_the_dedupe_key_has_ended() {
+    // Arrange
+    doThrow(new DataIntegrityViolationException("duplicate key"))
+        .doReturn(null)
+        .when(jobsRepository)
+        .save(any(Job.class));
+    when(jobsRepository.findByDedupeKey("key")).thenReturn(Optional.empty());
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // Act
+    Job job = jobService.runAsJob(jobFunction, null, "key");
+
+    // Assert
+    assertEquals("key", job.getDedupeKey());
+    verify(jobsRepository, times(2)).save(job);
+    verify(self).runJobAsync(job, jobFunction);
+  }
+
+  @Test
+  void runAsJob_gives_up_when_the_dedupe_key_keeps_changing_hands() {
+    // Arrange
+    doThrow(new DataIntegrityViolationException("duplicate key"))
+        .when(jobsRepository)
+        .save(any(Job.class));
+    when(jobsRepository.findByDedupeKey("key")).thenReturn(Optional.empty());
+
+    // Act & Assert
+    assertThrows(
+        DataIntegrityViolationException.class, () -> jobService.runAsJob(ctx -> {}, null, "key"));
+    verify(jobsRepository, times(3)).save(any(Job.class));
+    verifyNoInteractions(self);
+  }
+
+  @Test
+  void runAsJob_without_a_dedupe_key_does_not_hide_integrity_violations() {
+    // Arrange
+    doThrow(new DataIntegrityViolationException("bad row"))
+        .when(jobsRepository)
+        .save(any(Job.class));
+
+    // Act & Assert
+    assertThrows(DataIntegrityViolationException.class, () -> jobService.runAsJob(ctx -> {}));
+    verify(jobsRepository, never()).findByDedupeKey(any());
+  }
+
+  @Test
+  void finished_and_rejected_jobs_release_their_dedupe_keys() {
+    // Arrange
+    Job finished = Job.builder().id(1L).status("running").dedupeKey("a").build();
+    doThrow(new TaskRejectedException("full"))
+        .when(self)
+        .runJobAsync(any(Job.class), any(JobContextConsumer.class));
+    when(jobExecutor.getThreadPoolExecutor())
+        .thenReturn(new ThreadPoolExecutor(1, 1, 0, SECONDS, new ArrayBlockingQueue<>(1)));
+
+    // Act
+    jobService.runJobAsync(finished, ctx -> {});
+    assertThrows(JobQueueFullException.class, () -> jobService.runAsJob(ctx -> {}, null, "b"));
+
+    // Assert
+    assertNull(finished.getDedupeKey());
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, times(3)).save(saved.capture());
+    assertEquals("rejected", saved.getValue().getStatus());
+    assertNull(saved.getValue().getDedupeKey());
+  }
+
+  @Test
+  void fingerprint_is_the_same_for_jobs_that_do_the_same_work() {
+    // Act
+    String fingerprint = jobService.fingerprint(TestJob.builder().fail(false).sleepMs(5).build());
+
+    // Assert
+    assertEquals(64, fingerprint.length());
+    assertEquals(
+        fingerprint, jobService.fingerprint(TestJob.builder().fail(false).sleepMs(5).build()));
+    assertNotEquals(
+        fingerprint, jobService.fingerprint(TestJob.builder().fail(false).sleepMs(6).build()));
+    assertNull(jobService.fingerprint(new UnreadableJob(3)));
+  }
+
+  @Test
+  void fingerprint_is_scoped_to_the_current_user() {
+    // Arrange
+    when(currentUserService.getUser())
+        .thenReturn(User.builder().id(1L).build(), User.builder().id(2L).build());
+    TestJob job = TestJob.builder().fail(false).sleepMs(5).build();
+
+    // Act
+    String first = jobService.fingerprint(job);
+    String second = jobService.fingerprint(job);
+
+    // Assert
+    assertNotEquals(first, second);
+  }
+
+  @Test
+  void idempotencyKey_is_scoped_to_the_current_user() {
+    // Arrange
+    when(currentUserService.getUser())
+        .thenReturn(User.builder().id(1L).build(), User.builder().id(2L).build(), null);
+
+    // Act
+    String first = jobService.idempotencyKey("abc");
+    String second = jobService.idempotencyKey("abc");
+    String anonymous = jobService.idempotencyKey("abc");
+
+    // Assert
+    assertNotEquals(first, second);
+    assertNotEquals(first, anonymous);
+    assertNotEquals(first, jobService.fingerprint(TestJob.builder().build()));
+  }
+
+  @Test
+  void toSpec_returns_null_for_job_that_cannot_be_serialized() {
+    assertNull(jobService.toSpec(new UnreadableJob(3)));
+    assertNull(
+        jobService.toSpec(
+            new JobContextConsumer() {
+              @Override
+              public void accept(JobContext c) {}
+            }));
+  }
+
+  @Test
+  void startQueuedJob_submits_job_read_from_spec() {
+    // Arrange
+    Job job =
+        Job.builder()
+            .id(9L)
+            .status("running")
+            .jobType(TestJob.class.getName())
+            .spec("{\"fail\":false,\"sleepMs\":10}")
+            .build();
+
+    // Act
+    boolean started = jobService.startQueuedJob(job);
+
+    // Assert
+    assertTrue(started);
+    ArgumentCaptor<JobContextConsumer> captor = ArgumentCaptor.forClass(JobContextConsumer.class);
+    verify(self).runJobAsync(eq(job), captor.capture());
+    TestJob testJob = (TestJob) captor.getValue();
+    assertEquals(false, testJob.getFail());
+    assertEquals(10, testJob.getSleepMs());
+  }
+
+  @Test
+  void startQueuedJob_returns_false_when_executor_is_full() {
+    // Arrange
+    Job job =
+        Job.builder().id(9L).status("running").jobType(TestJob.class.getName()).spec("{}").build();
+    doThrow(new TaskRejectedException("full"))
+        .when(self)
+        .runJobAsync(any(Job.class), any(JobContextConsumer.class));
+
+    // Act & Assert
+    assertFalse(jobService.startQueuedJob(job));
+    verifyNoInteractions(jobsRepository);
+  }
+
+  @Test
+  void startQueuedJob_marks_job_with_bad_spec_as_error() {
+    // Arrange
+    Job job =
+        Job.builder().id(9L).status("running").jobType(String.class.getName()).spec("{}").build();
+
+    // Act
+    boolean started = jobService.startQueuedJob(job);
+
+    // Assert
+    assertTrue(started);
+    assertEquals("error", job.getStatus());
+    verify(jobsRepository).save(job);
+    verify(jobLogService)
+        .append(
+            job,
+            0,
+            0,
+            List.of("Could not read job spec: java.lang.String is not a JobContextConsumer"));
+    assertNull(job.getLeaseExpiresAt());
+    verifyNoInteractions(self);
+    verify(jobLogBroadcaster).finish(job.getId(), "error");
+  }
+
+  /** Runs a job that sleeps until interrupted on a new thread, once the job has started. */
+  private Thread startBlockedJob(Job job) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      started.countDown();
+                      Thread.sleep(60_000);
+                    }));
+    worker.start();
+    started.await();
+    return worker;
+  }
+
+  /** A one-thread pool standing in for the job executor, running jobs through runJobAsync. */
+  private ThreadPoolExecutor jobPool() {
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(1, 1, 0, SECONDS, new ArrayBlockingQueue<>(10));
+    when(jobExecutor.getThreadPoolExecutor()).thenReturn(pool);
+    return pool;
+  }
+
+  @Test
+  void drain_waits_for_jobs_that_finish_within_the_grace_period() {
+    // Arrange
+    ThreadPoolExecutor pool = jobPool();
+    Job first = Job.builder().id(1L).status("running").build();
+    Job second = Job.builder().id(2L).status("running").build();
+    pool.execute(() -> jobService.runJobAsync(first, ctx -> Thread.sleep(100)));
+    pool.execute(() -> jobService.runJobAsync(second, ctx -> Thread.sleep(100)));
+
+    // Act
+    jobService.drain(Duration.ofSeconds(10));
+
+    // Assert
+    assertTrue(pool.isTerminated());
+    assertEquals("complete", first.getStatus());
+    assertEquals("complete", second.getStatus());
+    assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> {}));
+  }
+
+  @Test
+  void drain_interrupts_jobs_that_outlast_the_grace_period() throws Exception {
+    // Arrange
+    ThreadPoolExecutor pool = jobPool();
+    Job running = Job.builder().id(1L).status("running").build();
+    Job waiting = Job.builder().id(2L).status("running").dedupeKey("k").build();
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean waitingRan = new AtomicBoolean(false);
+    pool.execute(
+        () ->
+            jobService.runJobAsync(
+                running,
+                ctx -> {
+                  started.countDown();
+                  Thread.sleep(60_000);
+                }));
+    pool.execute(() -> jobService.runJobAsync(waiting, ctx -> waitingRan.set(true)));
+    started.await();
+
+    // Act
+    jobService.drain(Duration.ofMillis(50));
+
+    // Assert
+    assertTrue(pool.isTerminated());
+    assertEquals("interrupted", running.getStatus());
+    assertEquals("interrupted", waiting.getStatus());
+    assertFalse(waitingRan.get());
+    assertNull(waiting.getDedupeKey());
+    verify(jobLogService).append(running, 0, 0, List.of("Job interrupted by shutdown"));
+    verify(jobLogBroadcaster).finish(1L, "interrupted");
+    verify(jobLogBroadcaster).finish(2L, "interrupted");
+  }
+
+  @Test
+  void drain_returns_interrupted_jobs_to_the_durable_queue() throws Exception {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "durableQueue", true);
+    ThreadPoolExecutor pool = jobPool();
+    Job job =
+        Job.builder()
+            .id(1L)
+            .status("running")
+            .spec("{}")
+            .claimedBy("this-node")
+            .attempts(1)
+            .dedupeKey("k")
+            .build();
+    CountDownLatch started = new CountDownLatch(1);
+    pool.execute(
+        () ->
+            jobService.runJobAsync(
+                job,
+                ctx -> {
+                  ctx.saveCheckpoint("42");
+                  started.countDown();
+                  Thread.sleep(60_000);
+                }));
+    started.await();
+
+    // Act
+    jobService.drain(Duration.ofMillis(50));
+
+    // Assert
+    assertEquals("queued", job.getStatus());
+    assertNull(job.getClaimedBy());
+    assertNull(job.getLeaseExpiresAt());
+    assertEquals(1, job.getAttempts());
+    assertEquals("k", job.getDedupeKey());
+    assertEquals("42", job.getCheckpoint());
+    verify(jobsRepository).save(job);
+    verify(jobLogService)
+        .append(job, 0, 0, List.of("Job interrupted by shutdown; returned to the queue"));
+    verify(jobLogBroadcaster, never()).finish(anyLong(), anyString());
+  }
+
+  @Test
+  void runAsJob_while_draining_says_the_node_is_shutting_down() {
+    // Arrange
+    jobPool();
+    jobService.drain(Duration.ZERO);
+    doThrow(new TaskRejectedException("shut down"))
+        .when(self)
+        .runJobAsync(any(Job.class), any(JobContextConsumer.class));
+
+    // Act
+    JobQueueFullException e =
+        assertThrows(JobQueueFullException.class, () -> jobService.runAsJob(ctx -> {}));
+
+    // Assert
+    assertEquals("This node is shutting down; try again later", e.getMessage());
+  }
+
+  @Test
+  void getStats_includes_log_flush_executor_retention_and_per_type_stats() {
+    // Arrange
+    JobLogFlushStats stats = JobLogFlushStats.builder().flushes(3).build();
+    Map<String, JobTypeStats> byType =
+        Map.of("TestJob", JobTypeStats.builder().rejected(2).logBytes(100).build());
+    when(jobMetrics.getStatsByType()).thenReturn(byType);
+    when(jobLogService.getFlushStats()).thenReturn(stats);
+    JobPurgeResult purged = JobPurgeResult.builder().jobs(5).logChunks(7).bytes(1000).build();
+    when(jobPurger.getTotals()).thenReturn(purged);
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(2, 2, 0, SECONDS, new ArrayBlockingQueue<>(10));
+    pool.getQueue().add(() -> {});
+    when(jobExecutor.getThreadPoolExecutor()).thenReturn(pool);
+
+    // Act
+    Map<String, Object> result = jobService.getStats();
+
+    // Assert
+    JobExecutorStats expectedExecutorStats =
+        JobExecutorStats.builder()
+            .poolSize(0)
+            .activeCount(0)
+            .queueDepth(1)
+            .queueRemainingCapacity(9)
+            .completedJobs(0)
+            .rejectedJobs(0)
+            .build();
+    assertEquals(
+        Map.of(
+            "logFlush",
+            stats,
+            "executor",
+            expectedExecutorStats,
+            "retention",
+            purged,
+            "byType",
+            byType),
+        result);
+  }
+
+  /** Give saved jobs ids, and run the steps of workflows on the calling thread. */
+  private void runWorkflowsInline() {
+    AtomicLong ids = new AtomicLong(100);
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              if (job.getId() == 0) job.setId(ids.incrementAndGet());
+              return job;
+            });
+    when(jobsRepository.saveAll(anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Collection<Job> jobs = invocation.getArgument(0);
+              jobs.forEach(job -> job.setId(ids.incrementAndGet()));
+              return jobs;
+            });
+    doAnswer(
+            invocation -> {
+              jobService.runJobAsync(invocation.getArgument(0), invocation.getArgument(1));
+              return null;
+            })
+        .when(self)
+        .runJobAsync(any(Job.class), any(JobContextConsumer.class));
+  }
+
+  private static JobWorkflow.Step step(String name, JobContextConsumer job, String... deps) {
+    return JobWorkflow.Step.builder().name(name).job(job).dependencies(List.of(deps)).build();
+  }
+
+  @Test
+  void runWorkflow_starts_each_step_once_its_dependencies_complete() {
+    // Arrange
+    runWorkflowsInline();
+    List<String> ran = new CopyOnWriteArrayList<>();
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("nightly")
+            .step(step("purge", ctx -> ran.add("purge"), "aggregates", "report"))
+            .step(step("aggregates", ctx -> ran.add("aggregates"), "import"))
+            .step(step("report", ctx -> ran.add("report"), "import"))
+            .step(step("import", ctx -> ran.add("import")))
+            .build();
+
+    // Act
+    Job result = jobService.runWorkflow(workflow);
+
+    // Assert
+    assertEquals(List.of("import", "aggregates", "report", "purge"), ran);
+    assertEquals("complete", result.getStatus());
+    assertEquals(JobWorkflow.class.getName(), result.getJobType());
+    assertNull(result.getLeaseExpiresAt());
+    assertEquals(4L, result.getProgressDone());
+    assertEquals(4L, result.getProgressTotal());
+    ArgumentCaptor<Collection<Job>> steps = ArgumentCaptor.forClass(Collection.class);
+    verify(jobsRepository).saveAll(steps.capture());
+    for (Job step : steps.getValue()) {
+      assertEquals("complete", step.getStatus());
+      assertEquals(result.getId(), step.getWorkflowId());
+    }
+    Job purge =
+        steps.getValue().stream().filter(j -> j.getStepName().equals("purge")).findFirst().get();
+    assertEquals("purge", purge.getStepName());
+    assertEquals("aggregates,report", purge.getDependsOn());
+    verify(jobLogBroadcaster).finish(result.getId(), "complete");
+    verify(jobMetrics).jobEnded(eq(result), any(Duration.class));
+    verify(jobLogService)
+        .append(eq(result), eq(0), eq(0), eq(List.of("Starting workflow nightly with 4 steps")));
+  }
+
+  @Test
+  void runWorkflow_skips_steps_downstream_of_a_failed_step() {
+    // Arrange
+    runWorkflowsInline();
+    List<String> ran = new CopyOnWriteArrayList<>();
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("nightly")
+            .step(
+                step(
+                    "import",
+                    ctx -> {
+                      throw new IllegalStateException("no file");
+                    }))
+            .step(step("aggregates", ctx -> ran.add("aggregates"), "import"))
+            .step(step("purge", ctx -> ran.add("purge"), "aggregates"))
+            .step(step("cleanup", ctx -> ran.add("cleanup")))
+            .build();
+
+    // Act
+    Job result = jobService.runWorkflow(workflow);
+
+    // Assert
+    assertEquals(List.of("cleanup"), ran);
+    assertEquals("error", result.getStatus());
+    ArgumentCaptor<Collection<Job>> steps = ArgumentCaptor.forClass(Collection.class);
+    verify(jobsRepository).saveAll(steps.capture());
+    assertEquals(
+        List.of("error", "skipped", "skipped", "complete"),
+        steps.getValue().stream().map(Job::getStatus).toList());
+    verify(jobLogBroadcaster).finish(result.getId(), "error");
+  }
+
+  @Test
+  void runWorkflow_marks_a_step_the_executor_refuses_as_rejected() {
+    // Arrange
+    runWorkflowsInline();
+    doThrow(new TaskRejectedException("full"))
+        .when(self)
+        .runJobAsync(any(Job.class), any(JobContextConsumer.class));
+    when(jobExecutor.getThreadPoolExecutor())
+        .thenReturn(new ThreadPoolExecutor(1, 1, 0, SECONDS, new ArrayBlockingQueue<>(1)));
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("nightly")
+            .step(step("import", ctx -> {}))
+            .step(step("purge", ctx -> {}, "import"))
+            .build();
+
+    // Act
+    Job result = jobService.runWorkflow(workflow);
+
+    // Assert
+    assertEquals("error", result.getStatus());
+    ArgumentCaptor<Collection<Job>> steps = ArgumentCaptor.forClass(Collection.class);
+    verify(jobsRepository).saveAll(steps.capture());
+    assertEquals(
+        List.of("rejected", "skipped"), steps.getValue().stream().map(Job::getStatus).toList());
+    assertEquals(1L, jobService.getExecutorStats().getRejectedJobs());
+  }
+
+  @Test
+  void runWorkflow_refuses_a_workflow_with_a_cycle_before_saving_anything() {
+    // Arrange
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("nightly")
+            .step(step("a", ctx -> {}, "b"))
+            .step(step("b", ctx -> {}, "a"))
+            .build();
+
+    // Act & Assert
+    assertThrows(IllegalArgumentException.class, () -> jobService.runWorkflow(workflow));
+    verifyNoInteractions(jobsRepository);
+  }
+
+  @Test
+  void cancelJob_cancels_the_steps_of_a_workflow() {
+    // Arrange
+    runWorkflowsInline();
+    doNothing().when(self).runJobAsync(any(Job.class), any(JobContextConsumer.class));
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("nightly")
+            .step(step("import", ctx -> {}))
+            .step(step("purge", ctx -> {}, "import"))
+            .build();
+    Job result = jobService.runWorkflow(workflow);
+    ArgumentCaptor<Collection<Job>> steps = ArgumentCaptor.forClass(Collection.class);
+    verify(jobsRepository).saveAll(steps.capture());
+    Job importStep = steps.getValue().iterator().next();
+    when(jobsRepository.requestCancel(anyLong())).thenReturn(1);
+
+    // Act
+    assertTrue(jobService.cancelJob(result.getId()));
+
+    // Assert
+    assertEquals("running", result.getStatus());
+    assertEquals(
+        List.of("running", "cancelled"), steps.getValue().stream().map(Job::getStatus).toList());
+    verify(jobsRepository).requestCancel(importStep.getId());
+
+    // Act: the running step stops
+    importStep.setStatus("cancelled");
+    ReflectionTestUtils.invokeMethod(jobService, "stepEnded", importStep);
+
+    // Assert
+    assertEquals("cancelled", result.getStatus());
+    verify(jobLogBroadcaster).finish(result.getId(), "cancelled");
+  }
+
+  @Test
+  void readWorkflow_reads_each_step_from_its_job_type_and_spec() throws Exception {
+    // Arrange
+    JobWorkflowSpec spec =
+        JobWorkflowSpec.builder()
+            .name("nightly")
+            .steps(
+                List.of(
+                    JobWorkflowSpec.Step.builder()
+                        .name("test")
+                        .jobType(TestJob.class.getName())
+                        .spec(mapper.readTree("{\"fail\":false,\"sleepMs\":5}"))
+                        .timeoutMs(1000L)
+                        .build(),
+                    JobWorkflowSpec.Step.builder()
+                        .name("after")
+                        .jobType(TestJob.class.getName())
+                        .dependsOn(List.of("test"))
+                        .build()))
+            .build();
+
+    // Act
+    JobWorkflow workflow = jobService.readWorkflow(spec);
+
+    // Assert
+    assertEquals("nightly", workflow.getName());
+    TestJob job = (TestJob) workflow.getSteps().get(0).getJob();
+    assertEquals(false, job.getFail());
+    assertEquals(5, job.getSleepMs());
+    assertEquals(Duration.ofSeconds(1), workflow.getSteps().get(0).getTimeout());
+    assertEquals(List.of("test"), workflow.getSteps().get(1).getDependencies());
+  }
+
+  @Test
+  void readWorkflow_refuses_a_step_whose_job_cannot_be_read() {
+    // Arrange
+    JobWorkflowSpec spec =
+        JobWorkflowSpec.builder()
+            .name("nightly")
+            .steps(List.of(JobWorkflowSpec.Step.builder().name("x").jobType("no.such.Job").build()))
+            .build();
+
+    // Act
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> jobService.readWorkflow(spec));
+
+    // Assert
+    assertEquals("Invalid job type or spec for step x: no.such.Job", e.getMessage());
+  }
+
+  /** A job that Jackson can write but not read back, since it has no default constructor. */
+  private static class UnreadableJob implements JobContextConsumer {
+    private final int value;
+
+    UnreadableJob(int value) {
+      this.value = value;
+    }
+
+    public int getValue() {
+      return value;
+    }
+
+    @Override
+    public void accept(JobContext c) {}
+  }
+}
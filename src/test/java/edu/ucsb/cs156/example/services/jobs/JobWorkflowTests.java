@@ -0,0 +1,93 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class JobWorkflowTests {
+
+  private static final JobContextConsumer NOTHING = ctx -> {};
+
+  private static JobWorkflow.Step step(String name, String... dependencies) {
+    return JobWorkflow.Step.builder()
+        .name(name)
+        .job(NOTHING)
+        .dependencies(List.of(dependencies))
+        .build();
+  }
+
+  private static String invalid(JobWorkflow workflow) {
+    return assertThrows(IllegalArgumentException.class, workflow::inOrder).getMessage();
+  }
+
+  @Test
+  void inOrder_puts_each_step_after_its_dependencies() {
+    // Arrange
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("nightly")
+            .step(step("purge", "aggregates", "report"))
+            .step(step("report", "import"))
+            .step(step("aggregates", "import"))
+            .step(step("import"))
+            .step(step("cleanup"))
+            .build();
+
+    // Act
+    List<String> order = workflow.inOrder().stream().map(JobWorkflow.Step::getName).toList();
+
+    // Assert
+    assertEquals(List.of("import", "aggregates", "report", "purge", "cleanup"), order);
+  }
+
+  @Test
+  void inOrder_refuses_a_workflow_without_steps() {
+    assertEquals(
+        "Workflow nightly has no steps", invalid(JobWorkflow.builder().name("nightly").build()));
+  }
+
+  @Test
+  void inOrder_refuses_invalid_and_duplicate_step_names() {
+    assertEquals(
+        "Invalid step name in workflow nightly: a,b",
+        invalid(JobWorkflow.builder().name("nightly").step(step("a,b")).build()));
+    assertEquals(
+        "Invalid step name in workflow nightly:  ",
+        invalid(JobWorkflow.builder().name("nightly").step(step(" ")).build()));
+    assertEquals(
+        "Workflow nightly has two steps named a",
+        invalid(JobWorkflow.builder().name("nightly").step(step("a")).step(step("a")).build()));
+  }
+
+  @Test
+  void inOrder_refuses_a_step_without_a_job() {
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("nightly")
+            .step(JobWorkflow.Step.builder().name("a").build())
+            .build();
+    assertEquals("Step a of workflow nightly has no job", invalid(workflow));
+  }
+
+  @Test
+  void inOrder_refuses_a_dependency_on_an_unknown_step() {
+    JobWorkflow workflow =
+        JobWorkflow.builder().name("nightly").step(step("a")).step(step("b", "c")).build();
+    assertEquals("Step b of workflow nightly depends on unknown step c", invalid(workflow));
+  }
+
+  @Test
+  void inOrder_refuses_a_dependency_cycle() {
+    JobWorkflow workflow =
+        JobWorkflow.builder()
+            .name("nightly")
+            .step(step("a"))
+            .step(step("b", "a", "d"))
+            .step(step("c", "b"))
+            .step(step("d", "c"))
+            .build();
+    assertEquals("Workflow nightly has a dependency cycle through step b", invalid(workflow));
+  }
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ThreadUsageTests {
+
+  @Test
+  void current_counts_the_calling_threads_allocations() {
+    // Arrange
+    ThreadUsage start = ThreadUsage.current();
+    List<byte[]> garbage = new ArrayList<>();
+
+    // Act
+    for (int i = 0; i < 100; i++) garbage.add(new byte[10_000]);
+    ThreadUsage used = ThreadUsage.current().since(start);
+
+    // Assert
+    assertEquals(100, garbage.size());
+    assertTrue(used.allocatedBytes() >= 1_000_000, "allocated " + used.allocatedBytes());
+    assertTrue(used.cpuNanos() >= 0);
+  }
+
+  @Test
+  void counts_missing_on_either_side_stay_missing() {
+    ThreadUsage a = new ThreadUsage(100, -1);
+    ThreadUsage b = new ThreadUsage(40, 10);
+
+    assertEquals(new ThreadUsage(60, -1), a.since(b));
+    assertEquals(new ThreadUsage(140, -1), a.plus(b));
+    assertEquals(new ThreadUsage(0, 0), b.since(new ThreadUsage(50, 20)));
+    assertEquals(b, ThreadUsage.NONE.plus(b));
+  }
+}